@@ -0,0 +1,64 @@
+package sdp.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+/**
+ * Measures how many bytes the current thread has allocated.
+ *
+ * This relies on the HotSpot extension of the thread management bean. On
+ * virtual machines that do not support it, no allocations are reported.
+ */
+public class AllocationMeter {
+
+	/** The HotSpot thread bean or null, if it is not available. */
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+
+
+	/**
+	 * Get the HotSpot thread bean with allocation measurement enabled.
+	 *
+	 * @return The thread bean or null, if allocations cannot be measured.
+	 */
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		try {
+			if (!sunBean.isThreadAllocatedMemorySupported()) {
+				return null;
+			}
+			sunBean.setThreadAllocatedMemoryEnabled(true);
+		} catch (UnsupportedOperationException e) {
+			return null;
+		}
+		return sunBean;
+	}
+
+
+	/**
+	 * Check whether allocations can be measured.
+	 *
+	 * @return Whether allocation measurement is supported.
+	 */
+	public static boolean isSupported() {
+		return (THREAD_BEAN != null);
+	}
+
+	/**
+	 * Get the number of bytes the current thread has allocated so far.
+	 *
+	 * @return Allocated byte count or 0, if allocations cannot be measured.
+	 */
+	public static long getAllocatedBytes() {
+		if (THREAD_BEAN == null) {
+			return 0;
+		}
+		return THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+}
@@ -0,0 +1,344 @@
+package sdp.bench;
+
+import java.awt.geom.Point2D;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import sdp.common.geometry.GeomUtils;
+import sdp.common.geometry.Vector2D;
+import sdp.common.world.CollisionEngine;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Compares the {@link CollisionEngine} with the ray scan it replaced.
+ *
+ * Random world states are generated, each with a random set of obstacles
+ * and a batch of random path and ray queries, roughly what a pathfinder asks
+ * in one frame. Every batch is answered both by the engine, through
+ * {@link WorldState#isDirectPathClear(WorldState, Vector2D, Vector2D, int)}
+ * and {@link WorldState#getClosestCollisionVec(WorldState, Vector2D, Vector2D, int)},
+ * and by a copy of the original ray scan, which rebuilds its obstacle
+ * segments for every ray. The engine's batches start with a fresh state, so
+ * they include building the engine. The benchmark reports the cost of a
+ * batch and how often the two implementations disagree.
+ *
+ * Usage: CollisionBenchmark [frames] [queries per frame] [seed]
+ */
+public class CollisionBenchmark {
+
+	/** Default number of generated world states. */
+	private static final int DEFAULT_FRAMES = 5000;
+	/** Default number of path queries and ray queries per world state. */
+	private static final int DEFAULT_QUERIES = 100;
+	/** Number of world states processed before measuring. */
+	private static final int WARMUP_FRAMES = 500;
+	/** Distance, by which query points may lie outside of the pitch. */
+	private static final double QUERY_PADDING = 10;
+	/** Largest tolerated difference between ray collision distances. */
+	private static final double DISTANCE_TOLERANCE = 1e-6;
+
+	/** Width increments of the robot ray in the original scan. */
+	private static final double ROBOT_RAY_INCREMENT = 0.05;
+	/** Maximum ray width of the robot in the original scan. */
+	private static final double ROBOT_RAY_MAX_WIDTH = 1.2;
+	/** Direct path collision check tolerance of the original scan. */
+	private static final double DIRECT_PATH_CHECK_TOLERANCE = 0.001;
+	/** Radius of the ball obstacle in the original scan. */
+	private static final double BALL_OBSTACLE_RADIUS = 7;
+
+	/** Percentiles to report. */
+	private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 100.0 };
+
+
+	/** Source of the random world states and queries. */
+	private Random random;
+	/** Number of path and ray queries per world state. */
+	private int queryCount;
+
+	/** Cost of the batches answered by the collision engine. */
+	private StageStatistics engineStats;
+	/** Cost of the batches answered by the original ray scan. */
+	private StageStatistics rayScanStats;
+
+	/** Number of compared path queries. */
+	private long pathQueries = 0;
+	/** Number of path queries the engine considered clear. */
+	private long clearPaths = 0;
+	/** Number of path queries, on which the implementations disagree. */
+	private long pathDisagreements = 0;
+	/** Number of compared ray queries. */
+	private long rayQueries = 0;
+	/** Number of ray queries, on which the implementations disagree. */
+	private long rayDisagreements = 0;
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param queryCount Number of path and ray queries per world state.
+	 * @param seed Seed of the random world states and queries.
+	 */
+	public CollisionBenchmark(int queryCount, long seed) {
+		this.queryCount = queryCount;
+		random = new Random(seed);
+		engineStats = new StageStatistics("engine, " + queryCount + " paths");
+		rayScanStats = new StageStatistics("ray scan, " + queryCount + " paths");
+	}
+
+
+	/**
+	 * Process a number of random world states.
+	 *
+	 * @param frames Number of world states.
+	 * @param record Whether to record the results.
+	 */
+	public void run(int frames, boolean record) {
+		Vector2D[] starts = new Vector2D[queryCount];
+		Vector2D[] ends = new Vector2D[queryCount];
+		boolean[] engineClear = new boolean[queryCount];
+		boolean[] rayScanClear = new boolean[queryCount];
+
+		for (int frame = 0; frame < frames; ++frame) {
+			WorldState template = createRandomState();
+			int obstacles = random.nextInt(16);
+			for (int i = 0; i < queryCount; ++i) {
+				starts[i] = createRandomPoint();
+				ends[i] = createRandomPoint();
+			}
+
+			WorldState state = new WorldState(template.getBallCoords(), template.getBlueRobot(),
+					template.getYellowRobot(), (WorldImageSource) null);
+			long startAllocation = AllocationMeter.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			for (int i = 0; i < queryCount; ++i) {
+				engineClear[i] = WorldState.isDirectPathClear(state, starts[i], ends[i], obstacles);
+			}
+			long endTime = System.nanoTime();
+			long endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				engineStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+
+			startAllocation = AllocationMeter.getAllocatedBytes();
+			startTime = System.nanoTime();
+			for (int i = 0; i < queryCount; ++i) {
+				rayScanClear[i] = isDirectPathClear(template, starts[i], ends[i], obstacles);
+			}
+			endTime = System.nanoTime();
+			endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				rayScanStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+
+			if (!record) {
+				continue;
+			}
+			for (int i = 0; i < queryCount; ++i) {
+				++pathQueries;
+				if (engineClear[i]) {
+					++clearPaths;
+				}
+				if (engineClear[i] != rayScanClear[i]) {
+					++pathDisagreements;
+				}
+
+				Vector2D direction = Vector2D.subtract(ends[i], starts[i]);
+				double engineDist = WorldState.getClosestCollisionVec(state, starts[i],
+						direction, obstacles).getLength();
+				double rayScanDist = getClosestCollisionVec(template, starts[i],
+						direction, obstacles).getLength();
+				++rayQueries;
+				if (Math.abs(engineDist - rayScanDist) > DISTANCE_TOLERANCE) {
+					++rayDisagreements;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Create a world state with the ball and the robots at random places.
+	 * Robots may overlap each other and the ball, and the ball is
+	 * occasionally missing.
+	 *
+	 * @return World state in centimetres.
+	 */
+	private WorldState createRandomState() {
+		Point2D.Double ball = new Point2D.Double(-1, -1);
+		if (random.nextInt(10) != 0) {
+			ball = createRandomPoint();
+		}
+		Robot blue = new Robot(createRandomPoint(), random.nextDouble() * 360 - 180, true);
+		Robot yellow = new Robot(createRandomPoint(), random.nextDouble() * 360 - 180, true);
+		return new WorldState(ball, blue, yellow, (WorldImageSource) null);
+	}
+
+	/**
+	 * Create a random point on or around the pitch.
+	 *
+	 * @return Point in centimetres.
+	 */
+	private Vector2D createRandomPoint() {
+		double x = random.nextDouble() * (WorldState.PITCH_WIDTH_CM + 2 * QUERY_PADDING) - QUERY_PADDING;
+		double y = random.nextDouble() * (WorldState.PITCH_HEIGHT_CM + 2 * QUERY_PADDING) - QUERY_PADDING;
+		return new Vector2D(x, y);
+	}
+
+
+	/**
+	 * Print the results.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-24s %8s %10s", "cost", "ops", "mean us");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max us" : "p" + (int) percentile + " us");
+		}
+		out.printf(" %12s%n", "B/op");
+
+		for (StageStatistics stats : new StageStatistics[] { engineStats, rayScanStats }) {
+			out.printf("%-24s %8d %10.1f", stats.getName(), stats.getCount(), stats.getMeanLatency());
+			for (double percentile : PERCENTILES) {
+				out.printf(" %10.1f", stats.getLatencyPercentile(percentile));
+			}
+			if (AllocationMeter.isSupported()) {
+				out.printf(" %12.0f%n", stats.getAllocationPerOperation());
+			} else {
+				out.printf(" %12s%n", "n/a");
+			}
+		}
+
+		out.println();
+		out.printf("Speed-up: %.1fx%n", rayScanStats.getMeanLatency() / engineStats.getMeanLatency());
+		out.printf("Path queries: %d, clear: %d, disagreements: %d%n",
+				pathQueries, clearPaths, pathDisagreements);
+		out.printf("Ray queries: %d, disagreements: %d%n", rayQueries, rayDisagreements);
+	}
+
+
+	/**
+	 * Check whether a path is clear with the original ray scan.
+	 *
+	 * @param state Current world state.
+	 * @param point1 One of the path's endpoints.
+	 * @param point2 Another of the path's endpoints.
+	 * @param obstacles A bitfield that denotes which objects are considered
+	 * 		to be obstacles.
+	 * @return Whether the path between two points is clear.
+	 */
+	private static boolean isDirectPathClear(WorldState state, Vector2D point1,
+			Vector2D point2, int obstacles) {
+		double pathLength = Vector2D.subtract(point2, point1).getLength();
+		pathLength -= DIRECT_PATH_CHECK_TOLERANCE;
+
+		double factor = 0.0;
+		while (factor <= ROBOT_RAY_MAX_WIDTH) {
+			Vector2D dir = Vector2D.subtract(point2, point1);
+			double angle = (-dir.getDirection() + 90) * Math.PI / 180d;
+			double offset = factor * Robot.WIDTH_CM / 2;
+			double cos = Math.cos(angle);
+			double sin = Math.sin(angle);
+
+			Vector2D leftStartPt = Vector2D.add(point1, new Vector2D(cos * offset, sin * offset));
+			Vector2D leftColl = getClosestCollisionVec(state, leftStartPt, dir, obstacles);
+			Vector2D rightStartPt = Vector2D.add(point1, new Vector2D(-cos * offset, -sin * offset));
+			Vector2D rightColl = getClosestCollisionVec(state, rightStartPt, dir, obstacles);
+
+			if ((leftColl.getLength() < pathLength) || (rightColl.getLength() < pathLength)) {
+				return false;
+			}
+
+			factor += ROBOT_RAY_INCREMENT;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Find the closest collision with the original ray cast, which collects
+	 * the obstacle segments anew.
+	 *
+	 * @param state World state in which to perform the search.
+	 * @param origin The point from which to cast the ray.
+	 * @param direction Direction of the ray.
+	 * @param obstacles A bitfield that denotes which objects are considered
+	 * 		to be obstacles.
+	 * @return Collision vector.
+	 */
+	private static Vector2D getClosestCollisionVec(WorldState state, Vector2D origin,
+			Vector2D direction, int obstacles) {
+		if (!WorldState.isPointInPitch(origin)) {
+			return Vector2D.ZERO();
+		}
+
+		ArrayList<Point2D.Double[]> segments = new ArrayList<Point2D.Double[]>();
+
+		if ((obstacles & WorldState.WALL_IS_OBSTACLE_FLAG) != 0) {
+			double w = WorldState.PITCH_WIDTH_CM;
+			double h = WorldState.PITCH_HEIGHT_CM;
+			segments.add(new Point2D.Double[] { new Vector2D(0.0, 0.0), new Vector2D(w, 0.0) });
+			segments.add(new Point2D.Double[] { new Vector2D(w, 0.0), new Vector2D(w, h) });
+			segments.add(new Point2D.Double[] { new Vector2D(w, h), new Vector2D(0.0, h) });
+			segments.add(new Point2D.Double[] { new Vector2D(0.0, h), new Vector2D(0.0, 0.0) });
+		}
+		if ((obstacles & WorldState.BALL_IS_OBSTACLE_FLAG) != 0) {
+			Vector2D perpDir = Vector2D.getPerpendicular(direction);
+			Vector2D ball = new Vector2D(state.getBallCoords());
+			segments.add(new Point2D.Double[] {
+					Vector2D.add(ball, Vector2D.changeLength(perpDir, BALL_OBSTACLE_RADIUS)),
+					Vector2D.add(ball, Vector2D.changeLength(perpDir, -BALL_OBSTACLE_RADIUS)) });
+		}
+		if ((obstacles & WorldState.BLUE_IS_OBSTACLE_FLAG) != 0) {
+			addRobotSegments(segments, state.getBlueRobot());
+		}
+		if ((obstacles & WorldState.YELLOW_IS_OBSTACLE_FLAG) != 0) {
+			addRobotSegments(segments, state.getYellowRobot());
+		}
+
+		Vector2D nearest = Vector2D.changeLength(direction, WorldState.PITCH_WIDTH_CM);
+		for (Point2D.Double[] segment : segments) {
+			Vector2D current = GeomUtils.getLocalRaySegmentIntersection(origin, direction,
+					segment[0], segment[1]);
+			if ((current != null) && (current.getLength() < nearest.getLength())) {
+				nearest = current;
+			}
+		}
+		return nearest;
+	}
+
+	/**
+	 * Add the sides of a robot to a list of segments.
+	 *
+	 * @param segments List of segments.
+	 * @param robot The robot.
+	 */
+	private static void addRobotSegments(ArrayList<Point2D.Double[]> segments, Robot robot) {
+		segments.add(new Point2D.Double[] { robot.getFrontLeft(), robot.getFrontRight() });
+		segments.add(new Point2D.Double[] { robot.getFrontRight(), robot.getBackRight() });
+		segments.add(new Point2D.Double[] { robot.getBackRight(), robot.getBackLeft() });
+		segments.add(new Point2D.Double[] { robot.getBackLeft(), robot.getFrontLeft() });
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		int frames = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_FRAMES;
+		int queries = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+		long seed = (args.length > 2) ? Long.parseLong(args[2]) : 0;
+
+		CollisionBenchmark benchmark = new CollisionBenchmark(queries, seed);
+		benchmark.run(WARMUP_FRAMES, false);
+		benchmark.run(frames, true);
+		benchmark.printReport(System.out);
+	}
+
+}
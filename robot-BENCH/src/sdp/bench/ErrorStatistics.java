@@ -0,0 +1,105 @@
+package sdp.bench;
+
+import java.util.Arrays;
+
+
+/**
+ * Collects the errors of a series of estimates.
+ */
+public class ErrorStatistics {
+
+	/** Initial capacity of the sample array. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+
+	/** Name of the estimated quantity. */
+	private String name;
+
+	/** Magnitude of each error. */
+	private double[] errors = new double[INITIAL_CAPACITY];
+	/** Number of recorded errors. */
+	private int count = 0;
+	/** Sum of all recorded errors. */
+	private double total = 0;
+
+	/** Whether the errors are currently sorted. */
+	private boolean sorted = true;
+
+
+	/**
+	 * Create a new error collector.
+	 *
+	 * @param name Name of the estimated quantity.
+	 */
+	public ErrorStatistics(String name) {
+		this.name = name;
+	}
+
+
+	/**
+	 * Get the name of the estimated quantity.
+	 *
+	 * @return Quantity's name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+
+	/**
+	 * Record the error of an estimate.
+	 *
+	 * @param error Error of the estimate. Its sign is ignored.
+	 */
+	public void addSample(double error) {
+		if (count == errors.length) {
+			errors = Arrays.copyOf(errors, 2 * errors.length);
+		}
+		errors[count++] = Math.abs(error);
+		total += Math.abs(error);
+		sorted = false;
+	}
+
+
+	/**
+	 * Get the number of recorded errors.
+	 *
+	 * @return Error count.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the mean error.
+	 *
+	 * @return Mean error.
+	 */
+	public double getMean() {
+		if (count == 0) {
+			return 0.0;
+		}
+		return total / count;
+	}
+
+	/**
+	 * Get an error percentile, using the nearest rank method.
+	 *
+	 * @param percentile Percentile to get, between 0 and 100.
+	 * @return Error percentile.
+	 */
+	public double getPercentile(double percentile) {
+		if (count == 0) {
+			return 0.0;
+		}
+		if (!sorted) {
+			Arrays.sort(errors, 0, count);
+			sorted = true;
+		}
+
+		int rank = (int) Math.ceil(percentile / 100.0 * count);
+		rank = Math.max(1, Math.min(count, rank));
+		return errors[rank - 1];
+	}
+
+}
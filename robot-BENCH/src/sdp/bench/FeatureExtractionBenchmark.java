@@ -0,0 +1,167 @@
+package sdp.bench;
+
+import java.awt.geom.Point2D;
+import java.io.PrintStream;
+import java.util.Random;
+
+import sdp.common.NNetFeatureExtractor;
+import sdp.common.NNetTools;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Compares the cost of computing the neural network AI's inputs with
+ * {@link NNetTools#generateAIinput(WorldState, boolean, boolean)} and with
+ * the {@link NNetFeatureExtractor}.
+ *
+ * The robots and the ball are placed at random on the pitch. Both methods
+ * compute the inputs of the same states, and the number of states whose
+ * inputs differ in any bit is reported.
+ *
+ * Usage: FeatureExtractionBenchmark [states] [seed]
+ */
+public class FeatureExtractionBenchmark {
+
+	/** Default number of states. */
+	private static final int DEFAULT_STATES = 20000;
+	/** Number of states processed before measuring. */
+	private static final int WARMUP_STATES = 2000;
+
+	/** Percentiles to report. */
+	private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 100.0 };
+
+
+	/** Source of the random states. */
+	private Random random;
+	/** The tested extractor. */
+	private NNetFeatureExtractor extractor = new NNetFeatureExtractor();
+
+	/** Cost of the original inputs. */
+	private StageStatistics originalStats = new StageStatistics("generateAIinput");
+	/** Cost of the extractor's inputs. */
+	private StageStatistics extractorStats = new StageStatistics("feature extractor");
+
+	/** Number of compared states. */
+	private long comparedStates = 0;
+	/** Number of states whose inputs differ. */
+	private long mismatchedStates = 0;
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param seed Seed of the random states.
+	 */
+	public FeatureExtractionBenchmark(long seed) {
+		random = new Random(seed);
+	}
+
+
+	/**
+	 * Process a number of states.
+	 *
+	 * @param states Number of states.
+	 * @param record Whether to record the results.
+	 */
+	public void run(int states, boolean record) {
+		double[] inputs = new double[NNetFeatureExtractor.INPUT_COUNT];
+
+		for (int i = 0; i < states; ++i) {
+			WorldState state = new WorldState(createRandomPoint(),
+					new Robot(createRandomPoint(), random.nextDouble() * 360 - 180, true),
+					new Robot(createRandomPoint(), random.nextDouble() * 360 - 180, true),
+					(WorldImageSource) null);
+			boolean isBlue = random.nextBoolean();
+			boolean isGoalLeft = random.nextBoolean();
+
+			long startAllocation = AllocationMeter.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			double[] expected = NNetTools.generateAIinput(state, isBlue, isGoalLeft);
+			long endTime = System.nanoTime();
+			long endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				originalStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+
+			startAllocation = AllocationMeter.getAllocatedBytes();
+			startTime = System.nanoTime();
+			extractor.extract(state, isBlue, isGoalLeft, inputs);
+			endTime = System.nanoTime();
+			endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				extractorStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+
+			if (!record) {
+				continue;
+			}
+			++comparedStates;
+			for (int j = 0; j < expected.length; ++j) {
+				if (Double.doubleToLongBits(expected[j]) != Double.doubleToLongBits(inputs[j])) {
+					++mismatchedStates;
+					break;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Create a random point on the pitch.
+	 *
+	 * @return Point in centimetres.
+	 */
+	private Point2D.Double createRandomPoint() {
+		return new Point2D.Double(random.nextDouble() * WorldState.PITCH_WIDTH_CM,
+				random.nextDouble() * WorldState.PITCH_HEIGHT_CM);
+	}
+
+
+	/**
+	 * Print the results.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-24s %8s %10s", "inputs", "ops", "mean us");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max us" : "p" + (int) percentile + " us");
+		}
+		out.printf(" %12s%n", "B/op");
+
+		StageStatistics[] stages = { originalStats, extractorStats };
+		for (StageStatistics stats : stages) {
+			out.printf("%-24s %8d %10.1f", stats.getName(), stats.getCount(), stats.getMeanLatency());
+			for (double percentile : PERCENTILES) {
+				out.printf(" %10.1f", stats.getLatencyPercentile(percentile));
+			}
+			if (AllocationMeter.isSupported()) {
+				out.printf(" %12.0f%n", stats.getAllocationPerOperation());
+			} else {
+				out.printf(" %12s%n", "n/a");
+			}
+		}
+
+		out.println();
+		out.printf("Mismatched inputs: %d of %d states%n", mismatchedStates, comparedStates);
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		int states = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_STATES;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+
+		FeatureExtractionBenchmark benchmark = new FeatureExtractionBenchmark(seed);
+		benchmark.run(WARMUP_STATES, false);
+		benchmark.run(states, true);
+		benchmark.printReport(System.out);
+	}
+
+}
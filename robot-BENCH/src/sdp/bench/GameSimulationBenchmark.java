@@ -0,0 +1,213 @@
+package sdp.bench;
+
+import java.io.PrintStream;
+import java.util.Random;
+
+import sdp.AI.AIMaster;
+import sdp.AI.AIMaster.AIState;
+import sdp.AI.genetic.Game;
+import sdp.AI.genetic.GameEngine;
+import sdp.AI.neural.AINeuralNet;
+import sdp.common.world.WorldState;
+import sdp.simulator.SimulatorPhysicsEngine;
+import sdp.simulator.VBrick;
+
+
+/**
+ * Compares the cost of simulating a genetic algorithm game through the
+ * real-time pipeline, with {@link SimulatorPhysicsEngine} and
+ * {@link AIMaster}, and through {@link Game}'s batch engine.
+ *
+ * Both methods play full-length games between two neural network AIs with
+ * random weights. The real-time pipeline is driven the way games used to be
+ * simulated, without the fitness scoring.
+ *
+ * Usage: GameSimulationBenchmark [games] [seed]
+ */
+public class GameSimulationBenchmark {
+
+	/** Default number of games. */
+	private static final int DEFAULT_GAMES = 200;
+	/** Number of games played before measuring. */
+	private static final int WARMUP_GAMES = 100;
+
+	/** Frame rate of the simulated games. */
+	private static final double FRAME_TIME = 1.0 / Game.FPS;
+	/** Length of a game in frames. */
+	private static final int GAME_FRAMES = 60 * Game.FPS;
+
+	/** Percentiles to report. */
+	private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 100.0 };
+
+
+	/** Source of the random weights. */
+	private Random random;
+	/** Engine of the batch games. */
+	private GameEngine engine = new GameEngine();
+
+	/** Cost of the real-time pipeline's games. */
+	private StageStatistics pipelineStats = new StageStatistics("real-time pipeline");
+	/** Cost of the batch games. */
+	private StageStatistics batchStats = new StageStatistics("batch engine");
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param seed Seed of the random weights.
+	 */
+	public GameSimulationBenchmark(long seed) {
+		random = new Random(seed);
+	}
+
+
+	/**
+	 * Play a number of games with each method.
+	 *
+	 * @param games Number of games.
+	 * @param record Whether to record the results.
+	 */
+	public void run(int games, boolean record) {
+		for (int i = 0; i < games; ++i) {
+			double[] leftWeights = createRandomWeights();
+			double[] rightWeights = createRandomWeights();
+
+			long startAllocation = AllocationMeter.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			playPipelineGame(leftWeights, rightWeights);
+			long endTime = System.nanoTime();
+			long endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				pipelineStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+
+			startAllocation = AllocationMeter.getAllocatedBytes();
+			startTime = System.nanoTime();
+			new Game(0, 1, leftWeights, rightWeights, i).simulate(engine);
+			endTime = System.nanoTime();
+			endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				batchStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+		}
+	}
+
+	/**
+	 * Play a game through the real-time pipeline.
+	 *
+	 * @param leftWeights Weights of the left robot's network.
+	 * @param rightWeights Weights of the right robot's network.
+	 */
+	private void playPipelineGame(double[] leftWeights, double[] rightWeights) {
+		SimulatorPhysicsEngine sim = new SimulatorPhysicsEngine(false, true);
+		VBrick leftBrick = new VBrick();
+		VBrick rightBrick = new VBrick();
+		sim.registerBlue(leftBrick, 20, WorldState.PITCH_HEIGHT_CM / 2, 0);
+		sim.registerYellow(rightBrick, WorldState.PITCH_WIDTH_CM - 20,
+				WorldState.PITCH_HEIGHT_CM / 2, 180);
+
+		// Games start with the robots and the ball at random places.
+		sim.putAt(getRandomCoordinate(25, WorldState.PITCH_WIDTH_CM),
+				getRandomCoordinate(25, WorldState.PITCH_HEIGHT_CM), 0, 180 - random.nextInt(360));
+		sim.putAt(getRandomCoordinate(25, WorldState.PITCH_WIDTH_CM),
+				getRandomCoordinate(25, WorldState.PITCH_HEIGHT_CM), 1, 180 - random.nextInt(360));
+		sim.putBallAt(getRandomCoordinate(15, WorldState.PITCH_WIDTH_CM),
+				getRandomCoordinate(15, WorldState.PITCH_HEIGHT_CM));
+
+		AIMaster leftAI = new AIMaster(leftBrick, new AINeuralNet(leftWeights));
+		leftAI.setPrintStateChanges(false);
+		leftAI.setOwnTeamBlue(true);
+		leftAI.setOwnGoalLeft(true);
+		leftAI.setState(AIState.PLAY);
+		AIMaster rightAI = new AIMaster(rightBrick, new AINeuralNet(rightWeights));
+		rightAI.setPrintStateChanges(false);
+		rightAI.setOwnTeamBlue(false);
+		rightAI.setOwnGoalLeft(false);
+		rightAI.setState(AIState.PLAY);
+
+		for (int i = 0; i < Game.DELAY_SIZE; ++i) {
+			sim.simulate(FRAME_TIME);
+			sim.delayQueue.add(sim.getWorldState());
+		}
+		for (int i = 0; i < GAME_FRAMES; ++i) {
+			sim.simulate(FRAME_TIME);
+			sim.delayQueue.add(sim.getWorldState());
+			WorldState frame = sim.delayQueue.poll();
+			leftAI.processState(frame, false);
+			rightAI.processState(frame, false);
+		}
+		sim.stop();
+	}
+
+	/**
+	 * Get a random coordinate on the pitch.
+	 *
+	 * @param margin Distance from the walls in centimetres.
+	 * @param size Size of the pitch along the coordinate's axis.
+	 * @return The coordinate, normalised.
+	 */
+	private double getRandomCoordinate(double margin, double size) {
+		return (margin + random.nextDouble() * (size - 2 * margin)) / WorldState.PITCH_WIDTH_CM;
+	}
+
+	/**
+	 * Create random network weights.
+	 *
+	 * @return Weights compatible with {@link AINeuralNet#setWeights(double[])}.
+	 */
+	private double[] createRandomWeights() {
+		double[] weights = new double[AINeuralNet.getWeightsCount()];
+		for (int i = 0; i < weights.length; ++i) {
+			weights[i] = random.nextDouble() - 0.5;
+		}
+		return weights;
+	}
+
+
+	/**
+	 * Print the results.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-24s %8s %10s", "game", "games", "mean ms");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max ms" : "p" + (int) percentile + " ms");
+		}
+		out.printf(" %12s%n", "KB/game");
+
+		StageStatistics[] stages = { pipelineStats, batchStats };
+		for (StageStatistics stats : stages) {
+			out.printf("%-24s %8d %10.2f", stats.getName(), stats.getCount(),
+					stats.getMeanLatency() / 1000);
+			for (double percentile : PERCENTILES) {
+				out.printf(" %10.2f", stats.getLatencyPercentile(percentile) / 1000);
+			}
+			if (AllocationMeter.isSupported()) {
+				out.printf(" %12.0f%n", stats.getAllocationPerOperation() / 1024);
+			} else {
+				out.printf(" %12s%n", "n/a");
+			}
+		}
+
+		out.println();
+		out.printf("Speedup: %.1fx%n", pipelineStats.getMeanLatency() / batchStats.getMeanLatency());
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+
+		GameSimulationBenchmark benchmark = new GameSimulationBenchmark(seed);
+		benchmark.run(WARMUP_GAMES, false);
+		benchmark.run(games, true);
+		benchmark.printReport(System.out);
+	}
+
+}
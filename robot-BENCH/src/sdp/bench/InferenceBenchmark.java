@@ -0,0 +1,158 @@
+package sdp.bench;
+
+import java.io.PrintStream;
+import java.util.Random;
+
+import org.neuroph.core.NeuralNetwork;
+
+import sdp.AI.neural.AINeuralNet;
+import sdp.AI.neural.CompiledNeuralNet;
+
+
+/**
+ * Compares the cost of evaluating the neural network AI's network with
+ * Neuroph and with the {@link CompiledNeuralNet}.
+ *
+ * The network has random weights and is fed random inputs. Both methods
+ * evaluate the same inputs, and the number of evaluations whose outputs
+ * differ in any bit is reported.
+ *
+ * Usage: InferenceBenchmark [evaluations] [seed]
+ */
+public class InferenceBenchmark {
+
+	/** Default number of evaluations. */
+	private static final int DEFAULT_EVALUATIONS = 100000;
+	/** Number of evaluations processed before measuring. */
+	private static final int WARMUP_EVALUATIONS = 10000;
+
+	/** Percentiles to report. */
+	private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 100.0 };
+
+
+	/** Source of the random inputs. */
+	private Random random;
+	/** The evaluated network. */
+	private NeuralNetwork network;
+	/** The compiled copy of the network. */
+	private CompiledNeuralNet compiledNet;
+
+	/** Cost of Neuroph's evaluations. */
+	private StageStatistics neurophStats = new StageStatistics("neuroph");
+	/** Cost of the compiled evaluations. */
+	private StageStatistics compiledStats = new StageStatistics("compiled");
+
+	/** Number of compared evaluations. */
+	private long comparedEvaluations = 0;
+	/** Number of evaluations whose outputs differ. */
+	private long mismatchedEvaluations = 0;
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param seed Seed of the random inputs.
+	 */
+	public InferenceBenchmark(long seed) {
+		random = new Random(seed);
+		network = new AINeuralNet(AINeuralNet.getRandomWeights()).getNetwork();
+		compiledNet = new CompiledNeuralNet(network);
+	}
+
+
+	/**
+	 * Process a number of evaluations.
+	 *
+	 * @param evaluations Number of evaluations.
+	 * @param record Whether to record the results.
+	 */
+	public void run(int evaluations, boolean record) {
+		double[] input = new double[compiledNet.getInputCount()];
+		double[] output = new double[compiledNet.getOutputCount()];
+
+		for (int i = 0; i < evaluations; ++i) {
+			for (int j = 0; j < input.length; ++j) {
+				input[j] = random.nextDouble() * 2 - 1;
+			}
+
+			long startAllocation = AllocationMeter.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			network.setInput(input);
+			network.calculate();
+			double[] expected = network.getOutput();
+			long endTime = System.nanoTime();
+			long endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				neurophStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+
+			startAllocation = AllocationMeter.getAllocatedBytes();
+			startTime = System.nanoTime();
+			compiledNet.calculate(input, output);
+			endTime = System.nanoTime();
+			endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				compiledStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+
+			if (!record) {
+				continue;
+			}
+			++comparedEvaluations;
+			for (int j = 0; j < expected.length; ++j) {
+				if (Double.doubleToLongBits(expected[j]) != Double.doubleToLongBits(output[j])) {
+					++mismatchedEvaluations;
+					break;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Print the results.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-24s %8s %10s", "inference", "ops", "mean us");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max us" : "p" + (int) percentile + " us");
+		}
+		out.printf(" %12s%n", "B/op");
+
+		StageStatistics[] stages = { neurophStats, compiledStats };
+		for (StageStatistics stats : stages) {
+			out.printf("%-24s %8d %10.2f", stats.getName(), stats.getCount(), stats.getMeanLatency());
+			for (double percentile : PERCENTILES) {
+				out.printf(" %10.2f", stats.getLatencyPercentile(percentile));
+			}
+			if (AllocationMeter.isSupported()) {
+				out.printf(" %12.0f%n", stats.getAllocationPerOperation());
+			} else {
+				out.printf(" %12s%n", "n/a");
+			}
+		}
+
+		out.println();
+		out.printf("Mismatched outputs: %d of %d evaluations%n", mismatchedEvaluations,
+				comparedEvaluations);
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		int evaluations = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_EVALUATIONS;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+
+		InferenceBenchmark benchmark = new InferenceBenchmark(seed);
+		benchmark.run(WARMUP_EVALUATIONS, false);
+		benchmark.run(evaluations, true);
+		benchmark.printReport(System.out);
+	}
+
+}
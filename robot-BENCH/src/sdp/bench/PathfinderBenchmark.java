@@ -0,0 +1,265 @@
+package sdp.bench;
+
+import java.awt.geom.Point2D;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import sdp.AI.AIWorldState;
+import sdp.AI.pathfinding.FullPathfinder;
+import sdp.AI.pathfinding.ObstacleTangentPathfinder;
+import sdp.AI.pathfinding.Pathfinder;
+import sdp.AI.pathfinding.VisibilityGraphPathfinder;
+import sdp.AI.pathfinding.Waypoint;
+import sdp.common.Painter;
+import sdp.common.world.CollisionEngine;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Compares the {@link VisibilityGraphPathfinder} with the
+ * {@link FullPathfinder} and the {@link ObstacleTangentPathfinder}.
+ *
+ * Random world states are generated with our robot, the enemy robot and the
+ * ball at random places, and each pathfinder is asked for a path to a random
+ * destination. Queries with a clear direct path are skipped, since every
+ * pathfinder answers them with the same check. The benchmark reports the
+ * latency of the queries, how often each pathfinder found a path itself
+ * instead of handing the query to its heuristic fallback, how often the
+ * found paths are clear according to the collision engine and how long they
+ * are compared to the visibility graph's paths.
+ *
+ * Usage: PathfinderBenchmark [queries] [seed]
+ */
+public class PathfinderBenchmark {
+
+	/** Default number of path queries. */
+	private static final int DEFAULT_QUERIES = 2000;
+	/** Number of queries processed before measuring. */
+	private static final int WARMUP_QUERIES = 200;
+	/** Distance between the walls and the random points. */
+	private static final double POINT_PADDING = Robot.LENGTH_CM / 2;
+
+	/** Percentiles to report. */
+	private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 100.0 };
+
+
+	/** Source of the random world states and queries. */
+	private Random random;
+
+	/** Names of the compared pathfinders. */
+	private String[] names = { "visibility graph", "full", "obstacle tangent" };
+	/** Cost of the queries of each pathfinder. */
+	private StageStatistics[] stats;
+	/** Number of queries each pathfinder answered without its fallback. */
+	private int[] foundPaths;
+	/** Number of found paths whose segments are all clear. */
+	private int[] clearPaths;
+	/** Sum of lengths of paths found by each pathfinder and the graph. */
+	private double[] pathLengths;
+	/** Sum of lengths of the visibility graph's paths, where both found one. */
+	private double[] graphPathLengths;
+
+	/** Number of nodes in the visibility graphs. */
+	private long graphNodes = 0;
+	/** Number of visibility checks in the graph searches. */
+	private long visibilityChecks = 0;
+	/** Number of measured queries. */
+	private int queryCount = 0;
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param seed Seed of the random world states and queries.
+	 */
+	public PathfinderBenchmark(long seed) {
+		random = new Random(seed);
+		stats = new StageStatistics[names.length];
+		for (int i = 0; i < names.length; ++i) {
+			stats[i] = new StageStatistics(names[i]);
+		}
+		foundPaths = new int[names.length];
+		clearPaths = new int[names.length];
+		pathLengths = new double[names.length];
+		graphPathLengths = new double[names.length];
+	}
+
+
+	/**
+	 * Run a number of random path queries.
+	 *
+	 * @param queries Number of queries.
+	 * @param record Whether to record the results.
+	 */
+	public void run(int queries, boolean record) {
+		VisibilityGraphPathfinder graphPathfinder = new VisibilityGraphPathfinder();
+		Pathfinder[] pathfinders = {
+				graphPathfinder, new FullPathfinder(), new ObstacleTangentPathfinder()
+		};
+
+		for (int query = 0; query < queries; ++query) {
+			AIWorldState state = new AIWorldState(createRandomState(), true, true);
+			Point2D.Double dest = createRandomPoint();
+			boolean ballIsObstacle = random.nextBoolean();
+			int obstacleFlags = WorldState.makeObstacleFlagsForOpponent(ballIsObstacle, true);
+			CollisionEngine engine = state.getCollisionEngine(obstacleFlags);
+
+			Point2D.Double start = state.getOwnRobot().getCoords();
+			if (engine.isPathClear(start.x, start.y, dest.x, dest.y)) {
+				--query;
+				continue;
+			}
+
+			ArrayList<Waypoint> graphPath = null;
+			for (int i = 0; i < pathfinders.length; ++i) {
+				long startAllocation = AllocationMeter.getAllocatedBytes();
+				long startTime = System.nanoTime();
+				ArrayList<Waypoint> path = pathfinders[i].getPath(state, dest, ballIsObstacle);
+				long endTime = System.nanoTime();
+				long endAllocation = AllocationMeter.getAllocatedBytes();
+
+				// Pathfinders publish their own paths for drawing, but not
+				// the ones of their fallback.
+				boolean found = (Painter.fullPath != null) && !Painter.fullPath.isEmpty();
+				if (i == 0) {
+					graphPath = (found ? path : null);
+				}
+				if (!record) {
+					continue;
+				}
+
+				stats[i].addSample(endTime - startTime, endAllocation - startAllocation);
+				if (!found) {
+					continue;
+				}
+				++foundPaths[i];
+				if (isPathClear(engine, path)) {
+					++clearPaths[i];
+				}
+				if (graphPath != null) {
+					pathLengths[i] += getPathLength(path);
+					graphPathLengths[i] += getPathLength(graphPath);
+				}
+			}
+
+			if (record) {
+				graphNodes += graphPathfinder.getNodeCount();
+				visibilityChecks += graphPathfinder.getVisibilityChecks();
+				++queryCount;
+			}
+		}
+	}
+
+
+	/**
+	 * Create a world state with the ball and the robots at random places.
+	 *
+	 * @return World state in centimetres.
+	 */
+	private WorldState createRandomState() {
+		Point2D.Double ball = createRandomPoint();
+		Robot blue = new Robot(createRandomPoint(), random.nextDouble() * 360 - 180, true);
+		Robot yellow = new Robot(createRandomPoint(), random.nextDouble() * 360 - 180, true);
+		return new WorldState(ball, blue, yellow, (WorldImageSource) null);
+	}
+
+	/**
+	 * Create a random point on the pitch, away from the walls.
+	 *
+	 * @return Point in centimetres.
+	 */
+	private Point2D.Double createRandomPoint() {
+		double x = POINT_PADDING + random.nextDouble() * (WorldState.PITCH_WIDTH_CM - 2 * POINT_PADDING);
+		double y = POINT_PADDING + random.nextDouble() * (WorldState.PITCH_HEIGHT_CM - 2 * POINT_PADDING);
+		return new Point2D.Double(x, y);
+	}
+
+
+	/**
+	 * Check whether all segments of a path, apart from the first one, are
+	 * clear. The first one starts at the robot, which may be touching an
+	 * obstacle.
+	 *
+	 * @param engine Collision engine of the world state.
+	 * @param path Path to check.
+	 * @return Whether the path is clear.
+	 */
+	private static boolean isPathClear(CollisionEngine engine, ArrayList<Waypoint> path) {
+		for (int i = 1; i < path.size(); ++i) {
+			Waypoint waypoint = path.get(i);
+			if (!engine.isPathClear(waypoint.getOriginPos().x, waypoint.getOriginPos().y,
+					waypoint.getTarget().x, waypoint.getTarget().y)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the length of a path.
+	 *
+	 * @param path Path of interest.
+	 * @return Sum of the lengths of the path's segments.
+	 */
+	private static double getPathLength(ArrayList<Waypoint> path) {
+		double length = 0.0;
+		for (Waypoint waypoint : path) {
+			length += waypoint.getOriginPos().distance(waypoint.getTarget());
+		}
+		return length;
+	}
+
+
+	/**
+	 * Print the results.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-18s %8s %10s", "pathfinder", "queries", "mean us");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max us" : "p" + (int) percentile + " us");
+		}
+		out.printf(" %10s %8s %8s %10s%n", "B/query", "found", "clear", "length");
+
+		for (int i = 0; i < names.length; ++i) {
+			out.printf("%-18s %8d %10.1f", names[i], stats[i].getCount(),
+					stats[i].getMeanLatency());
+			for (double percentile : PERCENTILES) {
+				out.printf(" %10.1f", stats[i].getLatencyPercentile(percentile));
+			}
+			if (AllocationMeter.isSupported()) {
+				out.printf(" %10.0f", stats[i].getAllocationPerOperation());
+			} else {
+				out.printf(" %10s", "n/a");
+			}
+			out.printf(" %8d %8d %10.3f%n", foundPaths[i], clearPaths[i],
+					pathLengths[i] / graphPathLengths[i]);
+		}
+
+		out.println();
+		out.println("Length is relative to the visibility graph, over queries both solved.");
+		out.printf("Visibility graph: %.1f nodes, %.1f visibility checks per query%n",
+				(double) graphNodes / queryCount, (double) visibilityChecks / queryCount);
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		int queries = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_QUERIES;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+
+		PathfinderBenchmark benchmark = new PathfinderBenchmark(seed);
+		benchmark.run(WARMUP_QUERIES, false);
+		benchmark.run(queries, true);
+		benchmark.printReport(System.out);
+	}
+
+}
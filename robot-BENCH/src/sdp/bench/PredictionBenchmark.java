@@ -0,0 +1,485 @@
+package sdp.bench;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import sdp.AI.AIMaster;
+import sdp.AI.AIMaster.AIState;
+import sdp.AI.AIVisualServoing;
+import sdp.AI.Command;
+import sdp.AI.prediction.AnalyticMotionPredictor;
+import sdp.AI.prediction.MotionPredictor;
+import sdp.AI.prediction.SimulatorMotionPredictor;
+import sdp.AI.tracking.WorldTracker;
+import sdp.common.WorldStateRandomizer;
+import sdp.common.Communicator.opcode;
+import sdp.common.geometry.GeomUtils;
+import sdp.common.geometry.Vector2D;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+import sdp.simulator.SimulatorPhysicsEngine;
+import sdp.simulator.VBrick;
+
+
+/**
+ * Compares the accuracy and the cost of the object tracker and the motion
+ * predictors.
+ *
+ * The observations of a game are fed to a tracker frame by frame, as
+ * AIWorldState does. After each frame, every predictor is asked for the
+ * state of the field a fixed time after the last observation. The filtered
+ * states are compared with the true states of the same frames, and the
+ * predictions with the true state at the predicted time, interpolated
+ * between frames, and with the predictions of the physics rollout.
+ *
+ * Games are read from movie directories with frames saved by
+ * {@link WorldState#saveMovie(WorldState[], String, String[], Vector2D[][])}.
+ * Movies do not record commands, so all robots are predicted from their
+ * tracked motion, and the observations themselves serve as the truth. If no
+ * directories are given, a game between two visual servoing AIs is played
+ * in the simulator instead. Its observations are the true states with
+ * added noise, and the commands of the blue robot are passed to the
+ * predictors.
+ *
+ * Usage: PredictionBenchmark [movie frame rate movie directory...]
+ */
+public class PredictionBenchmark {
+
+	/** Time past the last observation to predict, in seconds. */
+	private static final double PREDICTION_TIME = 0.25;
+
+	/** Frame rate of the simulated game. */
+	private static final double SIMULATED_FPS = 25;
+	/** Length of the simulated game in seconds. */
+	private static final double SIMULATED_GAME_LENGTH = 120;
+	/** Largest position noise added to the simulated observations, in centimetres. */
+	private static final double SIMULATED_POSITION_NOISE = 1;
+	/** Largest angle noise added to the simulated observations, in degrees. */
+	private static final double SIMULATED_ANGLE_NOISE = 3;
+
+	/** Percentiles to report. */
+	private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 100.0 };
+
+
+	/** Results of each benchmarked predictor. The first one is the reference. */
+	private ArrayList<PredictorResults> results = new ArrayList<PredictorResults>();
+
+	/** Cost of the tracker updates. */
+	private StageStatistics trackerCost = new StageStatistics("TRACKER");
+	/** Errors of the observations relative to the truth. */
+	private PredictionErrors observationErrors = new PredictionErrors("OBSERVED vs truth");
+	/** Errors of the filtered states relative to the truth. */
+	private PredictionErrors trackerErrors = new PredictionErrors("TRACKER vs truth");
+
+
+	/**
+	 * Create a new benchmark of the simulator and the analytic predictors.
+	 */
+	public PredictionBenchmark() {
+		results.add(new PredictorResults("SIMULATOR"));
+		results.add(new PredictorResults("ANALYTIC"));
+	}
+
+
+	/**
+	 * Create a fresh instance of each predictor, since they keep track of
+	 * the game they follow.
+	 */
+	private void resetPredictors() {
+		results.get(0).predictor = new SimulatorMotionPredictor(new SimulatorPhysicsEngine(false, false));
+		results.get(1).predictor = new AnalyticMotionPredictor();
+	}
+
+
+	/**
+	 * Run the tracker and all predictors over a game.
+	 *
+	 * @param frames Observed states in centimetres.
+	 * @param truth True states in centimetres.
+	 * @param commands Command our robot was executing in each frame. Entries
+	 * 		may be null.
+	 * @param frameTime Time between frames, in seconds.
+	 * @param isOwnTeamBlue Whether the commands are of the blue robot.
+	 */
+	public void run(WorldState[] frames, WorldState[] truth, Command[] commands,
+			double frameTime, boolean isOwnTeamBlue) {
+		resetPredictors();
+		WorldTracker tracker = new WorldTracker();
+
+		double frameOffset = PREDICTION_TIME / frameTime;
+
+		for (int i = 0; i + frameOffset <= frames.length - 1; ++i) {
+			long startAllocation = AllocationMeter.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			tracker.update(frames[i], frameTime);
+			long endTime = System.nanoTime();
+			long endAllocation = AllocationMeter.getAllocatedBytes();
+
+			trackerCost.addSample(endTime - startTime, endAllocation - startAllocation);
+			observationErrors.addSamples(frames[i], truth[i]);
+			trackerErrors.addSamples(tracker.getFilteredState(), truth[i]);
+
+			WorldState expected = interpolate(truth, i + frameOffset);
+
+			WorldState reference = null;
+			for (PredictorResults result : results) {
+				startAllocation = AllocationMeter.getAllocatedBytes();
+				startTime = System.nanoTime();
+				WorldState predicted = result.predictor.predict(tracker, frameTime,
+						PREDICTION_TIME, commands[i], isOwnTeamBlue);
+				endTime = System.nanoTime();
+				endAllocation = AllocationMeter.getAllocatedBytes();
+
+				result.cost.addSample(endTime - startTime, endAllocation - startAllocation);
+				result.toObserved.addSamples(predicted, expected);
+				if (reference == null) {
+					reference = predicted;
+				} else {
+					result.toReference.addSamples(predicted, reference);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Get the state at a fractional frame index, interpolating
+	 * linearly between the neighbouring frames.
+	 *
+	 * @param frames States in centimetres.
+	 * @param index Fractional frame index.
+	 * @return Interpolated state.
+	 */
+	private static WorldState interpolate(WorldState[] frames, double index) {
+		int before = (int) Math.floor(index);
+		int after = Math.min(before + 1, frames.length - 1);
+		double weight = index - before;
+
+		WorldState a = frames[before];
+		WorldState b = frames[after];
+
+		Point2D.Double ball;
+		if (a.isBallPresent() && b.isBallPresent()) {
+			ball = interpolate(a.getBallCoords(), b.getBallCoords(), weight);
+		} else {
+			ball = (weight < 0.5) ? a.getBallCoords() : b.getBallCoords();
+		}
+
+		return new WorldState(ball, interpolate(a.getBlueRobot(), b.getBlueRobot(), weight),
+				interpolate(a.getYellowRobot(), b.getYellowRobot(), weight), (WorldImageSource) null);
+	}
+
+	/**
+	 * Interpolate linearly between two points.
+	 *
+	 * @param a First point.
+	 * @param b Second point.
+	 * @param weight Weight of the second point.
+	 * @return Interpolated point.
+	 */
+	private static Point2D.Double interpolate(Point2D.Double a, Point2D.Double b, double weight) {
+		return new Point2D.Double(a.x + (b.x - a.x) * weight, a.y + (b.y - a.y) * weight);
+	}
+
+	/**
+	 * Interpolate linearly between two robots.
+	 *
+	 * @param a First robot.
+	 * @param b Second robot.
+	 * @param weight Weight of the second robot.
+	 * @return Interpolated robot.
+	 */
+	private static Robot interpolate(Robot a, Robot b, double weight) {
+		double angle = a.getAngle() + GeomUtils.normaliseAngle(b.getAngle() - a.getAngle()) * weight;
+		return new Robot(interpolate(a.getCoords(), b.getCoords(), weight), angle, true);
+	}
+
+
+	/**
+	 * Print the results of all runs.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-36s %8s %10s", "cost", "ops", "mean us");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max us" : "p" + (int) percentile + " us");
+		}
+		out.printf(" %12s%n", "B/op");
+
+		ArrayList<StageStatistics> costs = new ArrayList<StageStatistics>();
+		costs.add(trackerCost);
+		for (PredictorResults result : results) {
+			costs.add(result.cost);
+		}
+		for (StageStatistics stats : costs) {
+			out.printf("%-36s %8d %10.1f", stats.getName(), stats.getCount(), stats.getMeanLatency());
+			for (double percentile : PERCENTILES) {
+				out.printf(" %10.1f", stats.getLatencyPercentile(percentile));
+			}
+			if (AllocationMeter.isSupported()) {
+				out.printf(" %12.0f%n", stats.getAllocationPerOperation());
+			} else {
+				out.printf(" %12s%n", "n/a");
+			}
+		}
+
+		out.println();
+		out.printf("%-36s %8s %10s", "error (cm, degrees)", "samples", "mean");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max" : "p" + (int) percentile);
+		}
+		out.println();
+
+		observationErrors.print(out);
+		trackerErrors.print(out);
+		for (PredictorResults result : results) {
+			result.toObserved.print(out);
+		}
+		for (PredictorResults result : results.subList(1, results.size())) {
+			result.toReference.print(out);
+		}
+	}
+
+
+	/**
+	 * Load the frames of a movie.
+	 *
+	 * @param dir Movie directory.
+	 * @return Frames in centimetres.
+	 */
+	private static WorldState[] loadMovie(String dir) {
+		ArrayList<WorldState> frames = new ArrayList<WorldState>();
+		while (true) {
+			String fileName = dir + "/frame" + frames.size() + ".xml";
+			if (!new File(fileName).exists()) {
+				break;
+			}
+			WorldState state = WorldState.loadWorldState(fileName, new StringBuilder(),
+					new LinkedList<Vector2D>());
+			frames.add(WorldState.toCentimeters(state));
+		}
+		return frames.toArray(new WorldState[0]);
+	}
+
+	/**
+	 * Play a game between two visual servoing AIs in the simulator and
+	 * record it.
+	 *
+	 * @param frames Array to fill with the observed states in centimetres.
+	 * @param truth Array to fill with the true states in centimetres.
+	 * @param commands Array to fill with the commands the blue robot was
+	 * 		executing in each frame.
+	 * @param frameTime Time between frames, in seconds.
+	 */
+	private static void recordSimulatedGame(WorldState[] frames, WorldState[] truth,
+			Command[] commands, double frameTime) {
+		SimulatorPhysicsEngine sim = new SimulatorPhysicsEngine(false, false);
+		RecordingBrick blueBrick = new RecordingBrick();
+		VBrick yellowBrick = new VBrick();
+
+		sim.registerBlue(blueBrick, 40, WorldState.PITCH_HEIGHT_CM / 2, 0);
+		sim.registerYellow(yellowBrick, WorldState.PITCH_WIDTH_CM - 40,
+				WorldState.PITCH_HEIGHT_CM / 2, 180);
+		sim.putBallAt();
+
+		AIMaster blueAI = new AIMaster(blueBrick, new AIVisualServoing());
+		blueAI.setPrintStateChanges(false);
+		blueAI.setOwnTeamBlue(true);
+		blueAI.setOwnGoalLeft(true);
+		AIMaster yellowAI = new AIMaster(yellowBrick, new AIVisualServoing());
+		yellowAI.setPrintStateChanges(false);
+		yellowAI.setOwnTeamBlue(false);
+		yellowAI.setOwnGoalLeft(false);
+
+		blueAI.setState(AIState.PLAY);
+		yellowAI.setState(AIState.PLAY);
+
+		for (int i = 0; i < frames.length; ++i) {
+			sim.simulate(frameTime);
+			WorldState trueState = sim.getWorldState();
+			WorldState state = WorldStateRandomizer.randomize(trueState,
+					SIMULATED_POSITION_NOISE / WorldState.PITCH_WIDTH_CM, SIMULATED_ANGLE_NOISE);
+
+			frames[i] = WorldState.toCentimeters(state);
+			truth[i] = WorldState.toCentimeters(trueState);
+			commands[i] = blueBrick.getCommand();
+
+			blueAI.processState(state, false);
+			yellowAI.processState(state, false);
+		}
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		PredictionBenchmark benchmark = new PredictionBenchmark();
+
+		if (args.length < 2) {
+			int frameCount = (int) (SIMULATED_GAME_LENGTH * SIMULATED_FPS);
+			WorldState[] frames = new WorldState[frameCount];
+			WorldState[] truth = new WorldState[frameCount];
+			Command[] commands = new Command[frameCount];
+			recordSimulatedGame(frames, truth, commands, 1 / SIMULATED_FPS);
+
+			System.out.println("Simulated game, " + frameCount + " frames at "
+					+ SIMULATED_FPS + " FPS.");
+			benchmark.run(frames, truth, commands, 1 / SIMULATED_FPS, true);
+		} else {
+			double fps = Double.parseDouble(args[0]);
+			for (int i = 1; i < args.length; ++i) {
+				WorldState[] frames = loadMovie(args[i]);
+				System.out.println(args[i] + ", " + frames.length + " frames at " + fps + " FPS.");
+				benchmark.run(frames, frames, new Command[frames.length], 1 / fps, true);
+			}
+		}
+
+		System.out.println();
+		benchmark.printReport(System.out);
+	}
+
+
+	/**
+	 * The results of a single predictor.
+	 */
+	private static class PredictorResults {
+
+		/** The predictor. */
+		public MotionPredictor predictor = null;
+		/** Cost of the predictions. */
+		public StageStatistics cost;
+		/** Errors relative to the true states. */
+		public PredictionErrors toObserved;
+		/** Differences to the reference predictor. */
+		public PredictionErrors toReference;
+
+
+		/**
+		 * Create new predictor results.
+		 *
+		 * @param name Name of the predictor.
+		 */
+		public PredictorResults(String name) {
+			cost = new StageStatistics(name);
+			toObserved = new PredictionErrors(name + " vs truth");
+			toReference = new PredictionErrors(name + " vs simulator");
+		}
+
+	}
+
+
+	/**
+	 * Errors of a series of predictions.
+	 */
+	private static class PredictionErrors {
+
+		/** Errors of the ball position. */
+		private ErrorStatistics ball;
+		/** Errors of the robot positions. */
+		private ErrorStatistics robotPosition;
+		/** Errors of the robot angles. */
+		private ErrorStatistics robotAngle;
+
+
+		/**
+		 * Create a new error collector.
+		 *
+		 * @param name Name of the compared predictions.
+		 */
+		public PredictionErrors(String name) {
+			ball = new ErrorStatistics(name + ", ball");
+			robotPosition = new ErrorStatistics(name + ", robot");
+			robotAngle = new ErrorStatistics(name + ", angle");
+		}
+
+
+		/**
+		 * Record the errors of a prediction.
+		 *
+		 * @param predicted Predicted state.
+		 * @param expected Expected state.
+		 */
+		public void addSamples(WorldState predicted, WorldState expected) {
+			if (predicted.isBallPresent() && expected.isBallPresent()) {
+				ball.addSample(GeomUtils.pointDistance(predicted.getBallCoords(),
+						expected.getBallCoords()));
+			}
+			addSamples(predicted.getBlueRobot(), expected.getBlueRobot());
+			addSamples(predicted.getYellowRobot(), expected.getYellowRobot());
+		}
+
+		/**
+		 * Record the errors of a robot prediction.
+		 *
+		 * @param predicted Predicted robot.
+		 * @param expected Expected robot.
+		 */
+		private void addSamples(Robot predicted, Robot expected) {
+			robotPosition.addSample(GeomUtils.pointDistance(predicted.getCoords(),
+					expected.getCoords()));
+			robotAngle.addSample(GeomUtils.normaliseAngle(predicted.getAngle()
+					- expected.getAngle()));
+		}
+
+
+		/**
+		 * Print the error summaries.
+		 *
+		 * @param out Stream to print to.
+		 */
+		public void print(PrintStream out) {
+			for (ErrorStatistics stats : new ErrorStatistics[] { ball, robotPosition, robotAngle }) {
+				out.printf("%-36s %8d %10.2f", stats.getName(), stats.getCount(), stats.getMean());
+				for (double percentile : PERCENTILES) {
+					out.printf(" %10.2f", stats.getPercentile(percentile));
+				}
+				out.println();
+			}
+		}
+
+	}
+
+
+	/**
+	 * A virtual brick that remembers the last driving command it was sent.
+	 */
+	private static class RecordingBrick extends VBrick {
+
+		/** The last driving command. */
+		private Command command = new Command(0, 0, false);
+
+
+		/**
+		 * Get the last driving command.
+		 *
+		 * @return The last driving command.
+		 */
+		public Command getCommand() {
+			return command;
+		}
+
+
+		/**
+		 * @see sdp.simulator.VBrick#sendMessage(sdp.common.Communicator.opcode, short[])
+		 */
+		@Override
+		public void sendMessage(opcode op, short... args) throws IOException {
+			super.sendMessage(op, args);
+			if (op == opcode.operate) {
+				double turningSpeed = (args.length > 1) ? args[1] : command.turningSpeed;
+				command = new Command(args[0], turningSpeed, false);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,242 @@
+package sdp.bench;
+
+import java.awt.geom.Point2D;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import sdp.AI.AIWorldState;
+import sdp.AI.pathfinding.Pathfinder;
+import sdp.AI.pathfinding.ReplanningPathfinder;
+import sdp.AI.pathfinding.VisibilityGraphPathfinder;
+import sdp.AI.pathfinding.Waypoint;
+import sdp.common.geometry.Vector2D;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Measures how much pathfinding time the {@link ReplanningPathfinder} saves
+ * over the {@link VisibilityGraphPathfinder} it wraps.
+ *
+ * Each episode starts with the robots and the ball at random places. Every
+ * frame, our robot asks for a path to the ball and drives along it, while the
+ * enemy robot and the ball drift with random velocities. Both pathfinders are
+ * asked for a path in the same frames, and our robot follows the replanned
+ * one. Frames in which the plain pathfinder finds no direct path are also
+ * reported separately.
+ *
+ * Usage: ReplanningBenchmark [episodes] [seed]
+ */
+public class ReplanningBenchmark {
+
+	/** Default number of episodes. */
+	private static final int DEFAULT_EPISODES = 200;
+	/** Number of episodes processed before measuring. */
+	private static final int WARMUP_EPISODES = 20;
+	/** Number of frames in an episode. */
+	private static final int EPISODE_FRAMES = 100;
+
+	/** Distance our robot drives in a frame. */
+	private static final double ROBOT_SPEED = 2.0;
+	/** Largest distance the enemy robot drifts in a frame. */
+	private static final double ENEMY_SPEED = 1.0;
+	/** Largest distance the ball drifts in a frame. */
+	private static final double BALL_SPEED = 0.5;
+	/** Distance between the walls and the random points. */
+	private static final double POINT_PADDING = Robot.LENGTH_CM / 2;
+
+
+	/** Source of the random episodes. */
+	private Random random;
+
+	/** Cost of the plain pathfinder's queries. */
+	private StageStatistics plainStats = new StageStatistics("visibility graph");
+	/** Cost of the replanning pathfinder's queries. */
+	private StageStatistics replanStats = new StageStatistics("replanning");
+	/** Cost of the plain pathfinder's queries without a direct path. */
+	private StageStatistics plainBlockedStats = new StageStatistics("graph, blocked");
+	/** Cost of the replanning pathfinder's queries without a direct path. */
+	private StageStatistics replanBlockedStats = new StageStatistics("replan, blocked");
+	/** Number of reused paths. */
+	private long hitCount = 0;
+	/** Number of planned paths. */
+	private long missCount = 0;
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param seed Seed of the random episodes.
+	 */
+	public ReplanningBenchmark(long seed) {
+		random = new Random(seed);
+	}
+
+
+	/**
+	 * Run a number of random episodes.
+	 *
+	 * @param episodes Number of episodes.
+	 * @param record Whether to record the results.
+	 */
+	public void run(int episodes, boolean record) {
+		for (int episode = 0; episode < episodes; ++episode) {
+			runEpisode(record);
+		}
+	}
+
+	/**
+	 * Run a single episode.
+	 *
+	 * @param record Whether to record the results.
+	 */
+	private void runEpisode(boolean record) {
+		Pathfinder plain = new VisibilityGraphPathfinder();
+		ReplanningPathfinder replanner = new ReplanningPathfinder(new VisibilityGraphPathfinder());
+
+		Point2D.Double ball = createRandomPoint();
+		Point2D.Double ownPos = createRandomPoint();
+		double ownAngle = random.nextDouble() * 360 - 180;
+		Point2D.Double enemyPos = createRandomPoint();
+		double enemyAngle = random.nextDouble() * 360 - 180;
+		Vector2D ballVelocity = createRandomVelocity(BALL_SPEED);
+		Vector2D enemyVelocity = createRandomVelocity(ENEMY_SPEED);
+
+		for (int frame = 0; frame < EPISODE_FRAMES; ++frame) {
+			WorldState state = new WorldState(ball, new Robot(ownPos, ownAngle, true),
+					new Robot(enemyPos, enemyAngle, true), (WorldImageSource) null);
+
+			long startAllocation = AllocationMeter.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			ArrayList<Waypoint> plainPath = plain.getPath(new AIWorldState(state, true, true),
+					ball, true);
+			long endTime = System.nanoTime();
+			long endAllocation = AllocationMeter.getAllocatedBytes();
+			boolean blocked = (plainPath.size() > 1);
+			if (record) {
+				plainStats.addSample(endTime - startTime, endAllocation - startAllocation);
+				if (blocked) {
+					plainBlockedStats.addSample(endTime - startTime,
+							endAllocation - startAllocation);
+				}
+			}
+
+			startAllocation = AllocationMeter.getAllocatedBytes();
+			startTime = System.nanoTime();
+			ArrayList<Waypoint> path = replanner.getPath(new AIWorldState(state, true, true),
+					ball, true);
+			endTime = System.nanoTime();
+			endAllocation = AllocationMeter.getAllocatedBytes();
+			if (record) {
+				replanStats.addSample(endTime - startTime, endAllocation - startAllocation);
+				if (blocked) {
+					replanBlockedStats.addSample(endTime - startTime,
+							endAllocation - startAllocation);
+				}
+			}
+
+			// Drive towards the first waypoint and let the others drift.
+			Vector2D target = path.get(0).getTarget();
+			Vector2D step = Vector2D.subtract(target, new Vector2D(ownPos));
+			if (step.getLength() > ROBOT_SPEED) {
+				step = Vector2D.changeLength(step, ROBOT_SPEED);
+			}
+			ownPos = clampToPitch(ownPos.x + step.x, ownPos.y + step.y);
+			ownAngle = step.getDirection();
+			enemyPos = clampToPitch(enemyPos.x + enemyVelocity.x, enemyPos.y + enemyVelocity.y);
+			ball = clampToPitch(ball.x + ballVelocity.x, ball.y + ballVelocity.y);
+		}
+
+		if (record) {
+			hitCount += replanner.getHitCount();
+			missCount += replanner.getMissCount();
+		}
+	}
+
+
+	/**
+	 * Create a random point on the pitch, away from the walls.
+	 *
+	 * @return Point in centimetres.
+	 */
+	private Point2D.Double createRandomPoint() {
+		double x = POINT_PADDING + random.nextDouble() * (WorldState.PITCH_WIDTH_CM - 2 * POINT_PADDING);
+		double y = POINT_PADDING + random.nextDouble() * (WorldState.PITCH_HEIGHT_CM - 2 * POINT_PADDING);
+		return new Point2D.Double(x, y);
+	}
+
+	/**
+	 * Create a velocity with a random direction.
+	 *
+	 * @param maxSpeed Largest allowed speed.
+	 * @return Velocity in centimetres per frame.
+	 */
+	private Vector2D createRandomVelocity(double maxSpeed) {
+		double angle = random.nextDouble() * 2 * Math.PI;
+		double speed = random.nextDouble() * maxSpeed;
+		return new Vector2D(speed * Math.cos(angle), speed * Math.sin(angle));
+	}
+
+	/**
+	 * Keep a point on the pitch, away from the walls.
+	 *
+	 * @param x X coordinate of the point.
+	 * @param y Y coordinate of the point.
+	 * @return The closest point that is far enough from the walls.
+	 */
+	private static Point2D.Double clampToPitch(double x, double y) {
+		x = Math.max(POINT_PADDING, Math.min(WorldState.PITCH_WIDTH_CM - POINT_PADDING, x));
+		y = Math.max(POINT_PADDING, Math.min(WorldState.PITCH_HEIGHT_CM - POINT_PADDING, y));
+		return new Point2D.Double(x, y);
+	}
+
+
+	/**
+	 * Print the results.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-18s %8s %10s %10s %10s %10s%n", "pathfinder", "queries", "mean us",
+				"p50 us", "p99 us", "B/query");
+		StageStatistics[] stats = { plainStats, replanStats, plainBlockedStats,
+				replanBlockedStats };
+		for (StageStatistics stat : stats) {
+			out.printf("%-18s %8d %10.1f %10.1f %10.1f", stat.getName(), stat.getCount(),
+					stat.getMeanLatency(), stat.getLatencyPercentile(50.0),
+					stat.getLatencyPercentile(99.0));
+			if (AllocationMeter.isSupported()) {
+				out.printf(" %10.0f%n", stat.getAllocationPerOperation());
+			} else {
+				out.printf(" %10s%n", "n/a");
+			}
+		}
+
+		out.println();
+		out.printf("Replanning: %d paths reused, %d planned (%.1f%% reused)%n", hitCount,
+				missCount, 100.0 * hitCount / (hitCount + missCount));
+		out.printf("Pathfinding time saved: %.1f%% overall, %.1f%% without a direct path%n",
+				100.0 * (1.0 - replanStats.getMeanLatency() / plainStats.getMeanLatency()),
+				100.0 * (1.0 - replanBlockedStats.getMeanLatency()
+						/ plainBlockedStats.getMeanLatency()));
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		int episodes = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_EPISODES;
+		long seed = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+
+		ReplanningBenchmark benchmark = new ReplanningBenchmark(seed);
+		benchmark.run(WARMUP_EPISODES, false);
+		benchmark.run(episodes, true);
+		benchmark.printReport(System.out);
+	}
+
+}
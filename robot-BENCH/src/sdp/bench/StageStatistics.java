@@ -0,0 +1,162 @@
+package sdp.bench;
+
+import java.util.Arrays;
+
+
+/**
+ * Collects the latency and allocation samples of a benchmarked operation.
+ *
+ * Throughput and allocation rate are relative to the time spent in the
+ * operation itself, so that operations measured inside a larger one can be
+ * compared with each other.
+ */
+public class StageStatistics {
+
+	/** Initial capacity of the sample array. */
+	private static final int INITIAL_CAPACITY = 1024;
+
+
+	/** Name of the operation. */
+	private String name;
+
+	/** Latency of each invocation in nanoseconds. */
+	private long[] latencies = new long[INITIAL_CAPACITY];
+	/** Number of recorded invocations. */
+	private int count = 0;
+
+	/** Total time spent in the operation in nanoseconds. */
+	private long totalTime = 0;
+	/** Total number of bytes allocated by the operation. */
+	private long totalAllocated = 0;
+
+	/** Whether the latencies are currently sorted. */
+	private boolean sorted = true;
+
+
+	/**
+	 * Create a new statistics collector.
+	 *
+	 * @param name Name of the operation.
+	 */
+	public StageStatistics(String name) {
+		this.name = name;
+	}
+
+
+	/**
+	 * Get the name of the operation.
+	 *
+	 * @return Operation's name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+
+	/**
+	 * Record an invocation of the operation.
+	 *
+	 * @param latency How long the invocation took, in nanoseconds.
+	 * @param allocated How many bytes the invocation allocated.
+	 */
+	public void addSample(long latency, long allocated) {
+		if (count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+		}
+		latencies[count++] = latency;
+		totalTime += latency;
+		totalAllocated += allocated;
+		sorted = false;
+	}
+
+	/**
+	 * Forget all recorded samples.
+	 */
+	public void reset() {
+		count = 0;
+		totalTime = 0;
+		totalAllocated = 0;
+		sorted = true;
+	}
+
+
+	/**
+	 * Get the number of recorded invocations.
+	 *
+	 * @return Invocation count.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Get the number of invocations per second of time spent in the
+	 * operation.
+	 *
+	 * @return Throughput in operations per second.
+	 */
+	public double getThroughput() {
+		if (totalTime == 0) {
+			return 0.0;
+		}
+		return count / (totalTime / 1e9);
+	}
+
+	/**
+	 * Get the mean latency.
+	 *
+	 * @return Mean latency in microseconds.
+	 */
+	public double getMeanLatency() {
+		if (count == 0) {
+			return 0.0;
+		}
+		return totalTime / (1e3 * count);
+	}
+
+	/**
+	 * Get a latency percentile, using the nearest rank method.
+	 *
+	 * @param percentile Percentile to get, between 0 and 100.
+	 * @return Latency percentile in microseconds.
+	 */
+	public double getLatencyPercentile(double percentile) {
+		if (count == 0) {
+			return 0.0;
+		}
+		if (!sorted) {
+			Arrays.sort(latencies, 0, count);
+			sorted = true;
+		}
+
+		int rank = (int) Math.ceil(percentile / 100.0 * count);
+		rank = Math.max(1, Math.min(count, rank));
+		return latencies[rank - 1] / 1e3;
+	}
+
+	/**
+	 * Get the mean number of bytes allocated per invocation.
+	 *
+	 * @return Allocated bytes per operation.
+	 */
+	public double getAllocationPerOperation() {
+		if (count == 0) {
+			return 0.0;
+		}
+		return totalAllocated / (double) count;
+	}
+
+	/**
+	 * Get the number of bytes allocated per second of time spent in the
+	 * operation.
+	 *
+	 * @return Allocation rate in megabytes per second.
+	 */
+	public double getAllocationRate() {
+		if (totalTime == 0) {
+			return 0.0;
+		}
+		return (totalAllocated / (1024.0 * 1024.0)) / (totalTime / 1e9);
+	}
+
+}
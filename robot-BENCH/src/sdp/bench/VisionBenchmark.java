@@ -0,0 +1,273 @@
+package sdp.bench;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+
+import sdp.common.Utilities;
+import sdp.common.VisionTestCase;
+import sdp.vision.processing.ImageProcessorConfig;
+import sdp.vision.processing.MainImageProcessor;
+import sdp.vision.processing.MainImageProcessor.Stage;
+
+
+/**
+ * Measures the cost of the vision system and of each of its stages.
+ *
+ * Every frame of the test specifications is passed through
+ * {@link MainImageProcessor#extractWorldState(BufferedImage)} with each
+ * configuration. After a number of warm-up passes over all frames, which
+ * let the JIT compiler settle, the latency and allocations of whole frames
+ * and of every processing stage are recorded. For each configuration, the
+ * benchmark reports throughput, latency percentiles, bytes allocated per
+ * operation and allocation rate.
+ *
+ * The paths in the test specifications are relative to robot-MAIN, so the
+ * benchmark should be run from that directory, with the OpenCV libraries on
+ * the library path.
+ *
+ * With the -headless switch, the processor is put into headless mode and
+ * does not prepare world images.
+ *
+ * Usage: VisionBenchmark [-headless] [warm-up passes] [measured passes] [config...]
+ */
+public class VisionBenchmark implements MainImageProcessor.StageListener {
+
+	/** Directory with the default configurations. */
+	private static final String DEFAULT_CONFIG_DIR = "data/configs";
+	/** Test specifications whose frames are processed. */
+	private static final String[] TEST_SPECS = {
+		"data/tests/friendly1.xml", "data/tests/friendly2.xml"
+	};
+	/** Default number of warm-up passes over all frames. */
+	private static final int DEFAULT_WARMUP_PASSES = 3;
+	/** Default number of measured passes over all frames. */
+	private static final int DEFAULT_MEASURED_PASSES = 10;
+
+	/** Percentiles to report. */
+	private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 100.0 };
+
+
+	/** Image processor under test. */
+	private MainImageProcessor processor;
+	/** Frames to process. */
+	private ArrayList<BufferedImage> frames;
+
+	/** Whether samples are currently being recorded. */
+	private boolean recording = false;
+
+	/** Statistics of whole frames. */
+	private StageStatistics frameStats;
+	/** Statistics of each processing stage. */
+	private EnumMap<Stage, StageStatistics> stageStats;
+
+	/** Start time of each running stage. */
+	private long[] stageStartTimes;
+	/** Allocated byte count at the start of each running stage. */
+	private long[] stageStartAllocations;
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param testSpecs Test specifications with the frames to process.
+	 * @param headless Whether the processor should run in headless mode.
+	 */
+	public VisionBenchmark(String[] testSpecs, boolean headless) {
+		processor = new MainImageProcessor();
+		processor.setHeadless(headless);
+		processor.setStageListener(this);
+
+		frames = new ArrayList<BufferedImage>();
+		for (String spec : testSpecs) {
+			for (VisionTestCase test : VisionTestCase.readTestCases(spec)) {
+				if (test.getImage() != null) {
+					frames.add(test.getImage());
+				}
+			}
+		}
+
+		frameStats = new StageStatistics("FRAME");
+		stageStats = new EnumMap<Stage, StageStatistics>(Stage.class);
+		for (Stage stage : Stage.values()) {
+			stageStats.put(stage, new StageStatistics(stage.toString()));
+		}
+
+		stageStartTimes = new long[Stage.values().length];
+		stageStartAllocations = new long[Stage.values().length];
+	}
+
+
+	/**
+	 * Get the number of frames in a pass.
+	 *
+	 * @return Frame count.
+	 */
+	public int getFrameCount() {
+		return frames.size();
+	}
+
+
+	/**
+	 * Benchmark a configuration. The previous results are discarded.
+	 *
+	 * @param config Configuration to benchmark.
+	 * @param warmupPasses Number of unrecorded passes over all frames.
+	 * @param measuredPasses Number of recorded passes over all frames.
+	 */
+	public void run(ImageProcessorConfig config, int warmupPasses, int measuredPasses) {
+		processor.setConfiguration(config);
+
+		recording = false;
+		for (int i = 0; i < warmupPasses; ++i) {
+			runPass();
+		}
+
+		frameStats.reset();
+		for (StageStatistics stats : stageStats.values()) {
+			stats.reset();
+		}
+
+		recording = true;
+		for (int i = 0; i < measuredPasses; ++i) {
+			runPass();
+		}
+		recording = false;
+	}
+
+	/**
+	 * Process every frame once.
+	 */
+	private void runPass() {
+		for (BufferedImage frame : frames) {
+			BufferedImage frameCopy = Utilities.deepBufferedImageCopy(frame);
+
+			long startAllocation = AllocationMeter.getAllocatedBytes();
+			long startTime = System.nanoTime();
+			processor.extractWorldState(frameCopy);
+			long endTime = System.nanoTime();
+			long endAllocation = AllocationMeter.getAllocatedBytes();
+
+			if (recording) {
+				frameStats.addSample(endTime - startTime, endAllocation - startAllocation);
+			}
+		}
+	}
+
+
+	/**
+	 * @see sdp.vision.processing.MainImageProcessor.StageListener#stageStarted(sdp.vision.processing.MainImageProcessor.Stage)
+	 */
+	@Override
+	public void stageStarted(Stage stage) {
+		stageStartAllocations[stage.ordinal()] = AllocationMeter.getAllocatedBytes();
+		stageStartTimes[stage.ordinal()] = System.nanoTime();
+	}
+
+	/**
+	 * @see sdp.vision.processing.MainImageProcessor.StageListener#stageFinished(sdp.vision.processing.MainImageProcessor.Stage)
+	 */
+	@Override
+	public void stageFinished(Stage stage) {
+		long endTime = System.nanoTime();
+		long endAllocation = AllocationMeter.getAllocatedBytes();
+
+		if (recording) {
+			stageStats.get(stage).addSample(endTime - stageStartTimes[stage.ordinal()],
+					endAllocation - stageStartAllocations[stage.ordinal()]);
+		}
+	}
+
+
+	/**
+	 * Print the results of the last run.
+	 *
+	 * @param out Stream to print to.
+	 */
+	public void printReport(PrintStream out) {
+		out.printf("%-16s %8s %10s %10s", "stage", "ops", "ops/s", "mean us");
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10s", (percentile == 100.0) ? "max us" : "p" + (int) percentile + " us");
+		}
+		out.printf(" %12s %10s%n", "B/op", "MB/s");
+
+		printRow(out, frameStats);
+		for (StageStatistics stats : stageStats.values()) {
+			printRow(out, stats);
+		}
+	}
+
+	/**
+	 * Print the results of a single operation.
+	 *
+	 * @param out Stream to print to.
+	 * @param stats Statistics of the operation.
+	 */
+	private static void printRow(PrintStream out, StageStatistics stats) {
+		out.printf("%-16s %8d %10.1f %10.1f", stats.getName(), stats.getCount(),
+				stats.getThroughput(), stats.getMeanLatency());
+		for (double percentile : PERCENTILES) {
+			out.printf(" %10.1f", stats.getLatencyPercentile(percentile));
+		}
+		if (AllocationMeter.isSupported()) {
+			out.printf(" %12.0f %10.1f%n", stats.getAllocationPerOperation(),
+					stats.getAllocationRate());
+		} else {
+			out.printf(" %12s %10s%n", "n/a", "n/a");
+		}
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		boolean headless = (args.length > 0) && args[0].equals("-headless");
+		if (headless) {
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+
+		int warmupPasses = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_WARMUP_PASSES;
+		int measuredPasses = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_MEASURED_PASSES;
+
+		String[] configFiles;
+		if (args.length > 2) {
+			configFiles = Arrays.copyOfRange(args, 2, args.length);
+		} else {
+			File[] files = new File(DEFAULT_CONFIG_DIR).listFiles();
+			if (files == null) {
+				System.err.println("Could not list directory " + DEFAULT_CONFIG_DIR + ".");
+				return;
+			}
+			Arrays.sort(files);
+
+			configFiles = new String[files.length];
+			for (int i = 0; i < files.length; ++i) {
+				configFiles[i] = files[i].getPath();
+			}
+		}
+
+		VisionBenchmark benchmark = new VisionBenchmark(TEST_SPECS, headless);
+		System.out.println(benchmark.getFrameCount() + " frames, " + warmupPasses
+				+ " warm-up and " + measuredPasses + " measured passes"
+				+ (headless ? ", headless." : "."));
+		if (!AllocationMeter.isSupported()) {
+			System.out.println("Allocation measurement is not supported by this VM.");
+		}
+
+		for (String configFile : configFiles) {
+			ImageProcessorConfig config = ImageProcessorConfig.loadConfiguration(configFile);
+			benchmark.run(config, warmupPasses, measuredPasses);
+
+			System.out.println();
+			System.out.println(configFile);
+			benchmark.printReport(System.out);
+		}
+	}
+
+}
@@ -4,11 +4,14 @@ import java.awt.geom.Point2D;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.logging.Logger;
 
 import sdp.AI.pathfinding.FullPathfinder;
 import sdp.AI.pathfinding.HeuristicPathfinder;
 import sdp.AI.pathfinding.ObstacleTangentPathfinder;
 import sdp.AI.pathfinding.Pathfinder;
+import sdp.AI.pathfinding.ReplanningPathfinder;
+import sdp.AI.pathfinding.VisibilityGraphPathfinder;
 import sdp.AI.pathfinding.Waypoint;
 import sdp.common.Painter;
 import sdp.common.Utilities;
@@ -23,16 +26,21 @@ import sdp.common.world.WorldState;
  */
 public class AIVisualServoing extends BaseAI {
 	
+	/** The class' logger. */
+	private static final Logger LOGGER = Logger.getLogger("sdp.AI.AIVisualServoing");
+
 	/** Attack modes for optimal point calculations. */
 	protected enum AttackMode { DirectOnly, WallsOnly, Full }
 	/** Enumeration for all the different AI pathfinder modes. */
-	private enum PathfinderMode { Full, Heuristic, ObstacleTangent }
+	private enum PathfinderMode { Full, Heuristic, ObstacleTangent, VisibilityGraph }
 
 	/** The AI's pathfinder mode. */
-	private static final PathfinderMode PATHFINDER_MODE = PathfinderMode.ObstacleTangent;
+	private static final PathfinderMode PATHFINDER_MODE = PathfinderMode.VisibilityGraph;
 
 	/** Whether the robot is required to face the ball before kicking. */
 	private static final boolean REQUIRE_FACE_BALL_TO_KICK = true;
+	/** Whether paths should be reused across frames. */
+	private static final boolean REPLANNING_ENABLED = true;
 	/** Whether the robot is allowed to drive in reverse. */
 	private static final boolean REVERSE_DRIVING_ENABLED = true;
 	/** Whether wall handling logic should be used. */
@@ -129,6 +137,8 @@ public class AIVisualServoing extends BaseAI {
 	
 	/** AI's heuristic pathfinder. */
 	private Pathfinder pathfinder;
+	/** AI's path replanner, if replanning is enabled. */
+	private ReplanningPathfinder replanner = null;
 	
 	// TODO: Clean up in the inevitable AIMaster logic migration.
 	/** Whether we are in gotBall() state since the last check. */
@@ -149,10 +159,18 @@ public class AIVisualServoing extends BaseAI {
 		case ObstacleTangent:
 			pathfinder = new ObstacleTangentPathfinder();
 			break;
+		case VisibilityGraph:
+			pathfinder = new VisibilityGraphPathfinder();
+			break;
 		default:
 			pathfinder = new HeuristicPathfinder();
 			break;
 		}
+		
+		if (REPLANNING_ENABLED) {
+			replanner = new ReplanningPathfinder(pathfinder);
+			pathfinder = replanner;
+		}
 	}
 
 
@@ -325,6 +343,12 @@ public class AIVisualServoing extends BaseAI {
 	protected void changedState() {
 		optimalPointOffset = DEFAULT_OPTIMAL_POINT_OFFSET;
 		targetThreshold = DEFAULT_TARGET_THRESHOLD;
+		
+		if (replanner != null) {
+			LOGGER.fine("Paths reused: " + replanner.getHitCount() + ", planned: "
+					+ replanner.getMissCount());
+			replanner.resetCounters();
+		}
 	}
 	
 
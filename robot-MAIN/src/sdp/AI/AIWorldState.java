@@ -3,10 +3,12 @@ package sdp.AI;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.image.BufferedImage;
-import java.util.LinkedList;
-import java.util.Queue;
 
 import sdp.AI.Command;
+import sdp.AI.prediction.AnalyticMotionPredictor;
+import sdp.AI.prediction.MotionPredictor;
+import sdp.AI.prediction.SimulatorMotionPredictor;
+import sdp.AI.tracking.WorldTracker;
 import sdp.common.Painter;
 import sdp.common.Utilities;
 import sdp.common.geometry.GeomUtils;
@@ -26,13 +28,9 @@ public class AIWorldState extends WorldState {
 	
 	/** Whether to draw the battery indicator. */
 	private static final boolean BATTERY_INDICATOR_ENABLED = true;
-	/** Whether the low pass filter is enabled. */
-	private static final boolean LOW_PASS_FILTER_ENABLED = true;
 	/** Whether current state prediction is active. */
 	private static final boolean PREDICTION_ENABLED = true;
 	
-	/** Initial prediction queue size. */
-	private static final long PREDICT_FRAME_SPAN = 3;
 	/** Maximum FPS in prediction logic. */
 	private static final int PREDICTION_MAX_FPS = 25;
 	/** Minimum FPS in prediction logic. */
@@ -40,11 +38,6 @@ public class AIWorldState extends WorldState {
 	/** The time, by which the world state is advanced into the future, in ms. */
 	private static final long PREDICTION_TIME = 250;
 	
-	/** Low pass filter new angle data weight. */
-	private static final double LPF_ANGLE_WEIGHT = 0.5;
-	/** Low pass filter new position data weight. */
-	private static final double LPF_COORD_WEIGHT = 0.8;
-	
 	/** Top offset of the battery level indicator. */
 	private static final int BATTERY_TOP_OFFSET = 10;
 	/** Right offset of the battery level indicator. */
@@ -62,19 +55,17 @@ public class AIWorldState extends WorldState {
 	/** Percentage, at which the battery indicator becomes green. */
 	private static final int BATTERY_HIGH_PERCENTAGE = 80;
 	
+	/** Whether to predict with closed-form motion models instead of a simulator. */
+	private static final boolean USE_ANALYTIC_PREDICTION = true;
 	private static final boolean USE_NEW_SIMULATOR_FOR_PREDICTION = true;
-	private final Simulator newSim;
-	
-	
-	/** The low pass filter. */
-	private static LowPassFilter lowPassFilter = new LowPassFilter(LPF_ANGLE_WEIGHT, LPF_COORD_WEIGHT);
 	
 	
-	/** A queue with past world states that are used in prediction. */
-	private Queue<WorldState> predictionQueue = null;
-	
-	/** World state from the previous frame. */
-	private WorldState previousState = null;
+	/** Tracker that filters the observed objects. */
+	private final WorldTracker tracker = new WorldTracker();
+	/** The motion predictor. */
+	private final MotionPredictor predictor;
+	/** Length of a frame in seconds, 0 if it is measured from the wall clock. */
+	private final double frameTime;
 	 
 	/** Whether our team is blue. */
 	private boolean isOwnTeamBlue;
@@ -115,10 +106,33 @@ public class AIWorldState extends WorldState {
 	 * @param isOwnGoalLeft Whether our goal is on the left side.
 	 */
 	public AIWorldState(WorldState worldState, boolean isOwnTeamBlue, boolean isOwnGoalLeft) {
+		this(worldState, isOwnTeamBlue, isOwnGoalLeft, 0);
+	}
+
+	/**
+	 * Create a new AI world state.
+	 *
+	 * @param worldState World state to use as a basis.
+	 * @param isOwnTeamBlue Whether our robot is in the blue team.
+	 * @param isOwnGoalLeft Whether our goal is on the left side.
+	 * @param frameTime Time between two states in seconds, with which they
+	 * 		are tracked and predicted. If 0, it is measured from the wall
+	 * 		clock, otherwise the tracking is independent of the clock, as
+	 * 		simulations that run faster than real time need.
+	 */
+	public AIWorldState(WorldState worldState, boolean isOwnTeamBlue, boolean isOwnGoalLeft,
+			double frameTime) {
 		super(worldState.getBallCoords(), worldState.getBlueRobot(),
-				worldState.getYellowRobot(), worldState.getWorldImage());
-		
-		newSim = USE_NEW_SIMULATOR_FOR_PREDICTION ? new SimulatorPhysicsEngine(false, false) : null;
+				worldState.getYellowRobot(), worldState.getWorldImageSource());
+		this.frameTime = frameTime;
+
+		if (USE_ANALYTIC_PREDICTION) {
+			predictor = new AnalyticMotionPredictor();
+		} else if (USE_NEW_SIMULATOR_FOR_PREDICTION) {
+			predictor = new SimulatorMotionPredictor(new SimulatorPhysicsEngine(false, false));
+		} else {
+			predictor = new SimulatorMotionPredictor(new SimulatorOld(false, 0.000001));
+		}
 		update(worldState, isOwnTeamBlue, isOwnGoalLeft);
 		
 	}
@@ -131,19 +145,32 @@ public class AIWorldState extends WorldState {
 	 * @param isOwnGoalLeft Whether our goal is on the left side.
 	 */
 	public void update(WorldState worldState, boolean isOwnTeamBlue, boolean isOwnGoalLeft) {
-		if (PREDICTION_ENABLED) {
-			worldState = predictCurrentState(worldState);
-		}		
-		if (LOW_PASS_FILTER_ENABLED) {
-			worldState = lowPassFilter.applyOnWorldState(this, worldState);
-		}
-		
-		previousState = worldState;
 		this.isOwnTeamBlue = isOwnTeamBlue;
 		this.isOwnGoalLeft = isOwnGoalLeft;
 		
+		double dt = frameTime;
+		if (dt == 0) {
+			long fps = PREDICTION_MAX_FPS;
+			if (oldTime != -1) {
+				long curTime = System.currentTimeMillis();
+				if (curTime != oldTime) {
+					fps = (long) (1000 / (curTime - oldTime));
+				}
+			}
+			fps = Utilities.restrictValueToInterval(fps, PREDICTION_MIN_FPS, PREDICTION_MAX_FPS).longValue();
+			oldTime = System.currentTimeMillis();
+			dt = 1.0 / fps;
+		}
+
+		tracker.update(worldState, dt);
+		if (PREDICTION_ENABLED) {
+			worldState = predictCurrentState(worldState, dt);
+		} else {
+			worldState = tracker.getFilteredState();
+		}
+		
 		super.update(worldState.getBallCoords(), worldState.getBlueRobot(),
-				worldState.getYellowRobot(), worldState.getWorldImage());
+				worldState.getYellowRobot(), worldState.getWorldImageSource());
 
 		if (isOwnGoalLeft) {
 			ownGoal = getLeftGoal();
@@ -165,59 +192,42 @@ public class AIWorldState extends WorldState {
 	
 	/**
 	 * Attempt to mitigate camera lag by predicting actual current state from
-	 * available information.
+	 * the tracked objects.
 	 * 
 	 * @param state Freshly observed world state.
+	 * @param dt Time since the previous state in seconds.
 	 * @return Predicted actual world state.
 	 */
-	private WorldState predictCurrentState(WorldState state) {
-		if (previousState != null) {
-			if (!state.isBallPresent()) {
-				state = new WorldState(previousState.getBallCoords(), state.getBlueRobot(),
-						state.getYellowRobot(), state.getWorldImage());
-			}
-		}
-		
-		if (predictionQueue == null) {
-			predictionQueue = new LinkedList<WorldState>();
-			for (int i = 0; i < PREDICT_FRAME_SPAN; i++) {
-				predictionQueue.add(state);
-			}
-		}
-		predictionQueue.add(state);
-		predictionQueue.poll();
-		
-		long fps = PREDICTION_MAX_FPS;
-		if (oldTime != -1) {
-			long curTime = System.currentTimeMillis();
-			if (curTime != oldTime) {
-				fps = (long) (1000 / (curTime - oldTime));
-			}
-		}		
-		fps = Utilities.restrictValueToInterval(fps, PREDICTION_MIN_FPS, PREDICTION_MAX_FPS).longValue();
-		oldTime = System.currentTimeMillis();
-
-		WorldState[] pqStates = predictionQueue.toArray(new WorldState[0]);
-		WorldState predictedState = Simulator.simulateWs(USE_NEW_SIMULATOR_FOR_PREDICTION ? newSim : new SimulatorOld(false, 0.000001), PREDICTION_TIME, (int) fps,
-				pqStates, true, ownLastCommand, isOwnTeamBlue);
+	private WorldState predictCurrentState(WorldState state, double dt) {
+		WorldState predictedState = predictor.predict(tracker, dt,
+				PREDICTION_TIME / 1000.0, ownLastCommand, isOwnTeamBlue);
 		
 		if (!state.isBallPresent()) {
 			Robot ownPredictedRobot = (isOwnTeamBlue ? predictedState.getBlueRobot() : predictedState.getYellowRobot());
-			if (GeomUtils.pointDistance(state.getBallCoords(), ownPredictedRobot.getCoords()) < 30) {
+			if (GeomUtils.pointDistance(predictedState.getBallCoords(), ownPredictedRobot.getCoords()) < 30) {
 				predictedState = new WorldState(ownPredictedRobot.getFrontCenter(), predictedState.getBlueRobot(),
-						predictedState.getYellowRobot(), predictedState.getWorldImage());
+						predictedState.getYellowRobot(), predictedState.getWorldImageSource());
 			}
-		}
-		
-		if (GeomUtils.pointDistance(state.getBallCoords(), predictedState.getBallCoords()) > 60) {
+		} else if (GeomUtils.pointDistance(state.getBallCoords(), predictedState.getBallCoords()) > 60) {
 			predictedState = new WorldState(state.getBallCoords(), predictedState.getBlueRobot(),
-						predictedState.getYellowRobot(), predictedState.getWorldImage());
+						predictedState.getYellowRobot(), predictedState.getWorldImageSource());
 		}
 		
 		return predictedState;
 	}
 	
 	
+	/**
+	 * Get the tracker of the objects on the field. It exposes the filtered
+	 * positions and velocities of the objects and their uncertainty.
+	 * 
+	 * @return The world tracker.
+	 */
+	public WorldTracker getTracker() {
+		return tracker;
+	}
+	
+	
 	/**
 	 * Get whether our goal is on the left.
 	 * 
@@ -0,0 +1,174 @@
+package sdp.AI;
+
+import java.io.IOException;
+
+import sdp.AI.AIMaster.AIState;
+import sdp.common.Communicator;
+import sdp.common.Communicator.opcode;
+import sdp.common.world.WorldState;
+
+
+/**
+ * A controller that runs an AI directly on the states of a batch simulation.
+ *
+ * Unlike {@link AIMaster}, it has no observers and no execution thread, it
+ * expects its states in centimetres and its AI state changes only when it is
+ * set. The states are tracked and predicted like on the robot, so that AIs
+ * trained in simulation see the same kind of input as in real games, but
+ * with the simulation's frame time instead of the wall clock, which keeps
+ * the games reproducible however fast they run. One AI world state is kept
+ * for all frames of a game, it is dropped by {@link #reset()} between games.
+ */
+public final class BatchAIMaster {
+
+	/** AI implementation in use. */
+	private BaseAI ai;
+	/** Current AI state. */
+	private AIState aiState = AIState.SIT;
+
+	/** Robot communicator. */
+	private final Communicator communicator;
+	/** Current AI world state. */
+	private AIWorldState aiWorldState = null;
+
+	/** Whether our team is blue. */
+	private final boolean isOwnTeamBlue;
+	/** Whether our goal is on the left. */
+	private final boolean isOwnGoalLeft;
+	/** Simulated time between two states in seconds. */
+	private final double frameTime;
+
+
+	/**
+	 * Create a new batch AI controller.
+	 *
+	 * @param communicator Robot communicator to use.
+	 * @param isOwnTeamBlue Whether our team is blue.
+	 * @param isOwnGoalLeft Whether our goal is on the left.
+	 * @param frameTime Simulated time between two states in seconds.
+	 */
+	public BatchAIMaster(Communicator communicator, boolean isOwnTeamBlue, boolean isOwnGoalLeft,
+			double frameTime) {
+		this.communicator = communicator;
+		this.isOwnTeamBlue = isOwnTeamBlue;
+		this.isOwnGoalLeft = isOwnGoalLeft;
+		this.frameTime = frameTime;
+	}
+
+
+	/**
+	 * Respond to a state.
+	 *
+	 * @param state Current world state in centimetres.
+	 * @throws IOException If the command could not be sent.
+	 */
+	public void processState(WorldState state) throws IOException {
+		if (aiWorldState == null) {
+			aiWorldState = new AIWorldState(state, isOwnTeamBlue, isOwnGoalLeft, frameTime);
+		} else {
+			aiWorldState.update(state, isOwnTeamBlue, isOwnGoalLeft);
+		}
+
+		ai.update(aiWorldState);
+		executeCommand(getCommand());
+	}
+
+	/**
+	 * Forget the tracked objects and the last command, so that the next
+	 * game does not depend on the previous one.
+	 */
+	public void reset() {
+		aiWorldState = null;
+	}
+
+	/**
+	 * Get the next command for execution from the AI, based on the AI's
+	 * current state.
+	 *
+	 * @return The next command to execute.
+	 * @throws IOException
+	 */
+	private Command getCommand() throws IOException {
+		switch (aiState) {
+		case START:
+			return ai.start();
+		case PLAY:
+			return ai.chaseBall();
+		case SIT:
+			return ai.sit();
+		case DEFEND_PENALTIES:
+			return ai.penaltiesDefend();
+		case SHOOT_PENALTIES:
+			return ai.penaltiesAttack();
+		case DEFEND_GOAL:
+			return ai.defendGoal();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Send the given command to the robot for immediate execution.
+	 *
+	 * @param command Command to execute.
+	 * @throws IOException
+	 */
+	private void executeCommand(Command command) throws IOException {
+		if (command == null) {
+			return;
+		}
+
+		aiWorldState.setCommand(command);
+		if (command.isAccelerationDefault()) {
+			communicator.sendMessage(opcode.operate, command.getShortDrivingSpeed(),
+					command.getShortTurningSpeed());
+		} else {
+			communicator.sendMessage(opcode.operate, command.getShortDrivingSpeed(),
+					command.getShortTurningSpeed(), command.getShortAcceleration());
+		}
+
+		if (command.kick) {
+			communicator.sendMessage(opcode.kick);
+		}
+	}
+
+
+	/**
+	 * Get the AI implementation in use.
+	 *
+	 * @return The AI.
+	 */
+	public BaseAI getAI() {
+		return ai;
+	}
+
+	/**
+	 * Change the AI implementation.
+	 *
+	 * @param newAi The new AI.
+	 */
+	public void changeAI(BaseAI newAi) {
+		ai = newAi;
+	}
+
+
+	/**
+	 * Get current AI state.
+	 *
+	 * @return The current AI state.
+	 */
+	public AIState getState() {
+		return aiState;
+	}
+
+	/**
+	 * Set the new AI state.
+	 *
+	 * @param newState The new AI state.
+	 */
+	public void setState(AIState newState) {
+		aiState = newState;
+		ai.changedState();
+	}
+
+}
@@ -0,0 +1,348 @@
+package sdp.AI.genetic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of {@link Game}s, so that pairings that come up again
+ * do not have to be played again.
+ *
+ * Games are reproducible from their seed, so a result is identified by the
+ * weights of the left and the right robot and the game's seed, hashed to 64
+ * bits. To find a pairing again wherever its individuals are in the
+ * population, its games have to be seeded from the pairing itself, see
+ * {@link #getSeed(long, double[], double[])}. The most recently used results
+ * are kept in memory, the least recently used ones are dropped once there
+ * are more than the capacity.
+ *
+ * Optionally the results are also written to a memory-mapped file, so that
+ * they survive restarts. The file is a fixed size hash table, when its
+ * slots run out, old results are overwritten. Its header holds a fingerprint
+ * of the simulation, such as {@link Game#getFingerprint()}, and a file
+ * written under another fingerprint is started anew.
+ */
+public class FitnessCache {
+
+	/** identifies the file, "SDPF" */
+	private static final int FILE_MAGIC = 0x53445046;
+	/** version of the file layout */
+	private static final int FILE_VERSION = 2;
+	/** size of the file header in bytes: magic, version, slot count, 4 unused bytes and the fingerprint */
+	private static final int HEADER_SIZE = 24;
+	/** size of a slot in bytes: key, the two fitness values and the two goal counts */
+	private static final int SLOT_SIZE = 32;
+	/** how many slots are tried for a key before one is overwritten */
+	private static final int MAX_PROBES = 8;
+
+	/** hash of a missing weight vector, which stands for the hand-written AI */
+	private static final long NO_WEIGHTS = 0x6A09E667F3BCC909L;
+
+	/** the results in memory, by key, least recently used first */
+	private final LinkedHashMap<Long, long[]> entries;
+
+	/** the file the results are kept in, null if none */
+	private final RandomAccessFile file;
+	/** the mapped slots of the file */
+	private final MappedByteBuffer slots;
+	/** number of slots in the file */
+	private final int slotCount;
+
+	/** number of games found since the last reset */
+	private long hitCount = 0;
+	/** number of games not found since the last reset */
+	private long missCount = 0;
+
+	/**
+	 * Create a cache that is kept in memory only
+	 * @param capacity the largest number of results kept in memory
+	 */
+	public FitnessCache(final int capacity) {
+		entries = createEntries(capacity);
+		file = null;
+		slots = null;
+		slotCount = 0;
+	}
+
+	/**
+	 * Create a cache that is backed by a file. If the file does not exist,
+	 * or has another layout, size or fingerprint, it is started anew.
+	 * @param capacity the largest number of results kept in memory
+	 * @param path the file
+	 * @param slotCount number of results the file holds
+	 * @param fingerprint identifies the simulation that played the results
+	 * @throws IOException if the file cannot be opened or mapped
+	 */
+	public FitnessCache(final int capacity, final File path, final int slotCount, final long fingerprint) throws IOException {
+		if (slotCount < 1 || HEADER_SIZE + (long) slotCount * SLOT_SIZE > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Slot count must be positive and fit into one mapping.");
+
+		entries = createEntries(capacity);
+		this.slotCount = slotCount;
+
+		final File dir = path.getAbsoluteFile().getParentFile();
+		if (dir != null)
+			dir.mkdirs();
+
+		final long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+		file = new RandomAccessFile(path, "rw");
+		try {
+			final boolean valid = file.length() == size && file.readInt() == FILE_MAGIC
+					&& file.readInt() == FILE_VERSION && file.readInt() == slotCount
+					&& file.skipBytes(4) == 4 && file.readLong() == fingerprint;
+			if (!valid) {
+				file.setLength(0);
+				file.setLength(size);
+			}
+			slots = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+
+		slots.putInt(0, FILE_MAGIC);
+		slots.putInt(4, FILE_VERSION);
+		slots.putInt(8, slotCount);
+		slots.putLong(16, fingerprint);
+	}
+
+	/**
+	 * @param capacity the largest number of entries
+	 * @return an empty map that drops its least recently used entry when it gets too big
+	 */
+	private static LinkedHashMap<Long, long[]> createEntries(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive.");
+
+		return new LinkedHashMap<Long, long[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, long[]> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Find the result of a game. If it is found, the goals of the game are
+	 * set as well.
+	 * @param game the game
+	 * @return the fitness of the two participants, or null if the game has not been played
+	 */
+	public synchronized long[] get(final Game game) {
+		final long key = getKey(game);
+		long[] entry = entries.get(key);
+		if (entry == null && slots != null) {
+			entry = readSlot(key);
+			if (entry != null)
+				entries.put(key, entry);
+		}
+
+		if (entry == null) {
+			missCount++;
+			return null;
+		}
+
+		hitCount++;
+		game.leftGoals = (int) entry[2];
+		game.rightGoals = (int) entry[3];
+		return new long[] {entry[0], entry[1]};
+	}
+
+	/**
+	 * Remember the result of a game that has been played
+	 * @param game the game
+	 * @param fitness the fitness of the two participants
+	 */
+	public synchronized void put(final Game game, final long[] fitness) {
+		final long key = getKey(game);
+		final long[] entry = new long[] {fitness[0], fitness[1], game.leftGoals, game.rightGoals};
+		entries.put(key, entry);
+		if (slots != null)
+			writeSlot(key, entry);
+	}
+
+	/**
+	 * Find a result in the file
+	 * @param key the key of the game
+	 * @return the fitness and the goals, or null if the file does not have them
+	 */
+	private long[] readSlot(final long key) {
+		final int home = getHomeSlot(key);
+		for (int i = 0; i < MAX_PROBES; i++) {
+			final int position = getSlotPosition((home + i) % slotCount);
+			final long slotKey = slots.getLong(position);
+			if (slotKey == 0)
+				return null;
+			if (slotKey == key)
+				return new long[] {slots.getLong(position + 8), slots.getLong(position + 16),
+						slots.getInt(position + 24), slots.getInt(position + 28)};
+		}
+		return null;
+	}
+
+	/**
+	 * Write a result to the file, into a free slot or the one of the same
+	 * key. If there is none, the first slot of the key is overwritten.
+	 * @param key the key of the game
+	 * @param entry the fitness and the goals
+	 */
+	private void writeSlot(final long key, final long[] entry) {
+		final int home = getHomeSlot(key);
+		int position = getSlotPosition(home);
+		for (int i = 0; i < MAX_PROBES; i++) {
+			final int probe = getSlotPosition((home + i) % slotCount);
+			final long slotKey = slots.getLong(probe);
+			if (slotKey == 0 || slotKey == key) {
+				position = probe;
+				break;
+			}
+		}
+
+		slots.putLong(position + 8, entry[0]);
+		slots.putLong(position + 16, entry[1]);
+		slots.putInt(position + 24, (int) entry[2]);
+		slots.putInt(position + 28, (int) entry[3]);
+		slots.putLong(position, key);
+	}
+
+	/**
+	 * @param key the key of a game
+	 * @return the first slot the key is looked for in
+	 */
+	private int getHomeSlot(final long key) {
+		return (int) ((key >>> 1) % slotCount);
+	}
+
+	/**
+	 * @param slot a slot index
+	 * @return the position of the slot in the file
+	 */
+	private static int getSlotPosition(final int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	/**
+	 * Write the results to the file, if there is one
+	 */
+	public synchronized void flush() {
+		if (slots != null)
+			slots.force();
+	}
+
+	/**
+	 * Write the results to the file and close it, if there is one. The cache
+	 * must not be used afterwards.
+	 */
+	public synchronized void close() {
+		if (file == null)
+			return;
+		flush();
+		try {
+			file.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @return number of results in memory
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return number of games found since the last {@link #resetCounters()}
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return number of games not found since the last {@link #resetCounters()}
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Reset the hit and miss counters
+	 */
+	public synchronized void resetCounters() {
+		hitCount = 0;
+		missCount = 0;
+	}
+
+	/**
+	 * Derive the seed of a game from its participants, so that the same
+	 * pairing is always played on the same pitches
+	 * @param baseSeed the seed of all games
+	 * @param weights_i weights of the left robot, null for the hand-written AI
+	 * @param weights_j weights of the right robot, null for the hand-written AI
+	 * @return the seed of the game
+	 */
+	public static long getSeed(final long baseSeed, final double[] weights_i, final double[] weights_j) {
+		long hash = mix(~baseSeed);
+		hash = hashWeights(hash, weights_i);
+		hash = hashWeights(hash, weights_j);
+		return mix(hash);
+	}
+
+	/**
+	 * Get the key of a game. It depends on the weights of the two sides, in
+	 * order, and the seed, but not on the ids of the robots.
+	 * @param game the game
+	 * @return a 64-bit hash of the game, never 0
+	 */
+	public static long getKey(final Game game) {
+		long hash = mix(game.seed);
+		hash = hashWeights(hash, game.weights_i);
+		hash = hashWeights(hash, game.weights_j);
+		hash = mix(hash);
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * @param hash the hash so far
+	 * @param weights weights of a network, null for the hand-written AI
+	 * @return the hash combined with the weights
+	 */
+	private static long hashWeights(long hash, final double[] weights) {
+		if (weights == null)
+			return combine(hash, NO_WEIGHTS);
+
+		hash = combine(hash, weights.length);
+		for (final double weight : weights)
+			hash = combine(hash, Double.doubleToLongBits(weight));
+		return hash;
+	}
+
+	/**
+	 * @param hash the hash so far
+	 * @param value the next value
+	 * @return the hash combined with the value
+	 */
+	private static long combine(final long hash, final long value) {
+		return Long.rotateLeft(hash ^ (value * 0x87C37B91114253D5L), 31) * 0x4CF5AD432745937FL + 0x52DCE729;
+	}
+
+	/**
+	 * @param value a value
+	 * @return the value with its bits mixed
+	 */
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xFF51AFD7ED558CCDL;
+		value ^= value >>> 33;
+		value *= 0xC4CEB9FE1A85EC53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+}
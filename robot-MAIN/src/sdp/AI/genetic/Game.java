@@ -1,25 +1,27 @@
 package sdp.AI.genetic;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.Queue;
 import java.util.Random;
 
-import org.neuroph.core.input.WeightsFunction;
-
-import sdp.AI.AIMaster;
 import sdp.AI.AIVisualServoing;
+import sdp.AI.BatchAIMaster;
 import sdp.AI.AIMaster.AIState;
 import sdp.AI.neural.AINeuralNet;
-import sdp.common.WorldStateRandomizer;
 import sdp.common.geometry.GeomUtils;
 import sdp.common.geometry.Vector2D;
 import sdp.common.world.WorldState;
+import sdp.simulator.BatchSimulator;
 import sdp.simulator.SimulatorPhysicsEngine;
-import sdp.simulator.VBrick;
 
 /**
  * A game simulation
+ *
+ * All of the randomness of a game, the placement of the robots and the ball
+ * and the noise of the simulated camera, comes from the game's seed. Playing
+ * the same participants with the same seed gives the same scores.
  */
 public class Game implements SimulatorPhysicsEngine.Callback {
 	
@@ -31,19 +33,21 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 	public final int[] ids;
 	/** use to get the current game id */
 	public final int gameId;
+	/** the seed of the game's randomness */
+	public final long seed;
 	
 	/** current state of the game */
 	private volatile gamestate currentState = gamestate.ready;
 	
 	/** DONT FORGET TO SE THIS TO FALSE AFTER THE GAME HAS FINISHED */
 	private boolean simulateGame = false;
-	/** The most up-to-date world state */
+	/** The most up-to-date world state, in cm. It is reused by the simulator. */
 	private WorldState state = null;
 	
 	/** simulation speed */
 	public static final int FPS = 10;
 	/** frame length */
-	private static final double FRAME_TIME = 1d / FPS;
+	static final double FRAME_TIME = 1d / FPS;
 	private static final int DELAY_SIMULATION = 250;
 	public static final int DELAY_SIZE = (int) (DELAY_SIMULATION/(1000*FRAME_TIME));
 	
@@ -72,14 +76,24 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 	
 	private static final int GAMETIME = 60; // in sec
 	
+	/**
+	 * Version of the simulation. Increase it whenever a change to the
+	 * simulator, the AIs or the scoring that is not covered by the constants
+	 * above changes the outcome of games, so that stored results are not
+	 * reused, see {@link #getFingerprint()}.
+	 */
+	public static final int SIMULATION_VERSION = 2;
+	
 	private long[] scores = new long[2];
 	
 	private double timeElapsed = 0;
 	
-	private AIMaster leftAI, rightAI;
+	private BatchAIMaster leftAI, rightAI;
 	private AIVisualServoing leftAIV, rightAIV;
 	
-	private SimulatorPhysicsEngine sim;
+	private BatchSimulator sim;
+	/** the randomness of the game, created from {@link #seed} */
+	private Random random;
 	
 	private boolean inCollBlue = false, inCollYellow = false;
 	
@@ -120,13 +134,14 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 		if (inCollYellow)
 			scores[1]+= STAY_IN_COLLISION;
 		
-		final double yellowBall = GeomUtils.pointDistance(state.getYellowRobot().getFrontCenter(), state.getBallCoords());
-		final double blueBall = GeomUtils.pointDistance(state.getBlueRobot().getFrontCenter(), state.getBallCoords());
+		// the scores are given in normalised coordinates
+		final double yellowBall = GeomUtils.pointDistance(state.getYellowRobot().getFrontCenter(), state.getBallCoords()) / WorldState.PITCH_WIDTH_CM;
+		final double blueBall = GeomUtils.pointDistance(state.getBlueRobot().getFrontCenter(), state.getBallCoords()) / WorldState.PITCH_WIDTH_CM;
 		
 		scores[0]+= (int) (MAX_BALL_SCORE - MAX_BALL_SCORE*blueBall/MAX_BALL_DISTANCE);
 		scores[1]+= (int) (MAX_BALL_SCORE - MAX_BALL_SCORE*yellowBall/MAX_BALL_DISTANCE);		
 		
-		final double ballPos = (state.getBallCoords().x - 0.5)*MAX_BALL_DISTANCE_SCORE;
+		final double ballPos = (state.getBallCoords().x / WorldState.PITCH_WIDTH_CM - 0.5)*MAX_BALL_DISTANCE_SCORE;
 		scores[0] += ballPos;
 		scores[1] -= ballPos;
 		
@@ -226,70 +241,86 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 	 * @param j thr right robot id
 	 * @param weights_i the weights of the left robot
 	 * @param weights_j the weights of the right robot
-	 * @param gameId the id of the current game
+	 * @param gameId the id of the current game, also used as its seed
 	 */
 	public Game(int i, int j, final double[] weights_i, final double[] weights_j, int gameId) {
+		this(i, j, weights_i, weights_j, gameId, gameId);
+	}
+	
+	/**
+	 * Initialize a new game
+	 * @param i the left robot id
+	 * @param j thr right robot id
+	 * @param weights_i the weights of the left robot
+	 * @param weights_j the weights of the right robot
+	 * @param gameId the id of the current game
+	 * @param seed the seed of the game's randomness
+	 */
+	public Game(int i, int j, final double[] weights_i, final double[] weights_j, int gameId, long seed) {
 		this.weights_i = weights_i;
 		this.weights_j = weights_j;
 		ids = new int[]{i, j};
 		this.gameId = gameId;
+		this.seed = seed;
 		simulateGame = true;
 	}
 	
 	/**
-	 * Does the simulation (in current thread)
+	 * @return a hash of {@link #SIMULATION_VERSION}, the timing, placement and
+	 * scoring constants and the size of the networks. Results of games played
+	 * under another fingerprint can not be reused.
+	 */
+	public static long getFingerprint() {
+		final double[] constants = {SIMULATION_VERSION, FPS, DELAY_SIZE, GAMETIME,
+				PLACEMENT_LEFT, PLACEMENT_X_RAND, PLACEMENT_Y_RAND, ANGLE_RAND, BALL_RAND,
+				MAX_BALL_DISTANCE, MAX_BALL_SCORE, MAX_BALL_DISTANCE_SCORE, GOAL_SCORE,
+				COLLISION, STOP_COLLISION, STAY_IN_COLLISION, GOT_BALL,
+				AINeuralNet.getWeightsCount()};
+		long hash = 17;
+		for (final double constant : constants)
+			hash = 31 * hash + Double.doubleToLongBits(constant);
+		return hash;
+	}
+	
+	/**
+	 * Does the simulation (in current thread) with a new engine
 	 * @return fitness of the two participants
+	 * @see #simulate(GameEngine)
 	 */
 	public long[] simulate() {
+		return simulate(new GameEngine());
+	}
+	
+	/**
+	 * Does the simulation (in current thread)
+	 * @param engine the engine to play with, it must not be used by other threads meanwhile
+	 * @return fitness of the two participants
+	 */
+	public long[] simulate(final GameEngine engine) {
 		currentState = gamestate.running;
 		
 		timeElapsed = 0;
 		
-		// create simulator
-		sim = new SimulatorPhysicsEngine(false, true);
-		
-		final VBrick leftBrick = new VBrick(),
-					rightBrick = new VBrick();
-		
-
-		// reset pitch
-		sim.registerBlue(leftBrick,
-				PLACEMENT_LEFT,
-				WorldState.PITCH_HEIGHT_CM/2,
-				0);
-		sim.registerYellow(rightBrick,
-				PLACEMENT_RIGHT,
-				WorldState.PITCH_HEIGHT_CM/2,
-				180);
-		sim.putBallAt();
-		
+		random = new Random(seed);
 		
+		// reset simulator
+		sim = engine.sim;
+		sim.reset(random.nextLong());
+		sim.setCallback(this);
 		
-		sim.callback = this;
-		
-
-		leftAIV = ids[0] != -1 ? new AINeuralNet(weights_i) : new AIVisualServoing();
-		leftAI = new AIMaster(leftBrick, leftAIV);
-		leftAI.setPrintStateChanges(false);
-		rightAIV = ids[1] != -1 ? new AINeuralNet(weights_j) : new AIVisualServoing();
-		rightAI = new AIMaster(rightBrick, rightAIV);
-		rightAI.setPrintStateChanges(false);
-		
-		leftAI.setOwnTeamBlue(true);
-		leftAI.setOwnGoalLeft(true);
-		
-		rightAI.setOwnTeamBlue(false);
-		rightAI.setOwnGoalLeft(false);
+		leftAIV = engine.getAI(0, ids[0], weights_i);
+		leftAI = engine.leftAI;
+		leftAI.reset();
+		leftAI.changeAI(leftAIV);
+		rightAIV = engine.getAI(1, ids[1], weights_j);
+		rightAI = engine.rightAI;
+		rightAI.reset();
+		rightAI.changeAI(rightAIV);
 		
 		resetPitch();
 		
-		leftAI.setState(AIState.PLAY);
-		rightAI.setState(AIState.PLAY);
-		
 		for (int i = 0; i < DELAY_SIZE; i++) {
 			sim.simulate(FRAME_TIME);
-			state = sim.getWorldState();
-			sim.delayQueue.add(state);
 		}
 		
 		replay_frames = 0;
@@ -302,11 +333,14 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 		// runs simulation
 		while (simulateGame) {
 			sim.simulate(FRAME_TIME);
-			state = sim.getWorldState();
-			sim.delayQueue.add(state);
-			final WorldState frame = sim.delayQueue.poll();
-			leftAI.processState(frame, false);
-			rightAI.processState(frame, false);
+			state = sim.getCurrentState();
+			final WorldState frame = sim.getDelayedState();
+			try {
+				leftAI.processState(frame);
+				rightAI.processState(frame);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 
 			timeElapsed += FRAME_TIME;
 			onNewFrame();
@@ -316,12 +350,7 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 			}
 
 			if (replay != null) {
-//				final WorldState lS = leftAI.getAIWorldState();
-//				final WorldState rS = rightAI.getAIWorldState();
-//				final WorldState aiSees = 
-//						WorldState.fromCentimeters(new WorldState(lS.getBallCoords(), lS.getBlueRobot(), rS.getYellowRobot(), lS.getWorldImage()));
-
-				replay.add(new FrameSubtitleEntry(state, subtitle, point));
+				replay.add(new FrameSubtitleEntry(WorldState.fromCentimeters(state), subtitle, point));
 				replay_frames++;
 				if (replay_frames > REPLAY_FRAME_COUNT) {
 					replay_frames--;
@@ -330,7 +359,7 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 			}
 		}
 		
-		sim.stop();
+		sim.setCallback(null);
 		//System.out.println("Time for a game: " + (System.currentTimeMillis()-timer)/1000);
 		
 		currentState = gamestate.finished;
@@ -366,7 +395,7 @@ public class Game implements SimulatorPhysicsEngine.Callback {
 		leftAI.setState(AIState.SIT);
 		rightAI.setState(AIState.SIT);
 		
-		Random r = new Random();
+		final Random r = random;
 		Vector2D ballpos, robot2;
 		Vector2D robot1 = new Vector2D(
 				(25 + r.nextDouble()*(WorldState.PITCH_WIDTH_CM-50))/WorldState.PITCH_WIDTH_CM,
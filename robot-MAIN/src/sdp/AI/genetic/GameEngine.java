@@ -0,0 +1,48 @@
+package sdp.AI.genetic;
+
+import sdp.AI.AIVisualServoing;
+import sdp.AI.BatchAIMaster;
+import sdp.AI.neural.AINeuralNet;
+import sdp.simulator.BatchSimulator;
+
+/**
+ * The simulator and the AI controllers that {@link Game}s are played with.
+ *
+ * Creating them costs about as much as simulating a short game, so every
+ * thread that simulates games should keep one engine and pass it to
+ * {@link Game#simulate(GameEngine)}. An engine must not be used by several
+ * threads at once.
+ */
+public class GameEngine {
+
+	/** the headless simulator */
+	final BatchSimulator sim = new BatchSimulator(Game.DELAY_SIZE, true);
+
+	/** controller of the robot on the left, which is blue */
+	final BatchAIMaster leftAI = new BatchAIMaster(sim.getBlueBrick(), true, true, Game.FRAME_TIME);
+	/** controller of the robot on the right, which is yellow */
+	final BatchAIMaster rightAI = new BatchAIMaster(sim.getYellowBrick(), false, false, Game.FRAME_TIME);
+
+	/** neural network AIs of the two sides, reused between games */
+	private final AINeuralNet[] neuralAIs = new AINeuralNet[2];
+
+	/**
+	 * Get an AI for one side of a game
+	 * @param side 0 for the left side, 1 for the right one
+	 * @param id the id of the robot, -1 for the visual servoing AI
+	 * @param weights the weights of the robot's network
+	 * @return the AI of that side
+	 */
+	AIVisualServoing getAI(int side, int id, double[] weights) {
+		if (id == -1)
+			return new AIVisualServoing();
+
+		if (neuralAIs[side] == null) {
+			neuralAIs[side] = new AINeuralNet(weights);
+		} else {
+			neuralAIs[side].setWeights(weights);
+		}
+		return neuralAIs[side];
+	}
+
+}
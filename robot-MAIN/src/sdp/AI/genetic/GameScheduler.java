@@ -0,0 +1,358 @@
+package sdp.AI.genetic;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays {@link Game}s on a pool of threads.
+ *
+ * All of the games wait in one shared queue, and every thread takes the next
+ * game as soon as it has finished its previous one, so a slow game holds up
+ * only the thread that plays it. Idle threads block on the queue. Each local
+ * thread keeps its own {@link GameEngine}. Remote workers take games from
+ * the same queue as {@link Assignment}s, and put them back if they are lost.
+ *
+ * After every batch of games, see {@link #playAll(List)}, the wall time of the
+ * batch and the utilisation of the local threads are available.
+ */
+public class GameScheduler {
+
+	/** the games that wait to be played */
+	private final LinkedBlockingDeque<GameTask> queue = new LinkedBlockingDeque<GameTask>();
+
+	/** the local threads */
+	private final ArrayList<Thread> threads = new ArrayList<Thread>();
+	/** the engine of every local thread */
+	private final ThreadLocal<GameEngine> engines = new ThreadLocal<GameEngine>() {
+		@Override
+		protected GameEngine initialValue() {
+			return new GameEngine();
+		}
+	};
+	/** number of local threads */
+	private final int localThreadCount;
+
+	/** for measuring the time the local threads spend playing */
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	/** whether the cpu time of the threads can be measured */
+	private final boolean cpuTimeSupported;
+	/** time the local threads have spent playing since they were started, in ns */
+	private final AtomicLong busyTime = new AtomicLong();
+
+	/** wall time of the last batch in ns */
+	private long lastWallTime = 0;
+	/** utilisation of the local threads during the last batch */
+	private double lastUtilisation = 0;
+
+	/**
+	 * Create a scheduler with a thread for every available core
+	 */
+	public GameScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a scheduler
+	 * @param localThreadCount number of threads that play games on this machine
+	 */
+	public GameScheduler(final int localThreadCount) {
+		if (localThreadCount < 0)
+			throw new IllegalArgumentException("Local thread count must not be negative.");
+
+		this.localThreadCount = localThreadCount;
+		cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+		if (cpuTimeSupported && !threadBean.isThreadCpuTimeEnabled())
+			threadBean.setThreadCpuTimeEnabled(true);
+
+		for (int i = 0; i < localThreadCount; i++) {
+			final Thread thread = new Thread("Game worker " + i) {
+				@Override
+				public void run() {
+					playLocally();
+				}
+			};
+			thread.setDaemon(true);
+			threads.add(thread);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Queue a game to be played
+	 * @param game the game
+	 * @return the future fitness of the two participants
+	 */
+	public FutureTask<long[]> submit(final Game game) {
+		return submit(game, null);
+	}
+
+	/**
+	 * Queue a game to be played
+	 * @param game the game
+	 * @param listener notified on the thread that finishes the game, may be null
+	 * @return the future fitness of the two participants
+	 */
+	public FutureTask<long[]> submit(final Game game, final Listener listener) {
+		final GameTask task = new GameTask(game, listener, new Callable<long[]>() {
+			@Override
+			public long[] call() {
+				return game.simulate(engines.get());
+			}
+		});
+		queue.add(task);
+		return task;
+	}
+
+	/**
+	 * Take the next game to be played remotely
+	 * @param timeout how long to wait for a game in ms
+	 * @return the game or null if none has been queued in time
+	 * @throws InterruptedException if the calling thread gets interrupted while waiting
+	 */
+	public Assignment takeAssignment(final long timeout) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		while (true) {
+			final GameTask task = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			if (task == null || !task.isDone())
+				return task == null ? null : new Assignment(task);
+		}
+	}
+
+	/**
+	 * Take further games to be played remotely without waiting
+	 * @param out list the games are added to
+	 * @param max the largest number of games to take
+	 * @return the number of games taken
+	 */
+	public int pollAssignments(final List<Assignment> out, final int max) {
+		int count = 0;
+		while (count < max) {
+			final GameTask task = queue.poll();
+			if (task == null)
+				break;
+			if (task.isDone())
+				continue;
+			out.add(new Assignment(task));
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Play the given games and wait for all of them to finish
+	 * @param games the games to play
+	 * @return the fitness of the two participants of every game, in the order of the games
+	 * @throws InterruptedException if the calling thread gets interrupted while waiting
+	 */
+	public long[][] playAll(final List<Game> games) throws InterruptedException {
+		final long start = System.nanoTime();
+		// other threads may still add the time of earlier games, so the counter is not reset
+		final long busyStart = busyTime.get();
+
+		final ArrayList<FutureTask<long[]>> futures = new ArrayList<FutureTask<long[]>>(games.size());
+		for (final Game game : games)
+			futures.add(submit(game));
+
+		final long[][] results = new long[games.size()][];
+		for (int i = 0; i < results.length; i++) {
+			try {
+				results[i] = futures.get(i).get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Failed to play game " + games.get(i).gameId + ".", e.getCause());
+			}
+		}
+
+		lastWallTime = System.nanoTime() - start;
+		lastUtilisation = (localThreadCount == 0 || lastWallTime == 0) ? 0
+				: (busyTime.get() - busyStart) / ((double) lastWallTime * localThreadCount);
+		return results;
+	}
+
+	/**
+	 * Stop all threads. Games that are still queued will not be played.
+	 */
+	public void shutdown() {
+		for (final Thread thread : threads)
+			thread.interrupt();
+		queue.clear();
+	}
+
+	/**
+	 * @return number of threads that play games on this machine
+	 */
+	public int getLocalThreadCount() {
+		return localThreadCount;
+	}
+
+	/**
+	 * @return the wall time of the last {@link #playAll(List)} in seconds
+	 */
+	public double getLastWallTime() {
+		return lastWallTime / 1e9;
+	}
+
+	/**
+	 * @return the share of the last {@link #playAll(List)} that the local threads
+	 * 		spent playing, between 0 and 1. It is measured in cpu time where
+	 * 		possible, so it also shows how busy the cores were.
+	 */
+	public double getLastUtilisation() {
+		return lastUtilisation;
+	}
+
+	/**
+	 * @return a summary of the last {@link #playAll(List)}
+	 */
+	public String getLastReport() {
+		return String.format("wall time: %.1f s  %s utilisation: %.0f%% of %d threads",
+				getLastWallTime(), cpuTimeSupported ? "core" : "thread",
+				100 * lastUtilisation, localThreadCount);
+	}
+
+	/**
+	 * The loop of a local thread
+	 */
+	private void playLocally() {
+		while (true) {
+			final GameTask task;
+			try {
+				task = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			if (task.isDone())
+				continue;
+
+			final long start = getBusyTime();
+			task.run();
+			busyTime.addAndGet(getBusyTime() - start);
+		}
+	}
+
+	/**
+	 * @return the time the current thread has been running in ns
+	 */
+	private long getBusyTime() {
+		return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	/**
+	 * Gets notified when a game has been played
+	 */
+	public static interface Listener {
+
+		/**
+		 * When a game finishes, this gets called
+		 * @param game the game
+		 * @param fitness fitness of the two participants
+		 */
+		public void onFinished(final Game game, final long[] fitness);
+
+		/**
+		 * When a game could not be played, this gets called
+		 * @param game the game
+		 * @param cause why it failed
+		 */
+		public void onFailed(final Game game, final Throwable cause);
+	}
+
+	/**
+	 * A game that is played remotely. If it gets lost, it must be given back
+	 * with {@link #reassign()}.
+	 */
+	public final class Assignment {
+
+		/** the queued game */
+		private final GameTask task;
+
+		private Assignment(final GameTask task) {
+			this.task = task;
+		}
+
+		/**
+		 * @return the game to play
+		 */
+		public Game getGame() {
+			return task.game;
+		}
+
+		/**
+		 * Complete the game with the fitness that has been found remotely.
+		 * Does nothing if the game has been completed already.
+		 * @param fitness fitness of the two participants
+		 */
+		public void complete(final long[] fitness) {
+			task.complete(fitness);
+		}
+
+		/**
+		 * @return whether the game has been completed
+		 */
+		public boolean isDone() {
+			return task.isDone();
+		}
+
+		/**
+		 * Put the game back to the front of the queue, unless it has been
+		 * completed already
+		 */
+		public void reassign() {
+			if (!task.isDone())
+				queue.addFirst(task);
+		}
+	}
+
+	/**
+	 * A queued game and its future fitness
+	 */
+	private static class GameTask extends FutureTask<long[]> {
+
+		/** the game to play */
+		final Game game;
+		/** notified when the game finishes, may be null */
+		private final Listener listener;
+
+		/**
+		 * @param game the game to play
+		 * @param listener notified when the game finishes, may be null
+		 * @param call plays the game locally
+		 */
+		GameTask(final Game game, final Listener listener, final Callable<long[]> call) {
+			super(call);
+			this.game = game;
+			this.listener = listener;
+		}
+
+		/**
+		 * Complete the task with the fitness a remote worker has found
+		 * @param fitness fitness of the two participants
+		 */
+		void complete(final long[] fitness) {
+			set(fitness);
+		}
+
+		@Override
+		protected void done() {
+			if (listener == null || isCancelled())
+				return;
+
+			try {
+				listener.onFinished(game, get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				listener.onFailed(game, e.getCause());
+			}
+		}
+	}
+
+}
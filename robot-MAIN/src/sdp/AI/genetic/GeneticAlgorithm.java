@@ -4,11 +4,15 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
 import java.io.*;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 
 import org.neuroph.core.NeuralNetwork;
 import org.neuroph.util.NeuralNetworkCODEC;
 
-import sdp.AI.genetic.distributed.GameRunnerServer;
+import sdp.AI.genetic.distributed.DistributedGameServer;
+import sdp.AI.genetic.distributed.GameWorker;
+import sdp.AI.genetic.distributed.Protocol;
 
 import sdp.AI.neural.AINeuralNet;
 
@@ -28,26 +32,30 @@ public class GeneticAlgorithm {
 	/** Number of neighbours each individual plays against. Must be odd*/
 	final static int NEIGHBOUR_NUMBER = 11;
 	/** Number of threads. Every thread can simulate one game at a time */
-	final static int LOCAL_GAME_THREADS = 15;
-	/** For distributed game simulation */
-	final static String[] DISTRIBUTED_GAMES_THREADS_HOST_NAMES = new String[]{
-//		"student.compute",
-//		"elis"
-//		"hordichuk",
-//		"honda",
-//		"zonda",
-//		"lexus",
-//		"lappy",
-//		"mitsubishi",
-//		"mercedes",
-//		"nissan",
-//		"audi"
-		};//[]{"ssh.remote.one", "ssh.rmote.two"};
+	final static int LOCAL_GAME_THREADS = Runtime.getRuntime().availableProcessors();
+	/** Port that remote {@link GameWorker}s connect to, they can join and leave at any time. Negative to play locally only */
+	final static int DISTRIBUTED_PORT = Protocol.DEFAULT_PORT;
+	/** How long a remote worker may take for a game before it is reassigned, in ms */
+	final static long DISTRIBUTED_GAME_TIMEOUT = 120000;
+	/** System property with a comma separated list of hosts to start workers on over ssh. Without it, start {@link GameWorker}s by hand */
+	final static String WORKER_HOSTS_PROPERTY = "sdp.ga.workers";
+	/** System property with the directory the workers are started in, the working directory of this process by default */
+	final static String WORKER_DIR_PROPERTY = "sdp.ga.workerDir";
+	/** System property with the class path of the workers, relative to their directory, the class path of this process by default */
+	final static String WORKER_CLASSPATH_PROPERTY = "sdp.ga.workerClasspath";
+	/** Seed of the games. A game's seed is derived from this and the weights of its participants, so a pairing is played on the same pitches wherever it is in the population */
+	final static long GAME_SEED = 2012;
 	
 	static long max_fitness;
 	
 	final static String OUTPUT_DIR = "data/GA/";
 	private static final String NNET_FILE = "data/GA/finalPop.nnet";
+	/** Number of game results the fitness cache keeps in memory */
+	final static int FITNESS_CACHE_SIZE = 20000;
+	/** File that keeps the game results between runs, null to keep them in memory only. It is started anew when {@link Game#getFingerprint()} changes */
+	final static String FITNESS_CACHE_FILE = OUTPUT_DIR + "fitness.cache";
+	/** Number of game results the fitness cache file holds */
+	final static int FITNESS_CACHE_FILE_SLOTS = 1 << 18;
 
 	int gen = 0;
 	long fitTotal = 0;
@@ -58,9 +66,12 @@ public class GeneticAlgorithm {
 	double[][] finalPopulation;
 	Random rand = new Random();
 	private int totalGames = 0;
-	// locker for concurrency control
-	private GameRunner[] workers = new GameRunner[LOCAL_GAME_THREADS + DISTRIBUTED_GAMES_THREADS_HOST_NAMES.length];
-	private Object lock = new Object();
+	/** plays the games of every generation */
+	private GameScheduler scheduler;
+	/** lets remote workers play the games, null if disabled */
+	private DistributedGameServer server;
+	/** remembers the results of the games that have been played */
+	private FitnessCache cache;
 
 
 
@@ -78,37 +89,27 @@ public class GeneticAlgorithm {
 
 	public void stop() {
 		run = false;
-		for (int i = 0; i < workers.length; i++) {
-			if (workers[i] != null) {
-				workers[i].close();
-			}
-		}
+		if (server != null)
+			server.close();
+		if (scheduler != null)
+			scheduler.shutdown();
 	}
 	
 	public void start() {
 		run = true;
 		
 		// start workers
-				for (int i = 0; i < LOCAL_GAME_THREADS; i++) {
-					workers[i] = new GameRunner();
-					workers[i].start();
-				}
-				
-				if (DISTRIBUTED_GAMES_THREADS_HOST_NAMES.length > 0)
-					System.out.println("Waiting for clients to connect");
+				scheduler = new GameScheduler(LOCAL_GAME_THREADS);
+				cache = createFitnessCache();
 				
-				for (int i = LOCAL_GAME_THREADS; i < LOCAL_GAME_THREADS+DISTRIBUTED_GAMES_THREADS_HOST_NAMES.length; i++) {
-					System.out.println("Waiting for "+DISTRIBUTED_GAMES_THREADS_HOST_NAMES[i-LOCAL_GAME_THREADS]+" to connect..."); 
-					final GameRunnerServer worker = new GameRunnerServer(DISTRIBUTED_GAMES_THREADS_HOST_NAMES[i-LOCAL_GAME_THREADS], ssh_username, ssh_password);
-					worker.connect();
-					while (!worker.isAssigned()) {
-						try {
-							Thread.sleep(100);
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
+				if (DISTRIBUTED_PORT >= 0) {
+					try {
+						server = new DistributedGameServer(scheduler, DISTRIBUTED_PORT, DISTRIBUTED_GAME_TIMEOUT);
+						System.out.println("Remote workers can connect at port "+server.getPort());
+						spawnRemoteWorkers(System.getProperty(WORKER_HOSTS_PROPERTY, ""));
+					} catch (IOException e) {
+						System.err.println("Cannot listen for remote workers: "+e.getMessage());
 					}
-					workers[i] = worker;
 				}
 
 
@@ -121,7 +122,7 @@ public class GeneticAlgorithm {
 					
 					run();
 					long fittest = popFitness[findFittest()];
-					System.out.println("Generation: " + gen + "  average fitness: " + avgFitness.get(avgFitness.size()-1) + "  fittest: " + fittest);
+					System.out.println("Generation: " + gen + "  average fitness: " + avgFitness.get(avgFitness.size()-1) + "  fittest: " + fittest + "  " + scheduler.getLastReport() + "  " + getCacheReport());
 					//out.println("\nGeneration " + gen);
 
 					new AINeuralNet(population[findFittest()]).getNetwork().save(OUTPUT_DIR+"finalPop.nnet");
@@ -152,11 +153,71 @@ public class GeneticAlgorithm {
 				System.out.println("Finished");
 
 				// stop workers
-				for (int i = 0; i < workers.length; i++)
-					workers[i].close();
+				if (server != null)
+					server.close();
+				scheduler.shutdown();
+				cache.close();
+	}
+
+	/**
+	 * Create the fitness cache, backed by {@link #FITNESS_CACHE_FILE} if possible
+	 * @return the cache
+	 */
+	private static FitnessCache createFitnessCache() {
+		if (FITNESS_CACHE_FILE != null) {
+			try {
+				final FitnessCache cache = new FitnessCache(FITNESS_CACHE_SIZE, new File(FITNESS_CACHE_FILE), FITNESS_CACHE_FILE_SLOTS, Game.getFingerprint());
+				System.out.println("Reusing game results from "+FITNESS_CACHE_FILE);
+				return cache;
+			} catch (IOException e) {
+				System.err.println("Cannot open the fitness cache file, keeping the results in memory only: "+e.getMessage());
+			}
+		}
+		return new FitnessCache(FITNESS_CACHE_SIZE);
+	}
+
+	/**
+	 * @return how many games of the last generation were found in the fitness cache
+	 */
+	private String getCacheReport() {
+		final long hits = cache.getHitCount();
+		final long total = hits + cache.getMissCount();
+		return String.format("cache hits: %d of %d (%.0f%%)", hits, total, total == 0 ? 0 : 100d * hits / total);
 	}
 
 
+	/**
+	 * Start a {@link GameWorker} on every given host over ssh, in the
+	 * directory and with the class path given by {@link #WORKER_DIR_PROPERTY}
+	 * and {@link #WORKER_CLASSPATH_PROPERTY}
+	 * @param hosts comma separated list of hosts
+	 */
+	private void spawnRemoteWorkers(final String hosts) {
+		final String serverHost;
+		try {
+			serverHost = InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			System.err.println("Cannot find the name of this host, start the workers manually");
+			return;
+		}
+
+		final String dir = System.getProperty(WORKER_DIR_PROPERTY, System.getProperty("user.dir"));
+		final String classpath = System.getProperty(WORKER_CLASSPATH_PROPERTY, System.getProperty("java.class.path"));
+		final String command = "cd '" + dir + "' && java -cp '" + classpath + "' "
+				+ GameWorker.class.getName() + " " + serverHost + " " + server.getPort();
+
+		for (final String host : hosts.split(",")) {
+			if (host.trim().equals(""))
+				continue;
+			try {
+				new ProcessBuilder("ssh", host.trim(), command).start();
+				System.out.println("Starting a worker on "+host.trim());
+			} catch (IOException e) {
+				System.err.println("Cannot start a worker on "+host.trim()+": "+e.getMessage());
+			}
+		}
+	}
+
 	/** 
 	 * Randomly generates the initial population and calculates its fitness
 	 **/
@@ -263,14 +324,14 @@ public class GeneticAlgorithm {
 
 	/** 
 	 * Calculates the fitness by running games against each individuals closest neighbours.
-	 * Each game is run in its own thread.
+	 * The games are played by the {@link GameScheduler}.
 	 **/
 	private long[] calcFitness() {
 
 		// ----- INITIALIZATION OF GAMES ----- \\
 
-		// initialise result holder
-		final HashMap<Integer, HashSet<Long>> results = new HashMap<Integer, HashSet<Long>>();
+		// initialise result holder, a list so that equal scores are all counted
+		final HashMap<Integer, ArrayList<Long>> results = new HashMap<Integer, ArrayList<Long>>();
 
 		// initialise already played holder
 		final HashMap<Integer, HashSet<Integer>> alreadyPlayed = new HashMap<Integer, HashSet<Integer>>();
@@ -312,7 +373,9 @@ public class GeneticAlgorithm {
 				currPlayed.add(index);
 
 				// initialise a game with the given neighbour
-				games.add(new Game(i, index, i == -1 ? null : population[i], j == -1 ? null : population[index], game_id++));
+				final double[] weights_i = i == -1 ? null : population[i];
+				final double[] weights_j = index == -1 ? null : population[index];
+				games.add(new Game(i, index, weights_i, weights_j, game_id++, FitnessCache.getSeed(GAME_SEED, weights_i, weights_j)));
 
 			}
 
@@ -335,105 +398,70 @@ public class GeneticAlgorithm {
 		// max number of games
 		totalGames = game_id;
 
-		// ----- ASSIGNING GAMES TO WORKERS ----- \\
-
-		// calculate how many games per worker should there be
-		final int gamesPerWorker = totalGames / workers.length;
-
-		// pause workers and set callbacks
-		for (int i = 0; i < workers.length; i++) {
-
-			workers[i].setPause(true);
-
-			workers[i].callback = new GameRunner.Callback() {
-
-				// when all of the games have been simulated
-				@Override
-				public void allGamesReady() {
-
-					// check whether all workers have finished
-					for (int i = 0; i < workers.length; i++)
-						if (workers[i].getGamesInQueueCount() != 0) {
-							return;
-						}
-
-
-					// if all workers are 0, unblock main thread
-					synchronized (lock) {
-						lock.notifyAll();
-					}
-				}
-				
-				@Override
-				public synchronized void onFinished(final Game caller, final long[] fitness) {
-
-					// for both players
-					for (int i = 0; i < 2; i++) {
-						// get previous fitness values
-						HashSet<Long> prevFitness = results.get(caller.ids[i]);
-
-						// if none exist, create the set
-						if (prevFitness == null)
-							prevFitness = new HashSet<Long>();
-
-						// add the current fitness to the set
-						prevFitness.add(fitness[i]);
-
-						// put the results so far back to the id
-						results.put(caller.ids[i], prevFitness);
-					}
-				}
-			};
+		// ----- LOOKING UP PLAYED GAMES ----- \\
+
+		// the same participants with the same seed always get the same result
+		cache.resetCounters();
+		final long[][] fitness = new long[totalGames][];
+		final ArrayList<Game> toPlay = new ArrayList<Game>();
+		// copies of an individual play the same pairing more than once, it is played once
+		final HashMap<Long, Integer> playIndices = new HashMap<Long, Integer>();
+		final int[] playIndex = new int[totalGames];
+		for (int game = 0; game < totalGames; game++) {
+			final Game caller = games.get(game);
+			fitness[game] = cache.get(caller);
+			if (fitness[game] != null)
+				continue;
+			final Long key = FitnessCache.getKey(caller);
+			Integer index = playIndices.get(key);
+			if (index == null) {
+				index = toPlay.size();
+				playIndices.put(key, index);
+				toPlay.add(caller);
+			}
+			playIndex[game] = index;
 		}
 
-		// initialise worker id count
-		int workerId = 0;
-
-		for (int i = 0; i < totalGames; i++) {
-
-			// decide when to change worker
-			if (i % gamesPerWorker == 0 && i != 0)
-				workerId++;
-			// limit worker id
-			if (workerId == workers.length)
-				workerId = workers.length -1;
-
-			// assign a game to a worker
-			workers[workerId].add(games.get(i));
+		// ----- PLAYING THE GAMES ----- \\
+
+		// block until all games have been played
+		if (server != null)
+			server.setPopulation(population);
+		final long[][] played;
+		try {
+			played = scheduler.playAll(toPlay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new long[POPSIZE];
+		}
 
+		// remember the played games and fill them in
+		for (int game = 0; game < toPlay.size(); game++)
+			cache.put(toPlay.get(game), played[game]);
+		for (int game = 0; game < totalGames; game++) {
+			if (fitness[game] == null)
+				fitness[game] = played[playIndex[game]];
 		}
+		cache.flush();
 
-		// unpause workers
-		for (int i = 0; i < workers.length; i++)
-			workers[i].setPause(false);
+		// collect the fitness values of each player
+		for (int game = 0; game < totalGames; game++) {
+			final Game caller = games.get(game);
 
-		// ----- ENTER BLOCKING SECTION ----- \\
+			// for both players
+			for (int i = 0; i < 2; i++) {
+				// get previous fitness values
+				ArrayList<Long> prevFitness = results.get(caller.ids[i]);
 
-		// block until all threads have finished
-		synchronized (lock) {
-			boolean wait = true;
-			try {
-				waitloop: while (wait) {
-					lock.wait(3000);
+				// if none exist, create the list
+				if (prevFitness == null)
+					prevFitness = new ArrayList<Long>();
 
-					boolean dowecontinue = false;
-					
-					// check if workers are ready
-					for (int i = 0; i < workers.length; i++)
-						if (workers[i].getGamesInQueueCount() != 0) {
-							System.out.println(i+" still has "+workers[i].getGamesInQueueCount());
-							dowecontinue = true;
-							//continue waitloop;
-						}
-
-					System.out.println();
-					
-					if (!dowecontinue)
-						break;
+				// add the current fitness to the list
+				prevFitness.add(fitness[game][i]);
 
-				}
-			} catch (Exception e) {
-				wait = false;
+				// put the results so far back to the id
+				results.put(caller.ids[i], prevFitness);
 			}
 		}
 
@@ -454,11 +482,11 @@ public class GeneticAlgorithm {
 
 
 	/**
-	 * Get the average of a hashset
+	 * Get the average of a list
 	 * @param set
 	 * @return
 	 */
-	public static long getAverage(final HashSet<Long> set) {
+	public static long getAverage(final ArrayList<Long> set) {
 
 		// if set does not exist, then average is 0
 		if (set == null)
@@ -470,7 +498,7 @@ public class GeneticAlgorithm {
 		// sum holder
 		long sum = 0;
 
-		// sum all over the set
+		// sum all over the list
 		for (final long fitness : set){
 			sum += fitness;
 		}
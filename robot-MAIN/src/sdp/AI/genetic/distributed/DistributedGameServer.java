@@ -0,0 +1,482 @@
+package sdp.AI.genetic.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import sdp.AI.genetic.Game;
+import sdp.AI.genetic.GameScheduler;
+import sdp.AI.genetic.GameScheduler.Assignment;
+
+/**
+ * Lets {@link GameWorker}s on other machines play the games of a
+ * {@link GameScheduler}, see {@link Protocol}.<br/><br/>
+ *
+ * Workers can connect and disconnect at any time. Each one asks for as many
+ * games as it can play at once and gets them in batches from the scheduler's
+ * queue. The population is sent to a worker once per generation. Games that
+ * a worker loses, because it disconnects or does not answer within the game
+ * timeout, are put back to the front of the queue.
+ */
+public class DistributedGameServer {
+
+	/** how often the connections check their timeouts, in ms */
+	private static final long CHECK_INTERVAL = 100;
+	/** how long a worker may take for its handshake, in ms */
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+
+	/** the scheduler whose games are played */
+	private final GameScheduler scheduler;
+	/** how long a worker may take for a game, in ms */
+	private final long gameTimeout;
+
+	/** accepts the workers */
+	private final ServerSocket serverSocket;
+	/** the connected workers */
+	private final ArrayList<WorkerConnection> connections = new ArrayList<WorkerConnection>();
+	/** the workers whose handshake is not done yet, guarded by {@link #connections} */
+	private final ArrayList<WorkerConnection> handshaking = new ArrayList<WorkerConnection>();
+	private volatile boolean open = true;
+
+	/** current generation, the assignments of older ones are ignored */
+	private volatile int generation = 0;
+	/** population of the current generation */
+	private volatile double[][] population = new double[0][];
+
+	/**
+	 * Start listening for workers
+	 * @param scheduler the scheduler whose games are played
+	 * @param port the port to listen at, 0 for any free one
+	 * @param gameTimeout how long a worker may take for a game before it is reassigned, in ms
+	 * @throws IOException if the port cannot be opened
+	 */
+	public DistributedGameServer(final GameScheduler scheduler, final int port, final long gameTimeout) throws IOException {
+		this.scheduler = scheduler;
+		this.gameTimeout = gameTimeout;
+		serverSocket = new ServerSocket(port);
+
+		final Thread acceptor = new Thread("Game server") {
+			@Override
+			public void run() {
+				acceptWorkers();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Set the population that the following games are played with. Call this
+	 * before the games of a new generation are queued.
+	 * @param population the genes of every individual, they must not change until
+	 * 		all of the generation's games have been played
+	 */
+	public synchronized void setPopulation(final double[][] population) {
+		this.population = population;
+		generation++;
+	}
+
+	/**
+	 * @return the port the server listens at
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return the address the server listens at
+	 */
+	public InetAddress getAddress() {
+		return serverSocket.getInetAddress();
+	}
+
+	/**
+	 * @return number of connected workers
+	 */
+	public int getWorkerCount() {
+		synchronized (connections) {
+			return connections.size();
+		}
+	}
+
+	/**
+	 * Disconnect all workers and stop listening. Their games are put back to
+	 * the queue.
+	 */
+	public void close() {
+		open = false;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		final ArrayList<WorkerConnection> toClose, toAbort;
+		synchronized (connections) {
+			toClose = new ArrayList<WorkerConnection>(connections);
+			toAbort = new ArrayList<WorkerConnection>(handshaking);
+		}
+		for (final WorkerConnection connection : toClose)
+			connection.close(true);
+		for (final WorkerConnection connection : toAbort)
+			connection.closeSocket();
+	}
+
+	/**
+	 * The loop of the thread that accepts workers. The handshakes are done
+	 * on the connections' own threads, so that a silent client does not
+	 * hold up the others.
+	 */
+	private void acceptWorkers() {
+		while (open) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if (open)
+					e.printStackTrace();
+				continue;
+			}
+
+			final WorkerConnection connection = new WorkerConnection(socket);
+			synchronized (connections) {
+				handshaking.add(connection);
+			}
+			connection.start();
+		}
+	}
+
+	/**
+	 * A game that has been sent to a worker
+	 */
+	private static class PendingGame {
+
+		final Assignment assignment;
+		final int generation;
+		final long deadline;
+
+		PendingGame(final Assignment assignment, final int generation, final long deadline) {
+			this.assignment = assignment;
+			this.generation = generation;
+			this.deadline = deadline;
+		}
+	}
+
+	/**
+	 * The connection to one worker. Its reader thread handles the worker's
+	 * messages and its dispatcher thread sends it games.
+	 */
+	private class WorkerConnection {
+
+		final String name;
+		/** number of games the worker can play at once, known after the handshake */
+		private int capacity;
+
+		private final Socket socket;
+		private DataInputStream in;
+		private DataOutputStream out;
+
+		/** the games the worker is playing, by game id */
+		private final HashMap<Integer, PendingGame> pending = new HashMap<Integer, PendingGame>();
+		/** number of further games the worker has asked for */
+		private int requested = 0;
+		/** generation whose population the worker has */
+		private int sentGeneration = -1;
+		private boolean closed = false;
+
+		private final Thread reader, dispatcher;
+
+		/**
+		 * @param socket the worker's socket
+		 */
+		WorkerConnection(final Socket socket) {
+			this.socket = socket;
+			name = socket.getRemoteSocketAddress().toString();
+
+			reader = new Thread("Game server reader " + name) {
+				@Override
+				public void run() {
+					if (handshake())
+						readMessages();
+				}
+			};
+			dispatcher = new Thread("Game server dispatcher " + name) {
+				@Override
+				public void run() {
+					dispatchGames();
+				}
+			};
+			reader.setDaemon(true);
+			dispatcher.setDaemon(true);
+		}
+
+		/**
+		 * Start the reader thread, it does the handshake and then starts the
+		 * dispatcher thread
+		 */
+		void start() {
+			reader.start();
+		}
+
+		/**
+		 * Do the handshake with the worker and register it if it succeeds
+		 * @return whether the worker has been registered
+		 */
+		private boolean handshake() {
+			try {
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+				in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+				try {
+					capacity = Protocol.readWorkerHello(in);
+				} catch (IOException e) {
+					Protocol.writeServerHello(out, false);
+					throw e;
+				}
+				Protocol.writeServerHello(out, true);
+				socket.setSoTimeout(0);
+			} catch (IOException e) {
+				if (open)
+					System.err.println("Rejected worker " + name + ": " + e.getMessage());
+				synchronized (connections) {
+					handshaking.remove(this);
+				}
+				closeSocket();
+				return false;
+			}
+
+			synchronized (connections) {
+				handshaking.remove(this);
+				if (!open) {
+					closeSocket();
+					return false;
+				}
+				connections.add(this);
+			}
+			dispatcher.start();
+			System.out.println("Worker " + name + " joined with " + capacity + " threads");
+			return true;
+		}
+
+		/**
+		 * Close the socket without telling the worker
+		 */
+		private void closeSocket() {
+			try {
+				socket.close();
+			} catch (IOException e) {}
+		}
+
+		/**
+		 * The loop of the reader thread
+		 */
+		private void readMessages() {
+			try {
+				while (true) {
+					final byte type = in.readByte();
+					switch (type) {
+					case Protocol.REQUEST:
+						final int count = in.readInt();
+						synchronized (this) {
+							requested += count;
+							notifyAll();
+						}
+						break;
+					case Protocol.RESULT:
+						final int resultGeneration = in.readInt();
+						final int gameId = in.readInt();
+						final long[] fitness = new long[] {in.readLong(), in.readLong()};
+						final int leftGoals = in.readInt();
+						final int rightGoals = in.readInt();
+						onResult(resultGeneration, gameId, fitness, leftGoals, rightGoals);
+						break;
+					case Protocol.CLOSE:
+						close(false);
+						return;
+					default:
+						throw new IOException("Unexpected message type " + type + ".");
+					}
+				}
+			} catch (EOFException e) {
+				close(false);
+			} catch (SocketException e) {
+				close(false);
+			} catch (IOException e) {
+				System.err.println("Worker " + name + " failed: " + e.getMessage());
+				close(false);
+			}
+		}
+
+		/**
+		 * Complete a game the worker has played
+		 */
+		private void onResult(final int resultGeneration, final int gameId, final long[] fitness,
+				final int leftGoals, final int rightGoals) {
+			final PendingGame game;
+			synchronized (this) {
+				game = pending.get(gameId);
+				if (game == null || game.generation != resultGeneration)
+					return;
+				pending.remove(gameId);
+			}
+
+			if (!game.assignment.isDone()) {
+				final Game caller = game.assignment.getGame();
+				caller.leftGoals = leftGoals;
+				caller.rightGoals = rightGoals;
+				game.assignment.complete(fitness);
+			}
+		}
+
+		/**
+		 * The loop of the dispatcher thread
+		 */
+		private void dispatchGames() {
+			final List<Assignment> batch = new ArrayList<Assignment>();
+			try {
+				while (true) {
+					synchronized (this) {
+						if (closed)
+							return;
+						if (requested == 0) {
+							wait(CHECK_INTERVAL);
+						}
+					}
+					reassignTimedOut();
+
+					final int wanted;
+					synchronized (this) {
+						wanted = requested;
+					}
+					if (wanted == 0)
+						continue;
+
+					final Assignment first = scheduler.takeAssignment(CHECK_INTERVAL);
+					if (first == null)
+						continue;
+					batch.clear();
+					batch.add(first);
+					scheduler.pollAssignments(batch, wanted - 1);
+
+					send(batch);
+				}
+			} catch (InterruptedException e) {
+				// closed
+			} catch (IOException e) {
+				System.err.println("Cannot send games to worker " + name + ": " + e.getMessage());
+				close(false);
+			}
+		}
+
+		/**
+		 * Send a batch of games, and the population first if the worker does not have it
+		 * @param batch the games
+		 * @throws IOException
+		 */
+		private void send(final List<Assignment> batch) throws IOException {
+			final int currentGeneration;
+			final double[][] currentPopulation;
+			synchronized (DistributedGameServer.this) {
+				currentGeneration = generation;
+				currentPopulation = population;
+			}
+
+			// the games are pending before they are sent, so that they get
+			// reassigned if the connection fails meanwhile
+			final long deadline = System.currentTimeMillis() + gameTimeout;
+			synchronized (this) {
+				if (closed) {
+					for (final Assignment assignment : batch)
+						assignment.reassign();
+					return;
+				}
+				for (final Assignment assignment : batch)
+					pending.put(assignment.getGame().gameId, new PendingGame(assignment, currentGeneration, deadline));
+				requested -= batch.size();
+			}
+
+			synchronized (out) {
+				if (sentGeneration != currentGeneration) {
+					Protocol.writePopulation(out, currentGeneration, currentPopulation);
+					sentGeneration = currentGeneration;
+				}
+
+				out.writeByte(Protocol.ASSIGN);
+				out.writeInt(currentGeneration);
+				out.writeInt(batch.size());
+				for (final Assignment assignment : batch) {
+					final Game game = assignment.getGame();
+					out.writeInt(game.gameId);
+					out.writeInt(game.ids[0]);
+					out.writeInt(game.ids[1]);
+					out.writeLong(game.seed);
+				}
+				out.flush();
+			}
+		}
+
+		/**
+		 * Put the games the worker has not played in time back to the queue
+		 */
+		private synchronized void reassignTimedOut() {
+			final long now = System.currentTimeMillis();
+			for (final Iterator<PendingGame> it = pending.values().iterator(); it.hasNext(); ) {
+				final PendingGame game = it.next();
+				if (game.assignment.isDone()) {
+					it.remove();
+				} else if (now > game.deadline) {
+					System.err.println("Game " + game.assignment.getGame().gameId + " timed out on " + name + ", reassigning");
+					it.remove();
+					game.assignment.reassign();
+				}
+			}
+		}
+
+		/**
+		 * Close the connection and put the worker's games back to the queue
+		 * @param notify whether to tell the worker
+		 */
+		void close(final boolean notify) {
+			synchronized (this) {
+				if (closed)
+					return;
+				closed = true;
+				for (final PendingGame game : pending.values())
+					game.assignment.reassign();
+				pending.clear();
+				notifyAll();
+			}
+			synchronized (connections) {
+				connections.remove(this);
+			}
+
+			if (notify) {
+				try {
+					synchronized (out) {
+						out.writeByte(Protocol.CLOSE);
+						out.flush();
+					}
+				} catch (IOException e) {}
+			}
+			try {
+				socket.close();
+			} catch (IOException e) {}
+			dispatcher.interrupt();
+			System.out.println("Worker " + name + " left");
+		}
+	}
+
+}
@@ -0,0 +1,214 @@
+package sdp.AI.genetic.distributed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+
+import sdp.AI.genetic.Game;
+import sdp.AI.genetic.GameScheduler;
+
+/**
+ * Plays games for a {@link DistributedGameServer} on another machine, see
+ * {@link Protocol}. It can join and leave at any time.<br/><br/>
+ *
+ * Usage: java sdp.AI.genetic.distributed.GameWorker hostname [port] [threads]
+ */
+public class GameWorker {
+
+	private static final String USAGE = "Usage: java " + GameWorker.class.getName() + " hostname [port] [threads]";
+
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 3) {
+			System.err.println(USAGE);
+			return;
+		}
+
+		try {
+			final int port = args.length > 1 ? Integer.parseInt(args[1]) : Protocol.DEFAULT_PORT;
+			final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+			new GameWorker(args[0], port, threads).run();
+		} catch (NumberFormatException e) {
+			System.err.println("Wrong number supplied.\n\n" + USAGE);
+		} catch (IOException e) {
+			System.err.println("Connection to the server lost: " + e.getMessage());
+		}
+	}
+
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+
+	/** plays the assigned games */
+	private final GameScheduler scheduler;
+
+	/** the generation whose population is known */
+	private int generation = -1;
+	private double[][] population = null;
+	private volatile boolean closed = false;
+
+	/**
+	 * Connect to a server
+	 * @param hostname the server's host
+	 * @param port the server's port
+	 * @param threads number of games to play at once
+	 * @throws IOException if the server cannot be reached or rejects the worker
+	 */
+	public GameWorker(final String hostname, final int port, final int threads) throws IOException {
+		if (threads < 1)
+			throw new IllegalArgumentException("Worker thread count must be positive.");
+
+		socket = new Socket(hostname, port);
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		try {
+			Protocol.writeWorkerHello(out, threads);
+			Protocol.readServerHello(in);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+
+		scheduler = new GameScheduler(threads);
+		synchronized (out) {
+			Protocol.writeRequest(out, threads);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Play the assigned games until the server closes the connection or
+	 * {@link #close()} is called
+	 * @throws IOException if the connection fails
+	 */
+	public void run() throws IOException {
+		try {
+			while (true) {
+				final byte type = in.readByte();
+				switch (type) {
+				case Protocol.POPULATION:
+					final int newGeneration = in.readInt();
+					population = Protocol.readPopulation(in);
+					generation = newGeneration;
+					break;
+				case Protocol.ASSIGN:
+					final int assignGeneration = in.readInt();
+					final int count = in.readInt();
+					if (assignGeneration != generation)
+						throw new IOException("Games of generation " + assignGeneration + " assigned without its population.");
+					final ResultSender sender = new ResultSender(assignGeneration);
+					for (int i = 0; i < count; i++) {
+						final int gameId = in.readInt();
+						final int left = in.readInt();
+						final int right = in.readInt();
+						final long seed = in.readLong();
+						scheduler.submit(new Game(left, right, getWeights(left), getWeights(right), gameId, seed), sender);
+					}
+					break;
+				case Protocol.CLOSE:
+					return;
+				default:
+					throw new IOException("Unexpected message type " + type + ".");
+				}
+			}
+		} catch (EOFException e) {
+			if (!closed)
+				throw e;
+		} catch (SocketException e) {
+			if (!closed)
+				throw e;
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * @param id a population index or -1
+	 * @return the weights of the individual or null for the hand-written AI
+	 * @throws IOException if the index is not in the population
+	 */
+	private double[] getWeights(final int id) throws IOException {
+		if (id == -1)
+			return null;
+		if (id < 0 || id >= population.length)
+			throw new IOException("Individual " + id + " is not in the population.");
+		return population[id];
+	}
+
+	/**
+	 * Leave the server. Games that are being played are abandoned, the
+	 * server reassigns them.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		scheduler.shutdown();
+		try {
+			synchronized (out) {
+				out.writeByte(Protocol.CLOSE);
+				out.flush();
+			}
+		} catch (IOException e) {}
+		try {
+			socket.close();
+		} catch (IOException e) {}
+	}
+
+	/**
+	 * Sends the results of the games of a generation
+	 */
+	private class ResultSender implements GameScheduler.Listener {
+
+		/** the generation of the games */
+		private final int generation;
+
+		ResultSender(final int generation) {
+			this.generation = generation;
+		}
+
+		/**
+		 * Send the result of a game and ask for the next one
+		 */
+		@Override
+		public void onFinished(final Game game, final long[] fitness) {
+			try {
+				synchronized (out) {
+					Protocol.writeResult(out, generation, game.gameId, fitness, game.leftGoals, game.rightGoals);
+					Protocol.writeRequest(out, 1);
+					out.flush();
+				}
+			} catch (IOException e) {
+				if (!closed)
+					System.err.println("Cannot send game " + game.gameId + ": " + e.getMessage());
+				close();
+			}
+		}
+
+		/**
+		 * Ask for another game instead of the failed one, the server reassigns
+		 * it when it times out
+		 */
+		@Override
+		public void onFailed(final Game game, final Throwable cause) {
+			System.err.println("Game " + game.gameId + " failed: " + cause);
+			try {
+				synchronized (out) {
+					Protocol.writeRequest(out, 1);
+					out.flush();
+				}
+			} catch (IOException e) {
+				close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+package sdp.AI.genetic.distributed;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import sdp.AI.genetic.Game;
+
+/**
+ * The binary protocol between a {@link DistributedGameServer} and its
+ * {@link GameWorker}s.<br/><br/>
+ *
+ * A worker connects and sends {@link #MAGIC}, {@link #VERSION}, the
+ * fingerprint of its simulation, see {@link Game#getFingerprint()}, and the
+ * number of games it can play at once. The server answers with its own magic
+ * number and version and whether it accepts the worker. Workers that simulate
+ * games differently from the server are rejected, so that their results do
+ * not end up in the server's fitness cache. After that, every message is a
+ * type byte followed by its fields:
+ * <ul>
+ * <li>{@link #POPULATION}, server to worker: generation, individual count,
+ * gene count and the genes of every individual. It is sent once per
+ * generation, before the first assignment of that generation.</li>
+ * <li>{@link #ASSIGN}, server to worker: generation, game count and the game
+ * id, the two population indices and the seed of every game. Index -1 stands
+ * for the hand-written AI.</li>
+ * <li>{@link #REQUEST}, worker to server: the number of further games the
+ * worker can take.</li>
+ * <li>{@link #RESULT}, worker to server: generation, game id, the fitness of
+ * the two players and the goals of the left and right side.</li>
+ * <li>{@link #CLOSE}, either way: the connection is about to be closed.</li>
+ * </ul>
+ */
+public final class Protocol {
+
+	/** the port the server listens at by default */
+	public static final int DEFAULT_PORT = 7843;
+
+	/** identifies the protocol, "SDPG" */
+	public static final int MAGIC = 0x53445047;
+	/** version of the protocol, both sides must use the same one */
+	public static final short VERSION = 3;
+
+	/** message types */
+	public static final byte POPULATION = 1;
+	public static final byte ASSIGN = 2;
+	public static final byte REQUEST = 3;
+	public static final byte RESULT = 4;
+	public static final byte CLOSE = 5;
+
+	private Protocol() {}
+
+	/**
+	 * Write the handshake of a worker
+	 * @param out the stream
+	 * @param capacity number of games the worker can play at once
+	 * @throws IOException
+	 */
+	public static void writeWorkerHello(final DataOutputStream out, final int capacity) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeLong(Game.getFingerprint());
+		out.writeInt(capacity);
+		out.flush();
+	}
+
+	/**
+	 * Read the handshake of a worker
+	 * @param in the stream
+	 * @return the number of games the worker can play at once
+	 * @throws IOException if the worker does not speak this version of the protocol
+	 * or simulates games differently
+	 */
+	public static int readWorkerHello(final DataInputStream in) throws IOException {
+		checkHeader(in);
+		final long fingerprint = in.readLong();
+		if (fingerprint != Game.getFingerprint())
+			throw new IOException("The worker's simulation differs from the server's, update the worker.");
+		final int capacity = in.readInt();
+		if (capacity < 1)
+			throw new IOException("Worker capacity must be positive, got " + capacity + ".");
+		return capacity;
+	}
+
+	/**
+	 * Write the answer of the server to a handshake
+	 * @param out the stream
+	 * @param accepted whether the worker is accepted
+	 * @throws IOException
+	 */
+	public static void writeServerHello(final DataOutputStream out, final boolean accepted) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeBoolean(accepted);
+		out.flush();
+	}
+
+	/**
+	 * Read the answer of the server to a handshake
+	 * @param in the stream
+	 * @throws IOException if the server speaks another version or has rejected the worker
+	 */
+	public static void readServerHello(final DataInputStream in) throws IOException {
+		checkHeader(in);
+		if (!in.readBoolean())
+			throw new IOException("The server has rejected the worker.");
+	}
+
+	/**
+	 * Check the magic number and the version of the other side
+	 * @param in the stream
+	 * @throws IOException if they do not match
+	 */
+	private static void checkHeader(final DataInputStream in) throws IOException {
+		final int magic = in.readInt();
+		if (magic != MAGIC)
+			throw new IOException("Not a game protocol stream, magic number " + Integer.toHexString(magic) + ".");
+		final short version = in.readShort();
+		if (version != VERSION)
+			throw new IOException("Protocol version " + version + " is not supported, expected " + VERSION + ".");
+	}
+
+	/**
+	 * Write the population of a generation
+	 * @param out the stream
+	 * @param generation the generation
+	 * @param population the genes of every individual, all of the same length
+	 * @throws IOException
+	 */
+	public static void writePopulation(final DataOutputStream out, final int generation,
+			final double[][] population) throws IOException {
+		final int genes = population.length == 0 ? 0 : population[0].length;
+		out.writeByte(POPULATION);
+		out.writeInt(generation);
+		out.writeInt(population.length);
+		out.writeInt(genes);
+		for (final double[] individual : population) {
+			if (individual.length != genes)
+				throw new IllegalArgumentException("All individuals must have " + genes + " genes.");
+			for (final double gene : individual)
+				out.writeDouble(gene);
+		}
+	}
+
+	/**
+	 * Read the population that follows a {@link #POPULATION} type byte
+	 * @param in the stream
+	 * @return the genes of every individual
+	 * @throws IOException
+	 */
+	public static double[][] readPopulation(final DataInputStream in) throws IOException {
+		final int count = in.readInt();
+		final int genes = in.readInt();
+		if (count < 0 || genes < 0)
+			throw new IOException("Invalid population size " + count + "x" + genes + ".");
+
+		final double[][] population = new double[count][genes];
+		for (final double[] individual : population)
+			for (int i = 0; i < genes; i++)
+				individual[i] = in.readDouble();
+		return population;
+	}
+
+	/**
+	 * Write the {@link #RESULT} of a game
+	 * @param out the stream
+	 * @param generation generation of the game
+	 * @param gameId id of the game
+	 * @param fitness fitness of the two players
+	 * @param leftGoals goals of the left side
+	 * @param rightGoals goals of the right side
+	 * @throws IOException
+	 */
+	public static void writeResult(final DataOutputStream out, final int generation, final int gameId,
+			final long[] fitness, final int leftGoals, final int rightGoals) throws IOException {
+		out.writeByte(RESULT);
+		out.writeInt(generation);
+		out.writeInt(gameId);
+		out.writeLong(fitness[0]);
+		out.writeLong(fitness[1]);
+		out.writeInt(leftGoals);
+		out.writeInt(rightGoals);
+	}
+
+	/**
+	 * Write a {@link #REQUEST} for games
+	 * @param out the stream
+	 * @param count number of further games
+	 * @throws IOException
+	 */
+	public static void writeRequest(final DataOutputStream out, final int count) throws IOException {
+		out.writeByte(REQUEST);
+		out.writeInt(count);
+	}
+
+}
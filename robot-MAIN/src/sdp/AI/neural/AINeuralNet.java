@@ -11,6 +11,7 @@ import org.neuroph.util.NeuralNetworkCODEC;
 
 import sdp.AI.AIVisualServoing;
 import sdp.AI.Command;
+import sdp.common.NNetFeatureExtractor;
 import sdp.common.NNetTools;
 import sdp.common.world.Robot;
 
@@ -29,11 +30,23 @@ public class AINeuralNet extends AIVisualServoing {
 	/** NNetwork layers count. {1, 2, 3} would mean
 	 *  network with 1 input, 3 outputs and one hidden
 	 *  layer with 2 neurons */
-	private static final int[] LAYERS = new int[] {67, NNetTools.move_modes.values().length};
+	private static final int[] LAYERS = new int[] {NNetFeatureExtractor.INPUT_COUNT, NNetTools.move_modes.values().length};
 	
 	/** The brain that is controlling the AI */
 	private NeuralNetwork nets;
 	
+	/** Computes the inputs of the network */
+	private final NNetFeatureExtractor extractor = new NNetFeatureExtractor();
+	
+	/** The inputs of the network, reused between frames */
+	private final double[] input = new double[NNetFeatureExtractor.INPUT_COUNT];
+	
+	/** Flattened copy of the brain, null if it cannot be compiled */
+	private CompiledNeuralNet compiledNet;
+	
+	/** The outputs of the compiled network, reused between frames */
+	private double[] output;
+	
 	// implementation
 	
 	/**
@@ -45,10 +58,14 @@ public class AINeuralNet extends AIVisualServoing {
 	private Command play() {
 		
 		// feed current state through the network and get result
-		final double[] input = NNetTools.generateAIinput(aiWorldState, aiWorldState.isOwnTeamBlue(), aiWorldState.isOwnGoalLeft());
-		nets.setInput(input);
-		nets.calculate();
-		final double[] output = nets.getOutput();
+		extractor.extract(aiWorldState, aiWorldState.isOwnTeamBlue(), aiWorldState.isOwnGoalLeft(), input);
+		if (compiledNet != null) {
+			compiledNet.calculate(input, output);
+		} else {
+			nets.setInput(input);
+			nets.calculate();
+			output = nets.getOutput();
+		}
 		NNetTools.move_modes mode = NNetTools.recoverMoveOutputMode(output);
 		
 		//System.out.println(mode+": "+NNetTools.printArray(output, ",", output.length));
@@ -93,12 +110,28 @@ public class AINeuralNet extends AIVisualServoing {
 	}
 	
 	/**
-	 * Change the current neural network that controls this AI
+	 * Change the current neural network that controls this AI. If the network's
+	 * weights are changed afterwards, set it again so that the compiled copy
+	 * that is evaluated every frame follows them.
 	 * @param net
 	 * @see NeuralNetwork#load(String)
 	 */
 	public void setNetwork(final NeuralNetwork net) {
 		nets = net;
+		compileNetwork();
+	}
+	
+	/**
+	 * Flatten the current network for fast evaluation, if it is supported
+	 * by {@link CompiledNeuralNet}
+	 */
+	private void compileNetwork() {
+		if (CompiledNeuralNet.isSupported(nets)) {
+			compiledNet = new CompiledNeuralNet(nets);
+			output = new double[compiledNet.getOutputCount()];
+		} else {
+			compiledNet = null;
+		}
 	}
 	
 	
@@ -130,6 +163,7 @@ public class AINeuralNet extends AIVisualServoing {
 	 */
 	public void setWeights(final double[] weights) {
 		array2network(weights, nets);
+		compileNetwork();
 	}
 	
     /**
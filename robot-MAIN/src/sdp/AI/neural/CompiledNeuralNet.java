@@ -0,0 +1,281 @@
+package sdp.AI.neural;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.neuroph.core.Connection;
+import org.neuroph.core.Layer;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.core.Neuron;
+import org.neuroph.core.input.WeightedSum;
+import org.neuroph.core.transfer.Linear;
+import org.neuroph.core.transfer.Sigmoid;
+import org.neuroph.core.transfer.TransferFunction;
+import org.neuroph.nnet.comp.BiasNeuron;
+import org.neuroph.nnet.comp.InputNeuron;
+
+
+/**
+ * A snapshot of a Neuroph network, flattened into arrays for fast inference.
+ *
+ * Every neuron's input weights are stored as one row of a contiguous weight
+ * array, together with the indices of the neurons they connect from. For a
+ * fully connected layer the rows are the layer's weight matrix. Evaluation is
+ * a tight loop over these arrays and does not allocate. The weighted sums are
+ * accumulated in the order in which Neuroph accumulates them, so the outputs
+ * are bit-identical to the ones of {@link NeuralNetwork#calculate()}.
+ *
+ * Only feed-forward networks of input, bias and weighted sum neurons with
+ * sigmoid or linear transfer functions, such as the multi-layer perceptrons
+ * of {@link AINeuralNet}, can be compiled. The snapshot does not follow later
+ * changes to the network's weights, so it has to be compiled again after
+ * them. The Neuroph network stays the one that is saved and loaded.
+ */
+public final class CompiledNeuralNet {
+
+	/** Transfer function of neurons whose output is their weighted sum. */
+	private static final int TRANSFER_LINEAR = 0;
+	/** Transfer function of neurons with a sigmoid output. */
+	private static final int TRANSFER_SIGMOID = 1;
+	/** Neuroph's sigmoid outputs 1 above this input and 0 below its negation. */
+	private static final double SIGMOID_CUTOFF = 100.0;
+
+
+	/** Number of network inputs. */
+	private final int inputCount;
+	/** Number of network outputs. */
+	private final int outputCount;
+
+	/** Neuron indices of the network inputs. */
+	private final int[] inputNeurons;
+	/** Neuron indices of the network outputs. */
+	private final int[] outputNeurons;
+	/** Indices of the calculated neurons, in evaluation order. */
+	private final int[] calculatedNeurons;
+	/** Offset of each calculated neuron's row in the connection arrays. */
+	private final int[] rowOffsets;
+	/** Indices of the neurons each connection comes from. */
+	private final int[] sources;
+	/** Weights of the connections, one row per calculated neuron. */
+	private final double[] weights;
+	/** Transfer function of each calculated neuron. */
+	private final int[] transfers;
+	/** Slope of each calculated neuron's transfer function. */
+	private final double[] slopes;
+
+	/** Outputs of all neurons, reused between evaluations. */
+	private final double[] activations;
+
+
+	/**
+	 * Compile a network.
+	 *
+	 * @param network Network to compile.
+	 * @throws IllegalArgumentException If the network cannot be compiled.
+	 * @see #isSupported(NeuralNetwork)
+	 */
+	public CompiledNeuralNet(NeuralNetwork network) {
+		if (!isSupported(network)) {
+			throw new IllegalArgumentException("The network cannot be compiled.");
+		}
+
+		IdentityHashMap<Neuron, Integer> indices = new IdentityHashMap<Neuron, Integer>();
+		int neuronCount = 0;
+		int calculatedCount = 0;
+		int connectionCount = 0;
+		for (Layer layer : network.getLayers()) {
+			for (Neuron neuron : layer.getNeurons()) {
+				indices.put(neuron, neuronCount++);
+				if (isCalculated(neuron)) {
+					++calculatedCount;
+					connectionCount += neuron.getInputConnections().size();
+				}
+			}
+		}
+
+		activations = new double[neuronCount];
+		calculatedNeurons = new int[calculatedCount];
+		rowOffsets = new int[calculatedCount + 1];
+		sources = new int[connectionCount];
+		weights = new double[connectionCount];
+		transfers = new int[calculatedCount];
+		slopes = new double[calculatedCount];
+
+		int row = 0;
+		int connection = 0;
+		for (Layer layer : network.getLayers()) {
+			for (Neuron neuron : layer.getNeurons()) {
+				int index = indices.get(neuron);
+				if (neuron instanceof BiasNeuron) {
+					activations[index] = 1.0;
+				}
+				if (!isCalculated(neuron)) {
+					continue;
+				}
+
+				calculatedNeurons[row] = index;
+				rowOffsets[row] = connection;
+				for (Connection input : neuron.getInputConnections()) {
+					sources[connection] = indices.get(input.getFromNeuron());
+					weights[connection] = input.getWeight().getValue();
+					++connection;
+				}
+
+				TransferFunction transfer = neuron.getTransferFunction();
+				if (transfer instanceof Sigmoid) {
+					transfers[row] = TRANSFER_SIGMOID;
+					slopes[row] = ((Sigmoid) transfer).getSlope();
+				} else {
+					transfers[row] = TRANSFER_LINEAR;
+					slopes[row] = ((Linear) transfer).getSlope();
+				}
+				++row;
+			}
+		}
+		rowOffsets[calculatedCount] = connection;
+
+		inputCount = network.getInputNeurons().size();
+		inputNeurons = new int[inputCount];
+		for (int i = 0; i < inputCount; ++i) {
+			inputNeurons[i] = indices.get(network.getInputNeurons().get(i));
+		}
+		outputCount = network.getOutputNeurons().size();
+		outputNeurons = new int[outputCount];
+		for (int i = 0; i < outputCount; ++i) {
+			outputNeurons[i] = indices.get(network.getOutputNeurons().get(i));
+		}
+	}
+
+
+	/**
+	 * Check whether a network can be compiled. Its input neurons must pass
+	 * their inputs through, its bias neurons must output 1 and every other
+	 * neuron must compute a weighted sum of one or more neurons in earlier
+	 * layers, followed by a sigmoid or a linear transfer function.
+	 *
+	 * @param network Network of interest.
+	 * @return Whether the network can be compiled.
+	 */
+	public static boolean isSupported(NeuralNetwork network) {
+		IdentityHashMap<Neuron, Integer> layerIndices = new IdentityHashMap<Neuron, Integer>();
+		List<Layer> layers = network.getLayers();
+		for (int i = 0; i < layers.size(); ++i) {
+			for (Neuron neuron : layers.get(i).getNeurons()) {
+				layerIndices.put(neuron, i);
+			}
+		}
+
+		for (Neuron neuron : network.getInputNeurons()) {
+			if ((neuron.getClass() != InputNeuron.class) || !layerIndices.containsKey(neuron)) {
+				return false;
+			}
+		}
+		for (Neuron neuron : network.getOutputNeurons()) {
+			if (!layerIndices.containsKey(neuron)) {
+				return false;
+			}
+		}
+
+		for (int i = 0; i < layers.size(); ++i) {
+			for (Neuron neuron : layers.get(i).getNeurons()) {
+				if (neuron instanceof BiasNeuron) {
+					continue;
+				}
+				if (!isCalculated(neuron)) {
+					if (!network.getInputNeurons().contains(neuron)) {
+						return false;
+					}
+					continue;
+				}
+
+				if ((neuron.getClass() != Neuron.class) || !neuron.hasInputConnections()) {
+					return false;
+				}
+				if (neuron.getInputFunction().getClass() != WeightedSum.class) {
+					return false;
+				}
+				Class<?> transfer = neuron.getTransferFunction().getClass();
+				if ((transfer != Sigmoid.class) && (transfer != Linear.class)) {
+					return false;
+				}
+				for (Connection input : neuron.getInputConnections()) {
+					Integer sourceLayer = layerIndices.get(input.getFromNeuron());
+					if ((sourceLayer == null) || (sourceLayer >= i)) {
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check whether a neuron's output is calculated from other neurons.
+	 *
+	 * @param neuron Neuron of interest.
+	 * @return False for input and bias neurons, true otherwise.
+	 */
+	private static boolean isCalculated(Neuron neuron) {
+		return !(neuron instanceof BiasNeuron) && !(neuron instanceof InputNeuron);
+	}
+
+
+	/**
+	 * Evaluate the network.
+	 *
+	 * @param input Network inputs, at least {@link #getInputCount()} of them.
+	 * @param output Array of at least {@link #getOutputCount()} elements,
+	 * 		where the network outputs are stored.
+	 */
+	public void calculate(double[] input, double[] output) {
+		for (int i = 0; i < inputCount; ++i) {
+			activations[inputNeurons[i]] = input[i];
+		}
+
+		for (int row = 0; row < calculatedNeurons.length; ++row) {
+			double sum = 0;
+			for (int c = rowOffsets[row]; c < rowOffsets[row + 1]; ++c) {
+				sum += activations[sources[c]] * weights[c];
+			}
+
+			double value;
+			if (transfers[row] == TRANSFER_SIGMOID) {
+				if (sum > SIGMOID_CUTOFF) {
+					value = 1;
+				} else if (sum < -SIGMOID_CUTOFF) {
+					value = 0;
+				} else {
+					value = 1 / (1 + Math.exp(-slopes[row] * sum));
+				}
+			} else {
+				value = slopes[row] * sum;
+			}
+			activations[calculatedNeurons[row]] = value;
+		}
+
+		for (int i = 0; i < outputCount; ++i) {
+			output[i] = activations[outputNeurons[i]];
+		}
+	}
+
+
+	/**
+	 * Get the number of network inputs.
+	 *
+	 * @return Number of inputs.
+	 */
+	public int getInputCount() {
+		return inputCount;
+	}
+
+	/**
+	 * Get the number of network outputs.
+	 *
+	 * @return Number of outputs.
+	 */
+	public int getOutputCount() {
+		return outputCount;
+	}
+
+}
@@ -7,8 +7,10 @@ import java.util.LinkedList;
 import sdp.AI.AIWorldState;
 import sdp.common.Painter;
 import sdp.common.geometry.Circle;
+import sdp.common.geometry.GeomKernel;
 import sdp.common.geometry.GeomUtils;
 import sdp.common.geometry.Vector2D;
+import sdp.common.world.CollisionEngine;
 import sdp.common.world.Robot;
 import sdp.common.world.WorldState;
 
@@ -170,42 +172,50 @@ public class FullPathfinder implements Pathfinder {
 			directCheckFlags &= ~(WorldState.WALL_IS_OBSTACLE_FLAG);
 		}
 				
+		CollisionEngine directCheckEngine = worldState.getCollisionEngine(directCheckFlags);
+		double obsPoints[] = new double[4];
+				
 		for (Circle curObstacle : obstacles) {
-			Point2D.Double obsPoints[] = GeomUtils.circleTangentPoints(curObstacle, startVecAdj);
-			if (obsPoints == null) {
+			Point2D.Double centre = curObstacle.getCentre();
+			if (!GeomKernel.getCircleTangentPoints(centre.x, centre.y, curObstacle.getRadius(),
+					startVecAdj.x, startVecAdj.y, obsPoints, 0)) {
 				continue;
 			}
 			
 			obstaclePointLoop:
-			for (Point2D.Double pt : obsPoints) {
-				pt = GeomUtils.changePointDistanceToCircle(curObstacle, pt,
-						curObstacle.getRadius() + COLLISION_ADJUSTMENT);
-				Vector2D ptDir = Vector2D.subtract(new Vector2D(pt), startVecAdj);
+			for (int i = 0; i < obsPoints.length; i += 2) {
+				GeomKernel.changePointDistance(centre.x, centre.y, obsPoints[i], obsPoints[i + 1],
+						curObstacle.getRadius() + COLLISION_ADJUSTMENT, obsPoints, i);
+				double ptX = obsPoints[i];
+				double ptY = obsPoints[i + 1];
+				double ptDirX = ptX - startVecAdj.x;
+				double ptDirY = ptY - startVecAdj.y;
 				
-				if (!WorldState.isPointInPaddedPitch(pt, Robot.LENGTH_CM / 2)) {
+				if (!WorldState.isPointInPaddedPitch(ptX, ptY, Robot.LENGTH_CM / 2)) {
 					continue;
 				}
 				for (Circle c : checkedPoints) {
-					if (c.containsPoint(pt)) {
+					if (c.containsPoint(ptX, ptY)) {
 						continue obstaclePointLoop;
 					}
 				}
-				if (!WorldState.isDirectPathClear(worldState, startVecAdj,
-						new Vector2D(pt), directCheckFlags)) {
+				if (!directCheckEngine.isPathClear(startVecAdj.x, startVecAdj.y, ptX, ptY)) {
 					continue;
 				}
 				
-				ArrayList<Waypoint> curPath = getPath(worldState, pt, ptDir.getDirection(),
-						dest, obstacleFlag, depth + 1);
+				Vector2D pt = new Vector2D(ptX, ptY);
+				ArrayList<Waypoint> curPath = getPath(worldState, pt,
+						GeomKernel.getDirection(ptDirX, ptDirY), dest, obstacleFlag, depth + 1);
 				
 				if (curPath != null) {
-					double curCost = curPath.get(0).getCostToDest() + ptDir.getLength();
+					double curCost = curPath.get(0).getCostToDest()
+							+ GeomKernel.getLength(ptDirX, ptDirY);
 					if (curCost < minPathCost) {
 						minPathCost = curCost;
 						bestPath = curPath;
 						
 						bestPath.add(0, new Waypoint(startVec, startAngle,
-								new Vector2D(pt), curCost, false));
+								pt, curCost, false));
 					}
 				}
 			}
@@ -4,8 +4,10 @@ import java.awt.geom.Point2D;
 import java.util.ArrayList;
 
 import sdp.AI.AIWorldState;
+import sdp.common.geometry.GeomKernel;
 import sdp.common.geometry.GeomUtils;
 import sdp.common.geometry.Vector2D;
+import sdp.common.world.CollisionEngine;
 import sdp.common.world.Robot;
 import sdp.common.world.WorldState;
 
@@ -53,21 +55,25 @@ public class HeuristicPathfinder implements Pathfinder {
 	
 		double minAngle = Double.MAX_VALUE;
 		int iterations = 0;
+		
+		Robot ownRobot = aiWorldState.getOwnRobot();
+		CollisionEngine collisionEngine = aiWorldState.getCollisionEngine(obstacleFlags);
+		double rayEnd[] = new double[2];
 	
 		while ((destPoint == null) && (iterations < 5) && (destPointDist > 0)) {
 			for (int i = 0; i < COLLISION_SECTION_COUNT; i++) {
 				double curAngle = -90 + i * SECTION_ANGLE + SECTION_ANGLE / 2;
 				curAngle = GeomUtils.normaliseAngle(curAngle);
 	
-				Vector2D rayDir = Vector2D.rotateVector(new Vector2D(1, 0), curAngle);
-				Vector2D rayEndLocal = Vector2D.multiply(rayDir, destPointDist);
-				Vector2D rayEnd = Robot.getGlobalVector(aiWorldState.getOwnRobot(), rayEndLocal);
+				GeomKernel.rotatePoint(0.0, 0.0, 1, 0, curAngle, rayEnd, 0);
+				ownRobot.getGlobalPoint(rayEnd[0] * destPointDist, rayEnd[1] * destPointDist,
+						rayEnd, 0);
 	
-				if (WorldState.isDirectPathClear(aiWorldState, ownCoords, rayEnd, obstacleFlags)) {
+				if (collisionEngine.isPathClear(ownCoords.x, ownCoords.y, rayEnd[0], rayEnd[1])) {
 					double angleDiff = GeomUtils.normaliseAngle(curAngle - targetVecLocal.getDirection());
 					if (Math.abs(angleDiff) < Math.abs(minAngle)) {
 						minAngle = angleDiff;
-						destPoint = rayEnd;
+						destPoint = new Vector2D(rayEnd[0], rayEnd[1]);
 					}
 				}
 			}
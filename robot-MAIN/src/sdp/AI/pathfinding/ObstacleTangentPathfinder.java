@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import sdp.AI.AIWorldState;
 import sdp.common.Painter;
 import sdp.common.geometry.Circle;
+import sdp.common.geometry.GeomKernel;
 import sdp.common.geometry.GeomUtils;
 import sdp.common.geometry.Vector2D;
 import sdp.common.world.Robot;
@@ -103,27 +104,31 @@ public class ObstacleTangentPathfinder implements Pathfinder {
 	private ArrayList<ObstacleTangent> getObstacleTangents(ArrayList<Circle> obstacles,
 			Point2D.Double point) {
 		ArrayList<ObstacleTangent> tangents = new ArrayList<ObstacleTangent>();
+		double tangentPoints[] = new double[4];
 		
 		for (Circle obs : obstacles) {
-			Point2D.Double tangentPoints[] = GeomUtils.circleTangentPoints(obs, point);
-			if (tangentPoints == null) {
+			if (!GeomKernel.getCircleTangentPoints(obs.getCentre().x, obs.getCentre().y,
+					obs.getRadius(), point.x, point.y, tangentPoints, 0)) {
 				continue;
 			}
 			
-			for (Point2D.Double tanPt : tangentPoints) {
+			for (int i = 0; i < tangentPoints.length; i += 2) {
 				boolean pointGood = true;
 
 				for (Circle obs1 : obstacles) {
 					if (obs == obs1) {
 						continue;
 					}
-					if (GeomUtils.lineIntersectsCircle(point, tanPt, obs1)) {
+					if (GeomKernel.lineIntersectsCircle(point.x, point.y, tangentPoints[i],
+							tangentPoints[i + 1], obs1.getCentre().x, obs1.getCentre().y,
+							obs1.getRadius())) {
 						pointGood = false;
 					}
 				}
 				
 				if (pointGood) {
-					tangents.add(new ObstacleTangent(obs, tanPt));
+					tangents.add(new ObstacleTangent(obs,
+							new Vector2D(tangentPoints[i], tangentPoints[i + 1])));
 				}
 			}
 		}
@@ -237,7 +242,6 @@ public class ObstacleTangentPathfinder implements Pathfinder {
 			}
 		}
 		
-		System.out.println(bestPath.size());
 		return bestPath;
 	}
 
@@ -0,0 +1,245 @@
+package sdp.AI.pathfinding;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+
+import sdp.AI.AIWorldState;
+import sdp.common.Painter;
+import sdp.common.geometry.GeomUtils;
+import sdp.common.geometry.Vector2D;
+import sdp.common.world.CollisionEngine;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldState;
+
+
+/**
+ * A pathfinder that reuses the path of the previous frame.
+ *
+ * The path found by the wrapped pathfinder is kept and, on the next queries,
+ * only its segments are checked against the new world state. The wrapped
+ * pathfinder is asked for a new path when a segment becomes blocked, when the
+ * destination moves too far or when the path has been reused for too many
+ * frames, so that it can take a shorter route that has opened up. Paths that
+ * do not reach the destination, like the ones of the heuristic fallback, are
+ * never reused.
+ */
+public class ReplanningPathfinder implements Pathfinder {
+
+	/** Default distance the destination may move before replanning. */
+	public static final double DEFAULT_GOAL_THRESHOLD = 5.0;
+	/** Default number of frames a path may be reused for. */
+	public static final int DEFAULT_MAX_PATH_AGE = 25;
+
+
+	/** The pathfinder that plans the paths. */
+	private Pathfinder pathfinder;
+	/** Distance the destination may move before replanning. */
+	private double goalThreshold;
+	/** Number of frames a path may be reused for. */
+	private int maxPathAge;
+
+	/** Targets of the kept path's waypoints, in order. */
+	private ArrayList<Vector2D> targets = new ArrayList<Vector2D>();
+	/** Destination the kept path was planned for. */
+	private Point2D.Double plannedDest = null;
+	/** Last target of the kept path, as it was planned. */
+	private Vector2D plannedEndpoint = null;
+	/** Obstacles the kept path was planned around. */
+	private int plannedObstacleFlags = 0;
+	/** Number of frames the kept path has been reused for. */
+	private int pathAge = 0;
+
+	/** Number of queries answered with the kept path. */
+	private long hitCount = 0;
+	/** Number of queries passed to the wrapped pathfinder. */
+	private long missCount = 0;
+
+
+	/**
+	 * Create a new replanning pathfinder with the default thresholds.
+	 *
+	 * @param pathfinder The pathfinder that plans the paths.
+	 */
+	public ReplanningPathfinder(Pathfinder pathfinder) {
+		this(pathfinder, DEFAULT_GOAL_THRESHOLD, DEFAULT_MAX_PATH_AGE);
+	}
+
+	/**
+	 * Create a new replanning pathfinder.
+	 *
+	 * @param pathfinder The pathfinder that plans the paths.
+	 * @param goalThreshold Distance the destination may move before the
+	 * 		path is replanned.
+	 * @param maxPathAge Number of frames a path may be reused for.
+	 */
+	public ReplanningPathfinder(Pathfinder pathfinder, double goalThreshold, int maxPathAge) {
+		this.pathfinder = pathfinder;
+		this.goalThreshold = goalThreshold;
+		this.maxPathAge = maxPathAge;
+	}
+
+
+	/**
+	 * Check whether the kept path can be reused for a query.
+	 *
+	 * @param dest Destination point.
+	 * @param obstacleFlags Obstacles of the query.
+	 * @return Whether the kept path is a candidate for the query.
+	 */
+	private boolean canReusePath(Point2D.Double dest, int obstacleFlags) {
+		return !targets.isEmpty() && (pathAge < maxPathAge)
+				&& (obstacleFlags == plannedObstacleFlags)
+				&& (plannedDest.distance(dest) <= goalThreshold);
+	}
+
+	/**
+	 * Keep a path planned by the wrapped pathfinder for the next queries.
+	 *
+	 * @param path The planned path.
+	 * @param dest Destination of the path.
+	 * @param obstacleFlags Obstacles of the path.
+	 */
+	private void keepPath(ArrayList<Waypoint> path, Point2D.Double dest, int obstacleFlags) {
+		targets.clear();
+		pathAge = 0;
+
+		if ((path == null) || path.isEmpty() || !path.get(path.size() - 1).isEndpoint()) {
+			return;
+		}
+
+		for (Waypoint waypoint : path) {
+			targets.add(waypoint.getTarget());
+		}
+		plannedDest = new Point2D.Double(dest.x, dest.y);
+		plannedEndpoint = targets.get(targets.size() - 1);
+		plannedObstacleFlags = obstacleFlags;
+	}
+
+	/**
+	 * Check the kept path against the current world state and bring it up to
+	 * date with the robot's and the destination's positions.
+	 *
+	 * Targets the robot has already passed, that is, the ones before a target
+	 * it can see directly, are dropped from the path.
+	 *
+	 * @param engine Collision engine of the current world state.
+	 * @param robot Our robot.
+	 * @param dest Destination point.
+	 * @return Whether the path is still clear.
+	 */
+	private boolean revalidatePath(CollisionEngine engine, Robot robot, Point2D.Double dest) {
+		Point2D.Double start = robot.getCoords();
+
+		// Follow a moving destination, keeping any adjustment the wrapped
+		// pathfinder made to it.
+		targets.set(targets.size() - 1, new Vector2D(plannedEndpoint.x + dest.x - plannedDest.x,
+				plannedEndpoint.y + dest.y - plannedDest.y));
+
+		while (targets.size() > 1) {
+			Vector2D next = targets.get(1);
+			if (!engine.isPathClear(start.x, start.y, next.x, next.y)) {
+				break;
+			}
+			targets.remove(0);
+		}
+
+		Vector2D first = targets.get(0);
+		if (!engine.isPathClear(start.x, start.y, first.x, first.y)) {
+			return false;
+		}
+		for (int i = 1; i < targets.size(); ++i) {
+			Vector2D from = targets.get(i - 1);
+			Vector2D to = targets.get(i);
+			if (!engine.isPathClear(from.x, from.y, to.x, to.y)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Convert the kept path into waypoints that start at the robot.
+	 *
+	 * @param robot Our robot.
+	 * @return The path to the destination as a sequence of waypoints.
+	 */
+	private ArrayList<Waypoint> createPath(Robot robot) {
+		Vector2D start = new Vector2D(robot.getCoords());
+		double[] costs = new double[targets.size()];
+
+		double costToDest = 0.0;
+		for (int i = targets.size() - 1; i > 0; --i) {
+			costToDest += GeomUtils.pointDistance(targets.get(i - 1), targets.get(i));
+			costs[i] = costToDest;
+		}
+		costs[0] = costToDest + GeomUtils.pointDistance(start, targets.get(0));
+
+		ArrayList<Waypoint> path = new ArrayList<Waypoint>(targets.size());
+		Vector2D origin = start;
+		double originAngle = robot.getAngle();
+		for (int i = 0; i < targets.size(); ++i) {
+			Vector2D target = targets.get(i);
+			path.add(new Waypoint(origin, originAngle, target, costs[i],
+					(i == targets.size() - 1)));
+
+			originAngle = Vector2D.subtract(target, origin).getDirection();
+			origin = target;
+		}
+
+		return path;
+	}
+
+
+	/**
+	 * Get the number of queries answered with a kept path.
+	 *
+	 * @return Number of reused paths.
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Get the number of queries passed to the wrapped pathfinder.
+	 *
+	 * @return Number of planned paths.
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Reset the hit and miss counters.
+	 */
+	public void resetCounters() {
+		hitCount = 0;
+		missCount = 0;
+	}
+
+
+	/**
+	 * @see sdp.AI.pathfinding.Pathfinder#getPath(sdp.AI.AIWorldState, java.awt.geom.Point2D.Double, boolean)
+	 */
+	@Override
+	public ArrayList<Waypoint> getPath(AIWorldState worldState, Point2D.Double dest,
+			boolean ballIsObstacle) {
+		int obstacleFlags = WorldState.makeObstacleFlagsForOpponent(ballIsObstacle,
+				worldState.isOwnTeamBlue());
+		Robot robot = worldState.getOwnRobot();
+
+		if (canReusePath(dest, obstacleFlags)
+				&& revalidatePath(worldState.getCollisionEngine(obstacleFlags), robot, dest)) {
+			++hitCount;
+			++pathAge;
+			ArrayList<Waypoint> path = createPath(robot);
+			Painter.fullPath = path;
+			return path;
+		}
+
+		++missCount;
+		ArrayList<Waypoint> path = pathfinder.getPath(worldState, dest, ballIsObstacle);
+		keepPath(path, dest, obstacleFlags);
+		return path;
+	}
+
+}
@@ -0,0 +1,394 @@
+package sdp.AI.pathfinding;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import sdp.AI.AIWorldState;
+import sdp.common.Painter;
+import sdp.common.geometry.Circle;
+import sdp.common.geometry.GeomKernel;
+import sdp.common.geometry.GeomUtils;
+import sdp.common.geometry.Vector2D;
+import sdp.common.world.CollisionEngine;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldState;
+
+
+/**
+ * A pathfinder that searches a visibility graph with A*.
+ *
+ * The nodes of the graph are the start, the destination, the vertices of
+ * polygons around the inflated obstacle circles and the corners of the
+ * padded pitch. Two nodes are connected if the robot can drive between them
+ * in a straight line. Edges are only checked when A* expands a node, with a
+ * straight-line distance heuristic. The number of nodes is bounded by the
+ * number of obstacles, so the cost of a query is bounded too.
+ */
+public class VisibilityGraphPathfinder implements Pathfinder {
+
+	/** The amount, by which the graph nodes are pushed from obstacles. */
+	private static final double COLLISION_ADJUSTMENT = 10.0;
+	/** Largest number of passes spent moving a point out of obstacles. */
+	private static final int MAX_ADJUSTMENT_PASSES = 4;
+	/** The amount by which obstacles are increased in extraction. */
+	private static final double OBSTACLE_SIZE_INCREASE = Robot.LENGTH_CM * 0.5;
+	/** Number of vertices of the polygon around each obstacle. */
+	private static final int OBSTACLE_VERTEX_COUNT = 8;
+	/** Distance between the pitch corner nodes and the walls. */
+	private static final double CORNER_PADDING = Robot.LENGTH_CM;
+	/** Distance the graph nodes must keep from the walls. */
+	private static final double NODE_PADDING = Robot.LENGTH_CM / 2;
+
+	/** Index of the start node. */
+	private static final int START_NODE = 0;
+	/** Index of the destination node. */
+	private static final int DEST_NODE = 1;
+
+
+	/** Coordinates of the graph's nodes, as x, y pairs. */
+	private double nodes[] = new double[0];
+	/** Number of nodes in the graph. */
+	private int nodeCount;
+	/** Cost of the cheapest known path from the start to each node. */
+	private double costs[] = new double[0];
+	/** Estimated cost of the cheapest path through each node. */
+	private double estimates[] = new double[0];
+	/** Predecessor of each node on the cheapest known path. */
+	private int parents[] = new int[0];
+	/** Whether each node has been expanded. */
+	private boolean expanded[] = new boolean[0];
+
+	/** Number of nodes expanded during the last search. */
+	private int expandedCount;
+	/** Number of visibility checks during the last search. */
+	private int visibilityChecks;
+
+	/** A fallback pathfinder. */
+	private HeuristicPathfinder fallback = new HeuristicPathfinder();
+
+
+	/**
+	 * Create a new visibility graph pathfinder.
+	 */
+	public VisibilityGraphPathfinder() { }
+
+
+	/**
+	 * Move the given point out of all obstacles.
+	 *
+	 * A point at the centre of an obstacle is moved along the X axis. Points
+	 * squeezed between overlapping obstacles are given up on after a few
+	 * passes and may remain inside one of them.
+	 *
+	 * @param obstacles A list of obstacles.
+	 * @param point Point of interest.
+	 * @return The given point, moved out of obstacles.
+	 */
+	private Vector2D movePointOutOfObstacle(ArrayList<Circle> obstacles,
+			Vector2D point) {
+		Vector2D newPoint = new Vector2D(point.x, point.y);
+
+		boolean posChanged = true;
+		for (int pass = 0; posChanged && (pass < MAX_ADJUSTMENT_PASSES); ++pass) {
+			posChanged = false;
+
+			for (Circle curObstacle : obstacles) {
+				if (curObstacle.containsPoint(newPoint)) {
+					Point2D.Double centre = curObstacle.getCentre();
+					double distance = curObstacle.getRadius() + COLLISION_ADJUSTMENT;
+					if ((newPoint.x == centre.x) && (newPoint.y == centre.y)) {
+						newPoint = new Vector2D(centre.x + distance, centre.y);
+					} else {
+						newPoint = new Vector2D(GeomUtils.changePointDistanceToCircle(
+								curObstacle, newPoint, distance));
+					}
+					posChanged = true;
+				}
+			}
+		}
+
+		return newPoint;
+	}
+
+
+	/**
+	 * Make sure that the node arrays can hold the given number of nodes.
+	 *
+	 * @param capacity Required number of nodes.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (costs.length < capacity) {
+			nodes = new double[2 * capacity];
+			costs = new double[capacity];
+			estimates = new double[capacity];
+			parents = new int[capacity];
+			expanded = new boolean[capacity];
+		}
+	}
+
+	/**
+	 * Add a node to the graph, unless it lies too close to the walls or
+	 * inside an obstacle.
+	 *
+	 * @param obstacles Inflated obstacles.
+	 * @param x X coordinate of the node.
+	 * @param y Y coordinate of the node.
+	 */
+	private void addNode(ArrayList<Circle> obstacles, double x, double y) {
+		if (!WorldState.isPointInPaddedPitch(x, y, NODE_PADDING)) {
+			return;
+		}
+		for (Circle obstacle : obstacles) {
+			if (obstacle.containsPoint(x, y)) {
+				return;
+			}
+		}
+
+		nodes[2 * nodeCount] = x;
+		nodes[2 * nodeCount + 1] = y;
+		++nodeCount;
+	}
+
+	/**
+	 * Build the nodes of the visibility graph.
+	 *
+	 * @param obstacles Inflated obstacles.
+	 * @param start Start of the path.
+	 * @param dest Destination of the path.
+	 */
+	private void buildGraph(ArrayList<Circle> obstacles, Point2D.Double start,
+			Point2D.Double dest) {
+		ensureCapacity(2 + 4 + OBSTACLE_VERTEX_COUNT * obstacles.size());
+
+		nodes[2 * START_NODE] = start.x;
+		nodes[2 * START_NODE + 1] = start.y;
+		nodes[2 * DEST_NODE] = dest.x;
+		nodes[2 * DEST_NODE + 1] = dest.y;
+		nodeCount = 2;
+
+		addNode(obstacles, CORNER_PADDING, CORNER_PADDING);
+		addNode(obstacles, WorldState.PITCH_WIDTH_CM - CORNER_PADDING, CORNER_PADDING);
+		addNode(obstacles, WorldState.PITCH_WIDTH_CM - CORNER_PADDING,
+				WorldState.PITCH_HEIGHT_CM - CORNER_PADDING);
+		addNode(obstacles, CORNER_PADDING, WorldState.PITCH_HEIGHT_CM - CORNER_PADDING);
+
+		// The polygon circumscribes the pushed out circle, so that its sides
+		// stay clear of the obstacle.
+		double vertexAngle = 2 * Math.PI / OBSTACLE_VERTEX_COUNT;
+		double radiusFactor = 1 / Math.cos(vertexAngle / 2);
+		for (Circle obstacle : obstacles) {
+			double radius = (obstacle.getRadius() + COLLISION_ADJUSTMENT) * radiusFactor;
+			for (int i = 0; i < OBSTACLE_VERTEX_COUNT; ++i) {
+				addNode(obstacles, obstacle.getCentre().x + radius * Math.cos(i * vertexAngle),
+						obstacle.getCentre().y + radius * Math.sin(i * vertexAngle));
+			}
+		}
+	}
+
+	/**
+	 * Get the straight-line distance between two nodes.
+	 *
+	 * @param a Index of the first node.
+	 * @param b Index of the second node.
+	 * @return Distance between the nodes.
+	 */
+	private double getDistance(int a, int b) {
+		return GeomKernel.getLength(nodes[2 * b] - nodes[2 * a],
+				nodes[2 * b + 1] - nodes[2 * a + 1]);
+	}
+
+	/**
+	 * Find the cheapest path from the start node to the destination node
+	 * with A*.
+	 *
+	 * @param engine Collision engine, used to check whether nodes can see
+	 * 		each other.
+	 * @return Whether a path has been found. It can be recovered from the
+	 * 		node parents.
+	 */
+	private boolean search(CollisionEngine engine) {
+		Arrays.fill(costs, 0, nodeCount, Double.MAX_VALUE);
+		Arrays.fill(estimates, 0, nodeCount, Double.MAX_VALUE);
+		Arrays.fill(parents, 0, nodeCount, -1);
+		Arrays.fill(expanded, 0, nodeCount, false);
+		expandedCount = 0;
+		visibilityChecks = 0;
+
+		costs[START_NODE] = 0.0;
+		estimates[START_NODE] = getDistance(START_NODE, DEST_NODE);
+
+		while (true) {
+			// The graph is small, so a linear scan beats a priority queue.
+			int current = -1;
+			for (int i = 0; i < nodeCount; ++i) {
+				if (!expanded[i] && (estimates[i] != Double.MAX_VALUE)
+						&& ((current < 0) || (estimates[i] < estimates[current]))) {
+					current = i;
+				}
+			}
+
+			if (current < 0) {
+				return false;
+			}
+			if (current == DEST_NODE) {
+				return true;
+			}
+
+			expanded[current] = true;
+			++expandedCount;
+
+			for (int next = 0; next < nodeCount; ++next) {
+				if (expanded[next]) {
+					continue;
+				}
+				double cost = costs[current] + getDistance(current, next);
+				if (cost >= costs[next]) {
+					continue;
+				}
+
+				++visibilityChecks;
+				if (!engine.isPathClear(nodes[2 * current], nodes[2 * current + 1],
+						nodes[2 * next], nodes[2 * next + 1])) {
+					continue;
+				}
+
+				costs[next] = cost;
+				estimates[next] = cost + getDistance(next, DEST_NODE);
+				parents[next] = current;
+			}
+		}
+	}
+
+	/**
+	 * Convert the path found by the search into waypoints.
+	 *
+	 * @param start Actual position of the robot.
+	 * @param startAngle Robot's orientation at the start point.
+	 * @return The path to the destination as a sequence of waypoints.
+	 */
+	private ArrayList<Waypoint> createPath(Vector2D start, double startAngle) {
+		ArrayList<Waypoint> path = new ArrayList<Waypoint>();
+
+		int node = DEST_NODE;
+		while (node != START_NODE) {
+			int parent = parents[node];
+			Vector2D target = new Vector2D(nodes[2 * node], nodes[2 * node + 1]);
+			double costToDest = costs[DEST_NODE] - costs[parent];
+
+			if (parent == START_NODE) {
+				path.add(0, new Waypoint(start, startAngle, target, costToDest,
+						(node == DEST_NODE)));
+			} else {
+				Vector2D origin = new Vector2D(nodes[2 * parent], nodes[2 * parent + 1]);
+				double originAngle = Vector2D.subtract(origin, new Vector2D(
+						nodes[2 * parents[parent]], nodes[2 * parents[parent] + 1])).getDirection();
+				path.add(0, new Waypoint(origin, originAngle, target, costToDest,
+						(node == DEST_NODE)));
+			}
+
+			node = parent;
+		}
+
+		return path;
+	}
+
+
+	/**
+	 * Get a path for a robot from one point to another one.
+	 *
+	 * @param worldState Current world state.
+	 * @param start Starting point.
+	 * @param startAngle Robot's orientation at the start point.
+	 * @param dest Destination point.
+	 * @param obstacleFlags A bitfield that defines which objects should be
+	 * 		considered as obstacles.
+	 * @return The path to the destination as a sequence of waypoints or
+	 * 		null if there is none.
+	 */
+	public ArrayList<Waypoint> getPath(WorldState worldState, Point2D.Double start,
+			double startAngle, Point2D.Double dest, int obstacleFlags) {
+		Vector2D startVec = new Vector2D(start);
+		Vector2D destVec = new Vector2D(dest);
+		CollisionEngine engine = worldState.getCollisionEngine(obstacleFlags);
+
+		nodeCount = 0;
+		expandedCount = 0;
+		visibilityChecks = 0;
+
+		// Check for a direct path solution.
+		if (engine.isPathClear(startVec.x, startVec.y, destVec.x, destVec.y)) {
+			ArrayList<Waypoint> path = new ArrayList<Waypoint>();
+			path.add(new Waypoint(startVec, startAngle, destVec,
+					GeomUtils.pointDistance(startVec, destVec), true));
+			return path;
+		}
+
+		ArrayList<Circle> obstacles = WorldState.getObstacleCircles(worldState, obstacleFlags);
+		for (Circle c : obstacles) {
+			c.setRadius(c.getRadius() + OBSTACLE_SIZE_INCREASE);
+		}
+
+		Vector2D startVecAdj = movePointOutOfObstacle(obstacles, startVec);
+		Vector2D destVecAdj = movePointOutOfObstacle(obstacles, destVec);
+		if (!WorldState.isPointInPitch(startVecAdj) || !WorldState.isPointInPitch(destVecAdj)) {
+			return null;
+		}
+
+		buildGraph(obstacles, startVecAdj, destVecAdj);
+		if (!search(engine)) {
+			return null;
+		}
+
+		return createPath(startVec, startAngle);
+	}
+
+
+	/**
+	 * Get the number of nodes in the last built graph.
+	 *
+	 * @return Number of graph nodes.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Get the number of nodes expanded by the last search.
+	 *
+	 * @return Number of expanded nodes.
+	 */
+	public int getExpandedCount() {
+		return expandedCount;
+	}
+
+	/**
+	 * Get the number of visibility checks made by the last search.
+	 *
+	 * @return Number of visibility checks.
+	 */
+	public int getVisibilityChecks() {
+		return visibilityChecks;
+	}
+
+
+	/**
+	 * @see sdp.AI.pathfinding.Pathfinder#getPath(sdp.AI.AIWorldState, java.awt.geom.Point2D.Double, boolean)
+	 */
+	@Override
+	public ArrayList<Waypoint> getPath(AIWorldState worldState, Point2D.Double dest,
+			boolean ballIsObstacle) {
+		int obstacleFlags = WorldState.makeObstacleFlagsForOpponent(ballIsObstacle,
+				worldState.isOwnTeamBlue());
+		ArrayList<Waypoint> path = getPath(worldState, worldState.getOwnRobot().getCoords(),
+				worldState.getOwnRobot().getAngle(), dest, obstacleFlags);
+		Painter.fullPath = path;
+
+		if (path == null) {
+			return fallback.getPath(worldState, dest, ballIsObstacle);
+		} else {
+			return path;
+		}
+	}
+
+}
@@ -0,0 +1,338 @@
+package sdp.AI.prediction;
+
+import java.awt.geom.Point2D;
+
+import sdp.AI.Command;
+import sdp.AI.tracking.BallTracker;
+import sdp.AI.tracking.RobotTracker;
+import sdp.AI.tracking.WorldTracker;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldState;
+import sdp.simulator.VBrick;
+
+
+/**
+ * Predicts motion with closed-form kinematic models instead of a physics
+ * rollout.
+ *
+ * Robots move along circular arcs with a constant driving and turning speed.
+ * The speeds of our robot follow its last command, limited by the brick's
+ * accelerations, so its path is split into at most three arcs. Robots with
+ * an unknown command keep the speeds estimated by their trackers. The ball
+ * keeps its tracked velocity, slows down at the simulator's damping rate and
+ * bounces off the walls and the backs of the goals, losing some of its
+ * speed on every bounce. Collisions between the
+ * ball and the robots are not modelled.
+ *
+ * The predictor tracks the speeds of our robot's brick between calls, so
+ * each AI should have its own instance.
+ */
+public class AnalyticMotionPredictor implements MotionPredictor {
+
+	/** Radius of the ball in centimetres. */
+	private static final double BALL_RADIUS = 4.27 / 2;
+	/** Rate, at which the ball slows down, in 1/s. */
+	private static final double BALL_DAMPING = 0.3;
+	/** Fraction of the ball's speed that is kept after a bounce. */
+	private static final double BALL_RESTITUTION = 0.8;
+	/** Maximum number of bounces the ball is followed through. */
+	private static final int MAX_BALL_BOUNCES = 8;
+
+	/** Depth of the goals in centimetres. */
+	private static final double GOAL_DEPTH = 5;
+	/** Y coordinate of the upper goal posts. */
+	private static final double GOAL_TOP_Y = (WorldState.PITCH_HEIGHT_CM - WorldState.GOAL_CENTRE_Y) / 2;
+	/** Y coordinate of the lower goal posts. */
+	private static final double GOAL_BOTTOM_Y = WorldState.PITCH_HEIGHT_CM - GOAL_TOP_Y;
+
+	/** Largest turning speed that is believed from the trackers, in degrees/s. */
+	private static final double MAX_TRACKED_TURNING_SPEED = 360;
+	/** Turning speed, below which robots are treated as driving straight, in degrees/s. */
+	private static final double MIN_TURNING_SPEED = 1e-6;
+
+
+	/** Driving speed of our robot's brick in cm/s. */
+	private double ownDrivingSpeed = 0;
+	/** Turning speed of our robot's brick in degrees/s. */
+	private double ownTurningSpeed = 0;
+
+
+	/**
+	 * @see sdp.AI.prediction.MotionPredictor#predict(sdp.AI.tracking.WorldTracker, double, double, sdp.AI.Command, boolean)
+	 */
+	@Override
+	public WorldState predict(WorldTracker tracker, double frameTime, double time,
+			Command ownCommand, boolean isOwnTeamBlue) {
+		WorldState last = tracker.getObservation();
+
+		// The brick has been approaching the commanded speeds since the
+		// previous frame. Without a command, it is assumed to be stopping.
+		double targetDrivingSpeed = 0;
+		double targetTurningSpeed = 0;
+		if (ownCommand != null) {
+			targetDrivingSpeed = ownCommand.getShortDrivingSpeed();
+			targetTurningSpeed = ownCommand.getShortTurningSpeed();
+		}
+		ownDrivingSpeed = approach(ownDrivingSpeed, targetDrivingSpeed,
+				VBrick.DEFAULT_ACCELERATION * frameTime);
+		ownTurningSpeed = approach(ownTurningSpeed, targetTurningSpeed,
+				VBrick.DEFAULT_TURN_ACCELERATION * frameTime);
+
+		Robot blueRobot, yellowRobot;
+		if (ownCommand == null) {
+			blueRobot = predictTrackedRobot(tracker.getBlueRobotTracker(), last.getBlueRobot(), time);
+			yellowRobot = predictTrackedRobot(tracker.getYellowRobotTracker(), last.getYellowRobot(), time);
+		} else if (isOwnTeamBlue) {
+			blueRobot = predictCommandedRobot(tracker.getBlueRobotTracker(), last.getBlueRobot(),
+					targetDrivingSpeed, targetTurningSpeed, time);
+			yellowRobot = predictTrackedRobot(tracker.getYellowRobotTracker(), last.getYellowRobot(), time);
+		} else {
+			blueRobot = predictTrackedRobot(tracker.getBlueRobotTracker(), last.getBlueRobot(), time);
+			yellowRobot = predictCommandedRobot(tracker.getYellowRobotTracker(), last.getYellowRobot(),
+					targetDrivingSpeed, targetTurningSpeed, time);
+		}
+
+		Point2D.Double ball = predictBall(tracker.getBallTracker(), last.getBallCoords(), time);
+
+		return new WorldState(ball, blueRobot, yellowRobot, last.getWorldImageSource());
+	}
+
+
+	/**
+	 * Predict the position of a robot, whose brick is approaching the given
+	 * speeds from the speeds tracked by the predictor.
+	 *
+	 * @param robotTracker Tracker of the robot.
+	 * @param robot Last observation of the robot, used if it is not tracked.
+	 * @param targetDrivingSpeed Commanded driving speed in cm/s.
+	 * @param targetTurningSpeed Commanded turning speed in degrees/s.
+	 * @param time Time to predict, in seconds.
+	 * @return Predicted robot.
+	 */
+	private Robot predictCommandedRobot(RobotTracker robotTracker, Robot robot,
+			double targetDrivingSpeed, double targetTurningSpeed, double time) {
+		double drivingRampTime = Math.abs(targetDrivingSpeed - ownDrivingSpeed)
+				/ VBrick.DEFAULT_ACCELERATION;
+		double turningRampTime = Math.abs(targetTurningSpeed - ownTurningSpeed)
+				/ VBrick.DEFAULT_TURN_ACCELERATION;
+
+		double firstBreak = Math.min(time, Math.min(drivingRampTime, turningRampTime));
+		double secondBreak = Math.min(time, Math.max(drivingRampTime, turningRampTime));
+		double[] breaks = { 0, firstBreak, secondBreak, time };
+
+		double x = robot.getCoords().x;
+		double y = robot.getCoords().y;
+		double angle = robot.getAngle();
+		if (robotTracker.isTracking()) {
+			x = robotTracker.getX();
+			y = robotTracker.getY();
+			angle = robotTracker.getAngle();
+		}
+
+		// Both speeds change linearly between the breaks, so each segment is
+		// approximated by the arc of its mean speeds.
+		for (int i = 1; i < breaks.length; ++i) {
+			double duration = breaks[i] - breaks[i - 1];
+			if (duration <= 0) {
+				continue;
+			}
+
+			double drivingSpeed = (approach(ownDrivingSpeed, targetDrivingSpeed,
+					VBrick.DEFAULT_ACCELERATION * breaks[i - 1])
+					+ approach(ownDrivingSpeed, targetDrivingSpeed,
+							VBrick.DEFAULT_ACCELERATION * breaks[i])) / 2;
+			double turningSpeed = (approach(ownTurningSpeed, targetTurningSpeed,
+					VBrick.DEFAULT_TURN_ACCELERATION * breaks[i - 1])
+					+ approach(ownTurningSpeed, targetTurningSpeed,
+							VBrick.DEFAULT_TURN_ACCELERATION * breaks[i])) / 2;
+
+			double[] pose = advanceArc(x, y, angle, drivingSpeed, turningSpeed, duration);
+			x = pose[0];
+			y = pose[1];
+			angle = pose[2];
+		}
+
+		return createRobot(x, y, angle);
+	}
+
+	/**
+	 * Predict the position of a robot that keeps the speeds its tracker
+	 * estimates.
+	 *
+	 * @param robotTracker Tracker of the robot.
+	 * @param robot Last observation of the robot, returned if it is not
+	 * 		tracked.
+	 * @param time Time to predict, in seconds.
+	 * @return Predicted robot.
+	 */
+	private static Robot predictTrackedRobot(RobotTracker robotTracker, Robot robot, double time) {
+		if (!robotTracker.isTracking()) {
+			return robot;
+		}
+
+		double drivingSpeed = clamp(robotTracker.getDrivingSpeed(), Robot.MAX_DRIVING_SPEED);
+		double turningSpeed = clamp(robotTracker.getTurningSpeed(), MAX_TRACKED_TURNING_SPEED);
+		double[] pose = advanceArc(robotTracker.getX(), robotTracker.getY(),
+				robotTracker.getAngle(), drivingSpeed, turningSpeed, time);
+		return createRobot(pose[0], pose[1], pose[2]);
+	}
+
+	/**
+	 * Move a robot along a circular arc.
+	 *
+	 * @param x Starting X coordinate in centimetres.
+	 * @param y Starting Y coordinate in centimetres.
+	 * @param angle Starting angle in degrees.
+	 * @param drivingSpeed Driving speed in cm/s.
+	 * @param turningSpeed Turning speed in degrees/s.
+	 * @param time Time to move for, in seconds.
+	 * @return Final X coordinate, Y coordinate and angle.
+	 */
+	private static double[] advanceArc(double x, double y, double angle,
+			double drivingSpeed, double turningSpeed, double time) {
+		double startAngle = Math.toRadians(angle);
+
+		if (Math.abs(turningSpeed) < MIN_TURNING_SPEED) {
+			x += drivingSpeed * time * Math.cos(startAngle);
+			y -= drivingSpeed * time * Math.sin(startAngle);
+		} else {
+			double radialSpeed = Math.toRadians(turningSpeed);
+			double endAngle = startAngle + radialSpeed * time;
+			x += drivingSpeed / radialSpeed * (Math.sin(endAngle) - Math.sin(startAngle));
+			y += drivingSpeed / radialSpeed * (Math.cos(endAngle) - Math.cos(startAngle));
+		}
+
+		return new double[] { x, y, angle + turningSpeed * time };
+	}
+
+	/**
+	 * Create a robot, keeping its centre on the pitch.
+	 *
+	 * @param x X coordinate in centimetres.
+	 * @param y Y coordinate in centimetres.
+	 * @param angle Angle in degrees.
+	 * @return The robot.
+	 */
+	private static Robot createRobot(double x, double y, double angle) {
+		x = Math.max(0, Math.min(WorldState.PITCH_WIDTH_CM, x));
+		y = Math.max(0, Math.min(WorldState.PITCH_HEIGHT_CM, y));
+		return new Robot(new Point2D.Double(x, y), angle, true);
+	}
+
+
+	/**
+	 * Predict the position of the ball.
+	 *
+	 * @param ballTracker Tracker of the ball.
+	 * @param ball Last observed ball position, used if the ball is not tracked.
+	 * @param time Time to predict, in seconds.
+	 * @return Predicted ball position.
+	 */
+	private static Point2D.Double predictBall(BallTracker ballTracker, Point2D.Double ball,
+			double time) {
+		if (!ballTracker.isTracking()) {
+			return new Point2D.Double(ball.x, ball.y);
+		}
+
+		double vx = ballTracker.getVelocityX();
+		double vy = ballTracker.getVelocityY();
+		double speed = Math.sqrt(vx * vx + vy * vy);
+		if (speed == 0) {
+			return new Point2D.Double(ballTracker.getX(), ballTracker.getY());
+		}
+
+		// With exponential damping, the remaining travel distance is
+		// proportional to the speed, so a bounce scales it by the restitution.
+		double distance = speed * (1 - Math.exp(-BALL_DAMPING * time)) / BALL_DAMPING;
+		double dirX = vx / speed;
+		double dirY = vy / speed;
+		double x = ballTracker.getX();
+		double y = ballTracker.getY();
+
+		for (int bounce = 0; (bounce <= MAX_BALL_BOUNCES) && (distance > 0); ++bounce) {
+			double wallDistX = Double.POSITIVE_INFINITY;
+			if (dirX < 0) {
+				wallDistX = Math.max(0, (getBallWallX(x, y, dirX, dirY, false) - x) / dirX);
+			} else if (dirX > 0) {
+				wallDistX = Math.max(0, (getBallWallX(x, y, dirX, dirY, true) - x) / dirX);
+			}
+
+			double wallDistY = Double.POSITIVE_INFINITY;
+			if (dirY < 0) {
+				wallDistY = Math.max(0, (BALL_RADIUS - y) / dirY);
+			} else if (dirY > 0) {
+				wallDistY = Math.max(0, (WorldState.PITCH_HEIGHT_CM - BALL_RADIUS - y) / dirY);
+			}
+
+			double wallDist = Math.min(wallDistX, wallDistY);
+			if (distance <= wallDist) {
+				x += dirX * distance;
+				y += dirY * distance;
+				break;
+			}
+
+			x += dirX * wallDist;
+			y += dirY * wallDist;
+			if (wallDistX < wallDistY) {
+				dirX = -dirX;
+			} else {
+				dirY = -dirY;
+			}
+			distance = (distance - wallDist) * BALL_RESTITUTION;
+		}
+
+		return new Point2D.Double(x, y);
+	}
+
+	/**
+	 * Get the X coordinate, at which the ball's centre hits the left or the
+	 * right wall. Balls that enter a goal hit the back of the goal instead.
+	 *
+	 * @param x Ball's X coordinate.
+	 * @param y Ball's Y coordinate.
+	 * @param dirX X component of the ball's direction.
+	 * @param dirY Y component of the ball's direction.
+	 * @param right Whether to get the right wall.
+	 * @return X coordinate of the wall for the ball's centre.
+	 */
+	private static double getBallWallX(double x, double y, double dirX, double dirY, boolean right) {
+		double wallX = (right ? WorldState.PITCH_WIDTH_CM - BALL_RADIUS : BALL_RADIUS);
+		double backX = (right ? WorldState.PITCH_WIDTH_CM + GOAL_DEPTH - BALL_RADIUS
+				: BALL_RADIUS - GOAL_DEPTH);
+
+		boolean inGoal = (right ? x > wallX : x < wallX);
+		double crossingY = y + (wallX - x) / dirX * dirY;
+		if (inGoal || ((crossingY > GOAL_TOP_Y) && (crossingY < GOAL_BOTTOM_Y))) {
+			return backX;
+		}
+		return wallX;
+	}
+
+
+	/**
+	 * Move a speed towards a target without overshooting it.
+	 *
+	 * @param speed Current speed.
+	 * @param target Target speed.
+	 * @param maxChange Largest allowed change.
+	 * @return New speed.
+	 */
+	private static double approach(double speed, double target, double maxChange) {
+		if (Math.abs(target - speed) <= maxChange) {
+			return target;
+		}
+		return (target > speed) ? speed + maxChange : speed - maxChange;
+	}
+
+	/**
+	 * Limit the magnitude of a value.
+	 *
+	 * @param value A value.
+	 * @param limit Largest allowed magnitude.
+	 * @return Value, restricted to the interval [-limit; limit].
+	 */
+	private static double clamp(double value, double limit) {
+		return Math.max(-limit, Math.min(limit, value));
+	}
+
+}
@@ -0,0 +1,32 @@
+package sdp.AI.prediction;
+
+import sdp.AI.Command;
+import sdp.AI.tracking.WorldTracker;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Advances tracked world states into the future.
+ *
+ * The vision system lags behind the field, so the AI uses a predictor to
+ * estimate where everything is by the time it acts. Predictors may keep
+ * state between calls, so each AI should have its own instance.
+ */
+public interface MotionPredictor {
+
+	/**
+	 * Predict the state of the field some time after the last observation.
+	 *
+	 * @param tracker Tracker that has processed the observations so far. It
+	 * 		must have processed at least one.
+	 * @param frameTime Time between consecutive observations, in seconds.
+	 * @param time Time past the last observation to predict, in seconds.
+	 * @param ownCommand The command our robot is executing or null, if it
+	 * 		is unknown.
+	 * @param isOwnTeamBlue Whether our robot is blue.
+	 * @return Predicted world state in centimetres.
+	 */
+	public WorldState predict(WorldTracker tracker, double frameTime, double time,
+			Command ownCommand, boolean isOwnTeamBlue);
+
+}
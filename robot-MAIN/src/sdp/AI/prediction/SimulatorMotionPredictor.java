@@ -0,0 +1,93 @@
+package sdp.AI.prediction;
+
+import java.awt.geom.Point2D;
+
+import sdp.AI.Command;
+import sdp.AI.tracking.BallTracker;
+import sdp.AI.tracking.RobotTracker;
+import sdp.AI.tracking.WorldTracker;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+import sdp.simulator.Simulator;
+
+
+/**
+ * Predicts motion by replaying the observations in a physics simulator and
+ * stepping it forward.
+ *
+ * The simulator keeps the speeds of its virtual bricks between predictions,
+ * so an instance should follow a single game.
+ */
+public class SimulatorMotionPredictor implements MotionPredictor {
+
+	/** Simulator that performs the rollouts. */
+	private Simulator simulator;
+
+
+	/**
+	 * Create a new simulator predictor.
+	 *
+	 * @param simulator Simulator to perform the rollouts in. It should not be
+	 * 		used for anything else.
+	 */
+	public SimulatorMotionPredictor(Simulator simulator) {
+		this.simulator = simulator;
+	}
+
+
+	/**
+	 * Predict the state of the field by stepping the simulator at the
+	 * observation frame rate until the requested time has passed. The
+	 * simulator picks up the tracked velocities from the current estimate
+	 * and the estimate extrapolated one frame back.
+	 *
+	 * @see sdp.AI.prediction.MotionPredictor#predict(sdp.AI.tracking.WorldTracker, double, double, sdp.AI.Command, boolean)
+	 */
+	@Override
+	public WorldState predict(WorldTracker tracker, double frameTime, double time,
+			Command ownCommand, boolean isOwnTeamBlue) {
+		WorldState last = tracker.getObservation();
+
+		Point2D.Double ball = last.getBallCoords();
+		Point2D.Double oldBall = ball;
+		BallTracker ballTracker = tracker.getBallTracker();
+		if (ballTracker.isTracking()) {
+			ball = new Point2D.Double(ballTracker.getX(), ballTracker.getY());
+			oldBall = new Point2D.Double(ballTracker.getX() - ballTracker.getVelocityX() * frameTime,
+					ballTracker.getY() - ballTracker.getVelocityY() * frameTime);
+		}
+
+		WorldState[] states = {
+				new WorldState(oldBall, getRobot(tracker.getBlueRobotTracker(), last.getBlueRobot(), -frameTime),
+						getRobot(tracker.getYellowRobotTracker(), last.getYellowRobot(), -frameTime),
+						(WorldImageSource) null),
+				new WorldState(ball, getRobot(tracker.getBlueRobotTracker(), last.getBlueRobot(), 0),
+						getRobot(tracker.getYellowRobotTracker(), last.getYellowRobot(), 0),
+						last.getWorldImageSource())
+		};
+
+		return Simulator.simulateWs(simulator, Math.round(time * 1000),
+				(int) Math.round(1 / frameTime), states, true, ownCommand, isOwnTeamBlue);
+	}
+
+
+	/**
+	 * Get a robot from its tracked estimate, moved along its tracked speeds.
+	 *
+	 * @param robotTracker Tracker of the robot.
+	 * @param robot Last observation of the robot, returned if it is not
+	 * 		tracked.
+	 * @param time Time to move the estimate by, in seconds.
+	 * @return The robot.
+	 */
+	private static Robot getRobot(RobotTracker robotTracker, Robot robot, double time) {
+		if (!robotTracker.isTracking()) {
+			return robot;
+		}
+		return new Robot(new Point2D.Double(robotTracker.getX() + robotTracker.getVelocityX() * time,
+				robotTracker.getY() + robotTracker.getVelocityY() * time),
+				robotTracker.getAngle() + robotTracker.getTurningSpeed() * time, true);
+	}
+
+}
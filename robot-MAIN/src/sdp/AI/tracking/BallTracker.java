@@ -0,0 +1,167 @@
+package sdp.AI.tracking;
+
+import java.awt.geom.Point2D;
+
+import sdp.common.geometry.GeomUtils;
+
+
+/**
+ * Tracks the ball with a Kalman filter.
+ *
+ * The state consists of the ball's position and velocity in centimetres.
+ * Between frames, the ball rolls in a straight line and slows down at the
+ * simulator's damping rate, while any other change of its velocity is
+ * treated as noise. When the ball is not detected, the estimate coasts
+ * along that path. A detection far from the estimate, such as after a kick,
+ * restarts the track at the detection.
+ */
+public class BallTracker extends KalmanTracker {
+
+	/** Index of the X coordinate in the state. */
+	public static final int X = 0;
+	/** Index of the Y coordinate in the state. */
+	public static final int Y = 1;
+	/** Index of the X component of the velocity in the state. */
+	public static final int VELOCITY_X = 2;
+	/** Index of the Y component of the velocity in the state. */
+	public static final int VELOCITY_Y = 3;
+
+	/** Number of components in the state. */
+	private static final int STATE_SIZE = 4;
+	/** Number of components in a measurement. */
+	private static final int MEASUREMENT_SIZE = 2;
+
+	/** Rate, at which the ball slows down, in 1/s. */
+	private static final double DAMPING = 0.3;
+	/** Spectral density of the unmodelled acceleration, in cm^2/s^3. */
+	private static final double ACCELERATION_NOISE = 30 * 30;
+	/** Standard deviation of a detection in centimetres. */
+	private static final double MEASUREMENT_DEVIATION = 1;
+	/** Standard deviation of the velocity when a track starts, in cm/s. */
+	private static final double INITIAL_VELOCITY_DEVIATION = 100;
+	/** Squared Mahalanobis distance, beyond which a detection restarts the track. */
+	private static final double GATE = 25;
+
+
+	/**
+	 * Create a new ball tracker.
+	 */
+	public BallTracker() {
+		super(STATE_SIZE, MEASUREMENT_SIZE, GATE);
+		measurementNoise[X] = MEASUREMENT_DEVIATION * MEASUREMENT_DEVIATION;
+		measurementNoise[Y] = MEASUREMENT_DEVIATION * MEASUREMENT_DEVIATION;
+	}
+
+
+	/**
+	 * Process a frame.
+	 *
+	 * @param ball Detected ball position in centimetres or a negative point,
+	 * 		if the ball was not detected.
+	 * @param dt Time since the previous frame, in seconds.
+	 */
+	public void update(Point2D.Double ball, double dt) {
+		boolean detected = !GeomUtils.isPointNegative(ball);
+		if (detected) {
+			measurement[X] = ball.x;
+			measurement[Y] = ball.y;
+		}
+		update(dt, detected);
+	}
+
+
+	/**
+	 * Get the estimated X coordinate of the ball.
+	 *
+	 * @return X coordinate in centimetres.
+	 */
+	public double getX() {
+		return state[X];
+	}
+
+	/**
+	 * Get the estimated Y coordinate of the ball.
+	 *
+	 * @return Y coordinate in centimetres.
+	 */
+	public double getY() {
+		return state[Y];
+	}
+
+	/**
+	 * Get the X component of the ball's estimated velocity.
+	 *
+	 * @return X velocity in cm/s.
+	 */
+	public double getVelocityX() {
+		return state[VELOCITY_X];
+	}
+
+	/**
+	 * Get the Y component of the ball's estimated velocity.
+	 *
+	 * @return Y velocity in cm/s.
+	 */
+	public double getVelocityY() {
+		return state[VELOCITY_Y];
+	}
+
+
+	/**
+	 * @see sdp.AI.tracking.KalmanTracker#initialise()
+	 */
+	@Override
+	protected void initialise() {
+		state[X] = measurement[X];
+		state[Y] = measurement[Y];
+		state[VELOCITY_X] = 0;
+		state[VELOCITY_Y] = 0;
+
+		double velocityVariance = INITIAL_VELOCITY_DEVIATION * INITIAL_VELOCITY_DEVIATION;
+		for (int i = 0; i < covariance.length; ++i) {
+			covariance[i] = 0;
+		}
+		covariance[X * STATE_SIZE + X] = measurementNoise[X];
+		covariance[Y * STATE_SIZE + Y] = measurementNoise[Y];
+		covariance[VELOCITY_X * STATE_SIZE + VELOCITY_X] = velocityVariance;
+		covariance[VELOCITY_Y * STATE_SIZE + VELOCITY_Y] = velocityVariance;
+	}
+
+	/**
+	 * @see sdp.AI.tracking.KalmanTracker#advance(double)
+	 */
+	@Override
+	protected void advance(double dt) {
+		double decay = Math.exp(-DAMPING * dt);
+		double travel = (1 - decay) / DAMPING;
+
+		state[X] += travel * state[VELOCITY_X];
+		state[Y] += travel * state[VELOCITY_Y];
+		state[VELOCITY_X] *= decay;
+		state[VELOCITY_Y] *= decay;
+
+		for (int i = 0; i < transition.length; ++i) {
+			transition[i] = 0;
+			processNoise[i] = 0;
+		}
+		transition[X * STATE_SIZE + X] = 1;
+		transition[Y * STATE_SIZE + Y] = 1;
+		transition[X * STATE_SIZE + VELOCITY_X] = travel;
+		transition[Y * STATE_SIZE + VELOCITY_Y] = travel;
+		transition[VELOCITY_X * STATE_SIZE + VELOCITY_X] = decay;
+		transition[VELOCITY_Y * STATE_SIZE + VELOCITY_Y] = decay;
+
+		double positionNoise = ACCELERATION_NOISE * dt * dt * dt / 3;
+		double crossNoise = ACCELERATION_NOISE * dt * dt / 2;
+		double velocityNoise = ACCELERATION_NOISE * dt;
+		processNoise[X * STATE_SIZE + X] = positionNoise;
+		processNoise[Y * STATE_SIZE + Y] = positionNoise;
+		processNoise[X * STATE_SIZE + VELOCITY_X] = crossNoise;
+		processNoise[VELOCITY_X * STATE_SIZE + X] = crossNoise;
+		processNoise[Y * STATE_SIZE + VELOCITY_Y] = crossNoise;
+		processNoise[VELOCITY_Y * STATE_SIZE + Y] = crossNoise;
+		processNoise[VELOCITY_X * STATE_SIZE + VELOCITY_X] = velocityNoise;
+		processNoise[VELOCITY_Y * STATE_SIZE + VELOCITY_Y] = velocityNoise;
+	}
+
+}
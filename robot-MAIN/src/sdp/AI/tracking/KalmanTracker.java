@@ -0,0 +1,364 @@
+package sdp.AI.tracking;
+
+
+/**
+ * Base of the object trackers, an extended Kalman filter.
+ *
+ * The state vector and its covariance are kept in primitive arrays, with
+ * matrices stored row by row. All intermediate results go into arrays that
+ * are allocated with the tracker, so a frame is processed in constant time
+ * without allocating.
+ *
+ * Measurements observe the first few components of the state directly.
+ * Subclasses describe how the state evolves over time and how a track is
+ * started. Measurements that the current estimate cannot explain restart
+ * the track instead of pulling the estimate towards them.
+ */
+public abstract class KalmanTracker {
+
+	/** Number of components in the state. */
+	private final int stateSize;
+	/** Number of components in a measurement. */
+	private final int measurementSize;
+	/**
+	 * Squared Mahalanobis distance of a measurement from the estimate,
+	 * beyond which the track is restarted.
+	 */
+	private final double gate;
+
+	/** The state estimate. */
+	protected final double[] state;
+	/** Covariance of the state estimate. */
+	protected final double[] covariance;
+
+	/** Jacobian of the state transition, filled in by {@link #advance(double)}. */
+	protected final double[] transition;
+	/** Covariance of the process noise, filled in by {@link #advance(double)}. */
+	protected final double[] processNoise;
+	/** Variance of each measured component. */
+	protected final double[] measurementNoise;
+
+	/** The last measurement, filled in by subclasses before correcting. */
+	protected final double[] measurement;
+	/** Difference between the measurement and the estimate. */
+	protected final double[] innovation;
+
+	/** Scratch matrix with the state size. */
+	private final double[] product;
+	/** Covariance of the innovation. */
+	private final double[] innovationCovariance;
+	/** Inverse of the innovation covariance. */
+	private final double[] innovationInverse;
+	/** Kalman gain. */
+	private final double[] gain;
+
+	/** Whether the tracker has been started. */
+	private boolean tracking = false;
+	/** Time since the last accepted measurement, in seconds. */
+	private double coastTime = 0;
+
+
+	/**
+	 * Create a new tracker.
+	 *
+	 * @param stateSize Number of components in the state.
+	 * @param measurementSize Number of components in a measurement.
+	 * @param gate Squared Mahalanobis distance of a measurement from the
+	 * 		estimate, beyond which the track is restarted.
+	 */
+	protected KalmanTracker(int stateSize, int measurementSize, double gate) {
+		this.stateSize = stateSize;
+		this.measurementSize = measurementSize;
+		this.gate = gate;
+
+		state = new double[stateSize];
+		covariance = new double[stateSize * stateSize];
+		transition = new double[stateSize * stateSize];
+		processNoise = new double[stateSize * stateSize];
+		measurementNoise = new double[measurementSize];
+		measurement = new double[measurementSize];
+		innovation = new double[measurementSize];
+
+		product = new double[stateSize * stateSize];
+		innovationCovariance = new double[measurementSize * measurementSize];
+		innovationInverse = new double[measurementSize * measurementSize];
+		gain = new double[stateSize * measurementSize];
+	}
+
+
+	/**
+	 * Get whether the tracker has seen its object yet.
+	 *
+	 * @return Whether the tracker is tracking.
+	 */
+	public boolean isTracking() {
+		return tracking;
+	}
+
+	/**
+	 * Get the time since the object was last seen. While it is positive,
+	 * the estimate is coasting along the predicted path.
+	 *
+	 * @return Time since the last accepted measurement, in seconds.
+	 */
+	public double getCoastTime() {
+		return coastTime;
+	}
+
+	/**
+	 * Get a component of the state estimate.
+	 *
+	 * @param index Index of the component.
+	 * @return Value of the component.
+	 */
+	public double getState(int index) {
+		return state[index];
+	}
+
+	/**
+	 * Get an entry of the state estimate's covariance.
+	 *
+	 * @param row Index of the first component.
+	 * @param column Index of the second component.
+	 * @return Covariance of the two components.
+	 */
+	public double getCovariance(int row, int column) {
+		return covariance[row * stateSize + column];
+	}
+
+
+	/**
+	 * Process a frame.
+	 *
+	 * If the object was detected, its measurement must be in
+	 * {@link #measurement}.
+	 *
+	 * @param dt Time since the previous frame, in seconds.
+	 * @param detected Whether the object was detected in the frame.
+	 */
+	protected final void update(double dt, boolean detected) {
+		if (!tracking) {
+			if (detected) {
+				restart();
+				tracking = true;
+			}
+			return;
+		}
+
+		predict(dt);
+		if (detected) {
+			correct();
+		}
+	}
+
+
+	/**
+	 * Advance the state estimate.
+	 *
+	 * @param dt Time to advance by, in seconds.
+	 */
+	private void predict(double dt) {
+		int n = stateSize;
+
+		advance(dt);
+
+		// covariance = transition * covariance * transition^T + processNoise
+		for (int i = 0; i < n; ++i) {
+			for (int j = 0; j < n; ++j) {
+				double sum = 0;
+				for (int k = 0; k < n; ++k) {
+					sum += transition[i * n + k] * covariance[k * n + j];
+				}
+				product[i * n + j] = sum;
+			}
+		}
+		for (int i = 0; i < n; ++i) {
+			for (int j = 0; j < n; ++j) {
+				double sum = processNoise[i * n + j];
+				for (int k = 0; k < n; ++k) {
+					sum += product[i * n + k] * transition[j * n + k];
+				}
+				covariance[i * n + j] = sum;
+			}
+		}
+
+		coastTime += dt;
+	}
+
+	/**
+	 * Correct the state estimate with the measurement.
+	 */
+	private void correct() {
+		int n = stateSize;
+		int m = measurementSize;
+
+		for (int i = 0; i < m; ++i) {
+			innovation[i] = measurement[i] - state[i];
+		}
+		normaliseInnovation();
+
+		for (int i = 0; i < m; ++i) {
+			for (int j = 0; j < m; ++j) {
+				innovationCovariance[i * m + j] = covariance[i * n + j];
+			}
+			innovationCovariance[i * m + i] += measurementNoise[i];
+		}
+		if (!invert(innovationCovariance, innovationInverse, m)) {
+			restart();
+			return;
+		}
+
+		double distance = 0;
+		for (int i = 0; i < m; ++i) {
+			for (int j = 0; j < m; ++j) {
+				distance += innovation[i] * innovationInverse[i * m + j] * innovation[j];
+			}
+		}
+		if (distance > gate) {
+			restart();
+			return;
+		}
+
+		// gain = covariance[:, 0:m] * innovationInverse
+		for (int i = 0; i < n; ++i) {
+			for (int j = 0; j < m; ++j) {
+				double sum = 0;
+				for (int k = 0; k < m; ++k) {
+					sum += covariance[i * n + k] * innovationInverse[k * m + j];
+				}
+				gain[i * m + j] = sum;
+			}
+		}
+
+		for (int i = 0; i < n; ++i) {
+			for (int j = 0; j < m; ++j) {
+				state[i] += gain[i * m + j] * innovation[j];
+			}
+		}
+		normaliseState();
+
+		// covariance -= gain * covariance[0:m, :]
+		for (int i = 0; i < n; ++i) {
+			for (int j = 0; j < n; ++j) {
+				double sum = 0;
+				for (int k = 0; k < m; ++k) {
+					sum += gain[i * m + k] * covariance[k * n + j];
+				}
+				product[i * n + j] = sum;
+			}
+		}
+		for (int i = 0; i < n; ++i) {
+			for (int j = i; j < n; ++j) {
+				double value = (covariance[i * n + j] - product[i * n + j]
+						+ covariance[j * n + i] - product[j * n + i]) / 2;
+				covariance[i * n + j] = value;
+				covariance[j * n + i] = value;
+			}
+		}
+
+		coastTime = 0;
+	}
+
+	/**
+	 * Start a new track at the measurement.
+	 */
+	private void restart() {
+		initialise();
+		coastTime = 0;
+	}
+
+
+	/**
+	 * Set the state and its covariance from the measurement alone.
+	 */
+	protected abstract void initialise();
+
+	/**
+	 * Advance the state by the given time and fill in the Jacobian of the
+	 * transition, evaluated at the state before advancing, and the process
+	 * noise covariance.
+	 *
+	 * @param dt Time to advance by, in seconds.
+	 */
+	protected abstract void advance(double dt);
+
+	/**
+	 * Bring the innovation into the range of its components, for instance
+	 * to wrap angles. Does nothing by default.
+	 */
+	protected void normaliseInnovation() { }
+
+	/**
+	 * Bring the state into the range of its components, for instance to
+	 * wrap angles. Does nothing by default.
+	 */
+	protected void normaliseState() { }
+
+
+	/**
+	 * Invert a small square matrix with Gauss-Jordan elimination.
+	 *
+	 * @param matrix Matrix to invert. It is destroyed.
+	 * @param inverse Array to store the inverse in.
+	 * @param size Number of rows of the matrix.
+	 * @return Whether the matrix was invertible.
+	 */
+	private static boolean invert(double[] matrix, double[] inverse, int size) {
+		for (int i = 0; i < size; ++i) {
+			for (int j = 0; j < size; ++j) {
+				inverse[i * size + j] = (i == j) ? 1 : 0;
+			}
+		}
+
+		for (int col = 0; col < size; ++col) {
+			int pivot = col;
+			for (int row = col + 1; row < size; ++row) {
+				if (Math.abs(matrix[row * size + col]) > Math.abs(matrix[pivot * size + col])) {
+					pivot = row;
+				}
+			}
+			if (matrix[pivot * size + col] == 0) {
+				return false;
+			}
+			if (pivot != col) {
+				swapRows(matrix, size, pivot, col);
+				swapRows(inverse, size, pivot, col);
+			}
+
+			double scale = 1 / matrix[col * size + col];
+			for (int j = 0; j < size; ++j) {
+				matrix[col * size + j] *= scale;
+				inverse[col * size + j] *= scale;
+			}
+
+			for (int row = 0; row < size; ++row) {
+				double factor = matrix[row * size + col];
+				if ((row == col) || (factor == 0)) {
+					continue;
+				}
+				for (int j = 0; j < size; ++j) {
+					matrix[row * size + j] -= factor * matrix[col * size + j];
+					inverse[row * size + j] -= factor * inverse[col * size + j];
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Swap two rows of a square matrix.
+	 *
+	 * @param matrix The matrix.
+	 * @param size Number of rows of the matrix.
+	 * @param a Index of the first row.
+	 * @param b Index of the second row.
+	 */
+	private static void swapRows(double[] matrix, int size, int a, int b) {
+		for (int j = 0; j < size; ++j) {
+			double temp = matrix[a * size + j];
+			matrix[a * size + j] = matrix[b * size + j];
+			matrix[b * size + j] = temp;
+		}
+	}
+
+}
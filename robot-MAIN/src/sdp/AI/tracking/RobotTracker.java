@@ -0,0 +1,234 @@
+package sdp.AI.tracking;
+
+import java.awt.geom.Point2D;
+
+import sdp.common.geometry.GeomUtils;
+import sdp.common.world.Robot;
+
+
+/**
+ * Tracks a robot with an extended Kalman filter.
+ *
+ * The state consists of the robot's position in centimetres, the angle it
+ * faces in degrees, and its driving and turning speeds. Between frames, the
+ * robot moves like a unicycle: it drives along its heading while turning,
+ * and any change of its speeds is treated as noise. When the robot is not
+ * detected, the estimate coasts along that path. A detection far from the
+ * estimate restarts the track at the detection.
+ */
+public class RobotTracker extends KalmanTracker {
+
+	/** Index of the X coordinate in the state. */
+	public static final int X = 0;
+	/** Index of the Y coordinate in the state. */
+	public static final int Y = 1;
+	/** Index of the angle in the state. */
+	public static final int ANGLE = 2;
+	/** Index of the driving speed in the state. */
+	public static final int DRIVING_SPEED = 3;
+	/** Index of the turning speed in the state. */
+	public static final int TURNING_SPEED = 4;
+
+	/** Number of components in the state. */
+	private static final int STATE_SIZE = 5;
+	/** Number of components in a measurement. */
+	private static final int MEASUREMENT_SIZE = 3;
+
+	/** Spectral density of the unmodelled position change, in cm^2/s. */
+	private static final double POSITION_NOISE = 1;
+	/** Spectral density of the unmodelled angle change, in degrees^2/s. */
+	private static final double ANGLE_NOISE = 10;
+	/** Spectral density of the unmodelled driving acceleration, in cm^2/s^3. */
+	private static final double DRIVING_NOISE = 70 * 70;
+	/** Spectral density of the unmodelled turning acceleration, in degrees^2/s^3. */
+	private static final double TURNING_NOISE = 560 * 560;
+
+	/** Standard deviation of a detected position in centimetres. */
+	private static final double POSITION_DEVIATION = 1;
+	/** Standard deviation of a detected angle in degrees. */
+	private static final double ANGLE_DEVIATION = 3;
+	/** Standard deviation of the driving speed when a track starts, in cm/s. */
+	private static final double INITIAL_DRIVING_DEVIATION = 30;
+	/** Standard deviation of the turning speed when a track starts, in degrees/s. */
+	private static final double INITIAL_TURNING_DEVIATION = 90;
+	/** Squared Mahalanobis distance, beyond which a detection restarts the track. */
+	private static final double GATE = 36;
+
+
+	/**
+	 * Create a new robot tracker.
+	 */
+	public RobotTracker() {
+		super(STATE_SIZE, MEASUREMENT_SIZE, GATE);
+		measurementNoise[X] = POSITION_DEVIATION * POSITION_DEVIATION;
+		measurementNoise[Y] = POSITION_DEVIATION * POSITION_DEVIATION;
+		measurementNoise[ANGLE] = ANGLE_DEVIATION * ANGLE_DEVIATION;
+	}
+
+
+	/**
+	 * Process a frame.
+	 *
+	 * @param robot Detected robot in centimetres or a robot at a negative
+	 * 		point, if it was not detected.
+	 * @param dt Time since the previous frame, in seconds.
+	 */
+	public void update(Robot robot, double dt) {
+		boolean detected = !GeomUtils.isPointNegative(robot.getCoords());
+		if (detected) {
+			measurement[X] = robot.getCoords().x;
+			measurement[Y] = robot.getCoords().y;
+			measurement[ANGLE] = robot.getAngle();
+		}
+		update(dt, detected);
+	}
+
+
+	/**
+	 * Get the estimated X coordinate of the robot.
+	 *
+	 * @return X coordinate in centimetres.
+	 */
+	public double getX() {
+		return state[X];
+	}
+
+	/**
+	 * Get the estimated Y coordinate of the robot.
+	 *
+	 * @return Y coordinate in centimetres.
+	 */
+	public double getY() {
+		return state[Y];
+	}
+
+	/**
+	 * Get the estimated angle the robot is facing.
+	 *
+	 * @return Angle in degrees.
+	 */
+	public double getAngle() {
+		return state[ANGLE];
+	}
+
+	/**
+	 * Get the robot's estimated driving speed, along the direction it faces.
+	 *
+	 * @return Driving speed in cm/s.
+	 */
+	public double getDrivingSpeed() {
+		return state[DRIVING_SPEED];
+	}
+
+	/**
+	 * Get the robot's estimated turning speed.
+	 *
+	 * @return Turning speed in degrees/s.
+	 */
+	public double getTurningSpeed() {
+		return state[TURNING_SPEED];
+	}
+
+	/**
+	 * Get the X component of the robot's estimated velocity.
+	 *
+	 * @return X velocity in cm/s.
+	 */
+	public double getVelocityX() {
+		return state[DRIVING_SPEED] * Math.cos(Math.toRadians(state[ANGLE]));
+	}
+
+	/**
+	 * Get the Y component of the robot's estimated velocity.
+	 *
+	 * @return Y velocity in cm/s.
+	 */
+	public double getVelocityY() {
+		return -state[DRIVING_SPEED] * Math.sin(Math.toRadians(state[ANGLE]));
+	}
+
+
+	/**
+	 * Create a robot at the estimated position.
+	 *
+	 * @return A new robot in centimetres.
+	 */
+	public Robot createRobot() {
+		return new Robot(new Point2D.Double(state[X], state[Y]), state[ANGLE], true);
+	}
+
+
+	/**
+	 * @see sdp.AI.tracking.KalmanTracker#initialise()
+	 */
+	@Override
+	protected void initialise() {
+		state[X] = measurement[X];
+		state[Y] = measurement[Y];
+		state[ANGLE] = GeomUtils.normaliseAngle(measurement[ANGLE]);
+		state[DRIVING_SPEED] = 0;
+		state[TURNING_SPEED] = 0;
+
+		for (int i = 0; i < covariance.length; ++i) {
+			covariance[i] = 0;
+		}
+		covariance[X * STATE_SIZE + X] = measurementNoise[X];
+		covariance[Y * STATE_SIZE + Y] = measurementNoise[Y];
+		covariance[ANGLE * STATE_SIZE + ANGLE] = measurementNoise[ANGLE];
+		covariance[DRIVING_SPEED * STATE_SIZE + DRIVING_SPEED] =
+				INITIAL_DRIVING_DEVIATION * INITIAL_DRIVING_DEVIATION;
+		covariance[TURNING_SPEED * STATE_SIZE + TURNING_SPEED] =
+				INITIAL_TURNING_DEVIATION * INITIAL_TURNING_DEVIATION;
+	}
+
+	/**
+	 * @see sdp.AI.tracking.KalmanTracker#advance(double)
+	 */
+	@Override
+	protected void advance(double dt) {
+		double angle = Math.toRadians(state[ANGLE]);
+		double cos = Math.cos(angle);
+		double sin = Math.sin(angle);
+		double speed = state[DRIVING_SPEED];
+
+		for (int i = 0; i < transition.length; ++i) {
+			transition[i] = 0;
+			processNoise[i] = 0;
+		}
+		for (int i = 0; i < STATE_SIZE; ++i) {
+			transition[i * STATE_SIZE + i] = 1;
+		}
+		transition[X * STATE_SIZE + ANGLE] = -speed * sin * dt * Math.PI / 180;
+		transition[X * STATE_SIZE + DRIVING_SPEED] = cos * dt;
+		transition[Y * STATE_SIZE + ANGLE] = -speed * cos * dt * Math.PI / 180;
+		transition[Y * STATE_SIZE + DRIVING_SPEED] = -sin * dt;
+		transition[ANGLE * STATE_SIZE + TURNING_SPEED] = dt;
+
+		processNoise[X * STATE_SIZE + X] = POSITION_NOISE * dt;
+		processNoise[Y * STATE_SIZE + Y] = POSITION_NOISE * dt;
+		processNoise[ANGLE * STATE_SIZE + ANGLE] = ANGLE_NOISE * dt;
+		processNoise[DRIVING_SPEED * STATE_SIZE + DRIVING_SPEED] = DRIVING_NOISE * dt;
+		processNoise[TURNING_SPEED * STATE_SIZE + TURNING_SPEED] = TURNING_NOISE * dt;
+
+		state[X] += speed * cos * dt;
+		state[Y] -= speed * sin * dt;
+		state[ANGLE] = GeomUtils.normaliseAngle(state[ANGLE] + state[TURNING_SPEED] * dt);
+	}
+
+	/**
+	 * @see sdp.AI.tracking.KalmanTracker#normaliseInnovation()
+	 */
+	@Override
+	protected void normaliseInnovation() {
+		innovation[ANGLE] = GeomUtils.normaliseAngle(innovation[ANGLE]);
+	}
+
+	/**
+	 * @see sdp.AI.tracking.KalmanTracker#normaliseState()
+	 */
+	@Override
+	protected void normaliseState() {
+		state[ANGLE] = GeomUtils.normaliseAngle(state[ANGLE]);
+	}
+
+}
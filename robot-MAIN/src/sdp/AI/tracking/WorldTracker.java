@@ -0,0 +1,105 @@
+package sdp.AI.tracking;
+
+import java.awt.geom.Point2D;
+
+import sdp.common.world.Robot;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Tracks every object on the field.
+ *
+ * Each frame, the observed world state is fed to a tracker for the ball and
+ * one for each robot. Objects that are missing from the observation keep
+ * coasting along their estimated paths.
+ */
+public class WorldTracker {
+
+	/** Tracker of the ball. */
+	private final BallTracker ballTracker = new BallTracker();
+	/** Tracker of the blue robot. */
+	private final RobotTracker blueRobotTracker = new RobotTracker();
+	/** Tracker of the yellow robot. */
+	private final RobotTracker yellowRobotTracker = new RobotTracker();
+
+	/** The last observed world state. */
+	private WorldState observation = null;
+
+
+	/**
+	 * Process a frame.
+	 *
+	 * @param observation Observed world state in centimetres.
+	 * @param dt Time since the previous frame, in seconds.
+	 */
+	public void update(WorldState observation, double dt) {
+		this.observation = observation;
+		ballTracker.update(observation.getBallCoords(), dt);
+		blueRobotTracker.update(observation.getBlueRobot(), dt);
+		yellowRobotTracker.update(observation.getYellowRobot(), dt);
+	}
+
+
+	/**
+	 * Get the last observed world state.
+	 *
+	 * @return Last observation or null, if there has not been any.
+	 */
+	public WorldState getObservation() {
+		return observation;
+	}
+
+	/**
+	 * Get the tracker of the ball.
+	 *
+	 * @return Ball tracker.
+	 */
+	public BallTracker getBallTracker() {
+		return ballTracker;
+	}
+
+	/**
+	 * Get the tracker of the blue robot.
+	 *
+	 * @return Blue robot tracker.
+	 */
+	public RobotTracker getBlueRobotTracker() {
+		return blueRobotTracker;
+	}
+
+	/**
+	 * Get the tracker of the yellow robot.
+	 *
+	 * @return Yellow robot tracker.
+	 */
+	public RobotTracker getYellowRobotTracker() {
+		return yellowRobotTracker;
+	}
+
+
+	/**
+	 * Create a world state from the current estimates. Objects that have
+	 * never been seen are taken from the last observation.
+	 *
+	 * @return Filtered world state in centimetres.
+	 */
+	public WorldState getFilteredState() {
+		Point2D.Double ball = observation.getBallCoords();
+		if (ballTracker.isTracking()) {
+			ball = new Point2D.Double(ballTracker.getX(), ballTracker.getY());
+		}
+
+		Robot blueRobot = observation.getBlueRobot();
+		if (blueRobotTracker.isTracking()) {
+			blueRobot = blueRobotTracker.createRobot();
+		}
+
+		Robot yellowRobot = observation.getYellowRobot();
+		if (yellowRobotTracker.isTracking()) {
+			yellowRobot = yellowRobotTracker.createRobot();
+		}
+
+		return new WorldState(ball, blueRobot, yellowRobot, observation.getWorldImageSource());
+	}
+
+}
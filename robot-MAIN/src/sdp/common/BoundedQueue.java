@@ -0,0 +1,213 @@
+package sdp.common;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * A lock-free FIFO queue with a fixed capacity.
+ *
+ * Producers never block. When the queue is full, an element is dropped
+ * according to the queue's overflow policy, and handed back to the producer,
+ * so that any resources it holds can be released. A single consumer thread
+ * can wait for new elements with {@link #take(long)}.
+ */
+public class BoundedQueue<E> {
+
+	/**
+	 * What to do when an element is offered to a full queue.
+	 */
+	public enum OverflowPolicy {
+		/** Drop the oldest element in the queue. */
+		DROP_OLDEST,
+		/** Drop the offered element. */
+		DROP_NEWEST
+	}
+
+
+	/** Elements of the queue. */
+	private ConcurrentLinkedQueue<E> elements;
+	/** Number of elements in the queue. */
+	private AtomicInteger size;
+	/** Maximum number of elements in the queue. */
+	private int capacity;
+	/** The queue's overflow policy. */
+	private OverflowPolicy policy;
+
+	/** The thread that is waiting for an element, if any. */
+	private volatile Thread waiter = null;
+
+	/** How many elements have been offered to the queue. */
+	private AtomicLong offerCount;
+	/** How many elements have been dropped. */
+	private AtomicLong dropCount;
+
+
+	/**
+	 * Create a new bounded queue.
+	 *
+	 * @param capacity Maximum number of elements in the queue.
+	 * @param policy What to do when the queue is full.
+	 */
+	public BoundedQueue(int capacity, OverflowPolicy policy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be positive.");
+		}
+		if (policy == null) {
+			throw new NullPointerException("Queue overflow policy must not be null.");
+		}
+
+		this.capacity = capacity;
+		this.policy = policy;
+
+		elements = new ConcurrentLinkedQueue<E>();
+		size = new AtomicInteger(0);
+		offerCount = new AtomicLong(0);
+		dropCount = new AtomicLong(0);
+	}
+
+
+	/**
+	 * Add an element to the end of the queue.
+	 *
+	 * @param element Element to add.
+	 * @return The element that was dropped to make space for the new one, or
+	 * 		the new element itself, if it was dropped. Null if no element was
+	 * 		dropped.
+	 */
+	public E offer(E element) {
+		if (element == null) {
+			throw new NullPointerException("Cannot add null elements to the queue.");
+		}
+		offerCount.incrementAndGet();
+
+		E dropped = null;
+		if (policy == OverflowPolicy.DROP_NEWEST) {
+			if (size.incrementAndGet() > capacity) {
+				size.decrementAndGet();
+				dropped = element;
+			} else {
+				elements.offer(element);
+			}
+		} else {
+			elements.offer(element);
+			if (size.incrementAndGet() > capacity) {
+				dropped = poll();
+			}
+		}
+
+		if (dropped != null) {
+			dropCount.incrementAndGet();
+		}
+
+		Thread waitingThread = waiter;
+		if (waitingThread != null) {
+			LockSupport.unpark(waitingThread);
+		}
+
+		return dropped;
+	}
+
+	/**
+	 * Remove an element from the front of the queue.
+	 *
+	 * @return The removed element or null, if the queue was empty.
+	 */
+	public E poll() {
+		E element = elements.poll();
+		if (element != null) {
+			size.decrementAndGet();
+		}
+		return element;
+	}
+
+	/**
+	 * Remove an element from the front of the queue, waiting for one to
+	 * arrive if the queue is empty. Only one thread may wait on a queue at
+	 * a time.
+	 *
+	 * @param timeout How long to wait, in milliseconds.
+	 * @return The removed element or null, if none arrived in time.
+	 * @throws InterruptedException If the thread was interrupted while waiting.
+	 */
+	public E take(long timeout) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+		while (true) {
+			E element = poll();
+			if (element != null) {
+				return element;
+			}
+
+			waiter = Thread.currentThread();
+			try {
+				element = poll();
+				if (element != null) {
+					return element;
+				}
+
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return null;
+				}
+				LockSupport.parkNanos(this, remaining);
+			} finally {
+				waiter = null;
+			}
+
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+
+	/**
+	 * Get the number of elements in the queue.
+	 *
+	 * @return Number of elements in the queue.
+	 */
+	public int size() {
+		return Math.max(0, Math.min(capacity, size.get()));
+	}
+
+	/**
+	 * Get the maximum number of elements in the queue.
+	 *
+	 * @return Capacity of the queue.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the queue's overflow policy.
+	 *
+	 * @return The queue's overflow policy.
+	 */
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Get how many elements have been offered to the queue.
+	 *
+	 * @return Number of offered elements.
+	 */
+	public long getOfferCount() {
+		return offerCount.get();
+	}
+
+	/**
+	 * Get how many elements have been dropped due to overflow.
+	 *
+	 * @return Number of dropped elements.
+	 */
+	public long getDropCount() {
+		return dropCount.get();
+	}
+
+}
@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import sdp.AI.AIWorldState;
-import sdp.common.geometry.GeomUtils;
+import sdp.common.geometry.GeomKernel;
 import sdp.common.geometry.Vector2D;
 import sdp.common.world.Goal;
 import sdp.common.world.Robot;
@@ -34,49 +34,50 @@ public class DeprecatedCode {
 	public static Vector2D raytraceVector(WorldState ws, Vector2D origin, Vector2D direction, Boolean ignore_blue, boolean include_ball_as_obstacle) {
 		if (origin.getX() <= 0 || origin.getY() <= 0 || origin.getX() >= WorldState.PITCH_WIDTH_CM || origin.getY() >= WorldState.PITCH_HEIGHT_CM)
 			return Vector2D.ZERO();
-		Vector2D near;
-		Vector2D temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(0, 0), new Vector2D(WorldState.PITCH_WIDTH_CM, 0));
-		near = temp;
-		temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(WorldState.PITCH_WIDTH_CM, 0), new Vector2D(WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM));
-		if (temp != null && (near == null || temp.getLength() < near.getLength()))
-			near = temp;
-		temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM), new Vector2D(0, WorldState.PITCH_HEIGHT_CM));
-		if (temp != null && (near == null || temp.getLength() < near.getLength()))
-			near = temp;
-		temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(0, WorldState.PITCH_HEIGHT_CM), new Vector2D(0, 0));
-		if (temp != null && (near == null || temp.getLength() < near.getLength()))
-			near = temp;
+		double rotation[] = new double[2];
+		GeomKernel.setLocalRotation(direction.x, direction.y, rotation);
+		double near = GeomKernel.NO_INTERSECTION;
+		near = closerIntersection(near, origin, rotation, 0, 0, WorldState.PITCH_WIDTH_CM, 0);
+		near = closerIntersection(near, origin, rotation, WorldState.PITCH_WIDTH_CM, 0, WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM);
+		near = closerIntersection(near, origin, rotation, WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM, 0, WorldState.PITCH_HEIGHT_CM);
+		near = closerIntersection(near, origin, rotation, 0, WorldState.PITCH_HEIGHT_CM, 0, 0);
 		// collision with a Robot
 		for (int i = 0; i <= 1; i++) {
 			if (ignore_blue != null && ((ignore_blue ? 0 : 1) == i))
 				continue;
 			Robot robot = i == 0 ? ws.getBlueRobot() : ws.getYellowRobot();
-			temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(robot.getFrontLeft()), new Vector2D(robot.getFrontRight()));
-			if (temp != null && (near == null || temp.getLength() < near.getLength()))
-				near = temp;
-			temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(robot.getFrontRight()), new Vector2D(robot.getBackRight()));
-			if (temp != null && (near == null || temp.getLength() < near.getLength()))
-				near = temp;
-			temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(robot.getBackRight()), new Vector2D(robot.getBackLeft()));
-			if (temp != null && (near == null || temp.getLength() < near.getLength()))
-				near = temp;
-			temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(robot.getBackLeft()), new Vector2D(robot.getFrontLeft()));
-			if (temp != null && (near == null || temp.getLength() < near.getLength()))
-				near = temp;
+			for (int c = 0; c < Robot.CORNER_COUNT; c++) {
+				int next = (c + 1) % Robot.CORNER_COUNT;
+				near = closerIntersection(near, origin, rotation, robot.getCornerX(c), robot.getCornerY(c), robot.getCornerX(next), robot.getCornerY(next));
+			}
 		}
 		// collision with ball
 		if (include_ball_as_obstacle) {
-			Vector2D ball = new Vector2D(ws.getBallCoords());
-			temp = GeomUtils.getLocalRaySegmentIntersection(origin, direction, new Vector2D(ball.getX(), ball.getY()-DeprecatedCode.SIZE_OF_BALL_OBSTACLE/2), new Vector2D(ball.getX(), ball.getY()+DeprecatedCode.SIZE_OF_BALL_OBSTACLE/2));
-			if (temp != null && (near == null || temp.getLength() < near.getLength()))
-				near = temp;
+			Point2D.Double ball = ws.getBallCoords();
+			near = closerIntersection(near, origin, rotation, ball.x, ball.y-DeprecatedCode.SIZE_OF_BALL_OBSTACLE/2, ball.x, ball.y+DeprecatedCode.SIZE_OF_BALL_OBSTACLE/2);
 		}
-		if (near != null) 
-			return near;
+		if (near != GeomKernel.NO_INTERSECTION) 
+			return Vector2D.changeLength(direction, near);
 		return
 				Vector2D.changeLength(direction, WorldState.PITCH_WIDTH_CM);
 	}
 
+	/**
+	 * Intersect a ray with a segment and keep the closer of the intersection
+	 * and the closest one found so far.
+	 * 
+	 * @param near distance to the closest intersection so far, or {@link GeomKernel#NO_INTERSECTION}
+	 * @param origin the start of the ray
+	 * @param rotation rotation into the ray's local system, see {@link GeomKernel#setLocalRotation}
+	 * @return distance to the closer intersection
+	 */
+	private static double closerIntersection(double near, Vector2D origin, double[] rotation, double x1, double y1, double x2, double y2) {
+		double dist = GeomKernel.getRaySegmentIntersectionDist(origin.x, origin.y, rotation, x1, y1, x2, y2);
+		if (dist != GeomKernel.NO_INTERSECTION && (near == GeomKernel.NO_INTERSECTION || dist < near))
+			return dist;
+		return near;
+	}
+
 	/**
 	 * TODO: Replace with getClosestCollisionVec.
 	 * 
@@ -105,8 +106,11 @@ public class DeprecatedCode {
 	 */
 	@Deprecated
 	public static Vector2D raytraceVector(WorldState ws, Robot robot, Vector2D local_origin, Vector2D local_direction,  Boolean am_i_blue, boolean include_ball_as_obstacle) {
-		Vector2D origin = Robot.getGlobalVector(robot, local_origin);
-		Vector2D direction = Vector2D.subtract(origin, Robot.getGlobalVector(robot, local_direction));
+		double global[] = new double[4];
+		robot.getGlobalPoint(local_origin.x, local_origin.y, global, 0);
+		robot.getGlobalPoint(local_direction.x, local_direction.y, global, 2);
+		Vector2D origin = new Vector2D(global[0], global[1]);
+		Vector2D direction = new Vector2D(global[0] - global[2], global[1] - global[3]);
 		return raytraceVector(ws, origin, direction, am_i_blue, include_ball_as_obstacle);
 	}
 	
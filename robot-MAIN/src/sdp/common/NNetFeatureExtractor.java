@@ -0,0 +1,301 @@
+package sdp.common;
+
+import java.awt.geom.Point2D;
+
+import sdp.common.geometry.GeomKernel;
+import sdp.common.geometry.GeomUtils;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Computes the inputs of the neural network AI without allocating.
+ *
+ * The inputs are the same as the ones of
+ * {@link NNetTools#generateAIinput(WorldState, boolean, boolean)}, down to
+ * the last bit: the distances to the nearest obstacle in each sector around
+ * the robot, the sector of the ball, the sector of the enemy goal and the
+ * ball's reachability. The scan directions of the sectors do not depend on
+ * the world state, so they are computed once. The walls and the enemy robot's
+ * sides are stored in a flat segment array once per call, and every ray is
+ * intersected with it in the order in which the original code tested the
+ * obstacles, so that ties and degenerate cases come out the same.
+ *
+ * An extractor keeps scratch arrays, so it must not be shared between
+ * threads.
+ */
+public final class NNetFeatureExtractor {
+
+	/** Number of sectors around the robot. */
+	public static final int SECTOR_COUNT = 22;
+	/** Number of parts each sector is divided into when it is scanned. */
+	public static final int SCAN_COUNT = 5;
+	/** Number of inputs the extractor computes. */
+	public static final int INPUT_COUNT = 3 * SECTOR_COUNT + 1;
+
+	/** Offset of the obstacle distances in the input array. */
+	private static final int OBSTACLE_OFFSET = 0;
+	/** Offset of the ball's sectors in the input array. */
+	private static final int BALL_OFFSET = SECTOR_COUNT;
+	/** Offset of the enemy goal's sectors in the input array. */
+	private static final int GOAL_OFFSET = 2 * SECTOR_COUNT;
+	/** Index of the ball's reachability in the input array. */
+	private static final int REACH_INDEX = 3 * SECTOR_COUNT;
+
+	/** Number of wall segments. */
+	private static final int WALL_COUNT = 4;
+	/** Number of values that describe a segment. */
+	private static final int SEGMENT_SIZE = 4;
+	/** Number of segments a ray is intersected with. */
+	private static final int SEGMENT_COUNT = WALL_COUNT + Robot.CORNER_COUNT;
+	/** The walls, in the order in which the original ray tracer tests them. */
+	private static final double[] WALL_SEGMENTS = {
+		0, 0, WorldState.PITCH_WIDTH_CM, 0,
+		WorldState.PITCH_WIDTH_CM, 0, WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM,
+		WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM, 0, WorldState.PITCH_HEIGHT_CM,
+		0, WorldState.PITCH_HEIGHT_CM, 0, 0
+	};
+
+	/** Local directions of the scans of all sectors, as X and Y pairs. */
+	private static final double[] SCAN_DIRECTIONS;
+	/**
+	 * Index of each sector's first scan in {@link #SCAN_DIRECTIONS}. The
+	 * number of scans in a sector depends on the rounding of the scan angles,
+	 * so the last entry marks the end of the last sector.
+	 */
+	private static final int[] SECTOR_SCANS = new int[SECTOR_COUNT + 1];
+	/** Smaller boundary angle of each sector, used to locate targets. */
+	private static final double[] SECTOR_STARTS = new double[SECTOR_COUNT];
+	/** Larger boundary angle of each sector, used to locate targets. */
+	private static final double[] SECTOR_ENDS = new double[SECTOR_COUNT];
+	/** Length of the vector that stands for a target outside of a sector. */
+	private static final double OUTSIDE_TARGET_LENGTH = GeomKernel.getLength(
+			5 * WorldState.PITCH_WIDTH_CM, 0);
+
+	static {
+		double[] directions = new double[2 * SECTOR_COUNT * (SCAN_COUNT + 2)];
+		int scan = 0;
+		double secAngle = 360d / SECTOR_COUNT;
+		for (int i = 0; i < SECTOR_COUNT; ++i) {
+			double start = GeomUtils.normaliseAngle(-90 + i * secAngle);
+			double end = GeomUtils.normaliseAngle(-90 + (i + 1) * secAngle);
+
+			// Mirrors the loop in Utilities.getSector.
+			SECTOR_SCANS[i] = scan;
+			double startAngle = GeomUtils.normaliseAngle(start);
+			double endAngle = GeomUtils.normaliseAngle(end);
+			double sectorAngle = GeomUtils.normaliseAngle(endAngle - startAngle);
+			double scanAngle = sectorAngle / SCAN_COUNT;
+			for (double angle = startAngle; GeomUtils.normaliseAngle(endAngle - angle)
+					* sectorAngle >= 0; angle += scanAngle) {
+				double angRad = angle * Math.PI / 180d;
+				directions[2 * scan] = -Math.cos(angRad);
+				directions[2 * scan + 1] = Math.sin(angRad);
+				++scan;
+			}
+
+			// Mirrors NNetTools.targetInSector.
+			if (GeomUtils.normaliseAngle(end - start) < 0) {
+				SECTOR_STARTS[i] = end;
+				SECTOR_ENDS[i] = start;
+			} else {
+				SECTOR_STARTS[i] = start;
+				SECTOR_ENDS[i] = end;
+			}
+		}
+		SECTOR_SCANS[SECTOR_COUNT] = scan;
+
+		SCAN_DIRECTIONS = new double[2 * scan];
+		System.arraycopy(directions, 0, SCAN_DIRECTIONS, 0, 2 * scan);
+	}
+
+
+	/** The walls and the enemy robot's sides, as X1, Y1, X2 and Y2 values. */
+	private final double[] segments = new double[SEGMENT_COUNT * SEGMENT_SIZE];
+	/** Rotation into the local system of the current ray. */
+	private final double[] rotation = new double[2];
+	/** Scratch array for transformed points. */
+	private final double[] point = new double[2];
+
+
+	/**
+	 * Create a new feature extractor.
+	 */
+	public NNetFeatureExtractor() {
+		System.arraycopy(WALL_SEGMENTS, 0, segments, 0, WALL_SEGMENTS.length);
+	}
+
+
+	/**
+	 * Compute the inputs of the neural network AI.
+	 *
+	 * @param worldState World state in centimetres.
+	 * @param am_i_blue Whether our robot is blue.
+	 * @param my_goal_left Whether our goal is the left one.
+	 * @param out Array of at least {@link #INPUT_COUNT} elements, where the
+	 * 		inputs are stored.
+	 */
+	public void extract(WorldState worldState, boolean am_i_blue, boolean my_goal_left,
+			double[] out) {
+		Robot me = am_i_blue ? worldState.getBlueRobot() : worldState.getYellowRobot();
+		Robot enemy = am_i_blue ? worldState.getYellowRobot() : worldState.getBlueRobot();
+		for (int c = 0; c < Robot.CORNER_COUNT; ++c) {
+			int next = (c + 1) % Robot.CORNER_COUNT;
+			int offset = (WALL_COUNT + c) * SEGMENT_SIZE;
+			segments[offset] = enemy.getCornerX(c);
+			segments[offset + 1] = enemy.getCornerY(c);
+			segments[offset + 2] = enemy.getCornerX(next);
+			segments[offset + 3] = enemy.getCornerY(next);
+		}
+
+		extractObstacleSectors(me, out);
+
+		Point2D.Double ball = worldState.getBallCoords();
+		Point2D.Double goal = my_goal_left ? worldState.getRightGoal().getCentre()
+				: worldState.getLeftGoal().getCentre();
+		extractTargetSectors(me, ball, out, BALL_OFFSET);
+		extractTargetSectors(me, goal, out, GOAL_OFFSET);
+
+		out[REACH_INDEX] = isReachable(me.getCoords(), ball) ? 1 : -1;
+	}
+
+
+	/**
+	 * Compute the normalised distance to the nearest obstacle in each sector
+	 * around the robot.
+	 *
+	 * @param me Our robot.
+	 * @param out Array where the distances are stored.
+	 */
+	private void extractObstacleSectors(Robot me, double[] out) {
+		me.getGlobalPoint(0.0, 0.0, point, 0);
+		double originX = point[0];
+		double originY = point[1];
+
+		for (int i = 0; i < SECTOR_COUNT; ++i) {
+			double minDist = 0.0;
+			for (int scan = SECTOR_SCANS[i]; scan < SECTOR_SCANS[i + 1]; ++scan) {
+				me.getGlobalPoint(SCAN_DIRECTIONS[2 * scan], SCAN_DIRECTIONS[2 * scan + 1],
+						point, 0);
+				double dist = castRay(originX, originY, originX - point[0], originY - point[1]);
+				if ((scan == SECTOR_SCANS[i]) || (dist < minDist)) {
+					minDist = dist;
+				}
+			}
+			out[OBSTACLE_OFFSET + i] = NNetTools.AI_normalizeDistanceTo1(minDist,
+					WorldState.PITCH_WIDTH_CM);
+		}
+	}
+
+	/**
+	 * Compute the normalised distance to a target in the sector that contains
+	 * it, and the normalised distance of a far away point in the others.
+	 *
+	 * @param me Our robot.
+	 * @param target Target point in global coordinates.
+	 * @param out Array where the distances are stored.
+	 * @param offset Index of the first sector's distance in the array.
+	 */
+	private void extractTargetSectors(Robot me, Point2D.Double target, double[] out,
+			int offset) {
+		me.getLocalPoint(target.x, target.y, point, 0);
+		double angle = GeomKernel.getDirection(point[0], point[1]);
+		double inside = NNetTools.AI_normalizeDistanceTo1(
+				GeomKernel.getLength(point[0], point[1]), WorldState.PITCH_WIDTH_CM);
+		double outside = NNetTools.AI_normalizeDistanceTo1(OUTSIDE_TARGET_LENGTH,
+				WorldState.PITCH_WIDTH_CM);
+
+		for (int i = 0; i < SECTOR_COUNT; ++i) {
+			boolean isInSector = (GeomUtils.normaliseAngle(angle - SECTOR_STARTS[i]) >= 0)
+					&& (GeomUtils.normaliseAngle(angle - SECTOR_ENDS[i]) < 0);
+			out[offset + i] = isInSector ? inside : outside;
+		}
+	}
+
+	/**
+	 * Check whether the robot could drive straight to a point. Mirrors
+	 * {@link DeprecatedCode#reachability}, where the robot's width is covered
+	 * by rays from its sides.
+	 *
+	 * @param start Our robot's position.
+	 * @param end Point of interest.
+	 * @return Whether none of the rays hit an obstacle before the point.
+	 */
+	private boolean isReachable(Point2D.Double start, Point2D.Double end) {
+		double dirX = end.x - start.x;
+		double dirY = end.y - start.y;
+		double dirLength = GeomKernel.getLength(dirX, dirY);
+		if (!(castRay(start.x, start.y, dirX, dirY) >= dirLength)) {
+			return false;
+		}
+
+		final double coeff = Robot.LENGTH_CM;
+		double angle = (-GeomKernel.getDirection(dirX, dirY) + 90) * Math.PI / 180d;
+		final double length = Robot.LENGTH_CM / 2 - 1;
+		double cos = Math.cos(angle) * length;
+		double sin = Math.sin(angle) * length;
+
+		if (castRay(start.x + cos, start.y + sin, dirX, dirY) < dirLength) {
+			return false;
+		}
+		if (castRay(start.x + -cos, start.y + -sin, dirX, dirY) < dirLength) {
+			return false;
+		}
+
+		double leftX = start.x + cos * coeff;
+		double leftY = start.y + sin * coeff;
+		double rightX = start.x + -cos * coeff;
+		double rightY = start.y + -sin * coeff;
+		if (castRay(leftX, leftY, dirX, dirY) < dirLength) {
+			return false;
+		}
+		if (castRay(rightX, rightY, dirX, dirY) < dirLength) {
+			return false;
+		}
+		if (castRay(leftX, leftY, end.x - leftX, end.y - leftY) < dirLength) {
+			return false;
+		}
+		if (castRay(rightX, rightY, end.x - rightX, end.y - rightY) < dirLength) {
+			return false;
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Find the distance along a ray to the nearest segment. Mirrors the
+	 * length of the vector returned by
+	 * {@link DeprecatedCode#raytraceVector(WorldState, sdp.common.geometry.Vector2D, sdp.common.geometry.Vector2D, Boolean, boolean)},
+	 * including its rounding and its NaN results.
+	 *
+	 * @param originX X coordinate of the ray's origin.
+	 * @param originY Y coordinate of the ray's origin.
+	 * @param dirX X component of the ray's direction.
+	 * @param dirY Y component of the ray's direction.
+	 * @return Distance to the nearest segment, the width of the pitch if
+	 * 		there is none, or 0 if the origin is not on the pitch.
+	 */
+	private double castRay(double originX, double originY, double dirX, double dirY) {
+		if ((originX <= 0) || (originY <= 0) || (originX >= WorldState.PITCH_WIDTH_CM)
+				|| (originY >= WorldState.PITCH_HEIGHT_CM)) {
+			return 0.0;
+		}
+
+		GeomKernel.setLocalRotation(dirX, dirY, rotation);
+		double near = GeomKernel.NO_INTERSECTION;
+		for (int i = 0; i < segments.length; i += SEGMENT_SIZE) {
+			double dist = GeomKernel.getRaySegmentIntersectionDist(originX, originY, rotation,
+					segments[i], segments[i + 1], segments[i + 2], segments[i + 3]);
+			if ((dist != GeomKernel.NO_INTERSECTION)
+					&& ((near == GeomKernel.NO_INTERSECTION) || (dist < near))) {
+				near = dist;
+			}
+		}
+
+		double newLength = (near != GeomKernel.NO_INTERSECTION) ? near : WorldState.PITCH_WIDTH_CM;
+		GeomKernel.changeLength(dirX, dirY, newLength, point, 0);
+		return GeomKernel.getLength(point[0], point[1]);
+	}
+
+}
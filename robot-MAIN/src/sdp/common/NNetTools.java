@@ -20,7 +20,8 @@ public class NNetTools {
 	}
 
 	/**
-	 * Generates input array for the AI
+	 * Generates input array for the AI. {@link NNetFeatureExtractor} computes
+	 * the same array without allocating.
 	 * 
 	 * @param worldState in centimeters
 	 * @param am_i_blue
@@ -57,7 +58,10 @@ public class NNetTools {
 	
 
 	public static double AI_normalizeDistanceTo1(Vector2D vec, double threshold) {
-		double distance = vec.getLength();
+		return AI_normalizeDistanceTo1(vec.getLength(), threshold);
+	}
+	
+	public static double AI_normalizeDistanceTo1(double distance, double threshold) {
 		if (distance > threshold)
 			return 1;
 		return -1+2*distance/threshold;
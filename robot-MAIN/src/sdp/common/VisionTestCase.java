@@ -14,6 +14,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
 import sdp.common.world.WorldState;
 import sdp.common.xml.XmlUtils;
 
@@ -124,7 +125,7 @@ public class VisionTestCase {
 			Point2D.Double yellowPos = new Point2D.Double(yellowX, yellowY);
 			Robot yellowRobot = new Robot(yellowPos, yellowAngle);
 			
-			WorldState expectedState = new WorldState(ball, blueRobot, yellowRobot, null);
+			WorldState expectedState = new WorldState(ball, blueRobot, yellowRobot, (WorldImageSource) null);
 			VisionTestCase curTestCase = new VisionTestCase(imageFilename, expectedState);
 			tests.add(curTestCase);
 		}
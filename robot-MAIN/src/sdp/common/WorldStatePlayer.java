@@ -8,6 +8,7 @@ import java.util.LinkedList;
 
 import sdp.common.geometry.Vector2D;
 import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
 import sdp.common.world.WorldState;
 
 public class WorldStatePlayer extends WorldStateProvider {
@@ -146,7 +147,7 @@ public class WorldStatePlayer extends WorldStateProvider {
 			return new WorldState(new Point2D.Double(10000, 0),
 					new Robot(new Point2D.Double(10000, 0), 0),
 					new Robot(new Point2D.Double(10000, 0), 0),
-					null);
+					(WorldImageSource) null);
 		}
 		
 		if (frameId > frames.length - 1)
@@ -180,7 +181,7 @@ public class WorldStatePlayer extends WorldStateProvider {
 		return new WorldState(interpolate(fr1.getBallCoords(), fr2.getBallCoords(), coeff),
 				interpolate(fr1.getBlueRobot(), fr2.getBlueRobot(), coeff),
 				interpolate(fr1.getYellowRobot(), fr2.getYellowRobot(), coeff),
-				fr1.getWorldImage());
+				fr1.getWorldImageSource());
 	}
 	
 	private Robot interpolate(Robot fr1, Robot fr2, double coeff) {
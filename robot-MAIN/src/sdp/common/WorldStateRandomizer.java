@@ -6,35 +6,44 @@ import java.util.Random;
 import sdp.common.world.Robot;
 import sdp.common.world.WorldState;
 
+/**
+ * Adds noise to world states. The noise comes from a table of normally
+ * distributed numbers, cut off at -1 and 1.<br/><br/>
+ *
+ * The static methods share one table and may be called from any thread.
+ * Simulations that have to be reproducible, such as the games of the
+ * genetic algorithm, keep their own seeded instance instead, see
+ * {@link #setSeed(long)} and {@link #next()}.
+ */
 public class WorldStateRandomizer {
-	
+
 	private final static int RANDOM_ARRAY_SIZE = 1000;
-	
-	private static double[] randomNumbers = null;
-	
-	private static Random r = new Random();
-	
-	private static int index;
-	
-	public static WorldState randomize(final WorldState state, final double posAmount, final double angAmount) {
-		return new WorldState(randomize(state.getBallCoords(), posAmount),
-				randomize(state.getBlueRobot(), posAmount, angAmount),
-				randomize(state.getYellowRobot(), posAmount, angAmount), 
-				state.getWorldImage());
-		
-	}
-	
-	private static Point2D.Double randomize(Point2D.Double input, double posAmount) {
-		return new Point2D.Double(input.x + posAmount*getRandom(), input.y + posAmount*getRandom());
-	}
-	
-	private static Robot randomize(Robot rob, double posAmount, double angAmount) {
-		return new Robot(randomize(rob.getCoords(), posAmount), rob.getAngle()+angAmount*getRandom());
+
+	/** the table that the static methods use */
+	private static final WorldStateRandomizer shared = new WorldStateRandomizer(new Random().nextLong());
+
+	private final double[] randomNumbers = new double[RANDOM_ARRAY_SIZE];
+
+	private final Random r = new Random();
+
+	private int index;
+
+	/**
+	 * Create a randomizer with its own table
+	 * @param seed the seed of the table
+	 */
+	public WorldStateRandomizer(final long seed) {
+		setSeed(seed);
 	}
-	
-	private static void regenerateNumbers() {
+
+	/**
+	 * Regenerate the table from a seed and start over from its beginning.
+	 * The same seed always gives the same sequence of numbers.
+	 * @param seed the seed of the table
+	 */
+	public void setSeed(final long seed) {
+		r.setSeed(seed);
 		index = 0;
-		randomNumbers = new double[RANDOM_ARRAY_SIZE];
 		for (int i = 0; i < RANDOM_ARRAY_SIZE; i++) {
 			randomNumbers[i] = r.nextGaussian();
 			if (randomNumbers[i] > 1)
@@ -43,15 +52,37 @@ public class WorldStateRandomizer {
 				randomNumbers[i] = -1;
 		}
 	}
-	
-	public static double getRandom() {
-		
-		if (randomNumbers == null)
-			regenerateNumbers();
-		
+
+	/**
+	 * @return the next number of the table, between -1 and 1
+	 */
+	public double next() {
 		if (index >= RANDOM_ARRAY_SIZE)
 			index = 0;
 		return randomNumbers[index++];
 	}
 
+	public static WorldState randomize(final WorldState state, final double posAmount, final double angAmount) {
+		synchronized (shared) {
+			return new WorldState(randomize(state.getBallCoords(), posAmount),
+					randomize(state.getBlueRobot(), posAmount, angAmount),
+					randomize(state.getYellowRobot(), posAmount, angAmount),
+					state.getWorldImageSource());
+		}
+	}
+
+	private static Point2D.Double randomize(Point2D.Double input, double posAmount) {
+		return new Point2D.Double(input.x + posAmount*getRandom(), input.y + posAmount*getRandom());
+	}
+
+	private static Robot randomize(Robot rob, double posAmount, double angAmount) {
+		return new Robot(randomize(rob.getCoords(), posAmount), rob.getAngle()+angAmount*getRandom());
+	}
+
+	public static double getRandom() {
+		synchronized (shared) {
+			return shared.next();
+		}
+	}
+
 }
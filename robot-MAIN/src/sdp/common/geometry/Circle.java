@@ -73,7 +73,18 @@ public class Circle {
 	 * @return Whether the specified point is inside the circle.
 	 */
 	public boolean containsPoint(Point2D.Double point) {
-		return (Point2D.distance(point.x, point.y, centre.x, centre.y) <= radius);
+		return containsPoint(point.x, point.y);
+	}
+
+	/**
+	 * Check whether some point is contained by this circle.
+	 * 
+	 * @param x X coordinate of the point of interest.
+	 * @param y Y coordinate of the point of interest.
+	 * @return Whether the specified point is inside the circle.
+	 */
+	public boolean containsPoint(double x, double y) {
+		return (Point2D.distance(x, y, centre.x, centre.y) <= radius);
 	}
 
 
@@ -0,0 +1,420 @@
+package sdp.common.geometry;
+
+import java.awt.geom.Point2D;
+
+import sdp.common.Utilities;
+
+
+/**
+ * A container for geometry functions that work on primitive coordinates.
+ *
+ * These functions compute the same values as their counterparts in
+ * {@link GeomUtils} and {@link Vector2D}, but take points as separate x and
+ * y arguments and write points into caller-provided arrays, as consecutive
+ * x and y values, starting at the given offset. They do not allocate any
+ * objects, so they are meant for code that performs many geometry queries
+ * per frame.
+ */
+public class GeomKernel {
+
+	/** Index of the rotation's cosine in a rotation array. */
+	public static final int COS = 0;
+	/** Index of the rotation's negated sine in a rotation array. */
+	public static final int NEG_SIN = 1;
+
+	/** Value, returned by ray queries when nothing is hit. */
+	public static final double NO_INTERSECTION = -1.0;
+
+
+	/**
+	 * Get the length of a vector.
+	 *
+	 * @param x X component of the vector.
+	 * @param y Y component of the vector.
+	 * @return Length of the vector.
+	 */
+	public static double getLength(double x, double y) {
+		return Point2D.distance(0, 0, x, y);
+	}
+
+	/**
+	 * Get the direction of a vector.
+	 *
+	 * @param x X component of the vector.
+	 * @param y Y component of the vector.
+	 * @return Direction of the vector, in degrees.
+	 */
+	public static double getDirection(double x, double y) {
+		return Math.atan2(-y, x) * 180 / Math.PI;
+	}
+
+
+	/**
+	 * Get the dot product of two vectors.
+	 *
+	 * @param ax X component of the first vector.
+	 * @param ay Y component of the first vector.
+	 * @param bx X component of the second vector.
+	 * @param by Y component of the second vector.
+	 * @return Dot product of the vectors.
+	 */
+	public static double dotProduct(double ax, double ay, double bx, double by) {
+		return (ax * bx) + (ay * by);
+	}
+
+	/**
+	 * Get the magnitude of the cross product of two vectors.
+	 *
+	 * @param ax X component of the first vector.
+	 * @param ay Y component of the first vector.
+	 * @param bx X component of the second vector.
+	 * @param by Y component of the second vector.
+	 * @return Cross product of the vectors.
+	 */
+	public static double crossProduct(double ax, double ay, double bx, double by) {
+		return (ax * by) - (ay * bx);
+	}
+
+
+	/**
+	 * Compute a rotation by the given angle, so that it can be applied to
+	 * many points with {@link #rotate(double[], double, double, double[], int)}.
+	 *
+	 * @param degrees Angle of rotation in degrees.
+	 * @param rotation Array of size 2, where the rotation is stored.
+	 */
+	public static void setRotation(double degrees, double[] rotation) {
+		double radAngle = Math.toRadians(degrees);
+		rotation[COS] = Math.cos(radAngle);
+		rotation[NEG_SIN] = Math.sin(-radAngle);
+	}
+
+	/**
+	 * Compute a rotation into the local system of some direction. This is
+	 * the rotation that {@link GeomUtils#getLocalPoint} applies.
+	 *
+	 * @param dirX X component of the local system's 0 degree direction.
+	 * @param dirY Y component of the local system's 0 degree direction.
+	 * @param rotation Array of size 2, where the rotation is stored.
+	 */
+	public static void setLocalRotation(double dirX, double dirY, double[] rotation) {
+		setRotation(-getDirection(dirX, dirY), rotation);
+	}
+
+	/**
+	 * Rotate a vector about the origin.
+	 *
+	 * @param rotation Rotation, computed by {@link #setRotation}.
+	 * @param x X component of the vector.
+	 * @param y Y component of the vector.
+	 * @param out Array for the rotated vector.
+	 * @param offset Index of the rotated vector's x component in the array.
+	 */
+	public static void rotate(double[] rotation, double x, double y, double[] out, int offset) {
+		out[offset] = (x * rotation[COS]) - (y * rotation[NEG_SIN]) + 0.0;
+		out[offset + 1] = (x * rotation[NEG_SIN]) + (y * rotation[COS]) + 0.0;
+	}
+
+	/**
+	 * Rotate a point around another point by the given angle in degrees.
+	 *
+	 * @param originX X coordinate of the rotation point.
+	 * @param originY Y coordinate of the rotation point.
+	 * @param x X coordinate of the point to rotate.
+	 * @param y Y coordinate of the point to rotate.
+	 * @param degrees Angle of rotation in degrees.
+	 * @param out Array for the rotated point.
+	 * @param offset Index of the rotated point's x coordinate in the array.
+	 */
+	public static void rotatePoint(double originX, double originY, double x, double y,
+			double degrees, double[] out, int offset) {
+		double radAngle = Math.toRadians(degrees);
+
+		double xDiff = x - originX;
+		double yDiff = y - originY;
+
+		out[offset] = (xDiff * Math.cos(radAngle)) - (yDiff * Math.sin(-radAngle)) + originX;
+		out[offset + 1] = (xDiff * Math.sin(-radAngle)) + (yDiff * Math.cos(radAngle)) + originY;
+	}
+
+
+	/**
+	 * Get a vector in the same direction, but with a different length. A
+	 * zero vector stays zero.
+	 *
+	 * @param x X component of the vector.
+	 * @param y Y component of the vector.
+	 * @param newLength New vector length.
+	 * @param out Array for the resulting vector.
+	 * @param offset Index of the resulting vector's x component in the array.
+	 */
+	public static void changeLength(double x, double y, double newLength,
+			double[] out, int offset) {
+		double oldLength = getLength(x, y);
+
+		if (Utilities.areDoublesEqual(oldLength, 0.0)) {
+			out[offset] = 0.0;
+			out[offset + 1] = 0.0;
+		} else {
+			double k = newLength / oldLength;
+			out[offset] = x * k;
+			out[offset + 1] = y * k;
+		}
+	}
+
+	/**
+	 * Move a point along the line through it and a centre point, so that
+	 * it is the given distance away from the centre.
+	 *
+	 * @param centreX X coordinate of the centre point.
+	 * @param centreY Y coordinate of the centre point.
+	 * @param x X coordinate of the point to move.
+	 * @param y Y coordinate of the point to move.
+	 * @param newDist New centre-point distance.
+	 * @param out Array for the moved point.
+	 * @param offset Index of the moved point's x coordinate in the array.
+	 */
+	public static void changePointDistance(double centreX, double centreY, double x,
+			double y, double newDist, double[] out, int offset) {
+		changeLength(x - centreX, y - centreY, newDist, out, offset);
+		out[offset] = centreX + out[offset];
+		out[offset + 1] = centreY + out[offset + 1];
+	}
+
+
+	/**
+	 * Convert a point from the global coordinate system to some local one.
+	 *
+	 * @param refX X coordinate of the local system's origin.
+	 * @param refY Y coordinate of the local system's origin.
+	 * @param dirX X component of the local system's 0 degree direction.
+	 * @param dirY Y component of the local system's 0 degree direction.
+	 * @param x X coordinate of the global point.
+	 * @param y Y coordinate of the global point.
+	 * @param out Array for the local point.
+	 * @param offset Index of the local point's x coordinate in the array.
+	 */
+	public static void getLocalPoint(double refX, double refY, double dirX, double dirY,
+			double x, double y, double[] out, int offset) {
+		rotatePoint(0.0, 0.0, x - refX, y - refY, -getDirection(dirX, dirY), out, offset);
+	}
+
+	/**
+	 * Convert a point from some local coordinate system to the global one.
+	 *
+	 * @param refX X coordinate of the local system's origin.
+	 * @param refY Y coordinate of the local system's origin.
+	 * @param dirX X component of the local system's 0 degree direction.
+	 * @param dirY Y component of the local system's 0 degree direction.
+	 * @param x X coordinate of the local point.
+	 * @param y Y coordinate of the local point.
+	 * @param out Array for the global point.
+	 * @param offset Index of the global point's x coordinate in the array.
+	 */
+	public static void getGlobalPoint(double refX, double refY, double dirX, double dirY,
+			double x, double y, double[] out, int offset) {
+		rotatePoint(0.0, 0.0, x, y, getDirection(dirX, dirY), out, offset);
+		out[offset] = out[offset] + refX;
+		out[offset + 1] = out[offset + 1] + refY;
+	}
+
+
+	/**
+	 * Get the distance along a ray to its intersection with a line segment.
+	 *
+	 * @param originX X coordinate of the ray's origin.
+	 * @param originY Y coordinate of the ray's origin.
+	 * @param rotation Rotation into the ray's local system, computed by
+	 * 		{@link #setLocalRotation}.
+	 * @param x1 X coordinate of the segment's first endpoint.
+	 * @param y1 Y coordinate of the segment's first endpoint.
+	 * @param x2 X coordinate of the segment's second endpoint.
+	 * @param y2 Y coordinate of the segment's second endpoint.
+	 * @return Distance to the intersection or {@link #NO_INTERSECTION} if
+	 * 		there is none. If the segment lies on the ray, the result is NaN.
+	 */
+	public static double getRaySegmentIntersectionDist(double originX, double originY,
+			double[] rotation, double x1, double y1, double x2, double y2) {
+		return getRotatedRaySegmentIntersectionDist(originX, originY, rotation[COS],
+				rotation[NEG_SIN], x1, y1, x2, y2);
+	}
+
+	/**
+	 * Get the distance along a ray to its intersection with a line segment.
+	 *
+	 * @param originX X coordinate of the ray's origin.
+	 * @param originY Y coordinate of the ray's origin.
+	 * @param cos Cosine of the rotation into the ray's local system.
+	 * @param negSin Negated sine of the rotation into the ray's local system.
+	 * @param x1 X coordinate of the segment's first endpoint.
+	 * @param y1 Y coordinate of the segment's first endpoint.
+	 * @param x2 X coordinate of the segment's second endpoint.
+	 * @param y2 Y coordinate of the segment's second endpoint.
+	 * @return Distance to the intersection or {@link #NO_INTERSECTION}.
+	 */
+	private static double getRotatedRaySegmentIntersectionDist(double originX,
+			double originY, double cos, double negSin, double x1, double y1, double x2, double y2) {
+		double relX1 = x1 - originX;
+		double relY1 = y1 - originY;
+		double relX2 = x2 - originX;
+		double relY2 = y2 - originY;
+
+		double localX1 = (relX1 * cos) - (relY1 * negSin) + 0.0;
+		double localY1 = (relX1 * negSin) + (relY1 * cos) + 0.0;
+		double localX2 = (relX2 * cos) - (relY2 * negSin) + 0.0;
+		double localY2 = (relX2 * negSin) + (relY2 * cos) + 0.0;
+
+		if ((localX1 < 0) && (localX2 < 0)) {
+			return NO_INTERSECTION;
+		}
+
+		if (localY1 * localY2 <= 0) {
+			double slope = (localX2 - localX1) / (localY2 - localY1);
+			double intDist = localX1 - (localY1 * slope);
+
+			if (intDist < 0) {
+				return NO_INTERSECTION;
+			} else {
+				return intDist;
+			}
+		} else {
+			return NO_INTERSECTION;
+		}
+	}
+
+	/**
+	 * Get the distance along a ray to its intersection with a line segment.
+	 *
+	 * @param originX X coordinate of the ray's origin.
+	 * @param originY Y coordinate of the ray's origin.
+	 * @param dirX X component of the ray's direction.
+	 * @param dirY Y component of the ray's direction.
+	 * @param x1 X coordinate of the segment's first endpoint.
+	 * @param y1 Y coordinate of the segment's first endpoint.
+	 * @param x2 X coordinate of the segment's second endpoint.
+	 * @param y2 Y coordinate of the segment's second endpoint.
+	 * @return Distance to the intersection or {@link #NO_INTERSECTION} if
+	 * 		there is none. If the segment lies on the ray, the result is NaN.
+	 */
+	public static double getRaySegmentIntersectionDist(double originX, double originY,
+			double dirX, double dirY, double x1, double y1, double x2, double y2) {
+		double radAngle = Math.toRadians(-getDirection(dirX, dirY));
+		return getRotatedRaySegmentIntersectionDist(originX, originY, Math.cos(radAngle),
+				Math.sin(-radAngle), x1, y1, x2, y2);
+	}
+
+
+	/**
+	 * Get the closest point from a point to a line.
+	 *
+	 * @param px X coordinate of the point of interest.
+	 * @param py Y coordinate of the point of interest.
+	 * @param ax X coordinate of the first point on the line.
+	 * @param ay Y coordinate of the first point on the line.
+	 * @param bx X coordinate of the second point on the line.
+	 * @param by Y coordinate of the second point on the line.
+	 * @param out Array for the closest point.
+	 * @param offset Index of the closest point's x coordinate in the array.
+	 */
+	public static void getClosestPointToLine(double px, double py, double ax, double ay,
+			double bx, double by, double[] out, int offset) {
+		double abX = bx - ax;
+		double abY = by - ay;
+		double dot = dotProduct(px - ax, py - ay, abX, abY);
+
+		double t = dot / Point2D.distanceSq(ax, ay, bx, by);
+
+		out[offset] = ax + abX * t;
+		out[offset + 1] = ay + abY * t;
+	}
+
+	/**
+	 * Check whether some line intersects a circle.
+	 *
+	 * @param x1 X coordinate of the first point on the line.
+	 * @param y1 Y coordinate of the first point on the line.
+	 * @param x2 X coordinate of the second point on the line.
+	 * @param y2 Y coordinate of the second point on the line.
+	 * @param centreX X coordinate of the circle's centre.
+	 * @param centreY Y coordinate of the circle's centre.
+	 * @param radius Radius of the circle.
+	 * @return Whether the line intersects the circle.
+	 */
+	public static boolean lineIntersectsCircle(double x1, double y1, double x2, double y2,
+			double centreX, double centreY, double radius) {
+		double abX = x2 - x1;
+		double abY = y2 - y1;
+		double t = dotProduct(centreX - x1, centreY - y1, abX, abY)
+				/ Point2D.distanceSq(x1, y1, x2, y2);
+
+		return (Point2D.distance(centreX, centreY, x1 + abX * t, y1 + abY * t) <= radius);
+	}
+
+	/**
+	 * Get the points, where the tangent lines of a circle through the given
+	 * point touch the circle. See {@link GeomUtils#circleTangentPoints} for
+	 * a graphic.
+	 *
+	 * @param centreX X coordinate of the circle's centre.
+	 * @param centreY Y coordinate of the circle's centre.
+	 * @param radius Radius of the circle.
+	 * @param x X coordinate of the point of interest.
+	 * @param y Y coordinate of the point of interest.
+	 * @param out Array for the two tangent points.
+	 * @param offset Index of the first tangent point's x coordinate in the
+	 * 		array.
+	 * @return Whether the tangent points exist. They do not if the point is
+	 * 		inside the circle.
+	 */
+	public static boolean getCircleTangentPoints(double centreX, double centreY,
+			double radius, double x, double y, double[] out, int offset) {
+		double hypotenuse = Point2D.distance(centreX, centreY, x, y);
+		if (hypotenuse <= radius) {
+			return false;
+		}
+
+		double longLeg = Math.sqrt(hypotenuse * hypotenuse - radius * radius);
+		double angle = Math.toDegrees(Math.asin(radius / hypotenuse));
+
+		changeLength(centreX - x, centreY - y, longLeg, out, offset);
+		double offsetX = out[offset];
+		double offsetY = out[offset + 1];
+
+		rotatePoint(0.0, 0.0, offsetX, offsetY, angle, out, offset);
+		out[offset] = x + out[offset];
+		out[offset + 1] = y + out[offset + 1];
+
+		rotatePoint(0.0, 0.0, offsetX, offsetY, -angle, out, offset + 2);
+		out[offset + 2] = x + out[offset + 2];
+		out[offset + 3] = y + out[offset + 3];
+
+		return true;
+	}
+
+
+	/**
+	 * Get corners of a rectangle, positioned in the specified location.
+	 *
+	 * @param width Width of the rectangle.
+	 * @param height Height of the rectangle.
+	 * @param x X coordinate of the rectangle's position.
+	 * @param y Y coordinate of the rectangle's position.
+	 * @param angle Direction the rectangle is facing, in degrees.
+	 * @param out Array for the front left, front right, back right and back
+	 * 		left corners, in that order.
+	 * @param offset Index of the first corner's x coordinate in the array.
+	 */
+	public static void positionRectangle(double width, double height, double x, double y,
+			double angle, double[] out, int offset) {
+		rotatePoint(0.0, 0.0, width / 2, height / 2, angle, out, offset);
+		rotatePoint(0.0, 0.0, width / 2, -height / 2, angle, out, offset + 2);
+		rotatePoint(0.0, 0.0, -width / 2, -height / 2, angle, out, offset + 4);
+		rotatePoint(0.0, 0.0, -width / 2, height / 2, angle, out, offset + 6);
+
+		for (int i = offset; i < offset + 8; i += 2) {
+			out[i] += x;
+			out[i + 1] += y;
+		}
+	}
+
+}
@@ -221,24 +221,13 @@ public class GeomUtils {
 	 */
 	public static Vector2D getLocalRaySegmentIntersection(Point2D.Double rayOrigin,
 			Vector2D rayDir, Point2D.Double segPt1, Point2D.Double segPt2) {
-		Vector2D segPt1Local = new Vector2D(GeomUtils.getLocalPoint(rayOrigin, rayDir, segPt1));
-		Vector2D segPt2Local = new Vector2D(GeomUtils.getLocalPoint(rayOrigin, rayDir, segPt2));
+		double intDist = GeomKernel.getRaySegmentIntersectionDist(rayOrigin.x, rayOrigin.y,
+				rayDir.x, rayDir.y, segPt1.x, segPt1.y, segPt2.x, segPt2.y);
 		
-		if ((segPt1Local.x < 0) && (segPt2Local.x < 0)) {
+		if (intDist == GeomKernel.NO_INTERSECTION) {
 			return null;
-		}
-		
-		if (segPt1Local.y * segPt2Local.y <= 0 ) {
-			double slope = (segPt2Local.x - segPt1Local.x) / (segPt2Local.y - segPt1Local.y);
-			double intDist = segPt1Local.x - (segPt1Local.y * slope);
-			
-			if (intDist < 0) {
-				return null;
-			} else {
-				return Vector2D.changeLength(rayDir, intDist);
-			}
 		} else {
-			return null;
+			return Vector2D.changeLength(rayDir, intDist);
 		}
 	}
 	
@@ -461,11 +450,11 @@ public class GeomUtils {
 	 */
 	public static Point2D.Double changePointDistanceToCircle(Circle circle,
 			Point2D.Double point, double newDist) {
-		Vector2D circleToPoint = Vector2D.subtract(new Vector2D(point), new Vector2D(circle.getCentre()));
-		Vector2D newPointOffset = Vector2D.changeLength(circleToPoint, newDist);
-		Vector2D newPoint = Vector2D.add(new Vector2D(circle.getCentre()), newPointOffset);
+		double newPoint[] = new double[2];
+		GeomKernel.changePointDistance(circle.getCentre().x, circle.getCentre().y,
+				point.x, point.y, newDist, newPoint, 0);
 		
-		return newPoint;
+		return new Vector2D(newPoint[0], newPoint[1]);
 	}
 	
 	/**
@@ -497,25 +486,16 @@ public class GeomUtils {
 	 * @return Circle tangent line intersection points, as described above.
 	 */
 	public static Point2D.Double[] circleTangentPoints(Circle circle, Point2D.Double point) {
-		double hypotenuse = pointDistance(circle.getCentre(), point);
-		if (hypotenuse <= circle.getRadius()) {
+		double tangents[] = new double[4];
+		if (!GeomKernel.getCircleTangentPoints(circle.getCentre().x, circle.getCentre().y,
+				circle.getRadius(), point.x, point.y, tangents, 0)) {
 			return null;
 		}
-		
-		double shortLeg = circle.getRadius();
-		double longLeg = Math.sqrt(hypotenuse * hypotenuse - shortLeg * shortLeg);		
-		double angle = Math.toDegrees(Math.asin(circle.getRadius() / hypotenuse));
-		
-		Vector2D pointToCircle = Vector2D.subtract(new Vector2D(circle.getCentre()), new Vector2D(point));
-		Vector2D tangentOffset = Vector2D.changeLength(pointToCircle, longLeg);
-		
-		Vector2D tangent1 = Vector2D.rotateVector(tangentOffset, angle);
-		tangent1 = Vector2D.add(new Vector2D(point), tangent1);
-		
-		Vector2D tangent2 = Vector2D.rotateVector(tangentOffset, -angle);
-		tangent2 = Vector2D.add(new Vector2D(point), tangent2);
 
-		return new Point2D.Double[] { tangent1, tangent2 };
+		return new Point2D.Double[] {
+				new Vector2D(tangents[0], tangents[1]),
+				new Vector2D(tangents[2], tangents[3])
+		};
 	}
 	
 	
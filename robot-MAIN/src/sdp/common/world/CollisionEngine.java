@@ -0,0 +1,318 @@
+package sdp.common.world;
+
+import java.util.Arrays;
+
+
+/**
+ * Answers collision queries against the obstacles of a world state.
+ *
+ * The outlines of the obstacles are collected into a primitive array of
+ * segments once, when the engine is created. Rays are cast against them
+ * directly, and a robot-width corridor is tested with a single swept test
+ * per segment instead of a fan of rays. Engines do not change after they
+ * are created. Use {@link WorldState#getCollisionEngine(int)} to get the
+ * cached engine of a world state.
+ */
+public final class CollisionEngine {
+
+	/** Width increment of the corridor scan, relative to the robot width. */
+	private static final double ROBOT_RAY_INCREMENT = 0.05;
+	/** Largest width of the corridor scan, relative to the robot width. */
+	private static final double ROBOT_RAY_MAX_WIDTH = 1.2;
+	/** Length, by which a path may overlap an obstacle at its end. */
+	private static final double DIRECT_PATH_CHECK_TOLERANCE = 0.001;
+
+	/**
+	 * Sideways offsets of the rays that make up a corridor, in centimetres,
+	 * in ascending order. A corridor is blocked by anything that crosses
+	 * one of them.
+	 */
+	private static final double[] RAY_OFFSETS;
+
+	static {
+		int rayCount = 0;
+		for (double factor = 0.0; factor <= ROBOT_RAY_MAX_WIDTH; factor += ROBOT_RAY_INCREMENT) {
+			++rayCount;
+		}
+
+		RAY_OFFSETS = new double[2 * rayCount];
+		int i = 0;
+		for (double factor = 0.0; factor <= ROBOT_RAY_MAX_WIDTH; factor += ROBOT_RAY_INCREMENT) {
+			RAY_OFFSETS[i++] = factor * Robot.WIDTH_CM / 2;
+			RAY_OFFSETS[i++] = -factor * Robot.WIDTH_CM / 2;
+		}
+		Arrays.sort(RAY_OFFSETS);
+	}
+
+
+	/** Endpoints of the obstacle segments, as x1, y1, x2, y2 quadruples. */
+	private final double[] segments;
+	/** Number of obstacle segments. */
+	private final int segmentCount;
+
+	/**
+	 * Whether the ball is an obstacle that always faces the query. Its
+	 * segment depends on the direction of the query, so it is not stored
+	 * with the others.
+	 */
+	private final boolean isBallFacingObstacle;
+	/** X coordinate of the ball. */
+	private final double ballX;
+	/** Y coordinate of the ball. */
+	private final double ballY;
+
+
+	/**
+	 * Create a new collision engine.
+	 *
+	 * @param state World state in centimetres.
+	 * @param obstacles A bitfield that denotes which objects are considered
+	 * 		to be obstacles.
+	 */
+	public CollisionEngine(WorldState state, int obstacles) {
+		segments = new double[4 * 13];
+		int count = 0;
+
+		if ((obstacles & WorldState.WALL_IS_OBSTACLE_FLAG) != 0) {
+			count = addSegment(count, 0.0, 0.0, WorldState.PITCH_WIDTH_CM, 0.0);
+			count = addSegment(count, WorldState.PITCH_WIDTH_CM, 0.0,
+					WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM);
+			count = addSegment(count, WorldState.PITCH_WIDTH_CM, WorldState.PITCH_HEIGHT_CM,
+					0.0, WorldState.PITCH_HEIGHT_CM);
+			count = addSegment(count, 0.0, WorldState.PITCH_HEIGHT_CM, 0.0, 0.0);
+		}
+
+		ballX = state.getBallCoords().x;
+		ballY = state.getBallCoords().y;
+		boolean isBallObstacle = ((obstacles & WorldState.BALL_IS_OBSTACLE_FLAG) != 0);
+		if (isBallObstacle && WorldState.ALT_BALL_COLLISION_MODEL) {
+			count = addSegment(count, ballX, ballY + WorldState.BALL_OBSTACLE_RADIUS,
+					ballX, ballY - WorldState.BALL_OBSTACLE_RADIUS);
+		}
+		isBallFacingObstacle = (isBallObstacle && !WorldState.ALT_BALL_COLLISION_MODEL);
+
+		if ((obstacles & WorldState.BLUE_IS_OBSTACLE_FLAG) != 0) {
+			count = addRobot(count, state.getBlueRobot());
+		}
+		if ((obstacles & WorldState.YELLOW_IS_OBSTACLE_FLAG) != 0) {
+			count = addRobot(count, state.getYellowRobot());
+		}
+
+		segmentCount = count;
+	}
+
+
+	/**
+	 * Store an obstacle segment.
+	 *
+	 * @param index Index of the segment.
+	 * @param x1 X coordinate of the first endpoint.
+	 * @param y1 Y coordinate of the first endpoint.
+	 * @param x2 X coordinate of the second endpoint.
+	 * @param y2 Y coordinate of the second endpoint.
+	 * @return Index of the next segment.
+	 */
+	private int addSegment(int index, double x1, double y1, double x2, double y2) {
+		segments[4 * index] = x1;
+		segments[4 * index + 1] = y1;
+		segments[4 * index + 2] = x2;
+		segments[4 * index + 3] = y2;
+		return index + 1;
+	}
+
+	/**
+	 * Store the sides of a robot as obstacle segments.
+	 *
+	 * @param index Index of the first segment.
+	 * @param robot The robot.
+	 * @return Index of the next segment.
+	 */
+	private int addRobot(int index, Robot robot) {
+		for (int corner = 0; corner < Robot.CORNER_COUNT; ++corner) {
+			int next = (corner + 1) % Robot.CORNER_COUNT;
+			index = addSegment(index, robot.getCornerX(corner), robot.getCornerY(corner),
+					robot.getCornerX(next), robot.getCornerY(next));
+		}
+		return index;
+	}
+
+
+	/**
+	 * Get the distance from a point to the closest obstacle in the given
+	 * direction. Collisions further than the pitch width are ignored.
+	 *
+	 * @param originX X coordinate of the ray's origin.
+	 * @param originY Y coordinate of the ray's origin.
+	 * @param dirX X component of the ray's direction.
+	 * @param dirY Y component of the ray's direction.
+	 * @return Distance to the closest collision, at most the pitch width, or
+	 * 		0, if the origin is outside of the pitch.
+	 */
+	public double getCollisionDistance(double originX, double originY, double dirX, double dirY) {
+		if (!isPointInPitch(originX, originY)) {
+			return 0.0;
+		}
+
+		double length = Math.sqrt(dirX * dirX + dirY * dirY);
+		double alongX = dirX / length;
+		double alongY = dirY / length;
+
+		double nearest = WorldState.PITCH_WIDTH_CM;
+
+		for (int i = 0; i < 4 * segmentCount; i += 4) {
+			double relX1 = segments[i] - originX;
+			double relY1 = segments[i + 1] - originY;
+			double relX2 = segments[i + 2] - originX;
+			double relY2 = segments[i + 3] - originY;
+
+			double t1 = relX1 * alongX + relY1 * alongY;
+			double t2 = relX2 * alongX + relY2 * alongY;
+			double s1 = relY1 * alongX - relX1 * alongY;
+			double s2 = relY2 * alongX - relX2 * alongY;
+
+			if (((t1 < 0) && (t2 < 0)) || (s1 * s2 > 0) || (s1 == s2)) {
+				continue;
+			}
+			double dist = t1 - s1 * (t2 - t1) / (s2 - s1);
+			if ((dist >= 0) && (dist < nearest)) {
+				nearest = dist;
+			}
+		}
+
+		if (isBallFacingObstacle) {
+			double relX = ballX - originX;
+			double relY = ballY - originY;
+			double t = relX * alongX + relY * alongY;
+			double s = relY * alongX - relX * alongY;
+			if ((t >= 0) && (Math.abs(s) <= WorldState.BALL_OBSTACLE_RADIUS) && (t < nearest)) {
+				nearest = t;
+			}
+		}
+
+		return nearest;
+	}
+
+
+	/**
+	 * Check whether a robot could drive between two points in a straight line
+	 * without colliding with anything.
+	 *
+	 * The robot sweeps a corridor that is a bit wider than the robot. It is
+	 * scanned by a fan of parallel rays, which start at the first point and
+	 * end at the second. Each segment is tested against the whole fan at
+	 * once: the corridor is blocked if the part of the segment between the
+	 * ends of the corridor spans the sideways offset of one of the rays.
+	 *
+	 * @param x1 X coordinate of the path's start.
+	 * @param y1 Y coordinate of the path's start.
+	 * @param x2 X coordinate of the path's end.
+	 * @param y2 Y coordinate of the path's end.
+	 * @return Whether the path between two points is clear.
+	 */
+	public boolean isPathClear(double x1, double y1, double x2, double y2) {
+		double dirX = x2 - x1;
+		double dirY = y2 - y1;
+		double length = Math.sqrt(dirX * dirX + dirY * dirY);
+		double pathLength = length - DIRECT_PATH_CHECK_TOLERANCE;
+
+		if (pathLength <= 0) {
+			return true;
+		}
+		// Rays do not look further than the pitch width.
+		if (pathLength > WorldState.PITCH_WIDTH_CM) {
+			return false;
+		}
+
+		double alongX = dirX / length;
+		double alongY = dirY / length;
+		double maxOffset = RAY_OFFSETS[RAY_OFFSETS.length - 1];
+		if (!isPointInPitch(x1 - alongY * maxOffset, y1 + alongX * maxOffset)
+				|| !isPointInPitch(x1 + alongY * maxOffset, y1 - alongX * maxOffset)) {
+			return false;
+		}
+
+		for (int i = 0; i < 4 * segmentCount; i += 4) {
+			double relX1 = segments[i] - x1;
+			double relY1 = segments[i + 1] - y1;
+			double relX2 = segments[i + 2] - x1;
+			double relY2 = segments[i + 3] - y1;
+
+			double t1 = relX1 * alongX + relY1 * alongY;
+			double t2 = relX2 * alongX + relY2 * alongY;
+			double s1 = relY1 * alongX - relX1 * alongY;
+			double s2 = relY2 * alongX - relX2 * alongY;
+
+			// Segments along the rays never cross them.
+			if (s1 == s2) {
+				continue;
+			}
+
+			// Clip the segment to the part between the ends of the corridor.
+			double start = 0.0;
+			double end = 1.0;
+			if (t1 == t2) {
+				if ((t1 < 0) || (t1 > pathLength)) {
+					continue;
+				}
+			} else {
+				double enter = -t1 / (t2 - t1);
+				double exit = (pathLength - t1) / (t2 - t1);
+				start = Math.max(start, Math.min(enter, exit));
+				end = Math.min(end, Math.max(enter, exit));
+				if (start > end) {
+					continue;
+				}
+			}
+
+			double offset1 = s1 + (s2 - s1) * start;
+			double offset2 = s1 + (s2 - s1) * end;
+			if (spansRay(Math.min(offset1, offset2), Math.max(offset1, offset2))) {
+				return false;
+			}
+		}
+
+		if (isBallFacingObstacle) {
+			double relX = ballX - x1;
+			double relY = ballY - y1;
+			double t = relX * alongX + relY * alongY;
+			double s = relY * alongX - relX * alongY;
+			if ((t >= 0) && (t <= pathLength) && spansRay(s - WorldState.BALL_OBSTACLE_RADIUS,
+					s + WorldState.BALL_OBSTACLE_RADIUS)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Check whether an interval of sideways offsets contains the offset of
+	 * one of the corridor rays.
+	 *
+	 * @param low Lower end of the interval.
+	 * @param high Upper end of the interval.
+	 * @return Whether a ray lies in the interval.
+	 */
+	private static boolean spansRay(double low, double high) {
+		int index = Arrays.binarySearch(RAY_OFFSETS, low);
+		if (index >= 0) {
+			return true;
+		}
+		index = -index - 1;
+		return (index < RAY_OFFSETS.length) && (RAY_OFFSETS[index] <= high);
+	}
+
+	/**
+	 * Check whether a point is inside the football pitch.
+	 *
+	 * @param x X coordinate of the point.
+	 * @param y Y coordinate of the point.
+	 * @return Whether the point is inside the pitch.
+	 */
+	private static boolean isPointInPitch(double x, double y) {
+		return ((x >= 0.0) && (y >= 0.0) && (x <= WorldState.PITCH_WIDTH_CM)
+				&& (y <= WorldState.PITCH_HEIGHT_CM));
+	}
+
+}
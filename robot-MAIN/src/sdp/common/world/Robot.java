@@ -2,6 +2,7 @@ package sdp.common.world;
 
 import java.awt.geom.Point2D;
 
+import sdp.common.geometry.GeomKernel;
 import sdp.common.geometry.GeomUtils;
 import sdp.common.geometry.Vector2D;
 
@@ -27,6 +28,17 @@ public final class Robot {
 	public static final int MAX_DRIVING_SPEED = 53;
 	/** Maximum robot turning speed in zig/ptk. */
 	public static final int MAX_TURNING_SPEED = 127;
+	
+	/** Index of the front-left corner in the robot's corner polygon. */
+	public static final int FRONT_LEFT = 0;
+	/** Index of the front-right corner in the robot's corner polygon. */
+	public static final int FRONT_RIGHT = 1;
+	/** Index of the back-right corner in the robot's corner polygon. */
+	public static final int BACK_RIGHT = 2;
+	/** Index of the back-left corner in the robot's corner polygon. */
+	public static final int BACK_LEFT = 3;
+	/** Number of corners in the robot's corner polygon. */
+	public static final int CORNER_COUNT = 4;
 
 
 	/** Coordinates of the robot's centre on the field. */
@@ -47,6 +59,20 @@ public final class Robot {
 	/** Coordinates of the robot's back-center. */
 	private Point2D.Double backCenterPoint;
 	
+	/**
+	 * The robot's corner polygon, as consecutive x and y coordinates of the
+	 * corners, in the order given by the corner index constants.
+	 */
+	private final double corners[] = new double[2 * CORNER_COUNT];
+	/** X component of the unit vector in the robot's direction. */
+	private double directionX;
+	/** Y component of the unit vector in the robot's direction. */
+	private double directionY;
+	/** Rotation from the global coordinate system to the robot's one. */
+	private final double localRotation[] = new double[2];
+	/** Rotation from the robot's coordinate system to the global one. */
+	private final double globalRotation[] = new double[2];
+	
 	
 	/**
 	 * Create a new robot.
@@ -99,12 +125,17 @@ public final class Robot {
 		double length = (cm ? LENGTH_CM : LENGTH);
 		double width = (cm ? WIDTH_CM : WIDTH);
 		
-		Point2D.Double corners[] = GeomUtils.positionRectangle(length,
-				width, coords, angle);
-		frontLeftPoint = corners[0];
-		frontRightPoint = corners[1];
-		backRightPoint = corners[2];
-		backLeftPoint = corners[3];
+		GeomKernel.positionRectangle(length, width, coords.x, coords.y, angle, corners, 0);
+		frontLeftPoint = new Point2D.Double(getCornerX(FRONT_LEFT), getCornerY(FRONT_LEFT));
+		frontRightPoint = new Point2D.Double(getCornerX(FRONT_RIGHT), getCornerY(FRONT_RIGHT));
+		backRightPoint = new Point2D.Double(getCornerX(BACK_RIGHT), getCornerY(BACK_RIGHT));
+		backLeftPoint = new Point2D.Double(getCornerX(BACK_LEFT), getCornerY(BACK_LEFT));
+		
+		double radAngle = Math.toRadians(this.angle);
+		directionX = Math.cos(radAngle);
+		directionY = Math.sin(-radAngle);
+		GeomKernel.setLocalRotation(directionX, directionY, localRotation);
+		GeomKernel.setRotation(GeomKernel.getDirection(directionX, directionY), globalRotation);
 		
 		frontCenterPoint = GeomUtils.rotatePoint(new Point2D.Double(0, 0), new Point2D.Double(length / 2, 0), angle);
 		GeomUtils.translatePoint(frontCenterPoint, coords);
@@ -147,7 +178,25 @@ public final class Robot {
 	 * @return The direction of the robot.
 	 */
 	public final Vector2D getDirection() {
-		return Vector2D.getDirectionUnitVector(angle);
+		return new Vector2D(directionX, directionY);
+	}
+	
+	/**
+	 * Get the X component of the unit vector the robot is facing.
+	 * 
+	 * @return X component of the robot's direction.
+	 */
+	public final double getDirectionX() {
+		return directionX;
+	}
+	
+	/**
+	 * Get the Y component of the unit vector the robot is facing.
+	 * 
+	 * @return Y component of the robot's direction.
+	 */
+	public final double getDirectionY() {
+		return directionY;
 	}
 	
 	
@@ -172,6 +221,26 @@ public final class Robot {
 	}
 
 	
+	/**
+	 * Get the X coordinate of a corner of the robot's rectangle.
+	 * 
+	 * @param corner Index of the corner, such as {@link #FRONT_LEFT}.
+	 * @return X coordinate of the corner.
+	 */
+	public final double getCornerX(int corner) {
+		return corners[2 * corner];
+	}
+	
+	/**
+	 * Get the Y coordinate of a corner of the robot's rectangle.
+	 * 
+	 * @param corner Index of the corner, such as {@link #FRONT_LEFT}.
+	 * @return Y coordinate of the corner.
+	 */
+	public final double getCornerY(int corner) {
+		return corners[2 * corner + 1];
+	}
+	
 	/**
 	 * Get coordinates of the front-left corner of the robot's rectangle.
 	 * 
@@ -251,7 +320,9 @@ public final class Robot {
 	 * @return Corresponding vector in local coordinates.
 	 */
 	public static Vector2D getLocalVector(Robot robot, Vector2D globalVector) {
-		return new Vector2D(GeomUtils.getLocalPoint(robot.getCoords(), robot.getDirection(), globalVector));
+		double localPoint[] = new double[2];
+		robot.getLocalPoint(globalVector.x, globalVector.y, localPoint, 0);
+		return new Vector2D(localPoint[0], localPoint[1]);
 	}
 
 	/**
@@ -263,7 +334,38 @@ public final class Robot {
 	 * @return Corresponding vector in global coordinates.
 	 */
 	public static Vector2D getGlobalVector(Robot robot, Vector2D localVector) {
-		return new Vector2D(GeomUtils.getGlobalPoint(robot.getCoords(), robot.getDirection(), localVector));
+		double globalPoint[] = new double[2];
+		robot.getGlobalPoint(localVector.x, localVector.y, globalPoint, 0);
+		return new Vector2D(globalPoint[0], globalPoint[1]);
+	}
+	
+	
+	/**
+	 * Convert a point from the global coordinate system to the one local to
+	 * this robot.
+	 * 
+	 * @param x X coordinate of the point in global coordinates.
+	 * @param y Y coordinate of the point in global coordinates.
+	 * @param out Array for the point in local coordinates.
+	 * @param offset Index of the local point's x coordinate in the array.
+	 */
+	public final void getLocalPoint(double x, double y, double[] out, int offset) {
+		GeomKernel.rotate(localRotation, x - coords.x, y - coords.y, out, offset);
+	}
+	
+	/**
+	 * Convert a point from the coordinate system local to this robot to the
+	 * global one.
+	 * 
+	 * @param x X coordinate of the point in local coordinates.
+	 * @param y Y coordinate of the point in local coordinates.
+	 * @param out Array for the point in global coordinates.
+	 * @param offset Index of the global point's x coordinate in the array.
+	 */
+	public final void getGlobalPoint(double x, double y, double[] out, int offset) {
+		GeomKernel.rotate(globalRotation, x, y, out, offset);
+		out[offset] = out[offset] + coords.x;
+		out[offset + 1] = out[offset + 1] + coords.y;
 	}
 
 
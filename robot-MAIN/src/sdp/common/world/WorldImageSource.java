@@ -0,0 +1,23 @@
+package sdp.common.world;
+
+import java.awt.image.BufferedImage;
+
+
+/**
+ * A source of a world state's picture.
+ *
+ * Sources may produce the picture lazily, on the first request, so that
+ * nothing has to be drawn while nobody is looking. Every request must
+ * return the same image, so that all states derived from a world state
+ * share its picture.
+ */
+public interface WorldImageSource {
+
+	/**
+	 * Get the picture of the world.
+	 *
+	 * @return The picture of the world or null, if there is none.
+	 */
+	public BufferedImage getWorldImage();
+
+}
@@ -4,6 +4,7 @@ import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Queue;
 import java.util.logging.Logger;
 
@@ -12,6 +13,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import sdp.common.geometry.Circle;
+import sdp.common.geometry.GeomKernel;
 import sdp.common.geometry.GeomUtils;
 import sdp.common.geometry.Vector2D;
 import sdp.common.xml.XmlUtils;
@@ -26,7 +28,7 @@ public class WorldState {
 	private static final Logger LOGGER = Logger.getLogger("sdp.common.world.WorldState");
 	
 	/** Whether to use the alternative ball collision model. */
-	private static final boolean ALT_BALL_COLLISION_MODEL = false;
+	static final boolean ALT_BALL_COLLISION_MODEL = false;
 	
 	/** A flag that denotes that ball should be considered an obstacle. */
 	public static final int BALL_IS_OBSTACLE_FLAG = 0x1;
@@ -36,15 +38,15 @@ public class WorldState {
 	public static final int YELLOW_IS_OBSTACLE_FLAG = 0x4;
 	/** A flag that denotes that walls should be considered an obstacle. */
 	public static final int WALL_IS_OBSTACLE_FLAG = 0x8;
+	/** All obstacle flags together. */
+	private static final int ALL_OBSTACLE_FLAGS = BALL_IS_OBSTACLE_FLAG
+			| BLUE_IS_OBSTACLE_FLAG | YELLOW_IS_OBSTACLE_FLAG | WALL_IS_OBSTACLE_FLAG;
 	
 	/** Radius of the ball obstacle circle. */
-	private static final double BALL_OBSTACLE_RADIUS = 7;
+	static final double BALL_OBSTACLE_RADIUS = 7;
 	/** Radius of the robot obstacle circle. */
 	private static final double ROBOT_OBSTACLE_RADIUS = Robot.LENGTH_CM * 0.7;
 
-	/** Direct path collision check tolerance. */
-	private static final double DIRECT_PATH_CHECK_TOLERANCE = 0.001;
-
 	/** Height of the pitch in centimetres. */
 	public static final double PITCH_HEIGHT_CM = 113.7;
 	/** Width of the pitch in centimetres. */
@@ -53,11 +55,6 @@ public class WorldState {
 	/** Height of the goals in centimetres. */
 	public static final double GOAL_CENTRE_Y = PITCH_HEIGHT_CM / 2;
 
-	/** Width increments of the robot ray in clear path calculations. */
-	private static final double ROBOT_RAY_INCREMENT = 0.05;
-	/** Maximum ray width of the robot in clear path calculations. */
-	private static final double ROBOT_RAY_MAX_WIDTH = 1.2;
-
 
 	/** Location of the ball. */
 	private Point2D.Double ballCoords;
@@ -70,8 +67,17 @@ public class WorldState {
 	/** The right goal. */
 	private Goal rightGoal;
 	
-	/** Picture of the world. */
-	private BufferedImage worldImage;
+	/** Source of the picture of the world. */
+	private WorldImageSource worldImageSource;
+	
+	/**
+	 * Time when the frame this state describes was captured, in
+	 * milliseconds. Defaults to the time of the state's creation.
+	 */
+	private long captureTime;
+	
+	/** Collision engines for each obstacle bitfield, created on demand. */
+	private final CollisionEngine[] collisionEngines = new CollisionEngine[ALL_OBSTACLE_FLAGS + 1];
 	
 
 	/**
@@ -83,7 +89,22 @@ public class WorldState {
 	 * @param worldImage The picture of the field.
 	 */
 	public WorldState(Point2D.Double ballCoords, Robot blueRobot, Robot yellowRobot, BufferedImage worldImage) {
-		update(ballCoords, blueRobot, yellowRobot, worldImage);
+		this(ballCoords, blueRobot, yellowRobot, wrapWorldImage(worldImage));
+	}
+	
+	/**
+	 * Create a new world state, whose picture is produced by the given
+	 * source.
+	 * 
+	 * @param ballCoords Coordinates of the ball.
+	 * @param blueRobot The blue robot.
+	 * @param yellowRobot The yellow robot.
+	 * @param worldImageSource Source of the picture of the field.
+	 */
+	public WorldState(Point2D.Double ballCoords, Robot blueRobot, Robot yellowRobot,
+			WorldImageSource worldImageSource) {
+		update(ballCoords, blueRobot, yellowRobot, worldImageSource);
+		captureTime = System.currentTimeMillis();
 		
 		leftGoal = new Goal(new Point2D.Double(0, GOAL_CENTRE_Y));
 		rightGoal = new Goal(new Point2D.Double(PITCH_WIDTH_CM, GOAL_CENTRE_Y));
@@ -136,12 +157,62 @@ public class WorldState {
 	}
 	
 	/**
-	 * Get the image of the world.
+	 * Get the image of the world. The image might be produced during the
+	 * first call, so states that are derived from this one should use
+	 * {@link #getWorldImageSource()} instead.
 	 * 
-	 * @return The image of the world.
+	 * @return The image of the world or null, if there is none.
 	 */
 	public final BufferedImage getWorldImage() {
-		return worldImage;
+		if (worldImageSource == null) {
+			return null;
+		}
+		return worldImageSource.getWorldImage();
+	}
+	
+	/**
+	 * Get the source of the image of the world.
+	 * 
+	 * @return The source of the world image or null, if there is none.
+	 */
+	public final WorldImageSource getWorldImageSource() {
+		return worldImageSource;
+	}
+	
+	/**
+	 * Get the time when the frame this state describes was captured.
+	 * 
+	 * @return Capture time in milliseconds, as per System.currentTimeMillis().
+	 */
+	public final long getCaptureTime() {
+		return captureTime;
+	}
+	
+	/**
+	 * Set the time when the frame this state describes was captured.
+	 * 
+	 * @param captureTime Capture time in milliseconds.
+	 */
+	public void setCaptureTime(long captureTime) {
+		this.captureTime = captureTime;
+	}
+
+	/**
+	 * Get the collision engine for the given obstacles. The engine is
+	 * created on the first request and reused until the state is updated.
+	 *
+	 * @param obstacles A bitfield that denotes which objects are considered
+	 * 		to be obstacles.
+	 * @return Collision engine of this state.
+	 */
+	public final CollisionEngine getCollisionEngine(int obstacles) {
+		int index = obstacles & ALL_OBSTACLE_FLAGS;
+		CollisionEngine engine = collisionEngines[index];
+		if (engine == null) {
+			engine = new CollisionEngine(this, index);
+			collisionEngines[index] = engine;
+		}
+		return engine;
 	}
 	
 	
@@ -168,10 +239,44 @@ public class WorldState {
 	 */
 	public void update(Point2D.Double ballCoords, Robot blueRobot, Robot yellowRobot,
 			BufferedImage worldImage) {
+		update(ballCoords, blueRobot, yellowRobot, wrapWorldImage(worldImage));
+	}
+	
+	/**
+	 * Update the world state.
+	 * 
+	 * @param ballCoords Coordinates of the ball.
+	 * @param blueRobot The blue robot.
+	 * @param yellowRobot The yellow robot.
+	 * @param worldImageSource Source of the image of the world.
+	 */
+	public void update(Point2D.Double ballCoords, Robot blueRobot, Robot yellowRobot,
+			WorldImageSource worldImageSource) {
 		this.ballCoords = ballCoords;
 		this.blueRobot = blueRobot;
 		this.yellowRobot = yellowRobot;
-		this.worldImage = worldImage;
+		this.worldImageSource = worldImageSource;
+		Arrays.fill(collisionEngines, null);
+	}
+	
+	
+	/**
+	 * Wrap an existing world image into an image source.
+	 * 
+	 * @param worldImage Image to wrap.
+	 * @return Source that always returns the image or null, if the image
+	 * 		is null.
+	 */
+	private static WorldImageSource wrapWorldImage(final BufferedImage worldImage) {
+		if (worldImage == null) {
+			return null;
+		}
+		return new WorldImageSource() {
+			@Override
+			public BufferedImage getWorldImage() {
+				return worldImage;
+			}
+		};
 	}
 
 
@@ -202,11 +307,13 @@ public class WorldState {
 	}
 
 	public static WorldState toCentimeters(WorldState worldState) {
-		return new WorldState(
+		WorldState newState = new WorldState(
 				WorldState.toCentimeters(worldState.getBallCoords()),
 				WorldState.toCentimeters(worldState.getBlueRobot()),
 				WorldState.toCentimeters(worldState.getYellowRobot()),
-				worldState.getWorldImage());
+				worldState.getWorldImageSource());
+		newState.setCaptureTime(worldState.getCaptureTime());
+		return newState;
 	}
 	
 	public static Point2D.Double fromCentimeters(Point2D.Double point) {
@@ -220,11 +327,13 @@ public class WorldState {
 	}
 
 	public static WorldState fromCentimeters(WorldState worldState) {
-		return new WorldState(
+		WorldState newState = new WorldState(
 				WorldState.fromCentimeters(worldState.getBallCoords()),
 				WorldState.fromCentimeters(worldState.getBlueRobot()),
 				WorldState.fromCentimeters(worldState.getYellowRobot()),
-				worldState.getWorldImage());
+				worldState.getWorldImageSource());
+		newState.setCaptureTime(worldState.getCaptureTime());
+		return newState;
 	}
 
 
@@ -247,9 +356,22 @@ public class WorldState {
 	 * @return Whether the point is inside the padded pitch.
 	 */
 	public static boolean isPointInPaddedPitch(Point2D.Double point, double padding) {
-		return ((point.x >= padding) && (point.y >= padding)
-				&& (point.x <= (PITCH_WIDTH_CM - padding))
-				&& (point.y <= (PITCH_HEIGHT_CM - padding)));
+		return WorldState.isPointInPaddedPitch(point.x, point.y, padding);
+	}
+
+	/**
+	 * Check whether the given point is inside the football pitch with some
+	 * padding added on the sides.
+	 * 
+	 * @param x X coordinate of the point in question.
+	 * @param y Y coordinate of the point in question.
+	 * @param padding The amount of wall padding of the pitch.
+	 * @return Whether the point is inside the padded pitch.
+	 */
+	public static boolean isPointInPaddedPitch(double x, double y, double padding) {
+		return ((x >= padding) && (y >= padding)
+				&& (x <= (PITCH_WIDTH_CM - padding))
+				&& (y <= (PITCH_HEIGHT_CM - padding)));
 	}
 	
 
@@ -336,111 +458,9 @@ public class WorldState {
 	 */
 	public static Vector2D getClosestCollisionVec(WorldState state, Vector2D origin,
 			Vector2D direction, int obstacles) {
-		if (!isPointInPitch(origin)) {
-			return Vector2D.ZERO();
-		}
-	
-		class VectorPair {
-			public Vector2D vec1;
-			public Vector2D vec2;
-			
-			public VectorPair(Vector2D vec1, Vector2D vec2) {
-				this.vec1 = vec1;
-				this.vec2 = vec2;
-			}
-		}		
-		ArrayList<VectorPair> segments = new ArrayList<VectorPair>();
-		
-		// Wall collisions.
-		if ((obstacles & WALL_IS_OBSTACLE_FLAG) != 0) {
-			segments.add(new VectorPair(
-					new Vector2D(0.0, 0.0),
-					new Vector2D(PITCH_WIDTH_CM, 0.0))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(PITCH_WIDTH_CM, 0.0),
-					new Vector2D(PITCH_WIDTH_CM, PITCH_HEIGHT_CM))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(PITCH_WIDTH_CM, PITCH_HEIGHT_CM),
-					new Vector2D(0.0, PITCH_HEIGHT_CM))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(0.0, PITCH_HEIGHT_CM),
-					new Vector2D(0.0, 0.0))
-			);
-		}
-		
-		// Ball collisions.
-		if ((obstacles & BALL_IS_OBSTACLE_FLAG) != 0) {
-			Vector2D offsetVec1, offsetVec2;
-			
-			if (ALT_BALL_COLLISION_MODEL) {
-				offsetVec1 = new Vector2D(0, BALL_OBSTACLE_RADIUS);
-				offsetVec2 = new Vector2D(0, -BALL_OBSTACLE_RADIUS);
-			} else {
-				Vector2D perpDir = Vector2D.getPerpendicular(direction);
-				offsetVec1 = Vector2D.changeLength(perpDir, BALL_OBSTACLE_RADIUS);
-				offsetVec2 = Vector2D.changeLength(perpDir, -BALL_OBSTACLE_RADIUS);
-			}
-			
-			segments.add(new VectorPair(
-					Vector2D.add(new Vector2D(state.getBallCoords()), offsetVec1),
-					Vector2D.add(new Vector2D(state.getBallCoords()), offsetVec2))
-			);
-		}
-		
-		// Blue robot collisions.
-		if ((obstacles & BLUE_IS_OBSTACLE_FLAG) != 0) {
-			segments.add(new VectorPair(
-					new Vector2D(state.getBlueRobot().getFrontLeft()),
-					new Vector2D(state.getBlueRobot().getFrontRight()))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(state.getBlueRobot().getFrontRight()),
-					new Vector2D(state.getBlueRobot().getBackRight()))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(state.getBlueRobot().getBackRight()),
-					new Vector2D(state.getBlueRobot().getBackLeft()))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(state.getBlueRobot().getBackLeft()),
-					new Vector2D(state.getBlueRobot().getFrontLeft()))
-			);
-		}
-		
-		// Yellow robot collisions.
-		if ((obstacles & YELLOW_IS_OBSTACLE_FLAG) != 0) {
-			segments.add(new VectorPair(
-					new Vector2D(state.getYellowRobot().getFrontLeft()),
-					new Vector2D(state.getYellowRobot().getFrontRight()))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(state.getYellowRobot().getFrontRight()),
-					new Vector2D(state.getYellowRobot().getBackRight()))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(state.getYellowRobot().getBackRight()),
-					new Vector2D(state.getYellowRobot().getBackLeft()))
-			);
-			segments.add(new VectorPair(
-					new Vector2D(state.getYellowRobot().getBackLeft()),
-					new Vector2D(state.getYellowRobot().getFrontLeft()))
-			);
-		}
-		
-		// Actual collision test.
-		Vector2D nearest = Vector2D.changeLength(direction, PITCH_WIDTH_CM);
-		for (VectorPair segment : segments) {
-			Vector2D current = GeomUtils.getLocalRaySegmentIntersection(origin, direction,
-					segment.vec1, segment.vec2);
-			if ((current != null) && (current.getLength() < nearest.getLength())) {
-				nearest = current;
-			}
-		}
-		
-		return nearest;
+		double dist = state.getCollisionEngine(obstacles).getCollisionDistance(origin.x,
+				origin.y, direction.x, direction.y);
+		return Vector2D.changeLength(direction, dist);
 	}
 	
 	/**
@@ -485,22 +505,29 @@ public class WorldState {
 	 */
 	public static Vector2D[] getClosestSideCollisions(WorldState state,
 			Vector2D startPt, Vector2D dirPt, double widthFactor, int obstacles) {
-		Vector2D dir = Vector2D.subtract(dirPt, startPt);
-		double angle = (-dir.getDirection() + 90) * Math.PI / 180d;
+		double dirX = dirPt.x - startPt.x;
+		double dirY = dirPt.y - startPt.y;
+		double angle = (-GeomKernel.getDirection(dirX, dirY) + 90) * Math.PI / 180d;
 		
 		double factor = widthFactor * Robot.WIDTH_CM / 2;
 		double cos = Math.cos(angle);
 		double sin = Math.sin(angle);
 		
-		Vector2D leftOffset = new Vector2D(cos * factor, sin * factor);
-		Vector2D leftStartPt = Vector2D.add(startPt, leftOffset);
-		Vector2D leftColl = getClosestCollisionVec(state, leftStartPt, dir, obstacles);
+		CollisionEngine engine = state.getCollisionEngine(obstacles);
+		double collisions[] = new double[4];
+		
+		double leftDist = engine.getCollisionDistance(startPt.x + cos * factor,
+				startPt.y + sin * factor, dirX, dirY);
+		GeomKernel.changeLength(dirX, dirY, leftDist, collisions, 0);
 		
-		Vector2D rightOffset = new Vector2D(-cos * factor, -sin * factor);
-		Vector2D rightStartPt = Vector2D.add(startPt, rightOffset);
-		Vector2D rightColl = getClosestCollisionVec(state, rightStartPt, dir, obstacles);
+		double rightDist = engine.getCollisionDistance(startPt.x - cos * factor,
+				startPt.y - sin * factor, dirX, dirY);
+		GeomKernel.changeLength(dirX, dirY, rightDist, collisions, 2);
 		
-		Vector2D retValue[] = { leftColl, rightColl };
+		Vector2D retValue[] = {
+				new Vector2D(collisions[0], collisions[1]),
+				new Vector2D(collisions[2], collisions[3])
+		};
 		return retValue;
 	}
 
@@ -522,22 +549,8 @@ public class WorldState {
 	 */
 	public static boolean isDirectPathClear(WorldState state, Vector2D point1,
 			Vector2D point2, int obstacles) {
-		double pathLength = Vector2D.subtract(point2, point1).getLength();
-		pathLength -= DIRECT_PATH_CHECK_TOLERANCE;
-		
-		double factor = 0.0;
-		while (factor <= ROBOT_RAY_MAX_WIDTH) {
-			Vector2D sideColls[] = getClosestSideCollisions(state, point1,
-					point2, factor, obstacles);
-			if ((sideColls[0].getLength() < pathLength)
-					|| (sideColls[1].getLength() < pathLength)) {
-				return false;
-			}
-
-			factor += ROBOT_RAY_INCREMENT;
-		}
-
-		return true;
+		return state.getCollisionEngine(obstacles).isPathClear(point1.x, point1.y,
+				point2.x, point2.y);
 	}
 	
 	
@@ -595,7 +608,7 @@ public class WorldState {
 		
 
 		
-		WorldState worldState = new WorldState(ball, blueRobot, yellowRobot, null);
+		WorldState worldState = new WorldState(ball, blueRobot, yellowRobot, (WorldImageSource) null);
 		
 		return worldState;
 	}
@@ -669,36 +682,58 @@ public class WorldState {
 	 * @return the vector to the closest point when collision may occur
 	 */
 	public static Vector2D getNearestCollisionPoint(WorldState ls, boolean am_i_blue, Point2D.Double point, boolean include_enemy) {
-		Robot enemy = am_i_blue ? ls.getYellowRobot() : ls.getBlueRobot();
-		Vector2D[] enemy_pts = new Vector2D[] {
-				new Vector2D(enemy.getFrontLeft()),
-				new Vector2D(enemy.getFrontRight()),
-				new Vector2D(enemy.getBackLeft()),
-				new Vector2D(enemy.getBackRight())
-		};
 		// top wall test
-		Vector2D temp = Vector2D.subtract(new Vector2D(0, PITCH_HEIGHT_CM), new Vector2D(0, point.getY()));
-		Vector2D min = temp;
+		double minX = 0.0, minY = PITCH_HEIGHT_CM - point.y;
+		double minLength = GeomKernel.getLength(minX, minY);
 		// bottom wall test
-		temp = Vector2D.subtract(new Vector2D(0, 0), new Vector2D(0, point.getY()));
-		if (temp.getLength() < min.getLength())
-			min = temp;
+		double tempY = 0 - point.y;
+		double tempLength = GeomKernel.getLength(0.0, tempY);
+		if (tempLength < minLength) {
+			minX = 0.0;
+			minY = tempY;
+			minLength = tempLength;
+		}
 		// left wall test
-		temp = Vector2D.subtract(new Vector2D(0, 0), new Vector2D(point.getX(), 0));
-		if (temp.getLength() < min.getLength())
-			min = temp;
+		double tempX = 0 - point.x;
+		tempLength = GeomKernel.getLength(tempX, 0.0);
+		if (tempLength < minLength) {
+			minX = tempX;
+			minY = 0.0;
+			minLength = tempLength;
+		}
 		// right wall test
-		temp = Vector2D.subtract(new Vector2D(PITCH_WIDTH_CM, 0), new Vector2D(point.getX(), 0));
-		if (temp.getLength() < min.getLength())
-			min = temp;
+		tempX = PITCH_WIDTH_CM - point.x;
+		tempLength = GeomKernel.getLength(tempX, 0.0);
+		if (tempLength < minLength) {
+			minX = tempX;
+			minY = 0.0;
+			minLength = tempLength;
+		}
 		// closest distance to enemy
 		if (include_enemy) {
-			temp = GeomUtils.getMinVectorToPoints(enemy_pts, new Vector2D(point));
-			if (temp.getLength() < min.getLength())
-				min = temp;
+			Robot enemy = am_i_blue ? ls.getYellowRobot() : ls.getBlueRobot();
+			final int enemy_corners[] = {
+					Robot.FRONT_LEFT, Robot.FRONT_RIGHT, Robot.BACK_LEFT, Robot.BACK_RIGHT
+			};
+			double cornerX = 0, cornerY = 0, cornerLength = -1;
+			for (int corner : enemy_corners) {
+				tempX = enemy.getCornerX(corner) - point.x;
+				tempY = enemy.getCornerY(corner) - point.y;
+				tempLength = GeomKernel.getLength(tempX, tempY);
+				if ((cornerLength < 0) || (tempLength < cornerLength)) {
+					cornerX = tempX;
+					cornerY = tempY;
+					cornerLength = tempLength;
+				}
+			}
+			if (cornerLength < minLength) {
+				minX = cornerX;
+				minY = cornerY;
+				minLength = cornerLength;
+			}
 		}
 		// we have our point
-		return min;
+		return new Vector2D(minX, minY);
 	}
 	
 	public static void saveMovie(WorldState[] states, String dir, String[] subtitles, Vector2D[][] points) {
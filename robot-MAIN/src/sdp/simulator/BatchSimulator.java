@@ -0,0 +1,257 @@
+package sdp.simulator;
+
+import java.awt.geom.Point2D;
+
+import sdp.common.WorldStateRandomizer;
+import sdp.common.geometry.Vector2D;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * A headless simulator for batch runs, such as the fitness evaluations of
+ * the genetic algorithm.
+ *
+ * It steps the Box2D physics of a {@link SimulatorPhysicsEngine} that runs
+ * without a real-time thread, but nothing is broadcast to observers and no
+ * images are drawn. The observed states are kept in centimetres in a ring
+ * buffer of reusable world states, which delays them by a fixed number of
+ * frames like the camera does. A simulator can be reused for any number of
+ * games, see {@link #reset(long)}. The noise of the observed states comes
+ * from the simulator's own seeded random numbers, so a game that is started
+ * with the same seed and driven with the same commands is observed the same
+ * way every time.
+ *
+ * The world states are overwritten once they leave the delay line, so
+ * they must not be kept for longer than that.
+ */
+public final class BatchSimulator {
+
+	/** Position noise of the observed objects in centimetres. */
+	private static final double POSITION_NOISE = 0.2;
+	/** Direction noise of the observed robots in degrees. */
+	private static final double ANGLE_NOISE = 1;
+
+
+	/** The physics engine. */
+	private final SimulatorPhysicsEngine engine;
+	/** Whether noise is added to the observed states. */
+	private final boolean randomnessEnabled;
+	/** Source of the noise. */
+	private final WorldStateRandomizer noise = new WorldStateRandomizer(0);
+
+	/** Robot communicator of the blue robot. */
+	private final VBrick blueBrick = new VBrick();
+	/** Robot communicator of the yellow robot. */
+	private final VBrick yellowBrick = new VBrick();
+
+	/** The delay line of observed states, in centimetres. */
+	private final WorldState[] states;
+	/** Ball positions of the delay line's states. */
+	private final Point2D.Double[] balls;
+	/** Blue robots of the delay line's states. */
+	private final Robot[] blueRobots;
+	/** Yellow robots of the delay line's states. */
+	private final Robot[] yellowRobots;
+	/** Index of the most recent state in the delay line. */
+	private int head = 0;
+
+
+	/**
+	 * Create a new batch simulator.
+	 *
+	 * @param delay Number of frames, by which the observed states are delayed.
+	 * @param randomnessEnabled Whether to add noise to the observed states.
+	 */
+	public BatchSimulator(int delay, boolean randomnessEnabled) {
+		engine = new SimulatorPhysicsEngine(false, false);
+		this.randomnessEnabled = randomnessEnabled;
+
+		states = new WorldState[delay + 1];
+		balls = new Point2D.Double[states.length];
+		blueRobots = new Robot[states.length];
+		yellowRobots = new Robot[states.length];
+		for (int i = 0; i < states.length; ++i) {
+			balls[i] = new Point2D.Double();
+			blueRobots[i] = new Robot(new Point2D.Double(), 0, true);
+			yellowRobots[i] = new Robot(new Point2D.Double(), 0, true);
+			states[i] = new WorldState(balls[i], blueRobots[i], yellowRobots[i],
+					(WorldImageSource) null);
+		}
+
+		reset(0);
+	}
+
+
+	/**
+	 * Prepare the simulator for a new game. The robots are stopped, the
+	 * callback is removed and the objects are put back to their starting
+	 * positions. The noise starts over from the given seed, and the delay line
+	 * is filled with the starting state.
+	 *
+	 * @param seed Seed of the noise.
+	 */
+	public void reset(long seed) {
+		engine.callback = null;
+		noise.setSeed(seed);
+		engine.registerBlue(blueBrick, 40, WorldState.PITCH_HEIGHT_CM / 2, 0);
+		engine.registerYellow(yellowBrick, WorldState.PITCH_WIDTH_CM - 40,
+				WorldState.PITCH_HEIGHT_CM / 2, 0);
+		engine.putBallAt();
+
+		for (int i = 0; i < Simulator.MAX_NUM_ROBOTS; ++i) {
+			engine.speeds[i] = 0;
+			engine.turning_speeds[i] = 0;
+		}
+		stopBrick(blueBrick);
+		stopBrick(yellowBrick);
+
+		// A step of no time ends the contacts of the last game.
+		engine.simulate(0);
+
+		for (int i = 0; i < states.length; ++i) {
+			head = i;
+			observe();
+		}
+	}
+
+	/**
+	 * Stop a robot and restore its default acceleration.
+	 *
+	 * @param brick Robot communicator to reset.
+	 */
+	private static void stopBrick(VBrick brick) {
+		brick.desired_speed = 0;
+		brick.desired_turning_speed = 0;
+		brick.is_kicking = false;
+		brick.resetAcceleration();
+	}
+
+
+	/**
+	 * Advance the simulation and observe the new state.
+	 *
+	 * @param dt Simulated time in seconds.
+	 */
+	public void simulate(double dt) {
+		engine.simulate(dt);
+		head = (head + 1) % states.length;
+		observe();
+	}
+
+	/**
+	 * Store the current state of the physics engine in the delay line's
+	 * head, adding noise if enabled.
+	 */
+	private void observe() {
+		Vector2D ball = engine.getBall();
+		Vector2D[] positions = engine.getRobotPositions();
+		double[] directions = engine.getRbotDirections();
+
+		Point2D.Double ballCoords = balls[head];
+		ballCoords.setLocation(ball.x + getNoise(POSITION_NOISE), ball.y + getNoise(POSITION_NOISE));
+		updateRobot(blueRobots[head], positions[0], directions[0]);
+		updateRobot(yellowRobots[head], positions[1], directions[1]);
+
+		states[head].update(ballCoords, blueRobots[head], yellowRobots[head],
+				(WorldImageSource) null);
+	}
+
+	/**
+	 * Move a robot of the delay line to the observed position.
+	 *
+	 * @param robot Robot to update.
+	 * @param position Its position in centimetres.
+	 * @param direction Its direction in degrees.
+	 */
+	private void updateRobot(Robot robot, Vector2D position, double direction) {
+		Point2D.Double coords = robot.getCoords();
+		coords.setLocation(position.x + getNoise(POSITION_NOISE),
+				position.y + getNoise(POSITION_NOISE));
+		robot.setCoords(coords, direction + getNoise(ANGLE_NOISE), true);
+	}
+
+	/**
+	 * Get the noise of an observed value.
+	 *
+	 * @param amount Maximum magnitude of the noise.
+	 * @return The noise, or 0 if randomness is disabled.
+	 */
+	private double getNoise(double amount) {
+		return randomnessEnabled ? amount * noise.next() : 0;
+	}
+
+
+	/**
+	 * Get the most recent observed state.
+	 *
+	 * @return The current state in centimetres.
+	 */
+	public WorldState getCurrentState() {
+		return states[head];
+	}
+
+	/**
+	 * Get the observed state that has just left the delay line. This is the
+	 * state the robots' controllers see.
+	 *
+	 * @return The delayed state in centimetres.
+	 */
+	public WorldState getDelayedState() {
+		return states[(head + 1) % states.length];
+	}
+
+
+	/**
+	 * Put the ball at the given location.
+	 *
+	 * @param x X coordinate, normalised.
+	 * @param y Y coordinate, normalised.
+	 */
+	public void putBallAt(double x, double y) {
+		engine.putBallAt(x, y);
+	}
+
+	/**
+	 * Put a robot at the given location.
+	 *
+	 * @param x X coordinate, normalised.
+	 * @param y Y coordinate, normalised.
+	 * @param id 0 for the blue robot, 1 for the yellow one.
+	 * @param direction Direction in degrees.
+	 */
+	public void putAt(double x, double y, int id, double direction) {
+		engine.putAt(x, y, id, direction);
+	}
+
+
+	/**
+	 * Set the callback that receives the physics events.
+	 *
+	 * @param callback The callback or null.
+	 */
+	public void setCallback(SimulatorPhysicsEngine.Callback callback) {
+		engine.callback = callback;
+	}
+
+
+	/**
+	 * Get the communicator of the blue robot.
+	 *
+	 * @return The blue robot's communicator.
+	 */
+	public VBrick getBlueBrick() {
+		return blueBrick;
+	}
+
+	/**
+	 * Get the communicator of the yellow robot.
+	 *
+	 * @return The yellow robot's communicator.
+	 */
+	public VBrick getYellowBrick() {
+		return yellowBrick;
+	}
+
+}
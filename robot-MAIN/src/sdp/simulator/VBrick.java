@@ -26,6 +26,9 @@ public class VBrick implements Communicator {
 	public static final float WHEELR = 4F;
 	// acceleration set on brick
 	public double acc = 1000; // acc in degrees/s/s
+	// default driving (cm/s/s) and turning (degrees/s/s) accelerations of the robot
+	public static final double DEFAULT_ACCELERATION = 1000*0.017453292519943295*WHEELR;
+	public static final double DEFAULT_TURN_ACCELERATION = 1000*WHEELR/ROBOTR;
 	// robot size
 	public static final double ROBOT_WIDTH = Robot.WIDTH*WorldState.PITCH_WIDTH_CM; // in cm
 	public static final double ROBOT_LENGTH = Robot.LENGTH*WorldState.PITCH_WIDTH_CM; // in cm
@@ -36,8 +39,8 @@ public class VBrick implements Communicator {
 	public static final Vector2D back_right = new Vector2D(-ROBOT_LENGTH / 2, -ROBOT_WIDTH / 2);
 	public static final Vector2D[] rect = new Vector2D[] {front_left, front_right, back_right, back_left};
 	
-	private double acceleration = acc*0.017453292519943295*WHEELR;//69.8;
-	private double turn_acceleration = acc*WHEELR/ROBOTR;
+	private double acceleration = DEFAULT_ACCELERATION;//69.8;
+	private double turn_acceleration = DEFAULT_TURN_ACCELERATION;
 	
 	public boolean is_kicking = false;
 
@@ -79,7 +82,16 @@ public class VBrick implements Communicator {
 		if (!mListener.contains(listener))
 			mListener.add(listener);
 	}
-	
+
+	/**
+	 * Restore the default driving and turning accelerations.
+	 */
+	void resetAcceleration() {
+		acc = 1000;
+		acceleration = DEFAULT_ACCELERATION;
+		turn_acceleration = DEFAULT_TURN_ACCELERATION;
+	}
+
 	/**
 	 * Calculate speed given old_speed and a time difference
 	 * 
@@ -1,12 +1,15 @@
 package sdp.vision;
 
 import java.awt.image.BufferedImage;
+import java.util.logging.Logger;
 
+import sdp.common.BoundedQueue;
 import sdp.common.WorldStateProvider;
 import sdp.common.world.WorldState;
 import sdp.vision.processing.ImageProcessorConfig;
 import sdp.vision.processing.MainImageProcessor;
 import sdp.vision.processing.BaseImageProcessor;
+import sdp.vision.visualinput.CapturedFrame;
 import sdp.vision.visualinput.VisualInputCallback;
 
 
@@ -16,13 +19,27 @@ import sdp.vision.visualinput.VisualInputCallback;
  * For the love of FSM, do not set an instance of this class as a callback to
  * multiple VisualInputProviders.
  * 
+ * By default, frames are processed synchronously on the thread that
+ * delivers them. In pipelined mode, they are instead handed over to a
+ * {@link VisionPipeline}, which processes them on its own threads.
+ * 
  * @author Gediminas Liktaras
  */
-public class Vision extends WorldStateProvider implements VisualInputCallback {
+public class Vision extends WorldStateProvider implements VisualInputCallback,
+		VisionPipeline.Publisher {
+	
+	/** The class' logger. */
+	private static final Logger LOGGER = Logger.getLogger("sdp.vision.Vision");
+	
+	/** Default capacity of the pipeline's stage queues. */
+	public static final int DEFAULT_PIPELINE_QUEUE_CAPACITY = 2;
 	
 	/** Image processor. */
 	private BaseImageProcessor imageProcessor;
 	
+	/** Frame processing pipeline. Null when pipelined mode is off. */
+	private volatile VisionPipeline pipeline = null;
+	
 	/** Whether the vision system is enabled. */
 	private boolean isEnabled = true;
 	
@@ -70,6 +87,46 @@ public class Vision extends WorldStateProvider implements VisualInputCallback {
 	}
 	
 	
+	/**
+	 * Switch to pipelined frame processing. Only supported with
+	 * {@link MainImageProcessor}.
+	 * 
+	 * @param queueCapacity Capacity of each pipeline stage's input queue.
+	 * @param policy What to do with frames when a stage falls behind.
+	 */
+	public synchronized void startPipeline(int queueCapacity, BoundedQueue.OverflowPolicy policy) {
+		if (!(imageProcessor instanceof MainImageProcessor)) {
+			LOGGER.warning("Pipelined processing is not supported by the current image processor.");
+			return;
+		}
+		
+		stopPipeline();
+		VisionPipeline newPipeline = new VisionPipeline((MainImageProcessor) imageProcessor,
+				this, queueCapacity, policy);
+		newPipeline.start();
+		pipeline = newPipeline;
+	}
+	
+	/**
+	 * Switch back to synchronous frame processing.
+	 */
+	public synchronized void stopPipeline() {
+		if (pipeline != null) {
+			pipeline.stop();
+			pipeline = null;
+		}
+	}
+	
+	/**
+	 * Get the frame processing pipeline.
+	 * 
+	 * @return The pipeline or null, if pipelined mode is off.
+	 */
+	public VisionPipeline getPipeline() {
+		return pipeline;
+	}
+	
+	
 	/**
 	 * A convenience function to get the world state out of an image.
 	 * 
@@ -81,15 +138,32 @@ public class Vision extends WorldStateProvider implements VisualInputCallback {
 	}
 
 	/** (non-Javadoc)
-	 * @see sdp.vision.VisualInputCallback#nextFrame(java.awt.image.BufferedImage)
+	 * @see sdp.vision.VisualInputCallback#nextFrame(sdp.vision.visualinput.CapturedFrame)
 	 */	
 	@Override
-	public void nextFrame(BufferedImage frame) {
+	public void nextFrame(CapturedFrame frame) {
 		if (isEnabled) {
-			WorldState nextState = extractWorldState(frame);
-			setChanged();
-			notifyObservers(nextState);
+			VisionPipeline currentPipeline = pipeline;
+			if (currentPipeline != null) {
+				currentPipeline.submitFrame(frame);
+			} else {
+				BufferedImage image = frame.getImage();
+				if (image != null) {
+					WorldState nextState = extractWorldState(image);
+					nextState.setCaptureTime(frame.getCaptureTime());
+					publishState(nextState);
+				}
+			}
 		}
 	}
 	
+	/**
+	 * @see sdp.vision.VisionPipeline.Publisher#publishState(sdp.common.world.WorldState)
+	 */
+	@Override
+	public void publishState(WorldState state) {
+		setChanged();
+		notifyObservers(state);
+	}
+	
 }
@@ -0,0 +1,485 @@
+package sdp.vision;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import sdp.common.BoundedQueue;
+import sdp.common.world.WorldState;
+import sdp.vision.processing.FrameBuffers;
+import sdp.vision.processing.MainImageProcessor;
+import sdp.vision.visualinput.CapturedFrame;
+
+
+/**
+ * A multi-threaded frame processing pipeline.
+ *
+ * Each frame passes through five stages: decoding, preprocessing (which
+ * includes undistortion), thresholding, feature extraction and world state
+ * publishing. Every stage runs on its own thread, and the stages are
+ * connected by bounded lock-free queues. When a stage falls behind, its
+ * input queue drops frames according to the pipeline's overflow policy, so
+ * the capture thread is never blocked and latency does not pile up.
+ *
+ * Each frame's capture time is carried through the pipeline and stored in
+ * the resulting world state.
+ */
+public class VisionPipeline {
+
+	/**
+	 * Receiver of the world states the pipeline produces.
+	 */
+	public interface Publisher {
+
+		/**
+		 * Publish a freshly extracted world state. Called from the
+		 * pipeline's publishing thread.
+		 *
+		 * @param state New world state.
+		 */
+		public void publishState(WorldState state);
+
+	}
+
+
+	/** The class' logger. */
+	private static final Logger LOGGER = Logger.getLogger("sdp.vision.VisionPipeline");
+
+	/** How long stage threads wait for input before rechecking state, in ms. */
+	private static final long STAGE_POLL_TIMEOUT = 100;
+	/** How long to wait for a stage thread to stop, in milliseconds. */
+	private static final long STAGE_JOIN_TIMEOUT = 1000;
+
+
+	/** Image processor that does the work. */
+	private MainImageProcessor processor;
+	/** Receiver of the produced world states. */
+	private Publisher publisher;
+
+	/** Input queues of the stages, in stage order. */
+	private List<BoundedQueue<PipelineFrame>> queues;
+	/** Stage threads, in stage order. */
+	private Stage[] stages;
+
+	/** Whether the pipeline is running. */
+	private volatile boolean running = false;
+
+
+	/**
+	 * Create a new vision pipeline.
+	 *
+	 * @param processor Image processor to use.
+	 * @param publisher Receiver of the produced world states.
+	 * @param queueCapacity Capacity of each stage's input queue.
+	 * @param policy What to do with frames when a stage falls behind.
+	 */
+	public VisionPipeline(MainImageProcessor processor, Publisher publisher,
+			int queueCapacity, BoundedQueue.OverflowPolicy policy) {
+		this.processor = processor;
+		this.publisher = publisher;
+
+		stages = new Stage[] {
+				new DecodeStage(), new PreprocessStage(), new ThresholdStage(),
+				new FeatureStage(), new PublishStage()
+		};
+
+		queues = new ArrayList<BoundedQueue<PipelineFrame>>(stages.length);
+		for (int i = 0; i < stages.length; ++i) {
+			queues.add(new BoundedQueue<PipelineFrame>(queueCapacity, policy));
+		}
+		for (int i = 0; i < stages.length; ++i) {
+			stages[i].setQueues(queues.get(i), (i + 1 < stages.length) ? queues.get(i + 1) : null);
+		}
+	}
+
+
+	/**
+	 * Start the pipeline's threads.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+
+		running = true;
+		for (Stage stage : stages) {
+			stage.start();
+		}
+		LOGGER.info("Vision pipeline started.");
+	}
+
+	/**
+	 * Stop the pipeline's threads and discard any frames in flight. A stopped
+	 * pipeline cannot be restarted.
+	 *
+	 * A stage that does not stop in time, or a frame submitted while the
+	 * pipeline stops, can still put a frame into a queue after it has been
+	 * drained here. Whoever does so drains the queue again, see
+	 * {@link #passOn(BoundedQueue, PipelineFrame)}.
+	 */
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+
+		running = false;
+		for (Stage stage : stages) {
+			stage.interrupt();
+		}
+		for (Stage stage : stages) {
+			try {
+				stage.join(STAGE_JOIN_TIMEOUT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		for (BoundedQueue<PipelineFrame> queue : queues) {
+			drainQueue(queue);
+		}
+		LOGGER.info("Vision pipeline stopped.");
+	}
+
+	/**
+	 * Check whether the pipeline is running.
+	 *
+	 * @return Whether the pipeline is running.
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+
+	/**
+	 * Submit a frame for processing. This method never blocks.
+	 *
+	 * @param frame Frame to process.
+	 */
+	public void submitFrame(CapturedFrame frame) {
+		if (!running) {
+			return;
+		}
+		passOn(queues.get(0), new PipelineFrame(frame));
+	}
+
+
+	/**
+	 * Get how many frames were submitted to the pipeline.
+	 *
+	 * @return Number of submitted frames.
+	 */
+	public long getSubmittedFrameCount() {
+		return queues.get(0).getOfferCount();
+	}
+
+	/**
+	 * Get how many frames were dropped by all stages.
+	 *
+	 * @return Number of dropped frames.
+	 */
+	public long getDroppedFrameCount() {
+		long dropCount = 0;
+		for (BoundedQueue<PipelineFrame> queue : queues) {
+			dropCount += queue.getDropCount();
+		}
+		return dropCount;
+	}
+
+	/**
+	 * Get how many frames were published.
+	 *
+	 * @return Number of published frames.
+	 */
+	public long getPublishedFrameCount() {
+		return stages[stages.length - 1].getProcessedCount();
+	}
+
+
+	/**
+	 * Put a frame into a queue. If the pipeline has been stopped meanwhile,
+	 * the queue is drained, since no stage will take the frame anymore.
+	 *
+	 * @param queue Queue to put the frame into.
+	 * @param frame Frame to put into the queue.
+	 */
+	private void passOn(BoundedQueue<PipelineFrame> queue, PipelineFrame frame) {
+		discardFrame(queue.offer(frame));
+		if (!running) {
+			drainQueue(queue);
+		}
+	}
+
+	/**
+	 * Discard all frames in a queue.
+	 *
+	 * @param queue Queue to drain.
+	 */
+	private void drainQueue(BoundedQueue<PipelineFrame> queue) {
+		PipelineFrame frame = queue.poll();
+		while (frame != null) {
+			discardFrame(frame);
+			frame = queue.poll();
+		}
+	}
+
+	/**
+	 * Release the resources held by a frame that will not be processed
+	 * further.
+	 *
+	 * @param frame Frame to discard. Can be null.
+	 */
+	private void discardFrame(PipelineFrame frame) {
+		if ((frame != null) && (frame.buffers != null)) {
+			processor.endFrame(frame.buffers);
+			frame.buffers = null;
+		}
+	}
+
+
+	/**
+	 * A frame, travelling through the pipeline.
+	 */
+	private static class PipelineFrame {
+
+		/** The captured frame. */
+		public CapturedFrame capturedFrame;
+		/** Decoded frame image. */
+		public BufferedImage image = null;
+		/** Processing buffers of the frame. */
+		public FrameBuffers buffers = null;
+		/** Extracted world state. */
+		public WorldState state = null;
+
+
+		/**
+		 * Create a new pipeline frame.
+		 *
+		 * @param capturedFrame The captured frame.
+		 */
+		public PipelineFrame(CapturedFrame capturedFrame) {
+			this.capturedFrame = capturedFrame;
+		}
+
+	}
+
+
+	/**
+	 * A pipeline stage thread.
+	 */
+	private abstract class Stage extends Thread {
+
+		/** Queue the stage takes frames from. */
+		private BoundedQueue<PipelineFrame> input;
+		/** Queue the stage puts processed frames into. Null for the last stage. */
+		private BoundedQueue<PipelineFrame> output;
+
+		/** How many frames the stage has processed. */
+		private volatile long processedCount = 0;
+
+
+		/**
+		 * Create a new stage.
+		 *
+		 * @param name Name of the stage.
+		 */
+		public Stage(String name) {
+			super("Vision pipeline " + name + " stage");
+			setDaemon(true);
+		}
+
+
+		/**
+		 * Set the stage's queues.
+		 *
+		 * @param input Queue to take frames from.
+		 * @param output Queue to put processed frames into.
+		 */
+		public void setQueues(BoundedQueue<PipelineFrame> input,
+				BoundedQueue<PipelineFrame> output) {
+			this.input = input;
+			this.output = output;
+		}
+
+		/**
+		 * Get how many frames the stage has processed.
+		 *
+		 * @return Number of processed frames.
+		 */
+		public long getProcessedCount() {
+			return processedCount;
+		}
+
+
+		/**
+		 * Process a single frame.
+		 *
+		 * @param frame Frame to process.
+		 * @return Whether the frame should be passed on to the next stage.
+		 */
+		protected abstract boolean process(PipelineFrame frame);
+
+
+		/**
+		 * @see java.lang.Thread#run()
+		 */
+		@Override
+		public void run() {
+			while (running) {
+				PipelineFrame frame;
+				try {
+					frame = input.take(STAGE_POLL_TIMEOUT);
+				} catch (InterruptedException e) {
+					break;
+				}
+				if (frame == null) {
+					continue;
+				}
+
+				boolean passOn = false;
+				try {
+					passOn = process(frame);
+				} catch (RuntimeException e) {
+					LOGGER.warning("Failed to process a frame in " + getName() + ".");
+					e.printStackTrace();
+				}
+				++processedCount;
+
+				if (passOn && (output != null)) {
+					passOn(output, frame);
+				} else {
+					discardFrame(frame);
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * Frame decoding stage.
+	 */
+	private class DecodeStage extends Stage {
+
+		/**
+		 * Create a new decoding stage.
+		 */
+		public DecodeStage() {
+			super("decode");
+		}
+
+		/**
+		 * @see sdp.vision.VisionPipeline.Stage#process(sdp.vision.VisionPipeline.PipelineFrame)
+		 */
+		@Override
+		protected boolean process(PipelineFrame frame) {
+			frame.image = frame.capturedFrame.getImage();
+			return (frame.image != null);
+		}
+
+	}
+
+
+	/**
+	 * Frame preprocessing and undistortion stage.
+	 */
+	private class PreprocessStage extends Stage {
+
+		/**
+		 * Create a new preprocessing stage.
+		 */
+		public PreprocessStage() {
+			super("preprocess");
+		}
+
+		/**
+		 * @see sdp.vision.VisionPipeline.Stage#process(sdp.vision.VisionPipeline.PipelineFrame)
+		 */
+		@Override
+		protected boolean process(PipelineFrame frame) {
+			frame.buffers = processor.beginFrame();
+			processor.preprocessFrame(frame.image, frame.buffers);
+			frame.image = null;
+			return true;
+		}
+
+	}
+
+
+	/**
+	 * Frame thresholding stage.
+	 */
+	private class ThresholdStage extends Stage {
+
+		/**
+		 * Create a new thresholding stage.
+		 */
+		public ThresholdStage() {
+			super("threshold");
+		}
+
+		/**
+		 * @see sdp.vision.VisionPipeline.Stage#process(sdp.vision.VisionPipeline.PipelineFrame)
+		 */
+		@Override
+		protected boolean process(PipelineFrame frame) {
+			processor.thresholdFrame(frame.buffers);
+			return true;
+		}
+
+	}
+
+
+	/**
+	 * Contour and feature extraction stage.
+	 */
+	private class FeatureStage extends Stage {
+
+		/**
+		 * Create a new feature extraction stage.
+		 */
+		public FeatureStage() {
+			super("feature");
+		}
+
+		/**
+		 * @see sdp.vision.VisionPipeline.Stage#process(sdp.vision.VisionPipeline.PipelineFrame)
+		 */
+		@Override
+		protected boolean process(PipelineFrame frame) {
+			frame.state = processor.extractFeatures(frame.buffers);
+			frame.state.setCaptureTime(frame.capturedFrame.getCaptureTime());
+
+			processor.endFrame(frame.buffers);
+			frame.buffers = null;
+			return true;
+		}
+
+	}
+
+
+	/**
+	 * World state publishing stage.
+	 */
+	private class PublishStage extends Stage {
+
+		/**
+		 * Create a new publishing stage.
+		 */
+		public PublishStage() {
+			super("publish");
+		}
+
+		/**
+		 * @see sdp.vision.VisionPipeline.Stage#process(sdp.vision.VisionPipeline.PipelineFrame)
+		 */
+		@Override
+		protected boolean process(PipelineFrame frame) {
+			publisher.publishState(frame.state);
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,624 @@
+package sdp.vision.processing;
+
+
+/**
+ * A single-pass connected component labeller for pixel classification
+ * buffers.
+ *
+ * A classification buffer holds a byte of class bits per pixel, as produced
+ * by {@link FrameThresholder}. Class index c corresponds to the class bit
+ * 1 << c. The labeller finds the 8-connected blobs of every requested class
+ * in one pass over the buffer. Area, bounding box and first and second
+ * order moments are accumulated for each blob along the way, so that the
+ * blobs can be filtered and compared without looking at their pixels again.
+ *
+ * Pixels are labelled with the union-find method, where each row only needs
+ * the labels of the row above. The statistics of provisional labels are
+ * merged into their roots once the pass is done. All buffers are reused
+ * between calls and only grow when needed.
+ *
+ * All coordinates are relative to the buffer's top left corner.
+ */
+public class BlobLabeller {
+
+	/** Number of pixel classes the labeller handles. */
+	public static final int CLASS_COUNT = 3;
+
+	/** Initial number of provisional labels per class. */
+	private static final int INITIAL_LABEL_CAPACITY = 256;
+
+	/** Moore neighbourhood X offsets, in clockwise order, starting from east. */
+	private static final int[] NEIGHBOUR_DX = { 1, 1, 0, -1, -1, -1, 0, 1 };
+	/** Moore neighbourhood Y offsets, in clockwise order, starting from east. */
+	private static final int[] NEIGHBOUR_DY = { 0, 1, 1, 1, 0, -1, -1, -1 };
+
+
+	/** Label union-find parents of each class. */
+	private int[][] parent = new int[CLASS_COUNT][];
+	/** Pixel counts of each label. */
+	private int[][] area = new int[CLASS_COUNT][];
+	/** Smallest X coordinates of each label. */
+	private int[][] minX = new int[CLASS_COUNT][];
+	/** Smallest Y coordinates of each label. */
+	private int[][] minY = new int[CLASS_COUNT][];
+	/** Largest X coordinates of each label. */
+	private int[][] maxX = new int[CLASS_COUNT][];
+	/** Largest Y coordinates of each label. */
+	private int[][] maxY = new int[CLASS_COUNT][];
+	/** Sums of X coordinates of each label. */
+	private long[][] sumX = new long[CLASS_COUNT][];
+	/** Sums of Y coordinates of each label. */
+	private long[][] sumY = new long[CLASS_COUNT][];
+	/** Sums of squared X coordinates of each label. */
+	private long[][] sumXX = new long[CLASS_COUNT][];
+	/** Sums of squared Y coordinates of each label. */
+	private long[][] sumYY = new long[CLASS_COUNT][];
+	/** Sums of X and Y coordinate products of each label. */
+	private long[][] sumXY = new long[CLASS_COUNT][];
+	/** Buffer index of the first pixel of each label. */
+	private int[][] firstPixel = new int[CLASS_COUNT][];
+
+	/** Number of labels in use in each class, including the background. */
+	private int[] labelCount = new int[CLASS_COUNT];
+	/** Root labels of each class' blobs. */
+	private int[][] blobs = new int[CLASS_COUNT][];
+	/** Number of blobs in each class. */
+	private int[] blobCount = new int[CLASS_COUNT];
+
+	/** Labels of the previous row of each class. */
+	private int[][] prevRow = new int[CLASS_COUNT][0];
+	/** Labels of the current row of each class. */
+	private int[][] curRow = new int[CLASS_COUNT][0];
+
+	/** Buffer each class was last labelled in. */
+	private byte[][] source = new byte[CLASS_COUNT][];
+	/** Row stride of each class' buffer. */
+	private int[] sourceStride = new int[CLASS_COUNT];
+	/** Labelled region of each class: x, y, width and height. */
+	private int[][] region = new int[CLASS_COUNT][4];
+
+	/** Coordinates of the last traced outline, X and Y interleaved. */
+	private int[] outline = new int[256];
+
+
+	/**
+	 * Create a new labeller.
+	 */
+	public BlobLabeller() {
+		for (int c = 0; c < CLASS_COUNT; ++c) {
+			allocateLabels(c, INITIAL_LABEL_CAPACITY);
+			blobs[c] = new int[INITIAL_LABEL_CAPACITY];
+		}
+	}
+
+
+	/**
+	 * Find the blobs in a region of a classification buffer. Pixels outside
+	 * of the region are considered not to belong to any class. Previous
+	 * results are discarded for the labelled classes only.
+	 *
+	 * @param classes Classification buffer.
+	 * @param stride Length of a row in the buffer.
+	 * @param x X coordinate of the region's left edge.
+	 * @param y Y coordinate of the region's top edge.
+	 * @param width Width of the region.
+	 * @param height Height of the region.
+	 * @param classMask Bits of the classes to label.
+	 */
+	public void label(byte[] classes, int stride, int x, int y, int width, int height,
+			int classMask) {
+		for (int c = 0; c < CLASS_COUNT; ++c) {
+			if ((classMask & (1 << c)) == 0) {
+				continue;
+			}
+
+			labelCount[c] = 1;
+			blobCount[c] = 0;
+			source[c] = classes;
+			sourceStride[c] = stride;
+			region[c][0] = x;
+			region[c][1] = y;
+			region[c][2] = width;
+			region[c][3] = height;
+
+			if (prevRow[c].length < width + 2) {
+				prevRow[c] = new int[width + 2];
+				curRow[c] = new int[width + 2];
+			}
+			for (int i = 0; i < width + 2; ++i) {
+				prevRow[c][i] = 0;
+			}
+			curRow[c][0] = 0;
+			curRow[c][width + 1] = 0;
+		}
+
+		for (int row = y; row < y + height; ++row) {
+			int idx = row * stride + x;
+			for (int col = x; col < x + width; ++col, ++idx) {
+				int bits = classes[idx] & classMask;
+				for (int c = 0; c < CLASS_COUNT; ++c) {
+					if ((classMask & (1 << c)) == 0) {
+						continue;
+					}
+					if ((bits & (1 << c)) == 0) {
+						curRow[c][col - x + 1] = 0;
+					} else {
+						labelPixel(c, col - x + 1, col, row, idx);
+					}
+				}
+			}
+
+			for (int c = 0; c < CLASS_COUNT; ++c) {
+				if ((classMask & (1 << c)) != 0) {
+					int[] tmp = prevRow[c];
+					prevRow[c] = curRow[c];
+					curRow[c] = tmp;
+				}
+			}
+		}
+
+		for (int c = 0; c < CLASS_COUNT; ++c) {
+			if ((classMask & (1 << c)) != 0) {
+				resolveLabels(c);
+			}
+		}
+	}
+
+
+	/**
+	 * Get the number of blobs of a class.
+	 *
+	 * @param c Class index.
+	 * @return Number of blobs.
+	 */
+	public int getBlobCount(int c) {
+		return blobCount[c];
+	}
+
+	/**
+	 * Find the blob with the largest area among the blobs, whose bounding
+	 * box width and height are both within the given size bounds.
+	 *
+	 * @param c Class index.
+	 * @param minSize Minimum bounding box size.
+	 * @param maxSize Maximum bounding box size.
+	 * @return Index of the largest fitting blob or -1, if no blob fits.
+	 */
+	public int findLargestBlob(int c, int minSize, int maxSize) {
+		int best = -1;
+		int bestArea = 0;
+
+		for (int i = 0; i < blobCount[c]; ++i) {
+			int l = blobs[c][i];
+			int w = maxX[c][l] - minX[c][l] + 1;
+			int h = maxY[c][l] - minY[c][l] + 1;
+
+			if ((w >= minSize) && (w <= maxSize) && (h >= minSize) && (h <= maxSize)
+					&& (area[c][l] > bestArea)) {
+				best = i;
+				bestArea = area[c][l];
+			}
+		}
+
+		return best;
+	}
+
+
+	/**
+	 * Get the number of pixels in a blob.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Blob's area.
+	 */
+	public int getArea(int c, int blob) {
+		return area[c][blobs[c][blob]];
+	}
+
+	/**
+	 * Get the X coordinate of a blob's leftmost pixels.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Bounding box's left edge.
+	 */
+	public int getMinX(int c, int blob) {
+		return minX[c][blobs[c][blob]];
+	}
+
+	/**
+	 * Get the Y coordinate of a blob's topmost pixels.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Bounding box's top edge.
+	 */
+	public int getMinY(int c, int blob) {
+		return minY[c][blobs[c][blob]];
+	}
+
+	/**
+	 * Get the X coordinate of a blob's rightmost pixels.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Bounding box's right edge, inclusive.
+	 */
+	public int getMaxX(int c, int blob) {
+		return maxX[c][blobs[c][blob]];
+	}
+
+	/**
+	 * Get the Y coordinate of a blob's bottommost pixels.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Bounding box's bottom edge, inclusive.
+	 */
+	public int getMaxY(int c, int blob) {
+		return maxY[c][blobs[c][blob]];
+	}
+
+	/**
+	 * Get the X coordinate of a blob's mass centre.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Mean X coordinate of the blob's pixels.
+	 */
+	public double getCentroidX(int c, int blob) {
+		int l = blobs[c][blob];
+		return sumX[c][l] / (double) area[c][l];
+	}
+
+	/**
+	 * Get the Y coordinate of a blob's mass centre.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Mean Y coordinate of the blob's pixels.
+	 */
+	public double getCentroidY(int c, int blob) {
+		int l = blobs[c][blob];
+		return sumY[c][l] / (double) area[c][l];
+	}
+
+	/**
+	 * Get the variance of a blob's pixel X coordinates, which is its
+	 * normalised second order central moment mu20.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return X coordinate variance.
+	 */
+	public double getVarianceX(int c, int blob) {
+		int l = blobs[c][blob];
+		double meanX = sumX[c][l] / (double) area[c][l];
+		return sumXX[c][l] / (double) area[c][l] - meanX * meanX;
+	}
+
+	/**
+	 * Get the variance of a blob's pixel Y coordinates, which is its
+	 * normalised second order central moment mu02.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Y coordinate variance.
+	 */
+	public double getVarianceY(int c, int blob) {
+		int l = blobs[c][blob];
+		double meanY = sumY[c][l] / (double) area[c][l];
+		return sumYY[c][l] / (double) area[c][l] - meanY * meanY;
+	}
+
+	/**
+	 * Get the covariance of a blob's pixel coordinates, which is its
+	 * normalised second order central moment mu11.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Coordinate covariance.
+	 */
+	public double getCovariance(int c, int blob) {
+		int l = blobs[c][blob];
+		double meanX = sumX[c][l] / (double) area[c][l];
+		double meanY = sumY[c][l] / (double) area[c][l];
+		return sumXY[c][l] / (double) area[c][l] - meanX * meanY;
+	}
+
+
+	/**
+	 * Trace the outer outline of a blob.
+	 *
+	 * The outline consists of the blob's border pixels, in clockwise order,
+	 * starting from its first pixel in raster order. The coordinates are
+	 * stored in the array returned by {@link #getOutline()}, X and Y
+	 * interleaved, and stay valid until the next trace.
+	 *
+	 * @param c Class index.
+	 * @param blob Blob index.
+	 * @return Number of points in the outline.
+	 */
+	public int traceOutline(int c, int blob) {
+		int start = firstPixel[c][blobs[c][blob]];
+		int startX = start % sourceStride[c];
+		int startY = start / sourceStride[c];
+
+		int x = startX;
+		int y = startY;
+		int count = 0;
+		int firstDir = -1;
+
+		// Everything to the west and north of the first pixel is empty, so
+		// the search can start to the west.
+		int searchDir = 4;
+
+		while (true) {
+			int dir = -1;
+			for (int i = 0; i < 8; ++i) {
+				int d = (searchDir + i) & 7;
+				if (isSet(c, x + NEIGHBOUR_DX[d], y + NEIGHBOUR_DY[d])) {
+					dir = d;
+					break;
+				}
+			}
+
+			// The outline is closed once the first step is about to be
+			// repeated. Border pixels can be visited more than once.
+			if ((x == startX) && (y == startY)) {
+				if (count == 0) {
+					firstDir = dir;
+				} else if (dir == firstDir) {
+					break;
+				}
+			}
+
+			if (2 * count + 2 > outline.length) {
+				int[] newOutline = new int[2 * outline.length];
+				System.arraycopy(outline, 0, newOutline, 0, outline.length);
+				outline = newOutline;
+			}
+			outline[2 * count] = x;
+			outline[2 * count + 1] = y;
+			++count;
+
+			if (dir < 0) {
+				break;
+			}
+			x += NEIGHBOUR_DX[dir];
+			y += NEIGHBOUR_DY[dir];
+
+			// Continue from the last empty neighbour that was checked.
+			searchDir = ((dir + 6) & ~1) & 7;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Get the coordinates of the last traced outline.
+	 *
+	 * @return Outline coordinates, X and Y interleaved.
+	 */
+	public int[] getOutline() {
+		return outline;
+	}
+
+
+	/**
+	 * Label a pixel that belongs to a class.
+	 *
+	 * @param c Class index.
+	 * @param i Index of the pixel in the row label buffers.
+	 * @param x X coordinate of the pixel.
+	 * @param y Y coordinate of the pixel.
+	 * @param idx Index of the pixel in the classification buffer.
+	 */
+	private void labelPixel(int c, int i, int x, int y, int idx) {
+		int[] prev = prevRow[c];
+		int[] cur = curRow[c];
+
+		int l;
+		if (prev[i] != 0) {
+			l = prev[i];
+		} else if (prev[i + 1] != 0) {
+			l = prev[i + 1];
+			if (prev[i - 1] != 0) {
+				union(c, l, prev[i - 1]);
+			} else if (cur[i - 1] != 0) {
+				union(c, l, cur[i - 1]);
+			}
+		} else if (prev[i - 1] != 0) {
+			l = prev[i - 1];
+		} else if (cur[i - 1] != 0) {
+			l = cur[i - 1];
+		} else {
+			l = newLabel(c, idx);
+		}
+		cur[i] = l;
+
+		++area[c][l];
+		if (x < minX[c][l]) {
+			minX[c][l] = x;
+		}
+		if (x > maxX[c][l]) {
+			maxX[c][l] = x;
+		}
+		maxY[c][l] = y;
+		sumX[c][l] += x;
+		sumY[c][l] += y;
+		sumXX[c][l] += x * x;
+		sumYY[c][l] += y * y;
+		sumXY[c][l] += x * y;
+	}
+
+	/**
+	 * Create a new provisional label.
+	 *
+	 * @param c Class index.
+	 * @param idx Index of the label's first pixel in the classification
+	 * 		buffer.
+	 * @return The new label.
+	 */
+	private int newLabel(int c, int idx) {
+		if (labelCount[c] == parent[c].length) {
+			allocateLabels(c, 2 * parent[c].length);
+		}
+
+		int l = labelCount[c]++;
+		int stride = sourceStride[c];
+		parent[c][l] = l;
+		area[c][l] = 0;
+		minX[c][l] = idx % stride;
+		maxX[c][l] = idx % stride;
+		minY[c][l] = idx / stride;
+		maxY[c][l] = idx / stride;
+		sumX[c][l] = 0;
+		sumY[c][l] = 0;
+		sumXX[c][l] = 0;
+		sumYY[c][l] = 0;
+		sumXY[c][l] = 0;
+		firstPixel[c][l] = idx;
+		return l;
+	}
+
+	/**
+	 * Find the root of a label, compressing the path to it.
+	 *
+	 * @param c Class index.
+	 * @param l Label of interest.
+	 * @return Root label.
+	 */
+	private int find(int c, int l) {
+		int[] p = parent[c];
+		int root = l;
+		while (p[root] != root) {
+			root = p[root];
+		}
+		while (p[l] != root) {
+			int next = p[l];
+			p[l] = root;
+			l = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Join two labels. The smaller root becomes the root of both.
+	 *
+	 * @param c Class index.
+	 * @param a First label.
+	 * @param b Second label.
+	 */
+	private void union(int c, int a, int b) {
+		int rootA = find(c, a);
+		int rootB = find(c, b);
+		if (rootA < rootB) {
+			parent[c][rootB] = rootA;
+		} else if (rootB < rootA) {
+			parent[c][rootA] = rootB;
+		}
+	}
+
+	/**
+	 * Merge the statistics of all provisional labels into their roots and
+	 * collect the roots as blobs.
+	 *
+	 * @param c Class index.
+	 */
+	private void resolveLabels(int c) {
+		if (blobs[c].length < labelCount[c]) {
+			blobs[c] = new int[parent[c].length];
+		}
+
+		// Roots are always smaller than the labels below them, so every
+		// root is complete by the time it is reached.
+		for (int l = 1; l < labelCount[c]; ++l) {
+			int r = find(c, l);
+			if (r == l) {
+				blobs[c][blobCount[c]++] = l;
+				continue;
+			}
+
+			area[c][r] += area[c][l];
+			minX[c][r] = Math.min(minX[c][r], minX[c][l]);
+			minY[c][r] = Math.min(minY[c][r], minY[c][l]);
+			maxX[c][r] = Math.max(maxX[c][r], maxX[c][l]);
+			maxY[c][r] = Math.max(maxY[c][r], maxY[c][l]);
+			sumX[c][r] += sumX[c][l];
+			sumY[c][r] += sumY[c][l];
+			sumXX[c][r] += sumXX[c][l];
+			sumYY[c][r] += sumYY[c][l];
+			sumXY[c][r] += sumXY[c][l];
+		}
+	}
+
+	/**
+	 * Check whether a pixel belongs to a class and lies within the region
+	 * the class was labelled in.
+	 *
+	 * @param c Class index.
+	 * @param x X coordinate of the pixel.
+	 * @param y Y coordinate of the pixel.
+	 * @return Whether the pixel is set.
+	 */
+	private boolean isSet(int c, int x, int y) {
+		int[] r = region[c];
+		if ((x < r[0]) || (y < r[1]) || (x >= r[0] + r[2]) || (y >= r[1] + r[3])) {
+			return false;
+		}
+		return ((source[c][y * sourceStride[c] + x] & (1 << c)) != 0);
+	}
+
+	/**
+	 * Resize the label arrays of a class, keeping their contents.
+	 *
+	 * @param c Class index.
+	 * @param capacity New label capacity.
+	 */
+	private void allocateLabels(int c, int capacity) {
+		parent[c] = resize(parent[c], capacity);
+		area[c] = resize(area[c], capacity);
+		minX[c] = resize(minX[c], capacity);
+		minY[c] = resize(minY[c], capacity);
+		maxX[c] = resize(maxX[c], capacity);
+		maxY[c] = resize(maxY[c], capacity);
+		sumX[c] = resize(sumX[c], capacity);
+		sumY[c] = resize(sumY[c], capacity);
+		sumXX[c] = resize(sumXX[c], capacity);
+		sumYY[c] = resize(sumYY[c], capacity);
+		sumXY[c] = resize(sumXY[c], capacity);
+		firstPixel[c] = resize(firstPixel[c], capacity);
+	}
+
+	/**
+	 * Copy an array into a new array of the given length.
+	 *
+	 * @param array Array to copy. Can be null.
+	 * @param length Length of the new array.
+	 * @return New array.
+	 */
+	private static int[] resize(int[] array, int length) {
+		int[] newArray = new int[length];
+		if (array != null) {
+			System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+		}
+		return newArray;
+	}
+
+	/**
+	 * Copy an array into a new array of the given length.
+	 *
+	 * @param array Array to copy. Can be null.
+	 * @param length Length of the new array.
+	 * @return New array.
+	 */
+	private static long[] resize(long[] array, int length) {
+		long[] newArray = new long[length];
+		if (array != null) {
+			System.arraycopy(array, 0, newArray, 0, Math.min(array.length, length));
+		}
+		return newArray;
+	}
+
+}
@@ -0,0 +1,120 @@
+package sdp.vision.processing;
+
+import java.util.LinkedList;
+
+
+/**
+ * A pool of per-frame image buffers.
+ *
+ * Image processors borrow a buffer set at the start of a frame and return it
+ * once they are done with it. New buffers are only allocated when the pool
+ * is empty or when the configuration's frame or field dimensions change, so
+ * steady-state processing does not allocate any images.
+ */
+public class FrameBufferPool {
+
+	/** Buffer sets that are ready to be borrowed. */
+	private LinkedList<FrameBuffers> freeBuffers;
+
+	/** How many buffer sets have been allocated. */
+	private long allocationCount = 0;
+	/** How many buffer sets have been discarded due to dimension changes. */
+	private long discardCount = 0;
+	/** How many times a buffer set has been borrowed. */
+	private long borrowCount = 0;
+	/** How many buffer sets are currently borrowed. */
+	private int outstandingCount = 0;
+
+
+	/**
+	 * Create a new, empty buffer pool.
+	 */
+	public FrameBufferPool() {
+		freeBuffers = new LinkedList<FrameBuffers>();
+	}
+
+
+	/**
+	 * Borrow a buffer set that matches the given configuration. The set
+	 * carries the configuration until it is returned.
+	 *
+	 * @param config Configuration, whose dimensions the buffers should match.
+	 * @return A buffer set.
+	 */
+	public synchronized FrameBuffers borrow(ImageProcessorConfig config) {
+		++borrowCount;
+		++outstandingCount;
+
+		while (!freeBuffers.isEmpty()) {
+			FrameBuffers buffers = freeBuffers.removeFirst();
+			if (buffers.matches(config)) {
+				buffers.setConfiguration(config);
+				return buffers;
+			} else {
+				buffers.release();
+				++discardCount;
+			}
+		}
+
+		++allocationCount;
+		return new FrameBuffers(config);
+	}
+
+	/**
+	 * Return a buffer set to the pool.
+	 *
+	 * @param buffers Buffer set to return.
+	 */
+	public synchronized void release(FrameBuffers buffers) {
+		--outstandingCount;
+		freeBuffers.addFirst(buffers);
+	}
+
+
+	/**
+	 * Get how many buffer sets have been allocated since the pool's creation.
+	 *
+	 * @return Number of buffer set allocations.
+	 */
+	public synchronized long getAllocationCount() {
+		return allocationCount;
+	}
+
+	/**
+	 * Get how many buffer sets have been discarded because their dimensions
+	 * no longer matched the configuration.
+	 *
+	 * @return Number of discarded buffer sets.
+	 */
+	public synchronized long getDiscardCount() {
+		return discardCount;
+	}
+
+	/**
+	 * Get how many times buffer sets have been borrowed.
+	 *
+	 * @return Number of borrows.
+	 */
+	public synchronized long getBorrowCount() {
+		return borrowCount;
+	}
+
+	/**
+	 * Get how many buffer sets are currently borrowed.
+	 *
+	 * @return Number of borrowed buffer sets.
+	 */
+	public synchronized int getOutstandingCount() {
+		return outstandingCount;
+	}
+
+	/**
+	 * Get how many buffer sets are ready to be borrowed.
+	 *
+	 * @return Number of free buffer sets.
+	 */
+	public synchronized int getFreeCount() {
+		return freeBuffers.size();
+	}
+
+}
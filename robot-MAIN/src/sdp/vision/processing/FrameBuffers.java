@@ -0,0 +1,202 @@
+package sdp.vision.processing;
+
+import static com.googlecode.javacv.cpp.opencv_core.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+
+/**
+ * A set of image buffers that is needed to process a single frame.
+ *
+ * Buffer sets are handed out by {@link FrameBufferPool} and should be
+ * returned to it once the frame has been processed. A set is tied to the
+ * frame and field dimensions of the configuration it was created for.
+ * 
+ * While borrowed, a set also carries the configuration its frame is being
+ * processed with, so that all processing stages of a frame agree on it,
+ * even if the processor's configuration changes in the meantime.
+ */
+public class FrameBuffers {
+
+	/** Width of the frame. */
+	private int frameWidth;
+	/** Height of the frame. */
+	private int frameHeight;
+	/** X coordinate of the field's left wall. */
+	private int fieldLowX;
+	/** Y coordinate of the field's top wall. */
+	private int fieldLowY;
+	/** Width of the field. */
+	private int fieldWidth;
+	/** Height of the field. */
+	private int fieldHeight;
+
+	/** Configuration the current frame is processed with. */
+	private ImageProcessorConfig config;
+
+	/** Raw frame in OpenCV form. */
+	private IplImage frameIpl;
+	/** Undistorted frame in OpenCV form. */
+	private IplImage undistortedIpl;
+	/** Preprocessed frame in Java form. */
+	private BufferedImage frameImage;
+
+	/** Class bits of each field pixel. */
+	private byte[] classBuffer;
+
+	/** Search windows the classification buffer was filled in. */
+	private int[] searchWindows;
+	/** Whether only the search windows were thresholded. */
+	private boolean windowed = false;
+
+
+	/**
+	 * Allocate a new buffer set for the given configuration.
+	 *
+	 * @param config Configuration, whose dimensions to use.
+	 */
+	FrameBuffers(ImageProcessorConfig config) {
+		frameWidth = config.getFrameWidth();
+		frameHeight = config.getFrameHeight();
+		fieldLowX = config.getFieldLowX();
+		fieldLowY = config.getFieldLowY();
+		fieldWidth = config.getFieldWidth();
+		fieldHeight = config.getFieldHeight();
+		this.config = config;
+
+		frameIpl = IplImage.create(frameWidth, frameHeight, IPL_DEPTH_8U, 3);
+		undistortedIpl = IplImage.create(frameWidth, frameHeight, IPL_DEPTH_8U, 3);
+		frameImage = new BufferedImage(frameWidth, frameHeight, BufferedImage.TYPE_3BYTE_BGR);
+
+		classBuffer = new byte[fieldWidth * fieldHeight];
+
+		searchWindows = new int[SearchWindowTracker.OBJECT_COUNT * SearchWindowTracker.WINDOW_SIZE];
+	}
+
+
+	/**
+	 * Check whether this buffer set can be used with the given configuration.
+	 *
+	 * @param config Configuration of interest.
+	 * @return Whether buffer dimensions match the configuration.
+	 */
+	public boolean matches(ImageProcessorConfig config) {
+		return ((frameWidth == config.getFrameWidth())
+				&& (frameHeight == config.getFrameHeight())
+				&& (fieldLowX == config.getFieldLowX())
+				&& (fieldLowY == config.getFieldLowY())
+				&& (fieldWidth == config.getFieldWidth())
+				&& (fieldHeight == config.getFieldHeight()));
+	}
+
+	/**
+	 * Free the native memory, held by the buffers. The set must not be used
+	 * after this call.
+	 */
+	void release() {
+		frameIpl.release();
+		undistortedIpl.release();
+	}
+
+
+	/**
+	 * Get the configuration the current frame is processed with.
+	 *
+	 * @return Current frame's configuration.
+	 */
+	public ImageProcessorConfig getConfiguration() {
+		return config;
+	}
+
+	/**
+	 * Set the configuration the current frame is processed with. It must
+	 * match the buffer set's dimensions.
+	 *
+	 * @param config Current frame's configuration.
+	 */
+	void setConfiguration(ImageProcessorConfig config) {
+		this.config = config;
+	}
+
+
+	/**
+	 * Get the raw frame buffer.
+	 *
+	 * @return Raw frame buffer.
+	 */
+	public IplImage getFrameIpl() {
+		return frameIpl;
+	}
+
+	/**
+	 * Get the undistorted frame buffer.
+	 *
+	 * @return Undistorted frame buffer.
+	 */
+	public IplImage getUndistortedIpl() {
+		return undistortedIpl;
+	}
+
+	/**
+	 * Get the preprocessed frame buffer.
+	 *
+	 * @return Preprocessed frame buffer.
+	 */
+	public BufferedImage getFrameImage() {
+		return frameImage;
+	}
+
+
+	/**
+	 * Get the classification buffer. It holds the class bits of each field
+	 * pixel, as produced by {@link FrameThresholder}, row by row.
+	 *
+	 * @return Classification buffer.
+	 */
+	public byte[] getClassBuffer() {
+		return classBuffer;
+	}
+
+	/**
+	 * Get the byte array, backing an image with a byte raster.
+	 *
+	 * @param image Image of interest.
+	 * @return Image's byte array.
+	 */
+	public static byte[] getImageData(BufferedImage image) {
+		return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+	}
+
+
+	/**
+	 * Get the search windows of the current frame. The layout is described
+	 * in {@link SearchWindowTracker#predictWindows(ImageProcessorConfig, int[])}.
+	 *
+	 * @return Search window array.
+	 */
+	public int[] getSearchWindows() {
+		return searchWindows;
+	}
+
+	/**
+	 * Check whether only the search windows of the current frame were
+	 * thresholded. The rest of the classification buffer is then empty.
+	 *
+	 * @return Whether the frame was thresholded in windows.
+	 */
+	public boolean isWindowed() {
+		return windowed;
+	}
+
+	/**
+	 * Set whether only the search windows of the current frame were
+	 * thresholded.
+	 *
+	 * @param windowed Whether the frame was thresholded in windows.
+	 */
+	public void setWindowed(boolean windowed) {
+		this.windowed = windowed;
+	}
+
+}
@@ -0,0 +1,614 @@
+package sdp.vision.processing;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import sdp.common.Utilities;
+
+
+/**
+ * A lookup table based frame thresholder.
+ *
+ * Every possible RGB colour is classified against the ball, blue and yellow
+ * threshold bounds in advance. Thresholding a frame then boils down to a
+ * single table lookup per pixel, done directly on the image's raster. The
+ * table is rebuilt only when the thresholds in the configuration change.
+ * Apart from the first one, the rebuilds run on a background thread, so
+ * that adjusting the thresholds does not stall the vision loop. Frames are
+ * thresholded with the previous table until the new one is ready.
+ *
+ * The result is a classification buffer with a byte of class bits per field
+ * pixel. The bits are identical to the ones produced by converting every
+ * pixel to HSV and checking it against the bounds.
+ *
+ * The field can be split into row bands that are thresholded in parallel
+ * by a pool of worker threads. Each band writes to its own part of the
+ * classification buffer and the frame, so the result does not depend on the
+ * worker count.
+ */
+public class FrameThresholder {
+
+	/** Class bit of the ball pixels. */
+	public static final int BALL_BIT = 0x1;
+	/** Class bit of the blue T pixels. */
+	public static final int BLUE_BIT = 0x2;
+	/** Class bit of the yellow T pixels. */
+	public static final int YELLOW_BIT = 0x4;
+
+	/** Number of entries in the colour lookup table. */
+	private static final int LOOKUP_TABLE_SIZE = 1 << 24;
+	/** Number of threshold values that the lookup table depends on. */
+	private static final int BOUND_VALUE_COUNT = 18;
+
+
+	/** RGB colour to class bit lookup table. */
+	private byte[] lookupTable = null;
+	/** Threshold values the current lookup table was built with. */
+	private int[] tableBounds = new int[BOUND_VALUE_COUNT];
+	/** Threshold values in the current configuration. */
+	private int[] currentBounds = new int[BOUND_VALUE_COUNT];
+
+	/** Table that is being built in the background or will be next. */
+	private byte[] spareTable = null;
+	/** Threshold values the table in the background is built with. */
+	private int[] spareBounds = new int[BOUND_VALUE_COUNT];
+	/** Executor of the background table builds. */
+	private ExecutorService tableBuilder = null;
+	/** Future of the background table build, null if there is none. */
+	private Future<?> tableBuild = null;
+
+	/** How many times the lookup table has been built. */
+	private int tableBuildCount = 0;
+
+	/** Row buffers of each band for frames without a supported raster layout. */
+	private int[][] rowBuffers = new int[1][0];
+
+	/** Number of threads that threshold a frame. */
+	private int workerCount = 1;
+	/** Executor of the band thresholding tasks. Null when single-threaded. */
+	private ExecutorService workerPool = null;
+	/** Futures of the band tasks of the current frame. */
+	private ArrayList<Future<?>> bandFutures = new ArrayList<Future<?>>();
+
+
+	/**
+	 * Create a new frame thresholder.
+	 */
+	public FrameThresholder() { }
+
+
+	/**
+	 * Get the number of threads that threshold a frame.
+	 *
+	 * @return Worker count.
+	 */
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * Set the number of threads that threshold a frame. The calling thread
+	 * counts as one of them, so a value of 1 disables parallel thresholding.
+	 *
+	 * @param workerCount New worker count.
+	 */
+	public void setWorkerCount(int workerCount) {
+		if (workerCount < 1) {
+			throw new IllegalArgumentException("Thresholder worker count must be positive.");
+		}
+		if (workerCount == this.workerCount) {
+			return;
+		}
+
+		if (workerPool != null) {
+			workerPool.shutdown();
+			workerPool = null;
+		}
+		if (workerCount > 1) {
+			workerPool = Executors.newFixedThreadPool(workerCount - 1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Thresholder worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		this.workerCount = workerCount;
+		rowBuffers = new int[workerCount][0];
+	}
+
+
+	/**
+	 * Get how many times the colour lookup table has been built.
+	 *
+	 * @return Number of lookup table builds.
+	 */
+	public int getTableBuildCount() {
+		return tableBuildCount;
+	}
+
+
+	/**
+	 * Make sure that the lookup table matches the thresholds in the given
+	 * configuration. The first table is built right away. Later ones are
+	 * built in the background and swapped in by the first call after they
+	 * are done, so the table can lag behind the configuration for a while.
+	 *
+	 * @param config Configuration to use.
+	 */
+	public void updateLookupTable(ImageProcessorConfig config) {
+		fillBounds(currentBounds, 0, config.getBallThreshs());
+		fillBounds(currentBounds, 6, config.getBlueThreshs());
+		fillBounds(currentBounds, 12, config.getYellowThreshs());
+
+		if (lookupTable == null) {
+			lookupTable = new byte[LOOKUP_TABLE_SIZE];
+			buildLookupTable(lookupTable, currentBounds);
+			System.arraycopy(currentBounds, 0, tableBounds, 0, BOUND_VALUE_COUNT);
+			++tableBuildCount;
+			return;
+		}
+
+		if ((tableBuild != null) && tableBuild.isDone()) {
+			finishTableBuild();
+		}
+		if ((tableBuild == null) && !Arrays.equals(currentBounds, tableBounds)) {
+			startTableBuild();
+		}
+	}
+
+	/**
+	 * Build a lookup table for the current thresholds in the background,
+	 * into the spare table.
+	 */
+	private void startTableBuild() {
+		if (spareTable == null) {
+			spareTable = new byte[LOOKUP_TABLE_SIZE];
+		}
+		if (tableBuilder == null) {
+			tableBuilder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Thresholder table builder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		System.arraycopy(currentBounds, 0, spareBounds, 0, BOUND_VALUE_COUNT);
+		final byte[] table = spareTable;
+		final int[] bounds = spareBounds;
+		tableBuild = tableBuilder.submit(new Runnable() {
+			@Override
+			public void run() {
+				buildLookupTable(table, bounds);
+			}
+		});
+	}
+
+	/**
+	 * Swap the table built in the background in. The previous table becomes
+	 * the spare one, none of the workers read it once the swap is done.
+	 */
+	private void finishTableBuild() {
+		try {
+			tableBuild.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Lookup table could not be built.", e.getCause());
+		}
+		tableBuild = null;
+
+		byte[] table = lookupTable;
+		lookupTable = spareTable;
+		spareTable = table;
+		System.arraycopy(spareBounds, 0, tableBounds, 0, BOUND_VALUE_COUNT);
+		++tableBuildCount;
+	}
+
+
+	/**
+	 * Threshold the field area of a frame.
+	 *
+	 * The classification buffer must have the size of the field, one byte
+	 * per pixel. Each pixel gets the bits of the classes it belongs to. The
+	 * frame itself is modified according to the configuration's display
+	 * settings.
+	 *
+	 * @param config Configuration to use.
+	 * @param frame Frame to threshold.
+	 * @param classBuffer Output classification buffer.
+	 */
+	public void thresholdFrame(ImageProcessorConfig config, BufferedImage frame,
+			byte[] classBuffer) {
+		updateLookupTable(config);
+
+		if (rowBuffers[0].length < config.getFieldWidth()) {
+			for (int i = 0; i < rowBuffers.length; ++i) {
+				rowBuffers[i] = new int[config.getFieldWidth()];
+			}
+		}
+
+		int fieldHeight = config.getFieldHeight();
+		if ((workerPool == null) || (fieldHeight < workerCount)) {
+			thresholdRows(config, frame, classBuffer,
+					0, fieldHeight, 0, config.getFieldWidth(), true, rowBuffers[0]);
+		} else {
+			thresholdBands(config, frame, classBuffer);
+		}
+	}
+
+	/**
+	 * Threshold a rectangular window of the field. Classification buffer
+	 * pixels outside the window are left untouched. The coordinates are relative to the field's
+	 * top left corner and must lie within the field.
+	 *
+	 * @param config Configuration to use.
+	 * @param frame Frame to threshold.
+	 * @param classBuffer Output classification buffer.
+	 * @param x X coordinate of the window's left edge.
+	 * @param y Y coordinate of the window's top edge.
+	 * @param width Width of the window.
+	 * @param height Height of the window.
+	 * @param paint Whether to modify the frame according to the
+	 * 		configuration's display settings.
+	 */
+	public void thresholdWindow(ImageProcessorConfig config, BufferedImage frame,
+			byte[] classBuffer,
+			int x, int y, int width, int height, boolean paint) {
+		updateLookupTable(config);
+
+		if (rowBuffers[0].length < config.getFieldWidth()) {
+			for (int i = 0; i < rowBuffers.length; ++i) {
+				rowBuffers[i] = new int[config.getFieldWidth()];
+			}
+		}
+
+		thresholdRows(config, frame, classBuffer,
+				y, y + height, x, x + width, paint, rowBuffers[0]);
+	}
+
+	/**
+	 * Threshold the field in parallel row bands, one band per worker. The
+	 * calling thread processes the last band itself.
+	 *
+	 * @see #thresholdFrame(ImageProcessorConfig, BufferedImage, byte[])
+	 */
+	private void thresholdBands(final ImageProcessorConfig config, final BufferedImage frame,
+			final byte[] classBuffer) {
+		int fieldHeight = config.getFieldHeight();
+
+		bandFutures.clear();
+		for (int i = 0; i < workerCount - 1; ++i) {
+			final int rowStart = (fieldHeight * i) / workerCount;
+			final int rowEnd = (fieldHeight * (i + 1)) / workerCount;
+			final int[] rowBuffer = rowBuffers[i + 1];
+
+			bandFutures.add(workerPool.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					thresholdRows(config, frame, classBuffer,
+							rowStart, rowEnd, 0, config.getFieldWidth(), true, rowBuffer);
+					return null;
+				}
+			}));
+		}
+
+		thresholdRows(config, frame, classBuffer,
+				(fieldHeight * (workerCount - 1)) / workerCount, fieldHeight,
+				0, config.getFieldWidth(), true, rowBuffers[0]);
+
+		// The bands write into the caller's buffers, so all of them have to
+		// finish before returning, even if this thread gets interrupted.
+		boolean interrupted = false;
+		for (Future<?> future : bandFutures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new RuntimeException("Failed to threshold a row band.", e.getCause());
+				}
+			}
+		}
+		bandFutures.clear();
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Threshold a band of the field's rows. The row and column indices are
+	 * relative to the field's top left corner.
+	 *
+	 * @param config Configuration to use.
+	 * @param frame Frame to threshold.
+	 * @param classBuffer Output classification buffer.
+	 * @param rowStart First row to threshold.
+	 * @param rowEnd Row after the last one to threshold.
+	 * @param colStart First column to threshold.
+	 * @param colEnd Column after the last one to threshold.
+	 * @param paint Whether to modify the frame according to the display
+	 * 		settings.
+	 * @param rowBuffer Row buffer for frames without a supported raster
+	 * 		layout. Must not be shared with other bands.
+	 */
+	private void thresholdRows(ImageProcessorConfig config, BufferedImage frame,
+			byte[] classBuffer, int rowStart, int rowEnd,
+			int colStart, int colEnd, boolean paint, int[] rowBuffer) {
+		switch (frame.getType()) {
+		case BufferedImage.TYPE_3BYTE_BGR :
+			thresholdByteRows(config, frame, classBuffer, rowStart, rowEnd,
+					colStart, colEnd, paint);
+			break;
+		case BufferedImage.TYPE_INT_RGB :
+		case BufferedImage.TYPE_INT_ARGB :
+			thresholdIntRows(config, frame, classBuffer, rowStart, rowEnd,
+					colStart, colEnd, paint);
+			break;
+		default :
+			thresholdGenericRows(config, frame, classBuffer, rowStart, rowEnd,
+					colStart, colEnd, paint, rowBuffer);
+			break;
+		}
+	}
+
+	/**
+	 * Threshold rows of a frame that is backed by an interleaved byte raster.
+	 *
+	 * @see #thresholdRows(ImageProcessorConfig, BufferedImage, byte[], int, int, int, int, boolean, int[])
+	 */
+	private void thresholdByteRows(ImageProcessorConfig config, BufferedImage frame,
+			byte[] classBuffer, int rowStart, int rowEnd,
+			int colStart, int colEnd, boolean paint) {
+		WritableRaster raster = frame.getRaster();
+		ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+		DataBufferByte dataBuffer = (DataBufferByte) raster.getDataBuffer();
+		byte[] data = dataBuffer.getData();
+
+		int pixelStride = sampleModel.getPixelStride();
+		int scanlineStride = sampleModel.getScanlineStride();
+		int bandOffsets[] = sampleModel.getBandOffsets();
+		int rOff = bandOffsets[0];
+		int gOff = bandOffsets[1];
+		int bOff = bandOffsets[2];
+		int baseOffset = dataBuffer.getOffset()
+				- raster.getSampleModelTranslateY() * scanlineStride
+				- raster.getSampleModelTranslateX() * pixelStride;
+
+		int fieldWidth = config.getFieldWidth();
+		int fieldLowX = config.getFieldLowX();
+		int fieldLowY = config.getFieldLowY();
+		boolean showWorld = config.isShowWorld();
+		boolean showThresholds = config.isShowThresholds();
+		boolean paintAll = paint && !showWorld;
+		boolean paintClasses = paint && showThresholds;
+
+		for (int y = rowStart; y < rowEnd; ++y) {
+			int pxIdx = baseOffset + (y + fieldLowY) * scanlineStride
+					+ (colStart + fieldLowX) * pixelStride;
+			int classIdx = y * fieldWidth + colStart;
+
+			for (int x = colStart; x < colEnd; ++x, pxIdx += pixelStride, ++classIdx) {
+				int rgb = ((data[pxIdx + rOff] & 0xFF) << 16)
+						| ((data[pxIdx + gOff] & 0xFF) << 8)
+						| (data[pxIdx + bOff] & 0xFF);
+				int classes = lookupTable[rgb];
+
+				classBuffer[classIdx] = (byte) classes;
+
+				if (paintAll || (paintClasses && (classes != 0))) {
+					int newRgb = getDisplayColour(rgb, classes, showWorld, showThresholds);
+					data[pxIdx + rOff] = (byte) (newRgb >> 16);
+					data[pxIdx + gOff] = (byte) (newRgb >> 8);
+					data[pxIdx + bOff] = (byte) newRgb;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Threshold rows of a frame that is backed by a packed integer raster.
+	 *
+	 * @see #thresholdRows(ImageProcessorConfig, BufferedImage, byte[], int, int, int, int, boolean, int[])
+	 */
+	private void thresholdIntRows(ImageProcessorConfig config, BufferedImage frame,
+			byte[] classBuffer, int rowStart, int rowEnd,
+			int colStart, int colEnd, boolean paint) {
+		WritableRaster raster = frame.getRaster();
+		SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+		int[] data = dataBuffer.getData();
+
+		int scanlineStride = sampleModel.getScanlineStride();
+		int baseOffset = dataBuffer.getOffset()
+				- raster.getSampleModelTranslateY() * scanlineStride
+				- raster.getSampleModelTranslateX();
+
+		int fieldWidth = config.getFieldWidth();
+		int fieldLowX = config.getFieldLowX();
+		int fieldLowY = config.getFieldLowY();
+		boolean showWorld = config.isShowWorld();
+		boolean showThresholds = config.isShowThresholds();
+		boolean paintAll = paint && !showWorld;
+		boolean paintClasses = paint && showThresholds;
+
+		for (int y = rowStart; y < rowEnd; ++y) {
+			int pxIdx = baseOffset + (y + fieldLowY) * scanlineStride + colStart + fieldLowX;
+			int classIdx = y * fieldWidth + colStart;
+
+			for (int x = colStart; x < colEnd; ++x, ++pxIdx, ++classIdx) {
+				int px = data[pxIdx];
+				int rgb = px & 0xFFFFFF;
+				int classes = lookupTable[rgb];
+
+				classBuffer[classIdx] = (byte) classes;
+
+				if (paintAll || (paintClasses && (classes != 0))) {
+					int newRgb = getDisplayColour(rgb, classes, showWorld, showThresholds);
+					data[pxIdx] = (px & 0xFF000000) | newRgb;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Threshold rows of a frame with an arbitrary raster layout, using the
+	 * BufferedImage accessors.
+	 *
+	 * @see #thresholdRows(ImageProcessorConfig, BufferedImage, byte[], int, int, int, int, boolean, int[])
+	 */
+	private void thresholdGenericRows(ImageProcessorConfig config, BufferedImage frame,
+			byte[] classBuffer, int rowStart, int rowEnd,
+			int colStart, int colEnd, boolean paint, int[] rowBuffer) {
+		int fieldWidth = config.getFieldWidth();
+		int fieldLowX = config.getFieldLowX();
+		int fieldLowY = config.getFieldLowY();
+		boolean showWorld = config.isShowWorld();
+		boolean showThresholds = config.isShowThresholds();
+		boolean paintAll = paint && !showWorld;
+		boolean paintClasses = paint && showThresholds;
+
+		int[] row = rowBuffer;
+		int colCount = colEnd - colStart;
+
+		for (int y = rowStart; y < rowEnd; ++y) {
+			frame.getRGB(colStart + fieldLowX, y + fieldLowY, colCount, 1, row, 0, colCount);
+			int classIdx = y * fieldWidth + colStart;
+			boolean rowChanged = false;
+
+			for (int x = 0; x < colCount; ++x, ++classIdx) {
+				int rgb = row[x] & 0xFFFFFF;
+				int classes = lookupTable[rgb];
+
+				classBuffer[classIdx] = (byte) classes;
+
+				if (paintAll || (paintClasses && (classes != 0))) {
+					row[x] = 0xFF000000 | getDisplayColour(rgb, classes, showWorld, showThresholds);
+					rowChanged = true;
+				}
+			}
+
+			if (rowChanged) {
+				frame.setRGB(colStart + fieldLowX, y + fieldLowY, colCount, 1, row, 0, colCount);
+			}
+		}
+	}
+
+
+	/**
+	 * Get the colour a thresholded pixel should be displayed in.
+	 *
+	 * @param rgb Original colour of the pixel.
+	 * @param classes Class bits of the pixel.
+	 * @param showWorld Whether the world is shown.
+	 * @param showThresholds Whether thresholded pixels are highlighted.
+	 * @return Display colour of the pixel, without the alpha component.
+	 */
+	private static int getDisplayColour(int rgb, int classes, boolean showWorld,
+			boolean showThresholds) {
+		int colour = (showWorld ? rgb : Color.black.getRGB());
+		if (showThresholds) {
+			if ((classes & BALL_BIT) != 0) {
+				colour = Color.red.getRGB();
+			}
+			if ((classes & BLUE_BIT) != 0) {
+				colour = Color.blue.getRGB();
+			}
+			if ((classes & YELLOW_BIT) != 0) {
+				colour = Color.orange.getRGB();
+			}
+		}
+		return colour & 0xFFFFFF;
+	}
+
+
+	/**
+	 * Build a colour lookup table.
+	 *
+	 * @param table Table to fill.
+	 * @param bounds Threshold values of the ball, blue and yellow classes,
+	 * 		as filled in by {@link #fillBounds(int[], int, ThresholdBounds)}.
+	 */
+	private static void buildLookupTable(byte[] table, int[] bounds) {
+		float hsv[] = new float[3];
+
+		for (int r = 0; r < 256; ++r) {
+			for (int g = 0; g < 256; ++g) {
+				for (int b = 0; b < 256; ++b) {
+					Color.RGBtoHSB(r, g, b, hsv);
+					int h = (int) (hsv[0] * 360);
+					int s = (int) (hsv[1] * 100);
+					int v = (int) (hsv[2] * 100);
+
+					int classes = 0;
+					if (isWithinBounds(bounds, 0, h, s, v)) {
+						classes |= BALL_BIT;
+					}
+					if (isWithinBounds(bounds, 6, h, s, v) && (g < (int)(b * 1.5))) {
+						classes |= BLUE_BIT;
+					}
+					if (isWithinBounds(bounds, 12, h, s, v)) {
+						classes |= YELLOW_BIT;
+					}
+
+					table[(r << 16) | (g << 8) | b] = (byte) classes;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check whether the given HSV values are within the specified bounds.
+	 *
+	 * @param bounds Threshold values.
+	 * @param offset Offset of the class's values in the array.
+	 * @param h Hue value.
+	 * @param s Saturation value.
+	 * @param v Value value.
+	 * @return Whether the HSV values are within bounds.
+	 */
+	private static boolean isWithinBounds(int[] bounds, int offset, int h, int s, int v) {
+		return (Utilities.valueWithinBounds(h, bounds[offset], bounds[offset + 1])
+				&& Utilities.valueWithinBounds(s, bounds[offset + 2], bounds[offset + 3])
+				&& Utilities.valueWithinBounds(v, bounds[offset + 4], bounds[offset + 5]));
+	}
+
+	/**
+	 * Copy threshold bound values into an array.
+	 *
+	 * @param values Destination array.
+	 * @param offset Offset in the destination array.
+	 * @param bounds Bounds to copy.
+	 */
+	private static void fillBounds(int[] values, int offset, ThresholdBounds bounds) {
+		values[offset] = bounds.getHueMin();
+		values[offset + 1] = bounds.getHueMax();
+		values[offset + 2] = bounds.getSatMin();
+		values[offset + 3] = bounds.getSatMax();
+		values[offset + 4] = bounds.getValMin();
+		values[offset + 5] = bounds.getValMax();
+	}
+
+}
@@ -1,20 +1,12 @@
 package sdp.vision.processing;
 
-import java.awt.Color;
-import java.awt.Graphics2D;
-import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-
-import com.googlecode.javacpp.Loader;
+import java.util.Arrays;
 
 import static com.googlecode.javacv.cpp.opencv_core.*;
 import static com.googlecode.javacv.cpp.opencv_imgproc.*;
 
-import sdp.common.Utilities;
-import sdp.common.geometry.GeomUtils;
-import sdp.common.geometry.Vector2D;
 import sdp.common.world.Robot;
 import sdp.common.world.WorldState;
 
@@ -23,31 +15,114 @@ import sdp.common.world.WorldState;
  * An image processor where I try to explore different alternative ideas. Or
  * just trying to reimplement team 9's system.
  * 
+ * Frame processing is split into stages: preprocessing, thresholding and
+ * feature extraction. {@link #extractWorldState(BufferedImage)} runs them
+ * one after another, but they can also be driven separately, e.g. from
+ * different threads. Each stage handles one frame at a time, while
+ * different stages can work on different frames simultaneously.
+ * 
+ * In tracking mode, only the search windows around the objects' predicted
+ * positions are thresholded and searched. The whole field is scanned again
+ * when a tracked object is lost or reaches the edge of its window.
+ * 
+ * A {@link StageListener} can be attached to observe the start and end of
+ * each processing stage, e.g. for profiling.
+ * 
+ * World images are drawn only when a world state's image is requested, by
+ * a {@link WorldImageRenderer}. In headless mode, no world images are
+ * produced at all.
+ * 
  * @author Gediminas Liktaras
  */
 public class MainImageProcessor extends BaseImageProcessor {
 	
-	/** The size of the direction cone angle. */
-	private static final int DIRECTION_CONE_ANGLE = 30;
-	/** How many directions the outline distance calculations will use. */
-	private static final int OUTLINE_ANGLE_COUNT = 360;
+	/**
+	 * Processing stages that are reported to a {@link StageListener}.
+	 */
+	public enum Stage {
+		/** Frame copying, undistortion and smoothing. */
+		PREPROCESS,
+		/** Frame thresholding. */
+		THRESHOLD,
+		/** Blob labelling, including rethresholding after a lost object. */
+		LOCATE_BLOBS,
+		/** Snapshot of the frame for the world image. */
+		CREATE_IMAGE,
+		/** Ball position calculation. */
+		FIND_BALL,
+		/** Position and direction calculation of one robot. */
+		FIND_ROBOT,
+		/** Recording of the world image's overlay. */
+		FINALISE_IMAGE
+	}
+	
+	/**
+	 * Observer of the processing stages. Its methods are called on the
+	 * thread that runs the stage, while holding the stage's lock.
+	 */
+	public interface StageListener {
+		
+		/**
+		 * Called when a stage starts processing a frame.
+		 * 
+		 * @param stage The stage.
+		 */
+		public void stageStarted(Stage stage);
+		
+		/**
+		 * Called when a stage finishes processing a frame.
+		 * 
+		 * @param stage The stage.
+		 */
+		public void stageFinished(Stage stage);
+		
+	}
+	
+	
+	/** Lookup table based frame thresholder. */
+	private FrameThresholder thresholder;
+	/** Pool of per-frame image buffers. */
+	private FrameBufferPool bufferPool;
+	/** Labeller that finds the feature blobs. */
+	private BlobLabeller labeller;
+	/** Estimator of the robots' directions. */
+	private OutlineDirectionEstimator directionEstimator;
 	
-	/** Polygon approximation error (arg in cvApproxPoly). */
-	private static final double POLY_APPROX_ERROR = 0.0001;
+	/** Undistortion map, used in the last frame. */
+	private UndistortionMap undistortionMap = null;
+	/**
+	 * Whether to undistort only the detected object positions instead of
+	 * whole frames.
+	 */
+	private volatile boolean pointUndistortion = false;
 	
-	/** Length of the direction line. */
-	private static final int DIR_LINE_LENGTH = 40;
-	/** Size of the position marker. */
-	private static final int POSITION_MARKER_SIZE = 4;
+	/** Predictor of the objects' search windows. */
+	private SearchWindowTracker tracker;
+	/** Whether to search for objects only within their search windows. */
+	private volatile boolean tracking = false;
+	/**
+	 * Object positions that are passed to the tracker, two values per
+	 * object. Guarded by the feature extraction lock.
+	 */
+	private final double[] trackedPositions = new double[2 * SearchWindowTracker.OBJECT_COUNT];
+	/**
+	 * Indices of the objects' blobs in the current frame. Guarded by the
+	 * feature extraction lock.
+	 */
+	private final int[] objectBlobs = new int[SearchWindowTracker.OBJECT_COUNT];
 	
-	/** Robot length in pixels. */
-	private static final double ROBOT_PIXEL_LENGTH = 50;
-	/** Robot width in pixels. */
-	private static final double ROBOT_PIXEL_WIDTH = 45;
+	/** Whether to produce world states without world images. */
+	private volatile boolean headless = false;
 	
+	/** Observer of the processing stages. */
+	private volatile StageListener stageListener = null;
 	
-	/** OpenCV memory storage. */
-	private CvMemStorage storage;
+	/** Lock of the preprocessing stage. */
+	private final Object preprocessLock = new Object();
+	/** Lock of the thresholding stage. */
+	private final Object thresholdLock = new Object();
+	/** Lock of the feature extraction stage. */
+	private final Object featureLock = new Object();
 
 	
 	/**
@@ -55,7 +130,136 @@ public class MainImageProcessor extends BaseImageProcessor {
 	 */
 	public MainImageProcessor() {
 		super();		
-		storage = CvMemStorage.create();
+		thresholder = new FrameThresholder();
+		bufferPool = new FrameBufferPool();
+		labeller = new BlobLabeller();
+		directionEstimator = new OutlineDirectionEstimator();
+		tracker = new SearchWindowTracker();
+	}
+	
+
+	/**
+	 * Get the pool this processor borrows its frame buffers from.
+	 * 
+	 * @return The processor's frame buffer pool.
+	 */
+	public FrameBufferPool getBufferPool() {
+		return bufferPool;
+	}
+	
+	/**
+	 * Get the number of threads that threshold each frame.
+	 * 
+	 * @return Thresholding worker count.
+	 */
+	public int getThresholdWorkerCount() {
+		synchronized (thresholdLock) {
+			return thresholder.getWorkerCount();
+		}
+	}
+	
+	/**
+	 * Set the number of threads that threshold each frame. The field is
+	 * split into that many row bands, which are thresholded in parallel. A
+	 * value of 1 disables parallel thresholding.
+	 * 
+	 * @param workerCount Thresholding worker count.
+	 */
+	public void setThresholdWorkerCount(int workerCount) {
+		synchronized (thresholdLock) {
+			thresholder.setWorkerCount(workerCount);
+		}
+	}
+	
+	/**
+	 * Get whether only the detected object positions are undistorted.
+	 * 
+	 * @return Whether point undistortion is used.
+	 */
+	public boolean isPointUndistortion() {
+		return pointUndistortion;
+	}
+	
+	/**
+	 * Set whether to undistort only the detected object positions instead of
+	 * whole frames. This avoids remapping every frame, but leaves the world
+	 * image distorted. Has no effect when undistortion is disabled in the
+	 * configuration.
+	 * 
+	 * @param pointUndistortion Whether to use point undistortion.
+	 */
+	public void setPointUndistortion(boolean pointUndistortion) {
+		this.pointUndistortion = pointUndistortion;
+	}
+	
+	/**
+	 * Get the tracker that predicts the objects' search windows.
+	 * 
+	 * @return The processor's search window tracker.
+	 */
+	public SearchWindowTracker getTracker() {
+		return tracker;
+	}
+	
+	/**
+	 * Get whether objects are searched for only within their search windows.
+	 * 
+	 * @return Whether tracking mode is on.
+	 */
+	public boolean isTracking() {
+		return tracking;
+	}
+	
+	/**
+	 * Set whether to search for objects only within the windows around their
+	 * predicted positions. The threshold display is then limited to those
+	 * windows as well.
+	 * 
+	 * @param tracking Whether to use tracking mode.
+	 */
+	public void setTracking(boolean tracking) {
+		this.tracking = tracking;
+		tracker.reset();
+	}
+	
+	/**
+	 * Get whether world states are produced without world images.
+	 * 
+	 * @return Whether headless mode is on.
+	 */
+	public boolean isHeadless() {
+		return headless;
+	}
+	
+	/**
+	 * Set whether to produce world states without world images. In headless
+	 * mode, the frame is not kept after processing and getWorldImage() of
+	 * the produced states returns null. Otherwise the world image is drawn
+	 * when it is first requested.
+	 * 
+	 * @param headless Whether to use headless mode.
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
+	
+	/**
+	 * Get the observer of the processing stages.
+	 * 
+	 * @return The stage listener or null, if there is none.
+	 */
+	public StageListener getStageListener() {
+		return stageListener;
+	}
+	
+	/**
+	 * Set the observer of the processing stages. The listener should be
+	 * changed only between frames.
+	 * 
+	 * @param stageListener New stage listener or null to remove it.
+	 */
+	public void setStageListener(StageListener stageListener) {
+		this.stageListener = stageListener;
 	}
 	
 
@@ -63,177 +267,365 @@ public class MainImageProcessor extends BaseImageProcessor {
 	 * @see sdp.vision.processing.ImageProcessor#extractWorldState(java.awt.image.BufferedImage)
 	 */
 	@Override
-	public synchronized WorldState extractWorldState(BufferedImage frame) {
-		frame = preprocessFrame(frame);
-		
-		BufferedImage thresholds[] = thresholdFrame(frame);
-		IplImage frame_ipl = IplImage.createFrom(thresholds[0]);
-		IplImage ballThreshold = IplImage.createFrom(thresholds[1]);		
-		IplImage blueThreshold = IplImage.createFrom(thresholds[2]);
-		IplImage yellowThreshold = IplImage.createFrom(thresholds[3]);	
-		cvSetImageROI(frame_ipl, getCurrentROI());
-
-		Point2D.Double ballPos = findBall(frame_ipl, ballThreshold);
-		
-		Robot blueRobot = new Robot(new Point2D.Double(-1.0, -1.0), -1.0);
-		if (config.isDetectBlue()) {
-			blueRobot = findRobot(frame_ipl, blueThreshold,
-					config.getBlueSizeMin(), config.getBlueSizeMax(),
-					config.isCorrectBlueHeight(), config.getBlueHeightFactor());
-		}
-		
-		Robot yellowRobot = new Robot(new Point2D.Double(-1.0, -1.0), -1.0);
-		if (config.isDetectYellow()) {
-			yellowRobot = findRobot(frame_ipl, yellowThreshold,
-					config.getYellowSizeMin(), config.getYellowSizeMax(),
-					config.isCorrectYellowHeight(), config.getYellowHeightFactor());
+	public WorldState extractWorldState(BufferedImage frame) {
+		FrameBuffers buffers = beginFrame();
+		try {
+			preprocessFrame(frame, buffers);
+			thresholdFrame(buffers);
+			return extractFeatures(buffers);
+		} finally {
+			endFrame(buffers);
 		}
-		
-		BufferedImage worldImage = finaliseWorldImage(frame_ipl, ballPos, blueRobot, yellowRobot);
-		
-		return new WorldState(ballPos, blueRobot, yellowRobot, worldImage);
 	}
 	
 	
 	/**
-	 * Preprocess the frame for world state extraction.
+	 * Begin processing a new frame. The returned buffers should be passed to
+	 * each processing stage in turn and then to {@link #endFrame(FrameBuffers)}.
+	 * 
+	 * The frame is processed with the configuration that is current at the
+	 * time of this call.
+	 * 
+	 * @return Buffers for the new frame.
+	 */
+	public FrameBuffers beginFrame() {
+		return bufferPool.borrow(getConfiguration());
+	}
+	
+	/**
+	 * Finish processing a frame.
+	 * 
+	 * @param buffers Buffers of the frame.
+	 */
+	public void endFrame(FrameBuffers buffers) {
+		bufferPool.release(buffers);
+	}
+	
+	
+	/**
+	 * Preprocess the frame for world state extraction. The result is stored
+	 * in the buffer set's frame image.
 	 * 
 	 * @param frame Frame to preprocess.
+	 * @param buffers Buffers of the frame.
 	 */
-	private BufferedImage preprocessFrame(BufferedImage frame) {
-		IplImage frame_ipl = IplImage.createFrom(frame);
-		if (config.isUndistortFrame()) {
-			frame_ipl = ProcUtils.undistortImage(config, frame_ipl);
+	public void preprocessFrame(BufferedImage frame, FrameBuffers buffers) {
+		synchronized (preprocessLock) {
+			notifyStageStarted(Stage.PREPROCESS);
+			ImageProcessorConfig config = buffers.getConfiguration();
+			
+			IplImage frame_ipl = buffers.getFrameIpl();
+			cvResetImageROI(frame_ipl);
+			frame_ipl.copyFrom(frame);
+			
+			if (config.isUndistortFrame() && !pointUndistortion) {
+				if ((undistortionMap == null) || !undistortionMap.matches(config,
+						frame_ipl.width(), frame_ipl.height())) {
+					undistortionMap = UndistortionMap.getMap(config, frame_ipl.width(),
+							frame_ipl.height());
+				}
+				
+				IplImage undistorted_ipl = buffers.getUndistortedIpl();
+				cvResetImageROI(undistorted_ipl);
+				undistortionMap.undistortImage(frame_ipl, undistorted_ipl);
+				frame_ipl = undistorted_ipl;
+			}
+			
+			cvSetImageROI(frame_ipl, getCurrentROI(config));		
+			cvSmooth(frame_ipl, frame_ipl, CV_GAUSSIAN, 5);
+			cvResetImageROI(frame_ipl);
+			frame_ipl.copyTo(buffers.getFrameImage());
+			notifyStageFinished(Stage.PREPROCESS);
 		}
-		cvSetImageROI(frame_ipl, getCurrentROI());		
-		cvSmooth(frame_ipl, frame_ipl, CV_GAUSSIAN, 5);
-		return frame_ipl.getBufferedImage();
 	}
 	
 	
 	/**
 	 * Threshold the image for the different features.
 	 * 
-	 * The thresholded components are returned as an array, which contains
-	 * the original frame, ball, blue T and yellow T components, in that 
-	 * order.
+	 * The class bits of the ball, blue T and yellow T are written into the
+	 * buffer set's classification buffer. The frame image itself is modified
+	 * according to the display settings.
 	 * 
 	 * The reason I have used BufferedImage here instead of opencv's IplImage
 	 * is because opencv's thresholding functions are somewhat limited. I do 
 	 * know of a way to threshold by both RGB and HSV values, for instance.
 	 * One cannot use arbitrary conditions either.
 	 * 
-	 * @param frame Frame to threshold.
-	 * @return Thresholded components.
+	 * In tracking mode, only the search windows are thresholded and the
+	 * frame image is left untouched, since the frame might have to be
+	 * thresholded again during feature extraction.
+	 * 
+	 * @param buffers Buffers of the frame.
 	 */
-	private BufferedImage[] thresholdFrame(BufferedImage frame) {		
-		BufferedImage ball = new BufferedImage(config.getFieldWidth(),
-				config.getFieldHeight(), BufferedImage.TYPE_BYTE_GRAY);
-		BufferedImage blue = new BufferedImage(config.getFieldWidth(),
-				config.getFieldHeight(), BufferedImage.TYPE_BYTE_GRAY);
-		BufferedImage yellow = new BufferedImage(config.getFieldWidth(),
-				config.getFieldHeight(), BufferedImage.TYPE_BYTE_GRAY);
-		
-		for (int x = 0; x < config.getFieldWidth(); ++x) {
-			for (int y = 0; y < config.getFieldHeight(); ++y) {
-				int ox = x + config.getFieldLowX();
-				int oy = y + config.getFieldLowY();
-				
-				// Extract current pixel values.
-				Color px = new Color(frame.getRGB(ox, oy));				
-				int r = px.getRed();
-				int g = px.getGreen();
-				int b = px.getBlue();
-				
-				float hsv[] = Color.RGBtoHSB(r, g, b, null);
-				int h = (int) (hsv[0] * 360);
-				int s = (int) (hsv[1] * 100);
-				int v = (int) (hsv[2] * 100);
-				
-				// Whether to hide current pixel.
-				if (!config.isShowWorld()) {
-					frame.setRGB(ox, oy, Color.black.getRGB());
-				}
+	public void thresholdFrame(FrameBuffers buffers) {
+		synchronized (thresholdLock) {
+			notifyStageStarted(Stage.THRESHOLD);
+			ImageProcessorConfig config = buffers.getConfiguration();
+			
+			int[] windows = buffers.getSearchWindows();
+			buffers.setWindowed(tracking && tracker.predictWindows(config, windows));
+			
+			if (buffers.isWindowed()) {
+				Arrays.fill(buffers.getClassBuffer(), (byte) 0);
+				thresholdWindows(config, buffers, false);
+			} else {
+				thresholder.thresholdFrame(config, buffers.getFrameImage(),
+						buffers.getClassBuffer());
+			}
+			notifyStageFinished(Stage.THRESHOLD);
+		}
+	}
+	
+	/**
+	 * Threshold the search windows of a frame. The classification buffer is
+	 * left untouched outside the windows. Must be called while holding the
+	 * thresholding lock.
+	 * 
+	 * @param config Configuration to use.
+	 * @param buffers Buffers of the frame.
+	 * @param paint Whether to modify the frame image according to the display
+	 * 		settings.
+	 */
+	private void thresholdWindows(ImageProcessorConfig config, FrameBuffers buffers,
+			boolean paint) {
+		int[] windows = buffers.getSearchWindows();
+		for (int i = 0; i < SearchWindowTracker.OBJECT_COUNT; ++i) {
+			int offset = i * SearchWindowTracker.WINDOW_SIZE;
+			if ((windows[offset + 2] == 0) || (windows[offset + 3] == 0)) {
+				continue;
+			}
+			
+			thresholder.thresholdWindow(config, buffers.getFrameImage(),
+					buffers.getClassBuffer(), windows[offset], windows[offset + 1],
+					windows[offset + 2], windows[offset + 3], paint);
+		}
+	}
+	
+	
+	/**
+	 * Extract the world state from a preprocessed and thresholded frame.
+	 * 
+	 * @param buffers Buffers of the frame.
+	 * @return The world state, present in the frame.
+	 */
+	public WorldState extractFeatures(FrameBuffers buffers) {
+		synchronized (featureLock) {
+			ImageProcessorConfig config = buffers.getConfiguration();
+			int[] blobs = objectBlobs;
+			boolean fullScan = true;
+			
+			notifyStageStarted(Stage.LOCATE_BLOBS);
+			if (buffers.isWindowed()) {
+				fullScan = !locateBlobs(config, buffers, buffers.getSearchWindows(), blobs);
 				
-				// Ball thresholding.
-				if (Utilities.valueWithinBounds(h, config.getBallThreshs().getHueMin(), 
-								config.getBallThreshs().getHueMax())
-						&& Utilities.valueWithinBounds(s, config.getBallThreshs().getSatMin(),
-								config.getBallThreshs().getSatMax())
-						&& Utilities.valueWithinBounds(v, config.getBallThreshs().getValMin(),
-								config.getBallThreshs().getValMax())) {	
-					
-					ball.setRGB(x, y, Color.white.getRGB());
-					if (config.isShowThresholds()) {
-						frame.setRGB(ox, oy, Color.red.getRGB());
+				if (fullScan) {
+					synchronized (thresholdLock) {
+						thresholder.thresholdFrame(config, buffers.getFrameImage(),
+								buffers.getClassBuffer());
 					}
-				}
-				
-				// Blue T thresholding.
-				if (Utilities.valueWithinBounds(h, config.getBlueThreshs().getHueMin(), 
-								config.getBlueThreshs().getHueMax())
-						&& Utilities.valueWithinBounds(s, config.getBlueThreshs().getSatMin(),
-								config.getBlueThreshs().getSatMax())
-						&& Utilities.valueWithinBounds(v, config.getBlueThreshs().getValMin(),
-								config.getBlueThreshs().getValMax())
-						&& (g < (int)(b * 1.5))) {
-					
-					blue.setRGB(x, y, Color.white.getRGB());
-					if (config.isShowThresholds()) {
-						frame.setRGB(ox, oy, Color.blue.getRGB());
+				} else if (config.isShowThresholds() || !config.isShowWorld()) {
+					synchronized (thresholdLock) {
+						thresholdWindows(config, buffers, true);
 					}
-			    }
-				
-				// Yellow T thresholding.
-				if (Utilities.valueWithinBounds(h, config.getYellowThreshs().getHueMin(), 
-								config.getYellowThreshs().getHueMax())
-						&& Utilities.valueWithinBounds(s, config.getYellowThreshs().getSatMin(),
-								config.getYellowThreshs().getSatMax())
-						&& Utilities.valueWithinBounds(v, config.getYellowThreshs().getValMin(),
-								config.getYellowThreshs().getValMax())) {
-					
-			    	yellow.setRGB(x, y, Color.white.getRGB());
-			    	if (config.isShowThresholds()) {
-			    		frame.setRGB(ox, oy, Color.orange.getRGB());
-			    	}
-			    }
+				}
+			}
+			if (fullScan) {
+				locateBlobs(config, buffers, null, blobs);
+			}
+			notifyStageFinished(Stage.LOCATE_BLOBS);
+			
+			WorldImageRenderer renderer = null;
+			if (!headless) {
+				notifyStageStarted(Stage.CREATE_IMAGE);
+				renderer = new WorldImageRenderer(config, buffers.getFrameImage());
+				notifyStageFinished(Stage.CREATE_IMAGE);
+			}
+	
+			notifyStageStarted(Stage.FIND_BALL);
+			Point2D.Double ballPos = findBall(config, renderer, blobs[SearchWindowTracker.BALL]);
+			notifyStageFinished(Stage.FIND_BALL);
+			
+			Robot blueRobot = new Robot(new Point2D.Double(-1.0, -1.0), -1.0);
+			if (config.isDetectBlue()) {
+				notifyStageStarted(Stage.FIND_ROBOT);
+				blueRobot = findRobot(config, renderer, SearchWindowTracker.BLUE,
+						blobs[SearchWindowTracker.BLUE],
+						config.isCorrectBlueHeight(), config.getBlueHeightFactor());
+				notifyStageFinished(Stage.FIND_ROBOT);
 			}
+			
+			Robot yellowRobot = new Robot(new Point2D.Double(-1.0, -1.0), -1.0);
+			if (config.isDetectYellow()) {
+				notifyStageStarted(Stage.FIND_ROBOT);
+				yellowRobot = findRobot(config, renderer, SearchWindowTracker.YELLOW,
+						blobs[SearchWindowTracker.YELLOW],
+						config.isCorrectYellowHeight(), config.getYellowHeightFactor());
+				notifyStageFinished(Stage.FIND_ROBOT);
+			}
+			
+			if (tracking) {
+				updateTracker(config, fullScan, blobs);
+			}
+			
+			if (renderer != null) {
+				notifyStageStarted(Stage.FINALISE_IMAGE);
+				renderer.setObjects(ballPos, blueRobot, yellowRobot);
+				notifyStageFinished(Stage.FINALISE_IMAGE);
+			}
+			WorldState state = new WorldState(ballPos, blueRobot, yellowRobot, renderer);
+			
+			if (config.isUndistortFrame() && pointUndistortion) {
+				state = ProcUtils.undistortWorldState(config, state);
+			}
+			return state;
+		}
+	}
+	
+	
+	/**
+	 * Find the blobs of all detected objects in the classification buffer.
+	 * 
+	 * Object indices in {@link SearchWindowTracker} match the class indices
+	 * in {@link BlobLabeller}.
+	 * 
+	 * @param config Configuration to use.
+	 * @param buffers Buffers of the frame.
+	 * @param windows Search windows of the objects. If null, the whole field
+	 * 		is searched.
+	 * @param blobs Array to store the indices of the objects' blobs in.
+	 * 		Objects that were not found or are not detected get -1.
+	 * @return Whether all objects with a search window were found well inside
+	 * 		it.
+	 */
+	private boolean locateBlobs(ImageProcessorConfig config, FrameBuffers buffers,
+			int[] windows, int[] blobs) {
+		int classMask = FrameThresholder.BALL_BIT;
+		if (config.isDetectBlue()) {
+			classMask |= FrameThresholder.BLUE_BIT;
+		}
+		if (config.isDetectYellow()) {
+			classMask |= FrameThresholder.YELLOW_BIT;
+		}
+		
+		if (windows == null) {
+			labeller.label(buffers.getClassBuffer(), config.getFieldWidth(), 0, 0,
+					config.getFieldWidth(), config.getFieldHeight(), classMask);
+		}
+		
+		boolean confident = true;
+		for (int i = 0; i < SearchWindowTracker.OBJECT_COUNT; ++i) {
+			blobs[i] = -1;
+			if ((classMask & (1 << i)) == 0) {
+				continue;
+			}
+			
+			if (windows != null) {
+				int offset = i * SearchWindowTracker.WINDOW_SIZE;
+				if ((windows[offset + 2] == 0) || (windows[offset + 3] == 0)) {
+					continue;
+				}
+				labeller.label(buffers.getClassBuffer(), config.getFieldWidth(),
+						windows[offset], windows[offset + 1], windows[offset + 2],
+						windows[offset + 3], 1 << i);
+			}
+			
+			blobs[i] = labeller.findLargestBlob(i, getMinSize(config, i), getMaxSize(config, i));
+			confident &= isWithinWindow(config, i, blobs[i], windows);
+		}
+		
+		return confident;
+	}
+	
+	/**
+	 * Check whether a blob lies well inside its object's search window. A
+	 * blob that touches a window edge, which is not also a field edge, might
+	 * have been cut off.
+	 * 
+	 * @param config Configuration to use.
+	 * @param object Index of the object.
+	 * @param blob Index of the object's blob or -1, if it was not found.
+	 * @param windows Search windows of the objects. If null, the whole field
+	 * 		was searched.
+	 * @return Whether the blob is not cut off and was found, if the object
+	 * 		had a search window.
+	 */
+	private boolean isWithinWindow(ImageProcessorConfig config, int object, int blob,
+			int[] windows) {
+		if (windows == null) {
+			return true;
+		}
+		
+		int offset = object * SearchWindowTracker.WINDOW_SIZE;
+		if ((windows[offset + 2] == 0) || (windows[offset + 3] == 0)) {
+			return true;
+		} else if (blob < 0) {
+			return false;
 		}
 		
-		BufferedImage ret[] = { frame, ball, blue, yellow };
-		return ret;
+		int lowX = windows[offset];
+		int lowY = windows[offset + 1];
+		int highX = lowX + windows[offset + 2];
+		int highY = lowY + windows[offset + 3];
+		
+		return (((lowX == 0) || (labeller.getMinX(object, blob) > lowX + 1))
+				&& ((lowY == 0) || (labeller.getMinY(object, blob) > lowY + 1))
+				&& ((highX == config.getFieldWidth())
+						|| (labeller.getMaxX(object, blob) + 1 < highX - 1))
+				&& ((highY == config.getFieldHeight())
+						|| (labeller.getMaxY(object, blob) + 1 < highY - 1)));
+	}
+	
+	/**
+	 * Pass the objects' positions in the current frame to the tracker. Must
+	 * be called while holding the feature extraction lock.
+	 * 
+	 * @param config Configuration to use.
+	 * @param fullScan Whether the whole field was searched.
+	 * @param blobs Indices of the objects' blobs.
+	 */
+	private void updateTracker(ImageProcessorConfig config, boolean fullScan, int[] blobs) {
+		double[] positions = trackedPositions;
+		for (int i = 0; i < SearchWindowTracker.OBJECT_COUNT; ++i) {
+			if (blobs[i] < 0) {
+				positions[2 * i] = -1.0;
+				positions[2 * i + 1] = -1.0;
+			} else {
+				positions[2 * i] = (labeller.getMinX(i, blobs[i])
+						+ labeller.getMaxX(i, blobs[i]) + 1) / 2.0;
+				positions[2 * i + 1] = (labeller.getMinY(i, blobs[i])
+						+ labeller.getMaxY(i, blobs[i]) + 1) / 2.0;
+			}
+		}
+		tracker.update(config, fullScan, positions);
 	}
 	
 	
 	/**
 	 * Locate the ball in the world.
 	 * 
-	 * @param frame_ipl The original frame.
-	 * @param ballThresh Thresholded image to search in.
+	 * @param config Configuration to use.
+	 * @param renderer Renderer of the world image or null, if there is none.
+	 * @param ballBlob Index of the ball's blob or -1, if it was not found.
 	 * @return The position of the ball.
 	 */
-	private Point2D.Double findBall(IplImage frame_ipl, IplImage ballThresh) {
-		CvSeq fullBallContour = findAllContours(ballThresh);		
-		ArrayList<CvSeq> ballShapes = sizeFilterContours(fullBallContour, config.getBallSizeMin(), config.getBallSizeMax());
-		
-		if (ballShapes.size() == 0) {
+	private Point2D.Double findBall(ImageProcessorConfig config, WorldImageRenderer renderer,
+			int ballBlob) {
+		if (ballBlob < 0) {
 			return new Point2D.Double(-1.0, -1.0);
 		} else {
-			CvSeq curBallShape = ProcUtils.getLargestShape(ballShapes);
-			
-            CvRect ballBoundingRect = cvBoundingRect(curBallShape, 0);
-            int bX = ballBoundingRect.x();
-            int bY = ballBoundingRect.y();
-            int bW = ballBoundingRect.width();
-            int bH = ballBoundingRect.height();
+			int ball = SearchWindowTracker.BALL;
+            int bX = labeller.getMinX(ball, ballBlob);
+            int bY = labeller.getMinY(ball, ballBlob);
+            int bW = labeller.getMaxX(ball, ballBlob) - bX + 1;
+            int bH = labeller.getMaxY(ball, ballBlob) - bY + 1;
             
-            if (config.isShowContours()) {
-            	cvDrawContours(frame_ipl, curBallShape, CvScalar.WHITE, CvScalar.WHITE, -1, 1, CV_AA);
+            if ((renderer != null) && config.isShowContours()) {
+            	int outlineLength = labeller.traceOutline(ball, ballBlob);
+            	renderer.setOutline(ball, labeller.getOutline(), outlineLength);
             }            
-            if (config.isShowBoundingBoxes()) {
-	            CvPoint pt1 = new CvPoint(bX, bY);
-	            CvPoint pt2 = new CvPoint(bX + bW, bY + bH);
-	            cvDrawRect(frame_ipl, pt1, pt2, CvScalar.WHITE, 1, CV_AA, 0);
+            if ((renderer != null) && config.isShowBoundingBoxes()) {
+            	renderer.setBoundingBox(ball, bX, bY, bW, bH);
             }
             
             return ProcUtils.frameToNormalCoordinates(config, bX + bW / 2, bY + bH / 2, true);
@@ -243,69 +635,44 @@ public class MainImageProcessor extends BaseImageProcessor {
 	/**
 	 * Locate a robot in the world.
 	 * 
-	 * @param frame_ipl The original frame.
-	 * @param robotThresh Thresholded image to search for the robot's T.
-	 * @param markerThresh Thresholded image to search for direction marker.
+	 * @param config Configuration to use.
+	 * @param renderer Renderer of the world image or null, if there is none.
+	 * @param object Index of the robot's object.
+	 * @param robotBlob Index of the robot's T blob or -1, if it was not found.
 	 * @param correctHeight Whether to correct robot height.
 	 * @param heightFactor Height correction factor.
 	 * @return The position of the ball.
 	 */
-	private Robot findRobot(IplImage frame_ipl, IplImage robotThresh,
-			int minSize, int maxSize, boolean correctHeight, double heightFactor) {
-		CvSeq fullRobotContour = findAllContours(robotThresh);
-		ArrayList<CvSeq> robotShapes = sizeFilterContours(fullRobotContour, minSize, maxSize);
-		
-		if (robotShapes.size() == 0) {
+	private Robot findRobot(ImageProcessorConfig config, WorldImageRenderer renderer, int object,
+			int robotBlob, boolean correctHeight, double heightFactor) {
+		if (robotBlob < 0) {
 			return new Robot(new Point2D.Double(-1.0, -1.0), -1.0);
 		} else {
-			// Find the best marching T shape.
-			CvSeq bestRobotShape = ProcUtils.getLargestShape(robotShapes);
-			
 			// Find shape's bounding box dimensions.
-            CvRect robotBoundingRect = cvBoundingRect(bestRobotShape, 0);
-            int rX = robotBoundingRect.x();
-            int rY = robotBoundingRect.y();
-            int rW = robotBoundingRect.width();
-            int rH = robotBoundingRect.height();
+            int rX = labeller.getMinX(object, robotBlob);
+            int rY = labeller.getMinY(object, robotBlob);
+            int rW = labeller.getMaxX(object, robotBlob) - rX + 1;
+            int rH = labeller.getMaxY(object, robotBlob) - rY + 1;
+            
+            // Find the shape's outline.
+            int outlineLength = labeller.traceOutline(object, robotBlob);
+            int[] outline = labeller.getOutline();
             
             // Debug output.
-            if (config.isShowContours()) {
-            	cvDrawContours(frame_ipl, bestRobotShape, CvScalar.WHITE, CvScalar.WHITE, -1, 1, CV_AA);
+            if ((renderer != null) && config.isShowContours()) {
+            	renderer.setOutline(object, outline, outlineLength);
             }
-            if (config.isShowBoundingBoxes()) {
-	            CvPoint pt1 = new CvPoint(rX, rY);
-	            CvPoint pt2 = new CvPoint(rX + rW, rY + rH);
-	            cvDrawRect(frame_ipl, pt1, pt2, CvScalar.WHITE, 1, CV_AA, 0);
+            if ((renderer != null) && config.isShowBoundingBoxes()) {
+            	renderer.setBoundingBox(object, rX, rY, rW, rH);
             }
             
             // Find the shape's (and robot's) mass center.
-            CvMoments moments = new CvMoments();
-            cvMoments(bestRobotShape, moments, 1);
-            
-            double massCenterX = moments.m10() / moments.m00();
-            double massCenterY = moments.m01() / moments.m00();
-            
-            // Find the contour's outline distances.
-            double[] dists = getContourOutlineDistances(bestRobotShape, massCenterX, massCenterY);
+            double massCenterX = labeller.getCentroidX(object, robotBlob);
+            double massCenterY = labeller.getCentroidY(object, robotBlob);
             
             // Find the robot's direction.
-            int angle = 0;
-            double bestArea = 0.0;
-            
-            for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
-            	double curArea = 0.0;
-            	
-	            for (int j = -(DIRECTION_CONE_ANGLE / 2); j <= (DIRECTION_CONE_ANGLE / 2); ++j) {
-	            	int k = (i + j + OUTLINE_ANGLE_COUNT) % OUTLINE_ANGLE_COUNT;
-	            	int w = DIRECTION_CONE_ANGLE / 2 - Math.abs(j);
-	            	curArea += dists[k] * w;
-	            }
-	            
-	            if (curArea > bestArea) {
-	            	bestArea = curArea;
-	            	angle = i;
-	            }
-            }
+            int angle = directionEstimator.estimateDirection(outline, outlineLength,
+            		massCenterX, massCenterY);
             
             // Adjust mass center to account for robot's height.
             if (correctHeight && (heightFactor != 0.0)) {
@@ -321,205 +688,76 @@ public class MainImageProcessor extends BaseImageProcessor {
 	
 	
 	/**
-	 * Add finishing details to frame.
+	 * Get the minimum shape size of an object.
 	 * 
-	 * @param frame_ipl Frame to process.
-	 * @return Final world image.
+	 * @param config Configuration to use.
+	 * @param object Index of the object.
+	 * @return Minimum shape size in pixels.
 	 */
-	private BufferedImage finaliseWorldImage(IplImage frame_ipl,
-			Point2D.Double ball, Robot blueRobot, Robot yellowRobot) {
-		BufferedImage finalFrame = frame_ipl.getBufferedImage();		
-		Graphics2D graphics = finalFrame.createGraphics();
-		graphics.setColor(Color.white);
-		
-		graphics.drawRect(config.getFieldLowX(), config.getFieldLowY(),
-				config.getFieldWidth(), config.getFieldHeight());
-		
-		if (config.isShowStateData()) {
-			Point pt1, pt2;
-			
-			// Draw ball position.
-			pt1 = ProcUtils.normalToFrameCoordinatesInt(config, ball.x, ball.y, false);
-			drawPositionMarker(graphics, Color.red, pt1, null);
-			
-			// Draw blue robot position and direction.
-			pt1 = ProcUtils.normalToFrameCoordinatesInt(config, blueRobot.getCoords().x,
-					blueRobot.getCoords().y, false);
-			pt2 = GeomUtils.rotatePoint(pt1, new Point(pt1.x + DIR_LINE_LENGTH, pt1.y),
-					blueRobot.getAngle());
-			drawPositionMarker(graphics, Color.blue, pt1, pt2);
-			
-			// Draw yellow robot position and direction.
-			pt1 = ProcUtils.normalToFrameCoordinatesInt(config, yellowRobot.getCoords().x,
-					yellowRobot.getCoords().y, false);
-			pt2 = GeomUtils.rotatePoint(pt1, new Point(pt1.x + DIR_LINE_LENGTH, pt1.y),
-					yellowRobot.getAngle());
-			drawPositionMarker(graphics, Color.orange, pt1, pt2);
+	private static int getMinSize(ImageProcessorConfig config, int object) {
+		switch (object) {
+		case SearchWindowTracker.BLUE :
+			return config.getBlueSizeMin();
+		case SearchWindowTracker.YELLOW :
+			return config.getYellowSizeMin();
+		default :
+			return config.getBallSizeMin();
 		}
-
-		return finalFrame;
 	}
 	
-	
 	/**
-	 * Find the all contours in the specified image.
+	 * Get the maximum shape size of an object.
 	 * 
-	 * @param image Image to search.
-	 * @return Image shapes' contour.
+	 * @param config Configuration to use.
+	 * @param object Index of the object.
+	 * @return Maximum shape size in pixels.
 	 */
-	private CvSeq findAllContours(IplImage image) {
-		CvSeq contour = new CvSeq();
-		cvFindContours(image, storage, contour, Loader.sizeof(CvContour.class),
-                CV_RETR_LIST, CV_CHAIN_APPROX_NONE);        
-		return contour;
+	private static int getMaxSize(ImageProcessorConfig config, int object) {
+		switch (object) {
+		case SearchWindowTracker.BLUE :
+			return config.getBlueSizeMax();
+		case SearchWindowTracker.YELLOW :
+			return config.getYellowSizeMax();
+		default :
+			return config.getBallSizeMax();
+		}
 	}
 	
+	
 	/**
-	 * Take a contour and return all shapes in it that fit within the
-	 * specified dimensions.
+	 * Tell the stage listener, if any, that a stage has started.
 	 * 
-	 * @param contour Contour to bisect.
-	 * @param minWidth Minimum required shape width.
-	 * @param maxWidth Maximum required shape width.
-	 * @param minHeight Minimum required shape height.
-	 * @param maxHeight Maximum required shape height.
-	 * @return A list of fitting shapes in the contour.
+	 * @param stage The stage.
 	 */
-	private ArrayList<CvSeq> sizeFilterContours(CvSeq contour, int minSize, int maxSize) {
-		ArrayList<CvSeq> shapes = new ArrayList<CvSeq>();
-		CvSeq contourSeq = contour;
-		
-		while (contourSeq != null && !contourSeq.isNull()) {
-            if (contourSeq.elem_size() > 0) {
-            	double epsilon = cvContourPerimeter(contourSeq) * POLY_APPROX_ERROR;
-                CvSeq points = cvApproxPoly(contourSeq, Loader.sizeof(CvContour.class),
-                        storage, CV_POLY_APPROX_DP, epsilon, 0);
-                
-                CvRect boundingRect = cvBoundingRect(points, 0);
-                int w = boundingRect.width();
-                int h = boundingRect.height();
-                
-                if ((w >= minSize) && (w <= maxSize) && (h >= minSize) && (h <= maxSize)) {
-                	shapes.add(points);
-                }
-            }
-            
-            contourSeq = contourSeq.h_next();
-        }
-		
-		return shapes;
+	private void notifyStageStarted(Stage stage) {
+		StageListener listener = stageListener;
+		if (listener != null) {
+			listener.stageStarted(stage);
+		}
 	}
 	
-	
 	/**
-	 * Get contour outline distances.
-	 * 
-	 * These are distances from the given center of the contour to its border
-	 * at each direction. The definition of "center" is up to the caller of
-	 * the function.
+	 * Tell the stage listener, if any, that a stage has finished.
 	 * 
-	 * @param contour Contour of interest.
-	 * @param centerX X coordinate of the contour's center.
-	 * @param centerY Y coordinate of the contour's center.
-	 * @return Contour's outline distances.
+	 * @param stage The stage.
 	 */
-	private double[] getContourOutlineDistances(CvSeq contour, double centerX, double centerY) {
-		double countFactor = OUTLINE_ANGLE_COUNT / 360.0;
-		
-		double[] distances = new double[OUTLINE_ANGLE_COUNT];
-		for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
-			distances[i] = Double.MAX_VALUE;
+	private void notifyStageFinished(Stage stage) {
+		StageListener listener = stageListener;
+		if (listener != null) {
+			listener.stageFinished(stage);
 		}
-		
-		for (int i = 0; i < contour.total(); ++i) {
-        	CvPoint point1 = new CvPoint(cvGetSeqElem(contour, i));
-        	CvPoint point2 = new CvPoint(cvGetSeqElem(contour, (i + 1) % contour.total()));
-        	
-        	double angle1 = Math.atan2(point1.y() - centerY, centerX - point1.x());
-        	int dirIdx1 = (int) ((Math.toDegrees(angle1) + 179) * countFactor);
-        	
-        	double angle2 = Math.atan2(point2.y() - centerY, centerX - point2.x());
-        	int dirIdx2 = (int) ((Math.toDegrees(angle2) + 179) * countFactor);
-        	
-        	if (dirIdx1 > dirIdx2) {
-        		int x = dirIdx1;
-        		dirIdx1 = dirIdx2;
-        		dirIdx2 = x;
-        	}
-        	
-        	double dist1 = Point.distance(centerX, centerY, point1.x(), point1.y());
-        	double dist2 = Point.distance(centerX, centerY, point2.x(), point2.y());
-        	
-        	int dirSize = dirIdx2 - dirIdx1;
-        	int revDirSize = OUTLINE_ANGLE_COUNT - dirSize;
-        	
-        	if (revDirSize < dirSize) {
-        		for (int j = dirIdx2; j < OUTLINE_ANGLE_COUNT; ++j) {
-        			double d = dist2 + ((dist1 - dist2) * (j - dirIdx2)) / revDirSize;
-        			distances[j] = Math.min(distances[j], d);
-        		}
-        		for (int j = 0; j < dirIdx1; ++j) {
-        			double d = dist2 + ((dist1 - dist2) * (j - dirIdx2 + OUTLINE_ANGLE_COUNT)) / revDirSize;
-        			distances[j] = Math.min(distances[j], d);
-        		}
-        	} else {
-        		for (int j = dirIdx1; j < dirIdx2; ++j) {
-        			double d = dist1 + ((dist2 - dist1) * (j - dirIdx1)) / dirSize;
-        			distances[j] = Math.min(distances[j], d);
-        		}
-        	}
-        }
-		
-		return distances;
 	}
 	
-
+	
 	/**
 	 * Get the current frame's region of interest.
 	 * 
+	 * @param config Configuration to use.
 	 * @return CvRect with the current ROI.
 	 */
-	private CvRect getCurrentROI() {
+	private CvRect getCurrentROI(ImageProcessorConfig config) {
 		return cvRect(config.getFieldLowX(), config.getFieldLowY(),
 				config.getFieldWidth(), config.getFieldHeight());
 	}
 	
-	
-	/**
-	 * Draw a position marker.
-	 * 
-	 * @param g Graphics that will do the drawing.
-	 * @param col Color of the marker
-	 * @param posPt Point that corresponds to the position of the marker.
-	 * @param dirPt Point that corresponds to the direction of the marker. If
-	 * 		null, direction line will not be drawn.
-	 */
-	private void drawPositionMarker(Graphics2D g, Color col, Point posPt, Point dirPt) {
-		g.setColor(col);
-		g.fillArc(posPt.x - POSITION_MARKER_SIZE, posPt.y - POSITION_MARKER_SIZE, 
-				2 * POSITION_MARKER_SIZE, 2 * POSITION_MARKER_SIZE, 0, 360);
-		
-		g.setColor(Color.white);
-		g.drawArc(posPt.x - POSITION_MARKER_SIZE, posPt.y - POSITION_MARKER_SIZE, 
-				2 * POSITION_MARKER_SIZE, 2 * POSITION_MARKER_SIZE, 0, 360);
-		
-		if (dirPt != null) {
-			g.drawLine(posPt.x, posPt.y, dirPt.x, dirPt.y);
-			
-			double angle = (new Vector2D(dirPt.x - posPt.x, dirPt.y - posPt.y)).getDirection();
-			Point2D.Double corners[] = GeomUtils.positionRectangle(ROBOT_PIXEL_LENGTH,
-					ROBOT_PIXEL_WIDTH, new Point2D.Double(posPt.x, posPt.y), angle);
-			
-			Point frontLeft = Utilities.pointFromPoint2D(corners[0]);
-			Point frontRight = Utilities.pointFromPoint2D(corners[1]);
-			Point backRight = Utilities.pointFromPoint2D(corners[2]);
-			Point backLeft = Utilities.pointFromPoint2D(corners[3]);
-			
-			g.drawLine(frontLeft.x, frontLeft.y, frontRight.x, frontRight.y);
-			g.drawLine(frontRight.x, frontRight.y, backRight.x, backRight.y);
-			g.drawLine(backRight.x, backRight.y, backLeft.x, backLeft.y);
-			g.drawLine(backLeft.x, backLeft.y, frontLeft.x, frontLeft.y);
-		}
-	}
-	
 }
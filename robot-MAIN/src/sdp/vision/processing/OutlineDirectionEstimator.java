@@ -0,0 +1,229 @@
+package sdp.vision.processing;
+
+import java.awt.geom.Point2D;
+
+
+/**
+ * Estimates the direction of a shape from its outline.
+ *
+ * For every direction, the distance from the shape's center to its outline
+ * is found. The shape is assumed to point in the direction where the
+ * distances, weighted by a triangular cone around that direction, are the
+ * largest.
+ *
+ * All working buffers are kept between calls, so an estimator must not be
+ * shared between threads.
+ */
+public class OutlineDirectionEstimator {
+
+	/** The size of the direction cone angle. */
+	private static final int DIRECTION_CONE_ANGLE = 30;
+	/** How many directions the outline distance calculations will use. */
+	private static final int OUTLINE_ANGLE_COUNT = 360;
+
+	/** Half of the direction cone, the weight of the cone's central direction. */
+	private static final int HALF_CONE = DIRECTION_CONE_ANGLE / 2;
+
+	/**
+	 * Relative tolerance of the sliding cone scores. Directions whose sliding
+	 * score is within it from the best one are scored again exactly.
+	 */
+	private static final double SCORE_TOLERANCE = 1e-8;
+
+
+	/** Outline distance in each direction. */
+	private double[] distances = new double[OUTLINE_ANGLE_COUNT];
+
+	/** Direction index of each outline point. */
+	private int[] pointDirs = new int[64];
+	/** Distance of each outline point from the center. */
+	private double[] pointDists = new double[64];
+
+	/** Prefix sums of the distances, starting half a cone before direction 0. */
+	private double[] distanceSums = new double[OUTLINE_ANGLE_COUNT + 2 * HALF_CONE - 1];
+	/** Prefix sums of the distances' box sums over half a cone. */
+	private double[] boxSums = new double[OUTLINE_ANGLE_COUNT + HALF_CONE];
+
+
+	/**
+	 * Create a new direction estimator.
+	 */
+	public OutlineDirectionEstimator() { }
+
+
+	/**
+	 * Estimate the direction of a shape.
+	 *
+	 * @param outline Outline points of the shape, X and Y interleaved.
+	 * @param pointCount Number of points in the outline.
+	 * @param centerX X coordinate of the shape's center.
+	 * @param centerY Y coordinate of the shape's center.
+	 * @return Direction of the shape in degrees.
+	 */
+	public int estimateDirection(int[] outline, int pointCount, double centerX, double centerY) {
+		computeOutlineDistances(outline, pointCount, centerX, centerY);
+		return findBestDirection();
+	}
+
+	/**
+	 * Get the outline distances computed in the last estimate.
+	 *
+	 * These are distances from the given center of the shape to its border
+	 * at each direction. Directions that the outline does not cover have
+	 * the distance Double.MAX_VALUE.
+	 *
+	 * @return Outline distances. The array is reused by the next estimate.
+	 */
+	public double[] getOutlineDistances() {
+		return distances;
+	}
+
+
+	/**
+	 * Compute the outline distances in every direction.
+	 *
+	 * The distance between every two neighbouring outline points is
+	 * interpolated over the directions between them.
+	 *
+	 * @param outline Outline points of the shape, X and Y interleaved.
+	 * @param pointCount Number of points in the outline.
+	 * @param centerX X coordinate of the shape's center.
+	 * @param centerY Y coordinate of the shape's center.
+	 */
+	private void computeOutlineDistances(int[] outline, int pointCount,
+			double centerX, double centerY) {
+		double countFactor = OUTLINE_ANGLE_COUNT / 360.0;
+
+		for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
+			distances[i] = Double.MAX_VALUE;
+		}
+
+		if (pointDirs.length < pointCount) {
+			pointDirs = new int[Math.max(pointCount, 2 * pointDirs.length)];
+			pointDists = new double[pointDirs.length];
+		}
+
+		// Every point ends one edge and starts the next, so its direction and
+		// distance are computed only once.
+		for (int i = 0; i < pointCount; ++i) {
+			int x = outline[2 * i];
+			int y = outline[2 * i + 1];
+
+			double angle = Math.atan2(y - centerY, centerX - x);
+			pointDirs[i] = (int) ((Math.toDegrees(angle) + 179) * countFactor);
+			pointDists[i] = Point2D.distance(centerX, centerY, x, y);
+		}
+
+		for (int i = 0; i < pointCount; ++i) {
+			int next = (i + 1) % pointCount;
+			int dirIdx1 = pointDirs[i];
+			int dirIdx2 = pointDirs[next];
+			double dist1 = pointDists[i];
+			double dist2 = pointDists[next];
+
+			if (dirIdx1 > dirIdx2) {
+				int x = dirIdx1;
+				dirIdx1 = dirIdx2;
+				dirIdx2 = x;
+			}
+
+			int dirSize = dirIdx2 - dirIdx1;
+			int revDirSize = OUTLINE_ANGLE_COUNT - dirSize;
+
+			if (revDirSize < dirSize) {
+				for (int j = dirIdx2; j < OUTLINE_ANGLE_COUNT; ++j) {
+					double d = dist2 + ((dist1 - dist2) * (j - dirIdx2)) / revDirSize;
+					distances[j] = Math.min(distances[j], d);
+				}
+				for (int j = 0; j < dirIdx1; ++j) {
+					double d = dist2 + ((dist1 - dist2) * (j - dirIdx2 + OUTLINE_ANGLE_COUNT)) / revDirSize;
+					distances[j] = Math.min(distances[j], d);
+				}
+			} else {
+				for (int j = dirIdx1; j < dirIdx2; ++j) {
+					double d = dist1 + ((dist2 - dist1) * (j - dirIdx1)) / dirSize;
+					distances[j] = Math.min(distances[j], d);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the direction with the largest cone score.
+	 *
+	 * The triangular cone is the convolution of two boxes that are half a
+	 * cone wide, so all scores are found with two rounds of prefix sums.
+	 * Since these sums round differently from a direct weighted sum, the
+	 * directions whose sliding score is close to the best are scored again
+	 * directly. The result is the first direction with the largest direct
+	 * score, or 0 if no score is positive.
+	 *
+	 * @return Index of the best direction.
+	 */
+	private int findBestDirection() {
+		// Uncovered directions would turn the sums into infinities.
+		for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
+			if (distances[i] == Double.MAX_VALUE) {
+				return findBestDirection(null, 0.0);
+			}
+		}
+
+		// distanceSums[k] is the sum of the k distances that start
+		// HALF_CONE - 1 directions before direction 0.
+		distanceSums[0] = 0.0;
+		for (int k = 1; k < distanceSums.length; ++k) {
+			int dir = (k - HALF_CONE + OUTLINE_ANGLE_COUNT) % OUTLINE_ANGLE_COUNT;
+			distanceSums[k] = distanceSums[k - 1] + distances[dir];
+		}
+
+		// The cone score of direction i is boxSums[i + HALF_CONE] - boxSums[i].
+		boxSums[0] = 0.0;
+		for (int k = 1; k < boxSums.length; ++k) {
+			boxSums[k] = boxSums[k - 1] + (distanceSums[k - 1 + HALF_CONE] - distanceSums[k - 1]);
+		}
+
+		double bestScore = 0.0;
+		for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
+			bestScore = Math.max(bestScore, boxSums[i + HALF_CONE] - boxSums[i]);
+		}
+
+		double tolerance = boxSums[boxSums.length - 1] * SCORE_TOLERANCE;
+		return findBestDirection(boxSums, bestScore - tolerance);
+	}
+
+	/**
+	 * Find the direction with the largest direct cone score.
+	 *
+	 * @param slidingSums Prefix sums of the box sums. If null, every
+	 * 		direction is scored directly.
+	 * @param minScore Directions whose sliding score is below this value
+	 * 		are skipped.
+	 * @return Index of the best direction.
+	 */
+	private int findBestDirection(double[] slidingSums, double minScore) {
+		int bestDir = 0;
+		double bestScore = 0.0;
+
+		for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
+			if ((slidingSums != null)
+					&& (slidingSums[i + HALF_CONE] - slidingSums[i] < minScore)) {
+				continue;
+			}
+
+			double score = 0.0;
+			for (int j = -HALF_CONE; j <= HALF_CONE; ++j) {
+				int k = (i + j + OUTLINE_ANGLE_COUNT) % OUTLINE_ANGLE_COUNT;
+				int w = HALF_CONE - Math.abs(j);
+				score += distances[k] * w;
+			}
+
+			if (score > bestScore) {
+				bestScore = score;
+				bestDir = i;
+			}
+		}
+
+		return bestDir;
+	}
+
+}
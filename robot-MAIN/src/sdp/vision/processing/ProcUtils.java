@@ -11,7 +11,6 @@ import sdp.common.Utilities;
 import sdp.common.world.Robot;
 import sdp.common.world.WorldState;
 
-import com.googlecode.javacv.cpp.opencv_core.CvMat;
 import com.googlecode.javacv.cpp.opencv_core.CvPoint;
 import com.googlecode.javacv.cpp.opencv_core.CvSeq;
 import com.googlecode.javacv.cpp.opencv_core.IplImage;
@@ -24,21 +23,6 @@ import com.googlecode.javacv.cpp.opencv_core.IplImage;
  */
 public class ProcUtils {
 	
-	/** Distortion coefficients for the undistortion operation. */
-	private static CvMat distortion;
-	/** Intristic coefficients for the undistortion operation. */
-	private static CvMat intristic;
-	
-	/** Variable initialisation. */
-	static {
-		distortion = CvMat.create(1, 8);
-		distortion.put(0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
-		
-		intristic = CvMat.create(3, 3);
-		intristic.put(1.0, 0.0, 1.0, 0.0, 1.0, 1.0, 0.0, 0.0, 1.0);
-	}
-	
-	
 	/**
 	 * Convert a sequence points into an array.
 	 * 
@@ -145,8 +129,8 @@ public class ProcUtils {
 		double yFactor = (WorldState.PITCH_WIDTH_CM * config.getFieldHeight()) / WorldState.PITCH_HEIGHT_CM;
 
 		if (!withinROI) {
-			x += config.getFieldLowX();
-			y += config.getFieldLowY();
+			x -= config.getFieldLowX();
+			y -= config.getFieldLowY();
 		}
 		
 		return new Point2D.Double(x / config.getFieldWidth(), (y / yFactor));
@@ -215,90 +199,93 @@ public class ProcUtils {
 		return new WorldState(ballPos,
 				new Robot(bluePos, state.getBlueRobot().getAngle()),
 				new Robot(yellowPos, state.getYellowRobot().getAngle()),
-				state.getWorldImage());
+				state.getWorldImageSource());
 	}
 	
 	
 	/**
-	 * Put undistortion coefficients into the appropriate matrices.
+	 * A function to undistort images.
 	 * 
 	 * @param config Image processor configuration to use.
+	 * @param image Image to undistort.
+	 * @return Undistorted image.
 	 */
-	private static synchronized void updateUndistortMatrices(ImageProcessorConfig config) {
-		intristic.put(0, 0, config.getUndistort_fx());
-		intristic.put(0, 2, config.getUndistort_cx());
-		intristic.put(1, 1, config.getUndistort_fy());
-		intristic.put(1, 2, config.getUndistort_cy());
-		
-		distortion.put(0, config.getUndistort_k1());
-		distortion.put(1, config.getUndistort_k2());
-		distortion.put(2, config.getUndistort_p1());
-		distortion.put(3, config.getUndistort_p2());
-		distortion.put(4, config.getUndistort_k3());
-		distortion.put(5, config.getUndistort_k4());
-		distortion.put(6, config.getUndistort_k5());
-		distortion.put(7, config.getUndistort_k6());
+	public static IplImage undistortImage(ImageProcessorConfig config,
+			IplImage image) {
+		IplImage newImage = IplImage.createCompatible(image);
+		undistortImage(config, image, newImage);
+		return newImage;
 	}
 	
 	/**
-	 * A function to undistort images.
+	 * A function to undistort images into a preallocated destination.
 	 * 
 	 * @param config Image processor configuration to use.
 	 * @param image Image to undistort.
-	 * @return Undistorted image.
+	 * @param dest Image to write the undistorted image into. Must have the
+	 * 		same size and type as the source image.
 	 */
-	public static synchronized IplImage undistortImage(ImageProcessorConfig config,
-			IplImage image) {
-		updateUndistortMatrices(config);
-
-		IplImage newImage = IplImage.createCompatible(image);
-		cvUndistort2(image, newImage, intristic, distortion);	
-		return newImage;
+	public static void undistortImage(ImageProcessorConfig config,
+			IplImage image, IplImage dest) {
+		UndistortionMap map = UndistortionMap.getMap(config, image.width(), image.height());
+		map.undistortImage(image, dest);
 	}
 	
 	/**
 	 * A function to undistort a point.
 	 * 
 	 * @param config Image processor configuration to use.
-	 * @param point Point to undistort.
+	 * @param point Point to undistort, in frame coordinates.
 	 * @return Undistorted point.
 	 */
-	public static synchronized Point2D.Double undistortPoint(ImageProcessorConfig config,
-			Point2D.Double point) {		
-		updateUndistortMatrices(config);
-
-		CvMat inPointMat = CvMat.create(1, 1, CV_32FC2);
-		CvMat outPointMat = CvMat.create(1, 1, CV_32FC2);
-		
-		inPointMat.put(0, 0, 0, point.x);
-		inPointMat.put(0, 0, 1, point.y);
-			
-		cvUndistortPoints(inPointMat, outPointMat, intristic, distortion, null, null);
-		
-		point.x = outPointMat.get(0, 0, 0);
-		point.x = point.x * config.getUndistort_fx() + config.getUndistort_cx();
-		
-		point.y = outPointMat.get(0, 0, 1);
-		point.y = point.y * config.getUndistort_fy() + config.getUndistort_cy();
+	public static Point2D.Double undistortPoint(ImageProcessorConfig config,
+			Point2D.Double point) {
+		UndistortionMap map = UndistortionMap.getMap(config,
+				config.getFrameWidth(), config.getFrameHeight());
+		return map.undistortPoint(point.x, point.y);
+	}
+	
+	/**
+	 * A function to undistort a point, given in normal coordinates. Negative
+	 * coordinates mark undetected objects and are left unchanged.
+	 * 
+	 * @param map Undistortion map to use.
+	 * @param config Image processor configuration to use.
+	 * @param point Point to undistort, in normal coordinates.
+	 * @return Undistorted point in normal coordinates.
+	 */
+	private static Point2D.Double undistortNormalPoint(UndistortionMap map,
+			ImageProcessorConfig config, Point2D.Double point) {
+		if ((point.x < 0.0) || (point.y < 0.0)) {
+			return new Point2D.Double(point.x, point.y);
+		}
 		
-		return point;
+		Point2D.Double framePoint = normalToFrameCoordinates(config, point.x, point.y, false);
+		framePoint = map.undistortPoint(framePoint.x, framePoint.y);
+		return frameToNormalCoordinates(config, framePoint.x, framePoint.y, false);
 	}
 	
 	/**
-	 * A function to undistort a world state.
+	 * A function to undistort a world state. Only object positions are
+	 * corrected; the world image is passed through as it is.
 	 * 
 	 * @param config Image processor configuration to use.
-	 * @param worldState World state to undistort.
+	 * @param worldState World state to undistort, in normal coordinates.
 	 * @return Correct world state.
 	 */
 	public static WorldState undistortWorldState(ImageProcessorConfig config, WorldState worldState) {
-		Point2D.Double newBallPos = undistortPoint(config, worldState.getBallCoords());
-		Point2D.Double newBluePos = undistortPoint(config, worldState.getBlueRobot().getCoords());
-		Point2D.Double newYellowPos = undistortPoint(config, worldState.getYellowRobot().getCoords());
+		UndistortionMap map = UndistortionMap.getMap(config,
+				config.getFrameWidth(), config.getFrameHeight());
+		
+		Point2D.Double newBallPos = undistortNormalPoint(map, config, worldState.getBallCoords());
+		Point2D.Double newBluePos = undistortNormalPoint(map, config, worldState.getBlueRobot().getCoords());
+		Point2D.Double newYellowPos = undistortNormalPoint(map, config, worldState.getYellowRobot().getCoords());
 		
 		Robot blueRobot = new Robot(newBluePos, worldState.getBlueRobot().getAngle());
 		Robot yellowRobot = new Robot(newYellowPos, worldState.getYellowRobot().getAngle());
 		
-		return new WorldState(newBallPos, blueRobot, yellowRobot, worldState.getWorldImage());
+		WorldState newState = new WorldState(newBallPos, blueRobot, yellowRobot, worldState.getWorldImageSource());
+		newState.setCaptureTime(worldState.getCaptureTime());
+		return newState;
 	}
 }
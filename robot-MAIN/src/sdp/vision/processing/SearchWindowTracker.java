@@ -0,0 +1,248 @@
+package sdp.vision.processing;
+
+
+/**
+ * Keeps track of where the ball and the robots are likely to be in the next
+ * frame.
+ *
+ * After each frame, the tracker is told where the objects were found. From
+ * their last positions and velocities it predicts a search window for each
+ * object in the next frame, so that the image processor can examine only
+ * those windows instead of the whole field.
+ *
+ * Objects that were not found in the last frame get no window, since they
+ * are probably not on the field. The whole field is scanned again
+ * periodically, and more often while some object is missing, so that such
+ * objects are picked up when they return. The image processor itself falls
+ * back to a full scan when an object is lost from its window.
+ *
+ * All coordinates are in pixels, relative to the field's top left corner.
+ */
+public class SearchWindowTracker {
+
+	/** Index of the ball. */
+	public static final int BALL = 0;
+	/** Index of the blue robot. */
+	public static final int BLUE = 1;
+	/** Index of the yellow robot. */
+	public static final int YELLOW = 2;
+	/** Number of tracked objects. */
+	public static final int OBJECT_COUNT = 3;
+
+	/** Number of values that describe a search window. */
+	public static final int WINDOW_SIZE = 4;
+
+	/** Extra space around an object's maximum size in its search window. */
+	private static final int WINDOW_MARGIN = 16;
+	/** How many frames of motion the search window should accommodate. */
+	private static final double VELOCITY_FACTOR = 2.0;
+	/** Maximum number of windowed frames between full field scans. */
+	private static final int FULL_SCAN_INTERVAL = 25;
+	/**
+	 * Maximum number of windowed frames between full field scans, while
+	 * some detected object is missing.
+	 */
+	private static final int MISSING_SCAN_INTERVAL = 5;
+
+
+	/** Whether each object was found in the last frame. */
+	private boolean[] found = new boolean[OBJECT_COUNT];
+	/** Last X coordinate of each object. */
+	private double[] posX = new double[OBJECT_COUNT];
+	/** Last Y coordinate of each object. */
+	private double[] posY = new double[OBJECT_COUNT];
+	/** X velocity of each object in pixels per frame. */
+	private double[] velX = new double[OBJECT_COUNT];
+	/** Y velocity of each object in pixels per frame. */
+	private double[] velY = new double[OBJECT_COUNT];
+
+	/** Field width the positions were recorded with. */
+	private int fieldWidth = -1;
+	/** Field height the positions were recorded with. */
+	private int fieldHeight = -1;
+
+	/** Number of windowed frames since the last full scan. */
+	private int framesSinceFullScan = 0;
+
+	/** How many frames were processed with search windows. */
+	private long windowedFrameCount = 0;
+	/** How many frames were processed with a full field scan. */
+	private long fullScanCount = 0;
+
+
+	/**
+	 * Create a new tracker that has not seen any objects yet.
+	 */
+	public SearchWindowTracker() { }
+
+
+	/**
+	 * Predict the search windows of the objects in the next frame.
+	 *
+	 * Each window takes {@link #WINDOW_SIZE} consecutive values in the array
+	 * at the object's index: x, y, width and height. Objects that are not
+	 * being detected or were not found get an empty window.
+	 *
+	 * @param config Configuration the next frame will be processed with.
+	 * @param windows Array to write the windows into. Must have space for
+	 * 		{@link #OBJECT_COUNT} windows.
+	 * @return Whether the windows are valid. If false, the whole field should
+	 * 		be scanned.
+	 */
+	public synchronized boolean predictWindows(ImageProcessorConfig config, int[] windows) {
+		if ((fieldWidth != config.getFieldWidth()) || (fieldHeight != config.getFieldHeight())
+				|| (framesSinceFullScan >= FULL_SCAN_INTERVAL)) {
+			return false;
+		}
+
+		boolean anyFound = false;
+		boolean anyMissing = false;
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			int offset = i * WINDOW_SIZE;
+			if (!isDetected(config, i) || !found[i]) {
+				anyMissing |= isDetected(config, i);
+				windows[offset] = 0;
+				windows[offset + 1] = 0;
+				windows[offset + 2] = 0;
+				windows[offset + 3] = 0;
+				continue;
+			}
+			anyFound = true;
+
+			double halfSize = getMaxSize(config, i) / 2.0 + WINDOW_MARGIN;
+			double predX = posX[i] + velX[i];
+			double predY = posY[i] + velY[i];
+			double halfW = halfSize + Math.abs(velX[i]) * VELOCITY_FACTOR;
+			double halfH = halfSize + Math.abs(velY[i]) * VELOCITY_FACTOR;
+
+			int lowX = Math.max(0, (int) Math.floor(predX - halfW));
+			int lowY = Math.max(0, (int) Math.floor(predY - halfH));
+			int highX = Math.min(fieldWidth, (int) Math.ceil(predX + halfW));
+			int highY = Math.min(fieldHeight, (int) Math.ceil(predY + halfH));
+			if ((highX <= lowX) || (highY <= lowY)) {
+				return false;
+			}
+
+			windows[offset] = lowX;
+			windows[offset + 1] = lowY;
+			windows[offset + 2] = highX - lowX;
+			windows[offset + 3] = highY - lowY;
+		}
+
+		return (anyFound && (!anyMissing || (framesSinceFullScan < MISSING_SCAN_INTERVAL)));
+	}
+
+	/**
+	 * Record where the objects were found in a frame.
+	 *
+	 * @param config Configuration the frame was processed with.
+	 * @param fullScan Whether the whole field was scanned.
+	 * @param positions Object positions, two values per object, in the order
+	 * 		of object indices. Negative values mean the object was not found.
+	 */
+	public synchronized void update(ImageProcessorConfig config, boolean fullScan,
+			double[] positions) {
+		if ((fieldWidth != config.getFieldWidth()) || (fieldHeight != config.getFieldHeight())) {
+			fieldWidth = config.getFieldWidth();
+			fieldHeight = config.getFieldHeight();
+			for (int i = 0; i < OBJECT_COUNT; ++i) {
+				found[i] = false;
+			}
+		}
+
+		if (fullScan) {
+			++fullScanCount;
+			framesSinceFullScan = 0;
+		} else {
+			++windowedFrameCount;
+			++framesSinceFullScan;
+		}
+
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			double x = positions[2 * i];
+			double y = positions[2 * i + 1];
+
+			if ((x < 0.0) || (y < 0.0)) {
+				found[i] = false;
+			} else {
+				if (found[i]) {
+					velX[i] = x - posX[i];
+					velY[i] = y - posY[i];
+				} else {
+					velX[i] = 0.0;
+					velY[i] = 0.0;
+				}
+				posX[i] = x;
+				posY[i] = y;
+				found[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Forget all tracked objects, so that the next frame is fully scanned.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			found[i] = false;
+		}
+		framesSinceFullScan = 0;
+	}
+
+
+	/**
+	 * Get how many frames were processed with search windows.
+	 *
+	 * @return Number of windowed frames.
+	 */
+	public synchronized long getWindowedFrameCount() {
+		return windowedFrameCount;
+	}
+
+	/**
+	 * Get how many frames were processed with a full field scan.
+	 *
+	 * @return Number of fully scanned frames.
+	 */
+	public synchronized long getFullScanCount() {
+		return fullScanCount;
+	}
+
+
+	/**
+	 * Check whether an object is being detected.
+	 *
+	 * @param config Configuration to use.
+	 * @param object Index of the object.
+	 * @return Whether the object is detected.
+	 */
+	private static boolean isDetected(ImageProcessorConfig config, int object) {
+		switch (object) {
+		case BLUE :
+			return config.isDetectBlue();
+		case YELLOW :
+			return config.isDetectYellow();
+		default :
+			return true;
+		}
+	}
+
+	/**
+	 * Get the maximum size of an object's shape.
+	 *
+	 * @param config Configuration to use.
+	 * @param object Index of the object.
+	 * @return Maximum shape size in pixels.
+	 */
+	private static int getMaxSize(ImageProcessorConfig config, int object) {
+		switch (object) {
+		case BLUE :
+			return config.getBlueSizeMax();
+		case YELLOW :
+			return config.getYellowSizeMax();
+		default :
+			return config.getBallSizeMax();
+		}
+	}
+
+}
@@ -0,0 +1,295 @@
+package sdp.vision.processing;
+
+import static com.googlecode.javacv.cpp.opencv_core.*;
+import static com.googlecode.javacv.cpp.opencv_imgproc.*;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Precomputed lens undistortion for a single set of undistortion
+ * coefficients and frame dimensions.
+ *
+ * Computing the distortion model is the expensive part of undistortion, so
+ * it is done once, when the map is first used on an image, and the result
+ * is stored as a pair of remap tables. Undistorting a frame is then a single
+ * remap operation, which does not need any locking.
+ *
+ * Maps are shared through a small cache, keyed by the undistortion
+ * coefficients and frame dimensions. Use {@link #getMap(ImageProcessorConfig, int, int)}
+ * to obtain one.
+ */
+public class UndistortionMap {
+
+	/** Number of undistortion coefficients in a configuration. */
+	private static final int COEFFICIENT_COUNT = 12;
+	/** How many different maps to keep in the cache. */
+	private static final int CACHE_SIZE = 4;
+
+	/** Cache of recently used undistortion maps. */
+	private static Map<Key, UndistortionMap> cache = new LinkedHashMap<Key, UndistortionMap>(
+			CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, UndistortionMap> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+	/** How many maps have been built since the program's start. */
+	private static long buildCount = 0;
+
+
+	/** Undistortion coefficients this map was built for. */
+	private double[] coefficients;
+	/** Width of the frames this map is for. */
+	private int width;
+	/** Height of the frames this map is for. */
+	private int height;
+
+	/** Intristic coefficients for the undistortion operation. */
+	private CvMat intristic;
+	/** Distortion coefficients for the undistortion operation. */
+	private CvMat distortion;
+
+	/**
+	 * Integer part of the remap table. Written last when the tables are
+	 * built, so a non-null value means both tables are ready.
+	 */
+	private volatile CvMat mapXY;
+	/** Fractional part of the remap table. */
+	private CvMat mapInterpolation;
+
+	/** Input matrix for point undistortion. */
+	private CvMat inPointMat;
+	/** Output matrix for point undistortion. */
+	private CvMat outPointMat;
+
+
+	/**
+	 * Create a new undistortion map.
+	 *
+	 * @param coefficients Undistortion coefficients, as produced by
+	 * 		{@link #getCoefficients(ImageProcessorConfig, double[])}.
+	 * @param width Width of the frames to undistort.
+	 * @param height Height of the frames to undistort.
+	 */
+	private UndistortionMap(double[] coefficients, int width, int height) {
+		this.coefficients = coefficients;
+		this.width = width;
+		this.height = height;
+
+		intristic = CvMat.create(3, 3);
+		intristic.put(coefficients[0], 0.0, coefficients[2],
+				0.0, coefficients[1], coefficients[3],
+				0.0, 0.0, 1.0);
+
+		distortion = CvMat.create(1, 8);
+		for (int i = 0; i < 8; ++i) {
+			distortion.put(i, coefficients[i + 4]);
+		}
+
+		inPointMat = CvMat.create(1, 1, CV_32FC2);
+		outPointMat = CvMat.create(1, 1, CV_32FC2);
+	}
+
+
+	/**
+	 * Get an undistortion map for the given configuration's coefficients and
+	 * the given frame dimensions.
+	 *
+	 * @param config Configuration, whose undistortion coefficients to use.
+	 * @param width Width of the frames to undistort.
+	 * @param height Height of the frames to undistort.
+	 * @return A matching undistortion map.
+	 */
+	public static synchronized UndistortionMap getMap(ImageProcessorConfig config,
+			int width, int height) {
+		Key key = new Key(getCoefficients(config, new double[COEFFICIENT_COUNT]), width, height);
+
+		UndistortionMap map = cache.get(key);
+		if (map == null) {
+			map = new UndistortionMap(key.coefficients, width, height);
+			cache.put(key, map);
+		}
+		return map;
+	}
+
+	/**
+	 * Get how many undistortion maps have been built.
+	 *
+	 * @return Number of built maps.
+	 */
+	public static synchronized long getBuildCount() {
+		return buildCount;
+	}
+
+	/**
+	 * Increment the map build counter.
+	 */
+	private static synchronized void countBuild() {
+		++buildCount;
+	}
+
+
+	/**
+	 * Check whether this map can be used with the given configuration and
+	 * frame dimensions.
+	 *
+	 * @param config Configuration of interest.
+	 * @param width Width of the frames to undistort.
+	 * @param height Height of the frames to undistort.
+	 * @return Whether this map matches the configuration and dimensions.
+	 */
+	public boolean matches(ImageProcessorConfig config, int width, int height) {
+		return ((this.width == width) && (this.height == height)
+				&& (coefficients[0] == config.getUndistort_fx())
+				&& (coefficients[1] == config.getUndistort_fy())
+				&& (coefficients[2] == config.getUndistort_cx())
+				&& (coefficients[3] == config.getUndistort_cy())
+				&& (coefficients[4] == config.getUndistort_k1())
+				&& (coefficients[5] == config.getUndistort_k2())
+				&& (coefficients[6] == config.getUndistort_p1())
+				&& (coefficients[7] == config.getUndistort_p2())
+				&& (coefficients[8] == config.getUndistort_k3())
+				&& (coefficients[9] == config.getUndistort_k4())
+				&& (coefficients[10] == config.getUndistort_k5())
+				&& (coefficients[11] == config.getUndistort_k6()));
+	}
+
+
+	/**
+	 * Undistort an image.
+	 *
+	 * @param image Image to undistort. Must have the dimensions this map was
+	 * 		created for.
+	 * @param dest Image to write the undistorted image into. Must have the
+	 * 		same size and type as the source image.
+	 */
+	public void undistortImage(IplImage image, IplImage dest) {
+		if (mapXY == null) {
+			buildRemapTables();
+		}
+		cvRemap(image, dest, mapXY, mapInterpolation,
+				CV_INTER_LINEAR | CV_WARP_FILL_OUTLIERS, cvScalarAll(0));
+	}
+
+	/**
+	 * Undistort a point.
+	 *
+	 * @param x X coordinate of the point in frame coordinates.
+	 * @param y Y coordinate of the point in frame coordinates.
+	 * @return Undistorted point in frame coordinates.
+	 */
+	public synchronized Point2D.Double undistortPoint(double x, double y) {
+		inPointMat.put(0, 0, 0, x);
+		inPointMat.put(0, 0, 1, y);
+
+		cvUndistortPoints(inPointMat, outPointMat, intristic, distortion, null, null);
+
+		return new Point2D.Double(
+				outPointMat.get(0, 0, 0) * coefficients[0] + coefficients[2],
+				outPointMat.get(0, 0, 1) * coefficients[1] + coefficients[3]);
+	}
+
+
+	/**
+	 * Build the remap tables, if that has not been done yet.
+	 */
+	private synchronized void buildRemapTables() {
+		if (mapXY != null) {
+			return;
+		}
+
+		// Fixed point tables are built directly, as converting floating point
+		// ones loses precision and gives slightly different results from
+		// cvUndistort2.
+		CvMat fixedXY = CvMat.create(height, width, CV_16SC2);
+		CvMat fixedInterpolation = CvMat.create(height, width, CV_16UC1);
+		cvInitUndistortRectifyMap(intristic, distortion, null, intristic,
+				fixedXY, fixedInterpolation);
+
+		mapInterpolation = fixedInterpolation;
+		mapXY = fixedXY;
+		countBuild();
+	}
+
+
+	/**
+	 * Collect the undistortion coefficients of a configuration into an array.
+	 *
+	 * @param config Configuration of interest.
+	 * @param coefficients Array to write the coefficients into.
+	 * @return The coefficient array.
+	 */
+	private static double[] getCoefficients(ImageProcessorConfig config, double[] coefficients) {
+		coefficients[0] = config.getUndistort_fx();
+		coefficients[1] = config.getUndistort_fy();
+		coefficients[2] = config.getUndistort_cx();
+		coefficients[3] = config.getUndistort_cy();
+		coefficients[4] = config.getUndistort_k1();
+		coefficients[5] = config.getUndistort_k2();
+		coefficients[6] = config.getUndistort_p1();
+		coefficients[7] = config.getUndistort_p2();
+		coefficients[8] = config.getUndistort_k3();
+		coefficients[9] = config.getUndistort_k4();
+		coefficients[10] = config.getUndistort_k5();
+		coefficients[11] = config.getUndistort_k6();
+		return coefficients;
+	}
+
+
+	/**
+	 * Cache key of an undistortion map.
+	 */
+	private static class Key {
+
+		/** Undistortion coefficients. */
+		private double[] coefficients;
+		/** Frame width. */
+		private int width;
+		/** Frame height. */
+		private int height;
+
+
+		/**
+		 * Create a new cache key.
+		 *
+		 * @param coefficients Undistortion coefficients.
+		 * @param width Frame width.
+		 * @param height Frame height.
+		 */
+		public Key(double[] coefficients, int width, int height) {
+			this.coefficients = coefficients;
+			this.width = width;
+			this.height = height;
+		}
+
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return (Arrays.hashCode(coefficients) * 31 + width) * 31 + height;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return ((width == other.width) && (height == other.height)
+					&& Arrays.equals(coefficients, other.coefficients));
+		}
+
+	}
+
+}
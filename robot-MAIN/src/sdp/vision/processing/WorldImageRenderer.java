@@ -0,0 +1,254 @@
+package sdp.vision.processing;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import sdp.common.Utilities;
+import sdp.common.geometry.GeomUtils;
+import sdp.common.geometry.Vector2D;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+
+
+/**
+ * Draws the world image of a processed frame when it is first requested.
+ *
+ * The image processor only takes a snapshot of the frame's pixels and
+ * records what should be drawn over them: the outlines and bounding boxes
+ * of the located shapes and the extracted object positions. The picture is
+ * put together on the thread that asks for it, usually the GUI's, so the
+ * processing threads never draw anything.
+ *
+ * The recording methods must be called before the renderer is shared with
+ * other threads.
+ */
+public class WorldImageRenderer implements WorldImageSource {
+
+	/** Length of the direction line. */
+	private static final int DIR_LINE_LENGTH = 40;
+	/** Size of the position marker. */
+	private static final int POSITION_MARKER_SIZE = 4;
+
+	/** Robot length in pixels. */
+	private static final double ROBOT_PIXEL_LENGTH = 50;
+	/** Robot width in pixels. */
+	private static final double ROBOT_PIXEL_WIDTH = 45;
+
+
+	/** Configuration the frame was processed with. */
+	private ImageProcessorConfig config;
+
+	/** Width of the frame. */
+	private int width;
+	/** Height of the frame. */
+	private int height;
+	/** Snapshot of the frame's pixels. Released once the image is drawn. */
+	private byte[] frameData;
+
+	/** Outline of each object's shape, in field coordinates, or null. */
+	private int[][] outlines = new int[SearchWindowTracker.OBJECT_COUNT][];
+	/** Bounding box of each object's shape, in field coordinates, or null. */
+	private int[][] boundingBoxes = new int[SearchWindowTracker.OBJECT_COUNT][];
+
+	/** Position of the ball. */
+	private Point2D.Double ball = null;
+	/** The blue robot. */
+	private Robot blueRobot = null;
+	/** The yellow robot. */
+	private Robot yellowRobot = null;
+
+	/** The drawn world image, once it has been requested. */
+	private BufferedImage worldImage = null;
+
+
+	/**
+	 * Create a new renderer for a frame.
+	 *
+	 * @param config Configuration the frame was processed with.
+	 * @param frame Frame image, whose pixels are copied.
+	 */
+	public WorldImageRenderer(ImageProcessorConfig config, BufferedImage frame) {
+		this.config = config;
+		width = frame.getWidth();
+		height = frame.getHeight();
+
+		byte[] data = FrameBuffers.getImageData(frame);
+		frameData = Arrays.copyOf(data, data.length);
+	}
+
+
+	/**
+	 * Record the outline of an object's shape.
+	 *
+	 * @param object Index of the object.
+	 * @param outline Outline points in field coordinates, X and Y
+	 * 		interleaved. The points are copied.
+	 * @param pointCount Number of points in the outline.
+	 */
+	public void setOutline(int object, int[] outline, int pointCount) {
+		outlines[object] = Arrays.copyOf(outline, 2 * pointCount);
+	}
+
+	/**
+	 * Record the bounding box of an object's shape.
+	 *
+	 * @param object Index of the object.
+	 * @param x X coordinate of the box's top left corner in the field.
+	 * @param y Y coordinate of the box's top left corner in the field.
+	 * @param width Width of the box.
+	 * @param height Height of the box.
+	 */
+	public void setBoundingBox(int object, int x, int y, int width, int height) {
+		boundingBoxes[object] = new int[] { x, y, width, height };
+	}
+
+	/**
+	 * Record the extracted object positions.
+	 *
+	 * @param ball Position of the ball.
+	 * @param blueRobot The blue robot.
+	 * @param yellowRobot The yellow robot.
+	 */
+	public void setObjects(Point2D.Double ball, Robot blueRobot, Robot yellowRobot) {
+		this.ball = ball;
+		this.blueRobot = blueRobot;
+		this.yellowRobot = yellowRobot;
+	}
+
+
+	/**
+	 * Get the world image, drawing it on the first call.
+	 *
+	 * @see sdp.common.world.WorldImageSource#getWorldImage()
+	 */
+	@Override
+	public synchronized BufferedImage getWorldImage() {
+		if (worldImage == null) {
+			worldImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+			System.arraycopy(frameData, 0, FrameBuffers.getImageData(worldImage), 0,
+					frameData.length);
+			frameData = null;
+
+			Graphics2D graphics = worldImage.createGraphics();
+			drawShapes(graphics);
+			drawOverlay(graphics);
+			graphics.dispose();
+		}
+		return worldImage;
+	}
+
+
+	/**
+	 * Draw the outlines and bounding boxes of the located shapes.
+	 *
+	 * @param graphics Graphics of the world image.
+	 */
+	private void drawShapes(Graphics2D graphics) {
+		graphics.translate(config.getFieldLowX(), config.getFieldLowY());
+
+		for (int i = 0; i < SearchWindowTracker.OBJECT_COUNT; ++i) {
+			if (outlines[i] != null) {
+				drawOutline(graphics, outlines[i], outlines[i].length / 2);
+			}
+			if (boundingBoxes[i] != null) {
+				graphics.setColor(Color.white);
+				graphics.drawRect(boundingBoxes[i][0], boundingBoxes[i][1],
+						boundingBoxes[i][2], boundingBoxes[i][3]);
+			}
+		}
+
+		graphics.translate(-config.getFieldLowX(), -config.getFieldLowY());
+	}
+
+	/**
+	 * Draw the field boundary and, if enabled, the object positions.
+	 *
+	 * @param graphics Graphics of the world image.
+	 */
+	private void drawOverlay(Graphics2D graphics) {
+		graphics.setColor(Color.white);
+
+		graphics.drawRect(config.getFieldLowX(), config.getFieldLowY(),
+				config.getFieldWidth(), config.getFieldHeight());
+
+		if (config.isShowStateData() && (ball != null)) {
+			Point pt1, pt2;
+
+			// Draw ball position.
+			pt1 = ProcUtils.normalToFrameCoordinatesInt(config, ball.x, ball.y, false);
+			drawPositionMarker(graphics, Color.red, pt1, null);
+
+			// Draw blue robot position and direction.
+			pt1 = ProcUtils.normalToFrameCoordinatesInt(config, blueRobot.getCoords().x,
+					blueRobot.getCoords().y, false);
+			pt2 = GeomUtils.rotatePoint(pt1, new Point(pt1.x + DIR_LINE_LENGTH, pt1.y),
+					blueRobot.getAngle());
+			drawPositionMarker(graphics, Color.blue, pt1, pt2);
+
+			// Draw yellow robot position and direction.
+			pt1 = ProcUtils.normalToFrameCoordinatesInt(config, yellowRobot.getCoords().x,
+					yellowRobot.getCoords().y, false);
+			pt2 = GeomUtils.rotatePoint(pt1, new Point(pt1.x + DIR_LINE_LENGTH, pt1.y),
+					yellowRobot.getAngle());
+			drawPositionMarker(graphics, Color.orange, pt1, pt2);
+		}
+	}
+
+
+	/**
+	 * Draw a position marker.
+	 *
+	 * @param g Graphics that will do the drawing.
+	 * @param col Color of the marker
+	 * @param posPt Point that corresponds to the position of the marker.
+	 * @param dirPt Point that corresponds to the direction of the marker. If
+	 * 		null, direction line will not be drawn.
+	 */
+	private static void drawPositionMarker(Graphics2D g, Color col, Point posPt, Point dirPt) {
+		g.setColor(col);
+		g.fillArc(posPt.x - POSITION_MARKER_SIZE, posPt.y - POSITION_MARKER_SIZE,
+				2 * POSITION_MARKER_SIZE, 2 * POSITION_MARKER_SIZE, 0, 360);
+
+		g.setColor(Color.white);
+		g.drawArc(posPt.x - POSITION_MARKER_SIZE, posPt.y - POSITION_MARKER_SIZE,
+				2 * POSITION_MARKER_SIZE, 2 * POSITION_MARKER_SIZE, 0, 360);
+
+		if (dirPt != null) {
+			g.drawLine(posPt.x, posPt.y, dirPt.x, dirPt.y);
+
+			double angle = (new Vector2D(dirPt.x - posPt.x, dirPt.y - posPt.y)).getDirection();
+			Point2D.Double corners[] = GeomUtils.positionRectangle(ROBOT_PIXEL_LENGTH,
+					ROBOT_PIXEL_WIDTH, new Point2D.Double(posPt.x, posPt.y), angle);
+
+			Point frontLeft = Utilities.pointFromPoint2D(corners[0]);
+			Point frontRight = Utilities.pointFromPoint2D(corners[1]);
+			Point backRight = Utilities.pointFromPoint2D(corners[2]);
+			Point backLeft = Utilities.pointFromPoint2D(corners[3]);
+
+			g.drawLine(frontLeft.x, frontLeft.y, frontRight.x, frontRight.y);
+			g.drawLine(frontRight.x, frontRight.y, backRight.x, backRight.y);
+			g.drawLine(backRight.x, backRight.y, backLeft.x, backLeft.y);
+			g.drawLine(backLeft.x, backLeft.y, frontLeft.x, frontLeft.y);
+		}
+	}
+
+	/**
+	 * Draw a shape's outline.
+	 *
+	 * @param g Graphics that will do the drawing.
+	 * @param outline Outline points, X and Y interleaved.
+	 * @param pointCount Number of points in the outline.
+	 */
+	private static void drawOutline(Graphics2D g, int[] outline, int pointCount) {
+		g.setColor(Color.white);
+		for (int i = 0; i < pointCount; ++i) {
+			int next = (i + 1) % pointCount;
+			g.drawLine(outline[2 * i], outline[2 * i + 1], outline[2 * next], outline[2 * next + 1]);
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import sdp.common.VisionTestCase;
 import sdp.vision.Vision;
 import sdp.vision.processing.ImageProcessorConfig;
+import sdp.vision.processing.MainImageProcessor;
 import sdp.vision.processing.ProcUtils;
 import sdp.common.Utilities;
 import sdp.common.world.WorldState;
@@ -27,7 +28,9 @@ public class TestBench {
 	 * Create a new test bench instance.
 	 */
 	public TestBench() {
-		vision = new Vision();
+		MainImageProcessor processor = new MainImageProcessor();
+		processor.setHeadless(true);
+		vision = new Vision(processor);
 	}
 	
 	
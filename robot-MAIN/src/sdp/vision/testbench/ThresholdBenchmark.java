@@ -0,0 +1,214 @@
+package sdp.vision.testbench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import sdp.vision.processing.FrameBuffers;
+import sdp.vision.processing.FrameThresholder;
+import sdp.vision.processing.ImageProcessorConfig;
+
+
+/**
+ * Measures the speed of frame thresholding with different worker counts.
+ *
+ * All frames from the given image directories are thresholded sequentially
+ * first, and the results serve as reference. Every parallel run is then
+ * checked to produce exactly the same classification buffers and frames.
+ *
+ * Usage: ThresholdBenchmark [config] [repetitions] [image directory...]
+ */
+public class ThresholdBenchmark {
+
+	/** Default configuration file. */
+	private static final String DEFAULT_CONFIG = "data/configs/Main table - Friendly 3.xml";
+	/** Default image directories. */
+	private static final String[] DEFAULT_IMAGE_DIRS = {
+		"data/images/friendly1", "data/images/friendly2"
+	};
+	/** Default number of passes over all frames. */
+	private static final int DEFAULT_REPETITIONS = 10;
+
+
+	/** Configuration to threshold with. */
+	private ImageProcessorConfig config;
+	/** Source frames. */
+	private ArrayList<BufferedImage> frames;
+
+	/** Thresholded reference frames. */
+	private ArrayList<BufferedImage> referenceFrames;
+	/** Reference classification buffers of each frame. */
+	private ArrayList<byte[]> referenceClasses;
+
+
+	/**
+	 * Create a new benchmark.
+	 *
+	 * @param config Configuration to threshold with.
+	 * @param imageDirs Directories with the frames to threshold.
+	 * @throws IOException If some image could not be read.
+	 */
+	public ThresholdBenchmark(ImageProcessorConfig config, String[] imageDirs) throws IOException {
+		this.config = config;
+
+		frames = new ArrayList<BufferedImage>();
+		for (String dirName : imageDirs) {
+			File files[] = new File(dirName).listFiles();
+			if (files == null) {
+				throw new IOException("Could not list directory " + dirName + ".");
+			}
+			Arrays.sort(files);
+
+			for (File file : files) {
+				BufferedImage image = ImageIO.read(file);
+				if (image != null) {
+					frames.add(toFrameImage(image));
+				}
+			}
+		}
+
+		referenceFrames = new ArrayList<BufferedImage>();
+		referenceClasses = new ArrayList<byte[]>();
+	}
+
+
+	/**
+	 * Threshold all frames with the given worker count.
+	 *
+	 * @param workerCount Number of thresholding workers.
+	 * @param repetitions How many times to threshold each frame.
+	 * @return Average time per frame in milliseconds.
+	 */
+	public double run(int workerCount, int repetitions) {
+		FrameThresholder thresholder = new FrameThresholder();
+		thresholder.setWorkerCount(workerCount);
+		thresholder.updateLookupTable(config);
+
+		byte[] classBuffer = new byte[config.getFieldWidth() * config.getFieldHeight()];
+
+		long totalTime = 0;
+		for (int rep = 0; rep < repetitions; ++rep) {
+			for (int i = 0; i < frames.size(); ++i) {
+				BufferedImage frame = copyFrame(frames.get(i));
+
+				long startTime = System.nanoTime();
+				thresholder.thresholdFrame(config, frame, classBuffer);
+				totalTime += System.nanoTime() - startTime;
+
+				if (rep == 0) {
+					checkResult(i, frame, classBuffer.clone());
+				}
+			}
+		}
+
+		thresholder.setWorkerCount(1);
+		return totalTime / (1000000.0 * repetitions * frames.size());
+	}
+
+
+	/**
+	 * Store the result of a frame as reference or compare it to the stored
+	 * reference.
+	 *
+	 * @param index Index of the frame.
+	 * @param frame Thresholded frame.
+	 * @param classes Classification buffer of the frame.
+	 */
+	private void checkResult(int index, BufferedImage frame, byte[] classes) {
+		if (referenceClasses.size() <= index) {
+			referenceFrames.add(frame);
+			referenceClasses.add(classes);
+			return;
+		}
+
+		if (!Arrays.equals(referenceClasses.get(index), classes)) {
+			throw new IllegalStateException("Classes of frame " + index + " differ from reference.");
+		}
+		if (!Arrays.equals(getFrameData(referenceFrames.get(index)), getFrameData(frame))) {
+			throw new IllegalStateException("Frame " + index + " differs from reference.");
+		}
+	}
+
+
+	/**
+	 * Convert an image into the frame type that the image processor uses.
+	 *
+	 * @param image Image to convert.
+	 * @return Converted image.
+	 */
+	private static BufferedImage toFrameImage(BufferedImage image) {
+		BufferedImage frame = new BufferedImage(image.getWidth(), image.getHeight(),
+				BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D graphics = frame.createGraphics();
+		graphics.drawImage(image, 0, 0, null);
+		graphics.dispose();
+		return frame;
+	}
+
+	/**
+	 * Create a copy of a frame.
+	 *
+	 * @param frame Frame to copy.
+	 * @return Copy of the frame.
+	 */
+	private static BufferedImage copyFrame(BufferedImage frame) {
+		BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(),
+				BufferedImage.TYPE_3BYTE_BGR);
+		System.arraycopy(getFrameData(frame), 0, getFrameData(copy), 0, getFrameData(frame).length);
+		return copy;
+	}
+
+	/**
+	 * Get the pixel array, backing a frame.
+	 *
+	 * @param frame Frame of interest.
+	 * @return Frame's pixel array.
+	 */
+	private static byte[] getFrameData(BufferedImage frame) {
+		return FrameBuffers.getImageData(frame);
+	}
+
+
+	/**
+	 * The entry point.
+	 *
+	 * @param args Command-line arguments.
+	 */
+	public static void main(String[] args) {
+		String configFile = (args.length > 0) ? args[0] : DEFAULT_CONFIG;
+		int repetitions = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_REPETITIONS;
+		String[] imageDirs = (args.length > 2) ? Arrays.copyOfRange(args, 2, args.length)
+				: DEFAULT_IMAGE_DIRS;
+
+		ImageProcessorConfig config = ImageProcessorConfig.loadConfiguration(configFile);
+		config.setShowThresholds(true);
+
+		ThresholdBenchmark benchmark;
+		try {
+			benchmark = new ThresholdBenchmark(config, imageDirs);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		int maxWorkers = Math.max(4, Runtime.getRuntime().availableProcessors());
+		System.out.println(benchmark.frames.size() + " frames, "
+				+ Runtime.getRuntime().availableProcessors() + " processors.");
+
+		benchmark.run(1, 1);
+		double sequentialTime = benchmark.run(1, repetitions);
+		System.out.printf("1 worker: %.3f ms/frame%n", sequentialTime);
+
+		for (int workers = 2; workers <= maxWorkers; workers *= 2) {
+			double time = benchmark.run(workers, repetitions);
+			System.out.printf("%d workers: %.3f ms/frame, speedup %.2fx, results identical%n",
+					workers, time, sequentialTime / time);
+		}
+	}
+
+}
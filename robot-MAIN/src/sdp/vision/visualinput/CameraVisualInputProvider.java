@@ -1,5 +1,6 @@
 package sdp.vision.visualinput;
 
+import java.util.Arrays;
 import java.util.logging.Logger;
 
 import au.edu.jcu.v4l4j.CaptureCallback;
@@ -100,8 +101,14 @@ public class CameraVisualInputProvider extends VisualInputProvider implements Ca
 	 */
 	@Override
 	public void nextFrame(VideoFrame frame) {
-		sendNextFrame(frame.getBufferedImage());
+		long captureTime = System.currentTimeMillis();
+		
+		// The frame is passed on in its JPEG form, so that decoding does not
+		// hold up the capture thread when the receiver processes it elsewhere.
+		byte[] data = Arrays.copyOf(frame.getBytes(), frame.getFrameLength());
 		frame.recycle();
+		
+		sendNextFrame(new CapturedFrame(data, data.length, captureTime));
 	}
 
 }
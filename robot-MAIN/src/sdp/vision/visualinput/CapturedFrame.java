@@ -0,0 +1,98 @@
+package sdp.vision.visualinput;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * A single frame from a visual input provider.
+ *
+ * A frame can be either already decoded or still in its encoded form, in
+ * which case it is decoded on the first call to {@link #getImage()}. This
+ * allows the decoding to happen outside of the capture thread.
+ */
+public class CapturedFrame {
+
+	/** The class' logger. */
+	private static final Logger LOGGER = Logger.getLogger("sdp.vision.CapturedFrame");
+
+	/** Encoded frame data. */
+	private byte[] data;
+	/** Length of the encoded frame data. */
+	private int length;
+	/** Decoded frame. */
+	private BufferedImage image;
+	/** Time when the frame was captured, in milliseconds. */
+	private long captureTime;
+
+
+	/**
+	 * Create a new decoded frame.
+	 *
+	 * @param image Frame image.
+	 * @param captureTime Time when the frame was captured, in milliseconds.
+	 */
+	public CapturedFrame(BufferedImage image, long captureTime) {
+		this.image = image;
+		this.data = null;
+		this.length = 0;
+		this.captureTime = captureTime;
+	}
+
+	/**
+	 * Create a new encoded frame.
+	 *
+	 * @param data Frame data in any format ImageIO can read. The array is
+	 * 		not copied, so it should not be modified afterwards.
+	 * @param length Length of the frame data.
+	 * @param captureTime Time when the frame was captured, in milliseconds.
+	 */
+	public CapturedFrame(byte[] data, int length, long captureTime) {
+		this.image = null;
+		this.data = data;
+		this.length = length;
+		this.captureTime = captureTime;
+	}
+
+
+	/**
+	 * Get the frame's image, decoding it if necessary.
+	 *
+	 * @return The frame's image or null, if the frame could not be decoded.
+	 */
+	public synchronized BufferedImage getImage() {
+		if ((image == null) && (data != null)) {
+			try {
+				image = ImageIO.read(new ByteArrayInputStream(data, 0, length));
+			} catch (IOException e) {
+				LOGGER.warning("Could not decode a frame.");
+				e.printStackTrace();
+			}
+			data = null;
+		}
+		return image;
+	}
+
+	/**
+	 * Check whether the frame still needs to be decoded.
+	 *
+	 * @return Whether the frame is encoded.
+	 */
+	public synchronized boolean isEncoded() {
+		return (data != null);
+	}
+
+	/**
+	 * Get the time when the frame was captured.
+	 *
+	 * @return Capture time in milliseconds, as per System.currentTimeMillis().
+	 */
+	public long getCaptureTime() {
+		return captureTime;
+	}
+
+}
@@ -1,7 +1,5 @@
 package sdp.vision.visualinput;
 
-import java.awt.image.BufferedImage;
-
 /**
  * An interface for all classes that wish to receive messages from
  * VisualInputProvider.
@@ -16,6 +14,6 @@ public interface VisualInputCallback {
 	 * 
 	 * @param frame A fresh frame.
 	 */
-	public void nextFrame(BufferedImage frame);
+	public void nextFrame(CapturedFrame frame);
 	
 }
@@ -30,6 +30,16 @@ public abstract class VisualInputProvider {
 	 * @param frame The next frame.
 	 */
 	protected void sendNextFrame(BufferedImage frame) {
+		sendNextFrame(new CapturedFrame(frame, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Send the given frame (the next frame in the visual input stream) to the
+	 * callback object.
+	 * 
+	 * @param frame The next frame.
+	 */
+	protected void sendNextFrame(CapturedFrame frame) {
 		if (callback == null) {
 			throw new NullPointerException("Trying to send next frame, even though callback has not been set.");
 		} else {
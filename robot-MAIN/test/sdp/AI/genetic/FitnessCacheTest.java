@@ -0,0 +1,194 @@
+package sdp.AI.genetic;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Test;
+
+
+/**
+ * Tests for the lookup, eviction and persistence of {@link FitnessCache}.
+ */
+public class FitnessCacheTest {
+
+	/** Weights of the first test network. */
+	private static final double[] WEIGHTS_A = { 0.1, -0.2, 0.3 };
+	/** Weights of the second test network. */
+	private static final double[] WEIGHTS_B = { 0.1, -0.2, 0.30000000000000004 };
+	/** Fingerprint of the test simulation. */
+	private static final long FINGERPRINT = 42;
+
+
+	/**
+	 * Create a game that has been played.
+	 *
+	 * @param left Weights of the left robot.
+	 * @param right Weights of the right robot.
+	 * @param seed Seed of the game.
+	 * @return The game.
+	 */
+	private static Game createGame(double[] left, double[] right, long seed) {
+		Game game = new Game(0, 1, left, right, 0, seed);
+		game.leftGoals = 2;
+		game.rightGoals = 3;
+		return game;
+	}
+
+	/**
+	 * Create an empty cache file that is deleted when the tests finish.
+	 *
+	 * @return The file.
+	 */
+	private static File createFile() throws Exception {
+		File file = File.createTempFile("fitness", ".cache");
+		file.delete();
+		file.deleteOnExit();
+		return file;
+	}
+
+
+	/**
+	 * Test that a result is found for the same weights and seed only, and
+	 * that the hits and misses are counted.
+	 */
+	@Test
+	public void testLookup() {
+		FitnessCache cache = new FitnessCache(10);
+		cache.put(createGame(WEIGHTS_A, WEIGHTS_B, 1), new long[] { 5, -5 });
+
+		Game game = new Game(7, 8, WEIGHTS_A.clone(), WEIGHTS_B.clone(), 3, 1);
+		assertArrayEquals(new long[] { 5, -5 }, cache.get(game));
+		assertEquals(2, game.leftGoals);
+		assertEquals(3, game.rightGoals);
+
+		assertNull(cache.get(createGame(WEIGHTS_A, WEIGHTS_B, 2)));
+		assertNull(cache.get(createGame(WEIGHTS_B, WEIGHTS_A, 1)));
+		assertNull(cache.get(createGame(WEIGHTS_A, WEIGHTS_A, 1)));
+		assertNull(cache.get(createGame(null, WEIGHTS_B, 1)));
+
+		assertEquals(1, cache.getHitCount());
+		assertEquals(4, cache.getMissCount());
+		cache.resetCounters();
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+	}
+
+	/**
+	 * Test that the seed of a game depends on its pairing and the base seed
+	 * only, so that moved individuals are still found.
+	 */
+	@Test
+	public void testSeedFollowsPairing() {
+		long seed = FitnessCache.getSeed(1, WEIGHTS_A, WEIGHTS_B);
+		assertEquals(seed, FitnessCache.getSeed(1, WEIGHTS_A.clone(), WEIGHTS_B.clone()));
+		assertFalse(seed == FitnessCache.getSeed(2, WEIGHTS_A, WEIGHTS_B));
+		assertFalse(seed == FitnessCache.getSeed(1, WEIGHTS_B, WEIGHTS_A));
+		assertFalse(seed == FitnessCache.getSeed(1, WEIGHTS_A, null));
+
+		FitnessCache cache = new FitnessCache(10);
+		cache.put(new Game(0, 1, WEIGHTS_A, WEIGHTS_B, 0, seed), new long[] { 5, -5 });
+		Game moved = new Game(6, 2, WEIGHTS_A.clone(), WEIGHTS_B.clone(), 9,
+				FitnessCache.getSeed(1, WEIGHTS_A, WEIGHTS_B));
+		assertArrayEquals(new long[] { 5, -5 }, cache.get(moved));
+	}
+
+	/**
+	 * Test that the least recently used result is dropped when the cache
+	 * is full.
+	 */
+	@Test
+	public void testLeastRecentlyUsedDropped() {
+		FitnessCache cache = new FitnessCache(2);
+		cache.put(createGame(WEIGHTS_A, null, 1), new long[] { 1, 1 });
+		cache.put(createGame(WEIGHTS_A, null, 2), new long[] { 2, 2 });
+		assertNotNull(cache.get(createGame(WEIGHTS_A, null, 1)));
+
+		cache.put(createGame(WEIGHTS_A, null, 3), new long[] { 3, 3 });
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(createGame(WEIGHTS_A, null, 1)));
+		assertNull(cache.get(createGame(WEIGHTS_A, null, 2)));
+		assertNotNull(cache.get(createGame(WEIGHTS_A, null, 3)));
+	}
+
+	/**
+	 * Test that results are kept in the file, also when they have been
+	 * dropped from memory, and that they survive reopening it.
+	 */
+	@Test
+	public void testFileSurvivesRestart() throws Exception {
+		File file = createFile();
+		FitnessCache cache = new FitnessCache(1, file, 64, FINGERPRINT);
+		for (int seed = 0; seed < 10; ++seed) {
+			cache.put(createGame(WEIGHTS_A, WEIGHTS_B, seed), new long[] { seed, -seed });
+		}
+		assertArrayEquals(new long[] { 4, -4 }, cache.get(createGame(WEIGHTS_A, WEIGHTS_B, 4)));
+		cache.close();
+
+		cache = new FitnessCache(1, file, 64, FINGERPRINT);
+		for (int seed = 0; seed < 10; ++seed) {
+			Game game = new Game(0, 1, WEIGHTS_A, WEIGHTS_B, 0, seed);
+			assertArrayEquals(new long[] { seed, -seed }, cache.get(game));
+			assertEquals(2, game.leftGoals);
+			assertEquals(3, game.rightGoals);
+		}
+		assertNull(cache.get(createGame(WEIGHTS_B, WEIGHTS_A, 4)));
+		cache.close();
+		file.delete();
+	}
+
+	/**
+	 * Test that a file of another size is started anew.
+	 */
+	@Test
+	public void testOtherFileSizeStartsAnew() throws Exception {
+		File file = createFile();
+		FitnessCache cache = new FitnessCache(1, file, 64, FINGERPRINT);
+		cache.put(createGame(WEIGHTS_A, WEIGHTS_B, 1), new long[] { 1, 1 });
+		cache.close();
+
+		cache = new FitnessCache(1, file, 32, FINGERPRINT);
+		assertNull(cache.get(createGame(WEIGHTS_A, WEIGHTS_B, 1)));
+		cache.close();
+		file.delete();
+	}
+
+	/**
+	 * Test that a file written by another simulation is started anew.
+	 */
+	@Test
+	public void testOtherFingerprintStartsAnew() throws Exception {
+		File file = createFile();
+		FitnessCache cache = new FitnessCache(1, file, 64, FINGERPRINT);
+		cache.put(createGame(WEIGHTS_A, WEIGHTS_B, 1), new long[] { 1, 1 });
+		cache.close();
+
+		cache = new FitnessCache(1, file, 64, FINGERPRINT + 1);
+		assertNull(cache.get(createGame(WEIGHTS_A, WEIGHTS_B, 1)));
+		cache.close();
+
+		cache = new FitnessCache(1, file, 64, FINGERPRINT);
+		assertNull(cache.get(createGame(WEIGHTS_A, WEIGHTS_B, 1)));
+		cache.close();
+		file.delete();
+	}
+
+	/**
+	 * Test that new results overwrite old ones when the file is full.
+	 */
+	@Test
+	public void testFullFileOverwrites() throws Exception {
+		File file = createFile();
+		FitnessCache cache = new FitnessCache(1, file, 1, FINGERPRINT);
+		cache.put(createGame(WEIGHTS_A, WEIGHTS_B, 1), new long[] { 1, 1 });
+		cache.put(createGame(WEIGHTS_A, WEIGHTS_B, 2), new long[] { 2, 2 });
+		cache.close();
+
+		cache = new FitnessCache(1, file, 1, FINGERPRINT);
+		assertNull(cache.get(createGame(WEIGHTS_A, WEIGHTS_B, 1)));
+		assertArrayEquals(new long[] { 2, 2 }, cache.get(createGame(WEIGHTS_A, WEIGHTS_B, 2)));
+		cache.close();
+		file.delete();
+	}
+
+}
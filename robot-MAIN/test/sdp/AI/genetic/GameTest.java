@@ -0,0 +1,78 @@
+package sdp.AI.genetic;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import sdp.AI.neural.AINeuralNet;
+
+
+/**
+ * Tests for the reproducibility of {@link Game}s.
+ */
+public class GameTest {
+
+	/**
+	 * Create random network weights.
+	 *
+	 * @param seed Seed of the weights.
+	 * @return The weights.
+	 */
+	private static double[] createWeights(long seed) {
+		Random random = new Random(seed);
+		double[] weights = new double[AINeuralNet.getWeightsCount()];
+		for (int i = 0; i < weights.length; ++i) {
+			weights[i] = random.nextDouble() - 0.5;
+		}
+		return weights;
+	}
+
+	/**
+	 * Play a game.
+	 *
+	 * @param engine Engine to play with.
+	 * @param left Id of the left robot, -1 for the hand-written AI.
+	 * @param right Id of the right robot, -1 for the hand-written AI.
+	 * @param seed Seed of the game.
+	 * @return The scores of the two robots, followed by the left and the
+	 * 		right goals.
+	 */
+	private static long[] play(GameEngine engine, int left, int right, long seed) {
+		Game game = new Game(left, right, left == -1 ? null : createWeights(left),
+				right == -1 ? null : createWeights(right), 0, seed);
+		long[] scores = game.simulate(engine);
+		return new long[] { scores[0], scores[1], game.leftGoals, game.rightGoals };
+	}
+
+
+	/**
+	 * Test that a game with the same participants and seed has the same
+	 * scores on a new engine and on one that has played other games.
+	 */
+	@Test
+	public void testSameSeedSameScores() {
+		GameEngine usedEngine = new GameEngine();
+		play(usedEngine, 5, 6, 99);
+		play(usedEngine, -1, 6, 3);
+
+		for (int[] ids : new int[][] { { 1, 2 }, { -1, 3 }, { 4, -1 } }) {
+			assertArrayEquals(play(new GameEngine(), ids[0], ids[1], 7),
+					play(usedEngine, ids[0], ids[1], 7));
+		}
+	}
+
+	/**
+	 * Test that the seed changes the game.
+	 */
+	@Test
+	public void testOtherSeedOtherScores() {
+		GameEngine engine = new GameEngine();
+		long[] first = play(engine, 1, 2, 7);
+		long[] second = play(engine, 1, 2, 8);
+
+		assertFalse(first[0] == second[0] && first[1] == second[1]);
+	}
+
+}
@@ -0,0 +1,364 @@
+package sdp.AI.genetic.distributed;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sdp.AI.genetic.Game;
+import sdp.AI.genetic.GameEngine;
+import sdp.AI.genetic.GameScheduler;
+import sdp.AI.neural.AINeuralNet;
+
+
+/**
+ * Tests for {@link DistributedGameServer} and {@link GameWorker} on the
+ * loopback interface.
+ */
+public class DistributedGameServerTest {
+
+	/** Number of individuals in the test population. */
+	private static final int POPULATION_SIZE = 4;
+	/** Game timeout of the tests in milliseconds. */
+	private static final long GAME_TIMEOUT = 500;
+
+
+	/**
+	 * Create a random population.
+	 *
+	 * @return Weights of every individual.
+	 */
+	private static double[][] createPopulation() {
+		Random random = new Random(0);
+		double[][] population = new double[POPULATION_SIZE][AINeuralNet.getWeightsCount()];
+		for (double[] individual : population) {
+			for (int i = 0; i < individual.length; ++i) {
+				individual[i] = random.nextDouble() - 0.5;
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Create games between neighbouring individuals.
+	 *
+	 * @param population The population.
+	 * @param count Number of games.
+	 * @return The games.
+	 */
+	private static List<Game> createGames(double[][] population, int count) {
+		List<Game> games = new ArrayList<Game>();
+		for (int i = 0; i < count; ++i) {
+			int left = i % population.length;
+			int right = (i + 1) % population.length;
+			games.add(new Game(left, right, population[left], population[right], i, 100 + i));
+		}
+		return games;
+	}
+
+	/**
+	 * Run a worker on its own thread.
+	 *
+	 * @param port Port of the server.
+	 * @param threads Number of games the worker plays at once.
+	 * @return The worker.
+	 */
+	private static GameWorker startWorker(int port, int threads) throws IOException {
+		final GameWorker worker = new GameWorker("localhost", port, threads);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					worker.run();
+				} catch (IOException e) { }
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		return worker;
+	}
+
+	/**
+	 * Connect to a server and take games without ever playing them.
+	 *
+	 * @param port Port of the server.
+	 * @param capacity Number of games to ask for.
+	 * @return The socket of the fake worker.
+	 */
+	private static Socket startSilentWorker(int port, int capacity) throws IOException {
+		Socket socket = new Socket("localhost", port);
+		DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		Protocol.writeWorkerHello(out, capacity);
+		Protocol.readServerHello(in);
+		Protocol.writeRequest(out, capacity);
+		out.flush();
+		return socket;
+	}
+
+	/**
+	 * Wait until the given number of workers have connected.
+	 *
+	 * @param server The server.
+	 * @param count Number of workers.
+	 */
+	private static void awaitWorkers(DistributedGameServer server, int count)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (server.getWorkerCount() < count) {
+			assertTrue("workers did not connect", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Check that every game of a batch has a result.
+	 *
+	 * @param results Results of the batch.
+	 * @param count Expected number of games.
+	 */
+	private static void assertAllPlayed(long[][] results, int count) {
+		assertEquals(count, results.length);
+		for (long[] fitness : results) {
+			assertNotNull(fitness);
+			assertEquals(2, fitness.length);
+		}
+	}
+
+
+	/**
+	 * Check that every game of a batch has the result it has when it is
+	 * played locally.
+	 *
+	 * @param games The games of the batch.
+	 * @param results Results of the batch.
+	 */
+	private static void assertSameAsLocal(List<Game> games, long[][] results) {
+		GameEngine engine = new GameEngine();
+		for (int i = 0; i < games.size(); ++i) {
+			Game game = games.get(i);
+			Game local = new Game(game.ids[0], game.ids[1], game.weights_i, game.weights_j,
+					game.gameId, game.seed);
+			assertArrayEquals(local.simulate(engine), results[i]);
+			assertEquals(local.leftGoals, game.leftGoals);
+			assertEquals(local.rightGoals, game.rightGoals);
+		}
+	}
+
+
+	/**
+	 * Test that several workers play the games of several generations, and
+	 * that a worker can join in the middle.
+	 */
+	@Test
+	public void testWorkersPlayGenerations() throws Exception {
+		GameScheduler scheduler = new GameScheduler(0);
+		DistributedGameServer server = new DistributedGameServer(scheduler, 0, 60000);
+		try {
+			double[][] population = createPopulation();
+			startWorker(server.getPort(), 2);
+			awaitWorkers(server, 1);
+
+			server.setPopulation(population);
+			List<Game> games = createGames(population, 6);
+			long[][] results = scheduler.playAll(games);
+			assertAllPlayed(results, 6);
+			assertSameAsLocal(games, results);
+
+			startWorker(server.getPort(), 1);
+			awaitWorkers(server, 2);
+
+			server.setPopulation(createPopulation());
+			assertAllPlayed(scheduler.playAll(createGames(population, 6)), 6);
+		} finally {
+			server.close();
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Test that the games of a worker that does not answer are reassigned
+	 * after the timeout.
+	 */
+	@Test
+	public void testTimedOutGamesAreReassigned() throws Exception {
+		GameScheduler scheduler = new GameScheduler(0);
+		DistributedGameServer server = new DistributedGameServer(scheduler, 0, GAME_TIMEOUT);
+		Socket silent = null;
+		try {
+			double[][] population = createPopulation();
+			server.setPopulation(population);
+			silent = startSilentWorker(server.getPort(), 3);
+			awaitWorkers(server, 1);
+			startWorker(server.getPort(), 1);
+			awaitWorkers(server, 2);
+
+			assertAllPlayed(scheduler.playAll(createGames(population, 4)), 4);
+			assertEquals(2, server.getWorkerCount());
+		} finally {
+			if (silent != null) {
+				silent.close();
+			}
+			server.close();
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Test that the games of a worker that leaves in the middle of a
+	 * generation are reassigned.
+	 */
+	@Test
+	public void testGamesOfLeavingWorkerAreReassigned() throws Exception {
+		GameScheduler scheduler = new GameScheduler(0);
+		final DistributedGameServer server = new DistributedGameServer(scheduler, 0, 60000);
+		try {
+			double[][] population = createPopulation();
+			server.setPopulation(population);
+			final Socket leaving = startSilentWorker(server.getPort(), 3);
+			awaitWorkers(server, 1);
+
+			Thread closer = new Thread() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(200);
+						leaving.close();
+						startWorker(server.getPort(), 2);
+					} catch (Exception e) { }
+				}
+			};
+			closer.start();
+
+			assertAllPlayed(scheduler.playAll(createGames(population, 5)), 5);
+			closer.join();
+			assertEquals(1, server.getWorkerCount());
+		} finally {
+			server.close();
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Test that a client that connects without a handshake does not keep
+	 * other workers from joining.
+	 */
+	@Test
+	public void testSilentClientDoesNotBlockWorkers() throws Exception {
+		GameScheduler scheduler = new GameScheduler(0);
+		DistributedGameServer server = new DistributedGameServer(scheduler, 0, GAME_TIMEOUT);
+		Socket silent = new Socket("localhost", server.getPort());
+		try {
+			long start = System.currentTimeMillis();
+			startWorker(server.getPort(), 1);
+			awaitWorkers(server, 1);
+			assertTrue(System.currentTimeMillis() - start < 1000);
+		} finally {
+			silent.close();
+			server.close();
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Test that workers of another protocol version are rejected.
+	 */
+	@Test
+	public void testOtherVersionIsRejected() throws Exception {
+		GameScheduler scheduler = new GameScheduler(0);
+		DistributedGameServer server = new DistributedGameServer(scheduler, 0, GAME_TIMEOUT);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(Protocol.MAGIC);
+			out.writeShort(Protocol.VERSION + 1);
+			out.writeInt(1);
+			out.flush();
+
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			assertEquals(Protocol.MAGIC, in.readInt());
+			assertEquals(Protocol.VERSION, in.readShort());
+			assertFalse(in.readBoolean());
+			assertEquals(0, server.getWorkerCount());
+		} finally {
+			socket.close();
+			server.close();
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Test that workers with another simulation are rejected.
+	 */
+	@Test
+	public void testOtherSimulationIsRejected() throws Exception {
+		GameScheduler scheduler = new GameScheduler(0);
+		DistributedGameServer server = new DistributedGameServer(scheduler, 0, GAME_TIMEOUT);
+		Socket socket = new Socket("localhost", server.getPort());
+		try {
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeInt(Protocol.MAGIC);
+			out.writeShort(Protocol.VERSION);
+			out.writeLong(Game.getFingerprint() + 1);
+			out.writeInt(1);
+			out.flush();
+
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			assertEquals(Protocol.MAGIC, in.readInt());
+			assertEquals(Protocol.VERSION, in.readShort());
+			assertFalse(in.readBoolean());
+			assertEquals(0, server.getWorkerCount());
+		} finally {
+			socket.close();
+			server.close();
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Test that workers in separate JVMs play the games.
+	 */
+	@Test
+	public void testWorkerProcesses() throws Exception {
+		GameScheduler scheduler = new GameScheduler(0);
+		DistributedGameServer server = new DistributedGameServer(scheduler, 0, 60000);
+		List<Process> workers = new ArrayList<Process>();
+		try {
+			String java = System.getProperty("java.home") + File.separator + "bin"
+					+ File.separator + "java";
+			for (int i = 0; i < 2; ++i) {
+				ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+						System.getProperty("java.class.path"), GameWorker.class.getName(),
+						InetAddress.getByName("localhost").getHostAddress(),
+						Integer.toString(server.getPort()), "1");
+				builder.redirectErrorStream(true);
+				workers.add(builder.start());
+			}
+			awaitWorkers(server, 2);
+
+			double[][] population = createPopulation();
+			server.setPopulation(population);
+			List<Game> games = createGames(population, 4);
+			long[][] results = scheduler.playAll(games);
+			assertAllPlayed(results, 4);
+			assertSameAsLocal(games, results);
+		} finally {
+			server.close();
+			scheduler.shutdown();
+			for (Process worker : workers) {
+				worker.waitFor();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package sdp.AI.neural;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.neuroph.core.NeuralNetwork;
+import org.neuroph.nnet.MultiLayerPerceptron;
+import org.neuroph.util.TransferFunctionType;
+
+
+/**
+ * Tests for {@link CompiledNeuralNet}.
+ */
+public class CompiledNeuralNetTest {
+
+	/**
+	 * Check that a compiled network's outputs are bit-identical to the ones
+	 * of the original network for random inputs.
+	 *
+	 * @param network Network to compile.
+	 * @param random Source of the inputs.
+	 */
+	private static void assertSameOutputs(NeuralNetwork network, Random random) {
+		CompiledNeuralNet compiled = new CompiledNeuralNet(network);
+		int inputCount = network.getInputNeurons().size();
+		assertEquals(inputCount, compiled.getInputCount());
+		assertEquals(network.getOutputNeurons().size(), compiled.getOutputCount());
+
+		double[] input = new double[inputCount];
+		double[] actual = new double[compiled.getOutputCount()];
+		for (int i = 0; i < 200; ++i) {
+			// Large inputs reach the sigmoid's cut-offs.
+			double scale = (i % 10 == 0) ? 100 : 1;
+			for (int j = 0; j < inputCount; ++j) {
+				input[j] = (random.nextDouble() * 2 - 1) * scale;
+			}
+
+			network.setInput(input);
+			network.calculate();
+			double[] expected = network.getOutput();
+			compiled.calculate(input, actual);
+			for (int j = 0; j < expected.length; ++j) {
+				assertEquals("output " + j, Double.doubleToLongBits(expected[j]),
+						Double.doubleToLongBits(actual[j]));
+			}
+		}
+	}
+
+
+	/**
+	 * Test the perceptron of the neural network AI.
+	 */
+	@Test
+	public void testSingleLayerPerceptron() {
+		Random random = new Random(0);
+		AINeuralNet ai = new AINeuralNet(AINeuralNet.getRandomWeights());
+		assertSameOutputs(ai.getNetwork(), random);
+	}
+
+	/**
+	 * Test perceptrons with hidden layers and linear outputs.
+	 */
+	@Test
+	public void testMultiLayerPerceptrons() {
+		Random random = new Random(1);
+		NeuralNetwork sigmoid = new MultiLayerPerceptron(67, 12, 6);
+		sigmoid.randomizeWeights();
+		assertSameOutputs(sigmoid, random);
+
+		NeuralNetwork linear = new MultiLayerPerceptron(TransferFunctionType.LINEAR, 5, 4, 3);
+		linear.randomizeWeights();
+		assertSameOutputs(linear, random);
+	}
+
+	/**
+	 * Test that networks with other transfer functions are rejected.
+	 */
+	@Test
+	public void testUnsupportedNetwork() {
+		NeuralNetwork tanh = new MultiLayerPerceptron(TransferFunctionType.TANH, 5, 4, 3);
+		assertFalse(CompiledNeuralNet.isSupported(tanh));
+		try {
+			new CompiledNeuralNet(tanh);
+			fail("A network with tanh neurons was compiled.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+
+}
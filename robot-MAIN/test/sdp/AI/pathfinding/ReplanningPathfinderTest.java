@@ -0,0 +1,105 @@
+package sdp.AI.pathfinding;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sdp.AI.AIWorldState;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Tests for {@link ReplanningPathfinder}.
+ */
+public class ReplanningPathfinderTest {
+
+	/** Destination of the queries, behind the enemy robot. */
+	private static final Point2D.Double DEST = new Point2D.Double(200, 56);
+	/** Allowed distance error. */
+	private static final double EPSILON = 1e-9;
+
+
+	/**
+	 * Create a world state in which the enemy robot blocks the direct path
+	 * from our robot to the destination.
+	 *
+	 * @param ownX X coordinate of our robot.
+	 * @param enemyY Y coordinate of the enemy robot.
+	 * @return The world state from our blue robot's point of view.
+	 */
+	private static AIWorldState createState(double ownX, double enemyY) {
+		WorldState state = new WorldState(new Point2D.Double(120, 100),
+				new Robot(new Point2D.Double(ownX, 56), 0, true),
+				new Robot(new Point2D.Double(120, enemyY), 90, true), (WorldImageSource) null);
+		return new AIWorldState(state, true, true);
+	}
+
+
+	/**
+	 * Test that paths are reused until they are blocked or the destination
+	 * moves too far.
+	 */
+	@Test
+	public void testReplanning() {
+		ReplanningPathfinder pathfinder = new ReplanningPathfinder(
+				new VisibilityGraphPathfinder(), 5.0, 100);
+
+		ArrayList<Waypoint> first = pathfinder.getPath(createState(40, 56), DEST, true);
+		assertTrue(first.size() > 1);
+		assertEquals(0, pathfinder.getHitCount());
+		assertEquals(1, pathfinder.getMissCount());
+
+		// Our robot moves a little: the kept path is reused and starts at it.
+		ArrayList<Waypoint> second = pathfinder.getPath(createState(42, 56), DEST, true);
+		assertEquals(1, pathfinder.getHitCount());
+		assertEquals(42, second.get(0).getOriginPos().x, EPSILON);
+		assertEquals(first.get(first.size() - 1).getTarget(),
+				second.get(second.size() - 1).getTarget());
+
+		// The destination moves a little: the path follows it.
+		Point2D.Double movedDest = new Point2D.Double(DEST.x, DEST.y + 2);
+		ArrayList<Waypoint> third = pathfinder.getPath(createState(42, 56), movedDest, true);
+		assertEquals(2, pathfinder.getHitCount());
+		assertEquals(movedDest.y, third.get(third.size() - 1).getTarget().y, EPSILON);
+
+		// The destination moves too far.
+		pathfinder.getPath(createState(42, 56), new Point2D.Double(200, 80), true);
+		assertEquals(2, pathfinder.getHitCount());
+		assertEquals(2, pathfinder.getMissCount());
+
+		// The enemy robot moves onto the kept path.
+		ArrayList<Waypoint> path = pathfinder.getPath(createState(42, 56),
+				new Point2D.Double(200, 80), true);
+		assertEquals(3, pathfinder.getHitCount());
+		double blockingY = path.get(0).getTarget().y;
+		pathfinder.getPath(createState(42, blockingY), new Point2D.Double(200, 80), true);
+		assertEquals(3, pathfinder.getHitCount());
+		assertEquals(3, pathfinder.getMissCount());
+
+		pathfinder.resetCounters();
+		assertEquals(0, pathfinder.getHitCount());
+		assertEquals(0, pathfinder.getMissCount());
+	}
+
+	/**
+	 * Test that paths are replanned after they have been reused for too
+	 * many frames.
+	 */
+	@Test
+	public void testMaxPathAge() {
+		ReplanningPathfinder pathfinder = new ReplanningPathfinder(
+				new VisibilityGraphPathfinder(), 5.0, 2);
+
+		for (int i = 0; i < 6; ++i) {
+			pathfinder.getPath(createState(40, 56), DEST, true);
+		}
+		assertEquals(4, pathfinder.getHitCount());
+		assertEquals(2, pathfinder.getMissCount());
+	}
+
+}
@@ -0,0 +1,95 @@
+package sdp.AI.pathfinding;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import sdp.common.world.CollisionEngine;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Tests for {@link VisibilityGraphPathfinder}.
+ */
+public class VisibilityGraphPathfinderTest {
+
+	/** Obstacles for our blue robot. */
+	private static final int OBSTACLE_FLAGS = WorldState.makeObstacleFlagsForOpponent(true, true);
+	/** Allowed distance error. */
+	private static final double EPSILON = 1e-9;
+
+
+	/**
+	 * Test a query with a clear direct path.
+	 */
+	@Test
+	public void testDirectPath() {
+		WorldState state = new WorldState(new Point2D.Double(120, 100),
+				new Robot(new Point2D.Double(40, 30), 0, true),
+				new Robot(new Point2D.Double(200, 90), 180, true), (WorldImageSource) null);
+		VisibilityGraphPathfinder pathfinder = new VisibilityGraphPathfinder();
+
+		Point2D.Double dest = new Point2D.Double(200, 30);
+		ArrayList<Waypoint> path = pathfinder.getPath(state, state.getBlueRobot().getCoords(),
+				0, dest, OBSTACLE_FLAGS);
+		assertEquals(1, path.size());
+		assertTrue(path.get(0).isEndpoint());
+		assertEquals(0, pathfinder.getNodeCount());
+	}
+
+	/**
+	 * Test a query around the enemy robot, which blocks the direct path.
+	 */
+	@Test
+	public void testPathAroundObstacle() {
+		WorldState state = new WorldState(new Point2D.Double(120, 100),
+				new Robot(new Point2D.Double(40, 56), 0, true),
+				new Robot(new Point2D.Double(120, 56), 90, true), (WorldImageSource) null);
+		CollisionEngine engine = state.getCollisionEngine(OBSTACLE_FLAGS);
+		VisibilityGraphPathfinder pathfinder = new VisibilityGraphPathfinder();
+
+		Point2D.Double start = state.getBlueRobot().getCoords();
+		Point2D.Double dest = new Point2D.Double(200, 56);
+		assertFalse(engine.isPathClear(start.x, start.y, dest.x, dest.y));
+
+		ArrayList<Waypoint> path = pathfinder.getPath(state, start, 0, dest, OBSTACLE_FLAGS);
+		assertNotNull(path);
+		assertTrue(path.size() > 1);
+		assertTrue(pathfinder.getNodeCount() > 2);
+
+		assertEquals(start.x, path.get(0).getOriginPos().x, EPSILON);
+		assertEquals(start.y, path.get(0).getOriginPos().y, EPSILON);
+		for (int i = 0; i < path.size(); ++i) {
+			Waypoint waypoint = path.get(i);
+			assertEquals(i == path.size() - 1, waypoint.isEndpoint());
+			assertTrue(engine.isPathClear(waypoint.getOriginPos().x, waypoint.getOriginPos().y,
+					waypoint.getTarget().x, waypoint.getTarget().y));
+		}
+		Waypoint last = path.get(path.size() - 1);
+		assertEquals(dest.x, last.getTarget().x, EPSILON);
+		assertEquals(dest.y, last.getTarget().y, EPSILON);
+	}
+
+	/**
+	 * Test a query to the centre of the ball, which is an obstacle.
+	 */
+	@Test(timeout = 1000)
+	public void testPathToObstacleCentre() {
+		WorldState state = new WorldState(new Point2D.Double(200, 56),
+				new Robot(new Point2D.Double(40, 56), 0, true),
+				new Robot(new Point2D.Double(120, 56), 90, true), (WorldImageSource) null);
+		VisibilityGraphPathfinder pathfinder = new VisibilityGraphPathfinder();
+
+		Point2D.Double start = state.getBlueRobot().getCoords();
+		ArrayList<Waypoint> path = pathfinder.getPath(state, start, 0, state.getBallCoords(),
+				OBSTACLE_FLAGS);
+		assertNotNull(path);
+		assertTrue(path.get(path.size() - 1).isEndpoint());
+	}
+
+}
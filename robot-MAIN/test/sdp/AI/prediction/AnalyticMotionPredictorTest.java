@@ -0,0 +1,134 @@
+package sdp.AI.prediction;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Point2D;
+
+import org.junit.Test;
+
+import sdp.AI.Command;
+import sdp.AI.tracking.WorldTracker;
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+import sdp.simulator.VBrick;
+
+
+/**
+ * Tests for {@link AnalyticMotionPredictor}.
+ */
+public class AnalyticMotionPredictorTest {
+
+	/** Time between observations in seconds. */
+	private static final double FRAME_TIME = 0.04;
+	/** Time to predict in seconds. */
+	private static final double TIME = 0.25;
+	/** Rate, at which the ball slows down, in 1/s. */
+	private static final double BALL_DAMPING = 0.3;
+	/** Distance a ball travels in TIME per cm/s of its initial speed. */
+	private static final double BALL_TRAVEL = (1 - Math.exp(-BALL_DAMPING * TIME)) / BALL_DAMPING;
+	/** Radius of the ball. */
+	private static final double BALL_RADIUS = 4.27 / 2;
+	/** Number of observations the tracker is fed. */
+	private static final int HISTORY_LENGTH = 25;
+	/** Allowed error for exactly known motion, in centimetres. */
+	private static final double EPSILON = 1e-6;
+	/** Allowed error for tracked motion, in centimetres and degrees. */
+	private static final double TRACKING_EPSILON = 0.1;
+
+
+	/**
+	 * Create a tracker that has seen a history of observations, in which
+	 * the ball rolls freely and the robots move straight ahead.
+	 *
+	 * @param ballX X coordinate of the ball in the last observation.
+	 * @param ballY Y coordinate of the ball in the last observation.
+	 * @param ballVX X component of the ball's velocity in the last
+	 * 		observation, in cm/s.
+	 * @param ballVY Y component of the ball's velocity in the last
+	 * 		observation, in cm/s.
+	 * @param blueSpeed Driving speed of the blue robot in cm/s.
+	 * @param yellowSpeed Driving speed of the yellow robot in cm/s.
+	 * @return The tracker.
+	 */
+	private static WorldTracker createTracker(double ballX, double ballY, double ballVX,
+			double ballVY, double blueSpeed, double yellowSpeed) {
+		WorldTracker tracker = new WorldTracker();
+		for (int i = 0; i < HISTORY_LENGTH; ++i) {
+			double t = (i - HISTORY_LENGTH + 1) * FRAME_TIME;
+			double ballTravel = (1 - Math.exp(-BALL_DAMPING * t)) / BALL_DAMPING;
+			Point2D.Double ball = new Point2D.Double(ballX + ballVX * ballTravel,
+					ballY + ballVY * ballTravel);
+			Robot blue = new Robot(new Point2D.Double(60 + blueSpeed * t, 30), 0, true);
+			Robot yellow = new Robot(new Point2D.Double(180, 80 - yellowSpeed * t), 90, true);
+			tracker.update(new WorldState(ball, blue, yellow, (WorldImageSource) null), FRAME_TIME);
+		}
+		return tracker;
+	}
+
+
+	/**
+	 * Test the prediction of a ball that rolls freely and of robots that
+	 * keep their tracked speeds.
+	 */
+	@Test
+	public void testFreeMotion() {
+		AnalyticMotionPredictor predictor = new AnalyticMotionPredictor();
+		WorldState state = predictor.predict(createTracker(100, 50, 40, -10, 20, 30),
+				FRAME_TIME, TIME, null, true);
+
+		assertEquals(100 + 40 * BALL_TRAVEL, state.getBallCoords().x, TRACKING_EPSILON);
+		assertEquals(50 - 10 * BALL_TRAVEL, state.getBallCoords().y, TRACKING_EPSILON);
+
+		assertEquals(60 + 20 * TIME, state.getBlueRobot().getCoords().x, TRACKING_EPSILON);
+		assertEquals(30, state.getBlueRobot().getCoords().y, TRACKING_EPSILON);
+		assertEquals(0, state.getBlueRobot().getAngle(), TRACKING_EPSILON);
+
+		assertEquals(180, state.getYellowRobot().getCoords().x, TRACKING_EPSILON);
+		assertEquals(80 - 30 * TIME, state.getYellowRobot().getCoords().y, TRACKING_EPSILON);
+		assertEquals(90, state.getYellowRobot().getAngle(), TRACKING_EPSILON);
+	}
+
+	/**
+	 * Test that the ball bounces off the walls and enters the goals.
+	 */
+	@Test
+	public void testBallBounces() {
+		AnalyticMotionPredictor predictor = new AnalyticMotionPredictor();
+
+		WorldState state = predictor.predict(createTracker(100, 5, 0, -100, 0, 0),
+				FRAME_TIME, TIME, null, true);
+		double travel = 100 * BALL_TRAVEL;
+		double toWall = 5 - BALL_RADIUS;
+		assertEquals(100, state.getBallCoords().x, TRACKING_EPSILON);
+		assertEquals(BALL_RADIUS + (travel - toWall) * 0.8, state.getBallCoords().y, TRACKING_EPSILON);
+
+		state = predictor.predict(createTracker(10, WorldState.GOAL_CENTRE_Y, -100, 0, 0, 0),
+				FRAME_TIME, TIME, null, true);
+		double toGoalBack = 10 - (BALL_RADIUS - 5);
+		assertEquals(BALL_RADIUS - 5 + (travel - toGoalBack) * 0.8, state.getBallCoords().x,
+				TRACKING_EPSILON);
+		assertEquals(WorldState.GOAL_CENTRE_Y, state.getBallCoords().y, TRACKING_EPSILON);
+	}
+
+	/**
+	 * Test that our robot follows its command within the brick's
+	 * acceleration limits.
+	 */
+	@Test
+	public void testCommandedRobot() {
+		AnalyticMotionPredictor predictor = new AnalyticMotionPredictor();
+		WorldState state = predictor.predict(createTracker(100, 50, 0, 0, 0, 0),
+				FRAME_TIME, TIME, new Command(20, 0, false), true);
+
+		double startSpeed = VBrick.DEFAULT_ACCELERATION * FRAME_TIME;
+		double rampTime = (20 - startSpeed) / VBrick.DEFAULT_ACCELERATION;
+		double distance = (startSpeed + 20) / 2 * rampTime + 20 * (TIME - rampTime);
+
+		assertEquals(60 + distance, state.getBlueRobot().getCoords().x, EPSILON);
+		assertEquals(30, state.getBlueRobot().getCoords().y, EPSILON);
+		assertEquals(180, state.getYellowRobot().getCoords().x, EPSILON);
+		assertEquals(80, state.getYellowRobot().getCoords().y, EPSILON);
+	}
+
+}
@@ -0,0 +1,142 @@
+package sdp.AI.tracking;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Point2D;
+
+import org.junit.Test;
+
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Tests for {@link WorldTracker} and its object trackers.
+ */
+public class WorldTrackerTest {
+
+	/** Time between observations in seconds. */
+	private static final double FRAME_TIME = 0.04;
+	/** Rate, at which the ball slows down, in 1/s. */
+	private static final double BALL_DAMPING = 0.3;
+	/** Allowed position error in centimetres. */
+	private static final double POSITION_EPSILON = 0.1;
+	/** Allowed speed error in cm/s or degrees/s. */
+	private static final double SPEED_EPSILON = 1;
+
+
+	/**
+	 * Create an observation of a rolling ball and a robot that drives along
+	 * a circle.
+	 *
+	 * @param t Time of the observation in seconds.
+	 * @param ballVisible Whether the ball is detected.
+	 * @return The observation.
+	 */
+	private static WorldState createObservation(double t, boolean ballVisible) {
+		double ballTravel = (1 - Math.exp(-BALL_DAMPING * t)) / BALL_DAMPING;
+		Point2D.Double ball = new Point2D.Double(-1, -1);
+		if (ballVisible) {
+			ball = new Point2D.Double(50 + 60 * ballTravel, 40 + 30 * ballTravel);
+		}
+
+		// Driving at 20 cm/s while turning at 45 degrees/s, starting at
+		// (100, 60) facing right.
+		double radius = 20 / Math.toRadians(45);
+		double angle = 45 * t;
+		double x = 100 + radius * Math.sin(Math.toRadians(angle));
+		double y = 60 - radius * (1 - Math.cos(Math.toRadians(angle)));
+		Robot blue = new Robot(new Point2D.Double(x, y), angle, true);
+
+		Robot yellow = new Robot(new Point2D.Double(-1, -1), 0, true);
+
+		return new WorldState(ball, blue, yellow, (WorldImageSource) null);
+	}
+
+
+	/**
+	 * Test that the trackers converge onto objects that move the way they
+	 * expect.
+	 */
+	@Test
+	public void testConvergence() {
+		WorldTracker tracker = new WorldTracker();
+		double t = 0;
+		for (int i = 0; i < 50; ++i, t += FRAME_TIME) {
+			tracker.update(createObservation(t, true), FRAME_TIME);
+		}
+		t -= FRAME_TIME;
+
+		BallTracker ball = tracker.getBallTracker();
+		double ballTravel = (1 - Math.exp(-BALL_DAMPING * t)) / BALL_DAMPING;
+		double decay = Math.exp(-BALL_DAMPING * t);
+		assertTrue(ball.isTracking());
+		assertEquals(50 + 60 * ballTravel, ball.getX(), POSITION_EPSILON);
+		assertEquals(40 + 30 * ballTravel, ball.getY(), POSITION_EPSILON);
+		assertEquals(60 * decay, ball.getVelocityX(), SPEED_EPSILON);
+		assertEquals(30 * decay, ball.getVelocityY(), SPEED_EPSILON);
+		assertTrue(ball.getCovariance(BallTracker.X, BallTracker.X) < 1);
+
+		RobotTracker blue = tracker.getBlueRobotTracker();
+		Robot expected = createObservation(t, true).getBlueRobot();
+		assertTrue(blue.isTracking());
+		assertEquals(expected.getCoords().x, blue.getX(), POSITION_EPSILON);
+		assertEquals(expected.getCoords().y, blue.getY(), POSITION_EPSILON);
+		assertEquals(expected.getAngle(), blue.getAngle(), POSITION_EPSILON);
+		assertEquals(20, blue.getDrivingSpeed(), SPEED_EPSILON);
+		assertEquals(45, blue.getTurningSpeed(), SPEED_EPSILON);
+
+		assertFalse(tracker.getYellowRobotTracker().isTracking());
+		assertTrue(tracker.getFilteredState().getYellowRobot().getCoords().x < 0);
+	}
+
+	/**
+	 * Test that an undetected ball coasts along its path and that the track
+	 * resumes when it is detected again.
+	 */
+	@Test
+	public void testCoasting() {
+		WorldTracker tracker = new WorldTracker();
+		double t = 0;
+		for (int i = 0; i < 50; ++i, t += FRAME_TIME) {
+			tracker.update(createObservation(t, true), FRAME_TIME);
+		}
+		for (int i = 0; i < 5; ++i, t += FRAME_TIME) {
+			tracker.update(createObservation(t, false), FRAME_TIME);
+		}
+		t -= FRAME_TIME;
+
+		BallTracker ball = tracker.getBallTracker();
+		double ballTravel = (1 - Math.exp(-BALL_DAMPING * t)) / BALL_DAMPING;
+		assertEquals(5 * FRAME_TIME, ball.getCoastTime(), 1e-9);
+		assertEquals(50 + 60 * ballTravel, ball.getX(), POSITION_EPSILON);
+		assertEquals(40 + 30 * ballTravel, ball.getY(), POSITION_EPSILON);
+
+		Point2D.Double filtered = tracker.getFilteredState().getBallCoords();
+		assertEquals(ball.getX(), filtered.x, 0);
+		assertEquals(ball.getY(), filtered.y, 0);
+
+		t += FRAME_TIME;
+		tracker.update(createObservation(t, true), FRAME_TIME);
+		assertEquals(0, ball.getCoastTime(), 0);
+	}
+
+	/**
+	 * Test that a detection the estimate cannot explain restarts the track.
+	 */
+	@Test
+	public void testRestart() {
+		BallTracker ball = new BallTracker();
+		for (int i = 0; i < 20; ++i) {
+			ball.update(new Point2D.Double(50 + i, 40), FRAME_TIME);
+		}
+		ball.update(new Point2D.Double(200, 100), FRAME_TIME);
+
+		assertEquals(200, ball.getX(), 0);
+		assertEquals(100, ball.getY(), 0);
+		assertEquals(0, ball.getVelocityX(), 0);
+		assertEquals(0, ball.getVelocityY(), 0);
+	}
+
+}
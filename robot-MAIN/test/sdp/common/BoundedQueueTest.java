@@ -0,0 +1,92 @@
+package sdp.common;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+/**
+ * Tests for the overflow and waiting behaviour of {@link BoundedQueue}.
+ */
+public class BoundedQueueTest {
+
+	/** Capacity of the test queues. */
+	private static final int CAPACITY = 3;
+
+
+	/**
+	 * Test that the oldest elements are dropped when the queue overflows
+	 * with the DROP_OLDEST policy.
+	 */
+	@Test
+	public void testDropOldest() {
+		BoundedQueue<Integer> queue = new BoundedQueue<Integer>(CAPACITY,
+				BoundedQueue.OverflowPolicy.DROP_OLDEST);
+
+		for (int i = 0; i < CAPACITY; ++i) {
+			assertNull(queue.offer(i));
+		}
+		assertEquals(Integer.valueOf(0), queue.offer(CAPACITY));
+		assertEquals(Integer.valueOf(1), queue.offer(CAPACITY + 1));
+		assertEquals(CAPACITY, queue.size());
+
+		assertEquals(Integer.valueOf(2), queue.poll());
+		assertEquals(Integer.valueOf(3), queue.poll());
+		assertEquals(Integer.valueOf(4), queue.poll());
+		assertNull(queue.poll());
+
+		assertEquals(CAPACITY + 2, queue.getOfferCount());
+		assertEquals(2, queue.getDropCount());
+	}
+
+	/**
+	 * Test that the offered elements are dropped when the queue overflows
+	 * with the DROP_NEWEST policy.
+	 */
+	@Test
+	public void testDropNewest() {
+		BoundedQueue<Integer> queue = new BoundedQueue<Integer>(CAPACITY,
+				BoundedQueue.OverflowPolicy.DROP_NEWEST);
+
+		for (int i = 0; i < CAPACITY; ++i) {
+			assertNull(queue.offer(i));
+		}
+		assertEquals(Integer.valueOf(CAPACITY), queue.offer(CAPACITY));
+		assertEquals(CAPACITY, queue.size());
+
+		for (int i = 0; i < CAPACITY; ++i) {
+			assertEquals(Integer.valueOf(i), queue.poll());
+		}
+		assertNull(queue.poll());
+		assertEquals(1, queue.getDropCount());
+	}
+
+	/**
+	 * Test that a waiting consumer receives elements from another thread and
+	 * gives up after its timeout.
+	 */
+	@Test
+	public void testTake() throws InterruptedException {
+		final BoundedQueue<Integer> queue = new BoundedQueue<Integer>(CAPACITY,
+				BoundedQueue.OverflowPolicy.DROP_OLDEST);
+
+		assertNull(queue.take(10));
+
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					return;
+				}
+				queue.offer(42);
+			}
+		};
+		producer.start();
+
+		assertEquals(Integer.valueOf(42), queue.take(5000));
+		producer.join();
+	}
+
+}
@@ -77,6 +77,29 @@ public class GeometryTest {
 		
 	}
 	
+	@Test
+	/**
+	 * Checks the cached corner polygon and direction of a robot
+	 */
+	public void testRobotGeometry(){
+		Point2D.Double corners[] = GeomUtils.positionRectangle(Robot.LENGTH_CM, Robot.WIDTH_CM, enemyRobot.getCoords(), enemyRobot.getAngle());
+		int indices[] = { Robot.FRONT_LEFT, Robot.FRONT_RIGHT, Robot.BACK_RIGHT, Robot.BACK_LEFT };
+		for (int i = 0; i < indices.length; i++) {
+			assertEquals(corners[i].x, enemyRobot.getCornerX(indices[i]), 0);
+			assertEquals(corners[i].y, enemyRobot.getCornerY(indices[i]), 0);
+		}
+		assertEquals(enemyRobot.getFrontLeft(), corners[0]);
+		assertEquals(-1, enemyRobot.getDirectionX(), 1e-12);
+		assertEquals(0, enemyRobot.getDirectionY(), 1e-12);
+
+		Vector2D local = new Vector2D(3, -4);
+		Vector2D global = Robot.getGlobalVector(enemyRobot, local);
+		assertEquals(GeomUtils.getGlobalPoint(enemyRobot.getCoords(), Vector2D.getDirectionUnitVector(180), local), global);
+		Vector2D back = Robot.getLocalVector(enemyRobot, global);
+		assertEquals(local.x, back.x, 1e-9);
+		assertEquals(local.y, back.y, 1e-9);
+	}
+	
 	@Test
 	/**
 	 * Checks normaliseAngle
@@ -0,0 +1,95 @@
+package sdp.common;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import org.junit.Test;
+
+import sdp.common.world.Robot;
+import sdp.common.world.WorldImageSource;
+import sdp.common.world.WorldState;
+
+
+/**
+ * Tests for {@link NNetFeatureExtractor}.
+ */
+public class NNetFeatureExtractorTest {
+
+	/**
+	 * Check that the extractor's inputs are bit-identical to the ones of
+	 * {@link NNetTools#generateAIinput(WorldState, boolean, boolean)} for all
+	 * team and goal combinations.
+	 *
+	 * @param extractor Extractor to test.
+	 * @param state World state in centimetres.
+	 */
+	private static void assertSameInputs(NNetFeatureExtractor extractor, WorldState state) {
+		double[] actual = new double[NNetFeatureExtractor.INPUT_COUNT];
+		for (int i = 0; i < 4; ++i) {
+			boolean isBlue = ((i & 1) != 0);
+			boolean isGoalLeft = ((i & 2) != 0);
+			double[] expected = NNetTools.generateAIinput(state, isBlue, isGoalLeft);
+			extractor.extract(state, isBlue, isGoalLeft, actual);
+
+			assertEquals(expected.length, actual.length);
+			for (int j = 0; j < expected.length; ++j) {
+				assertEquals("input " + j, Double.doubleToLongBits(expected[j]),
+						Double.doubleToLongBits(actual[j]));
+			}
+		}
+	}
+
+	/**
+	 * Create a random point on the pitch or slightly outside of it.
+	 *
+	 * @param random Source of the coordinates.
+	 * @return Point in centimetres.
+	 */
+	private static Point2D.Double createRandomPoint(Random random) {
+		return new Point2D.Double(random.nextDouble() * (WorldState.PITCH_WIDTH_CM + 20) - 10,
+				random.nextDouble() * (WorldState.PITCH_HEIGHT_CM + 20) - 10);
+	}
+
+
+	/**
+	 * Test random world states.
+	 */
+	@Test
+	public void testRandomStates() {
+		Random random = new Random(0);
+		NNetFeatureExtractor extractor = new NNetFeatureExtractor();
+		for (int i = 0; i < 300; ++i) {
+			WorldState state = new WorldState(createRandomPoint(random),
+					new Robot(createRandomPoint(random), random.nextDouble() * 360 - 180, true),
+					new Robot(createRandomPoint(random), random.nextDouble() * 360 - 180, true),
+					(WorldImageSource) null);
+			assertSameInputs(extractor, state);
+		}
+	}
+
+	/**
+	 * Test world states where rays run along the walls and the robots' sides,
+	 * and where the ball lies at a robot's centre.
+	 */
+	@Test
+	public void testDegenerateStates() {
+		NNetFeatureExtractor extractor = new NNetFeatureExtractor();
+		double[] angles = { 0, 90, 180, -90, 45 };
+		for (double angle : angles) {
+			Robot blue = new Robot(new Point2D.Double(60, 60), angle, true);
+			Robot yellow = new Robot(new Point2D.Double(60 + Robot.LENGTH_CM * 3, 60), angle, true);
+			assertSameInputs(extractor, new WorldState(new Point2D.Double(150, 60), blue,
+					yellow, (WorldImageSource) null));
+			assertSameInputs(extractor, new WorldState(blue.getCoords(), blue, yellow,
+					(WorldImageSource) null));
+
+			Robot cornered = new Robot(new Point2D.Double(Robot.LENGTH_CM / 2,
+					Robot.WIDTH_CM / 2), angle, true);
+			assertSameInputs(extractor, new WorldState(new Point2D.Double(-1, -1), cornered,
+					yellow, (WorldImageSource) null));
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package sdp.common.geometry;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link GeomKernel}.
+ */
+public class GeomKernelTest {
+
+	/** Number of random cases to compare. */
+	private static final int CASE_COUNT = 1000;
+	/** Allowed distance error. */
+	private static final double EPSILON = 1e-9;
+
+
+	/**
+	 * Test that the transformations match the object-based ones exactly.
+	 */
+	@Test
+	public void testTransformations() {
+		Random random = new Random(0);
+		double out[] = new double[8];
+
+		for (int i = 0; i < CASE_COUNT; ++i) {
+			Vector2D ref = new Vector2D(random.nextDouble() * 244, random.nextDouble() * 113.7);
+			Vector2D dir = new Vector2D(random.nextDouble() - 0.5, random.nextDouble() - 0.5);
+			Vector2D point = new Vector2D(random.nextDouble() * 244, random.nextDouble() * 113.7);
+			double angle = random.nextDouble() * 720 - 360;
+
+			Point2D.Double expected = GeomUtils.rotatePoint(ref, point, angle);
+			GeomKernel.rotatePoint(ref.x, ref.y, point.x, point.y, angle, out, 0);
+			assertEquals(expected, new Point2D.Double(out[0], out[1]));
+
+			expected = GeomUtils.getLocalPoint(ref, dir, point);
+			GeomKernel.getLocalPoint(ref.x, ref.y, dir.x, dir.y, point.x, point.y, out, 2);
+			assertEquals(expected, new Point2D.Double(out[2], out[3]));
+
+			expected = GeomUtils.getGlobalPoint(ref, dir, point);
+			GeomKernel.getGlobalPoint(ref.x, ref.y, dir.x, dir.y, point.x, point.y, out, 4);
+			assertEquals(expected, new Point2D.Double(out[4], out[5]));
+
+			expected = Vector2D.changeLength(dir, angle);
+			GeomKernel.changeLength(dir.x, dir.y, angle, out, 6);
+			assertEquals(expected, new Point2D.Double(out[6], out[7]));
+
+			assertEquals(dir.getLength(), GeomKernel.getLength(dir.x, dir.y), 0);
+			assertEquals(dir.getDirection(), GeomKernel.getDirection(dir.x, dir.y), 0);
+
+			expected = GeomUtils.getClosestPointToLine(point, ref, dir);
+			GeomKernel.getClosestPointToLine(point.x, point.y, ref.x, ref.y, dir.x, dir.y, out, 0);
+			assertEquals(expected, new Point2D.Double(out[0], out[1]));
+
+			Point2D.Double corners[] = GeomUtils.positionRectangle(20, 18, ref, angle);
+			GeomKernel.positionRectangle(20, 18, ref.x, ref.y, angle, out, 0);
+			for (int j = 0; j < corners.length; ++j) {
+				assertEquals(corners[j], new Point2D.Double(out[2 * j], out[2 * j + 1]));
+			}
+		}
+	}
+
+	/**
+	 * Test the distances to ray-segment intersections.
+	 */
+	@Test
+	public void testRaySegmentIntersection() {
+		// A segment across the ray.
+		assertEquals(10, GeomKernel.getRaySegmentIntersectionDist(0, 0, 1, 0,
+				10, -5, 10, 5), EPSILON);
+		assertEquals(Math.sqrt(50), GeomKernel.getRaySegmentIntersectionDist(0, 0, 1, 1,
+				10, 0, 0, 10), EPSILON);
+
+		// Segments behind the ray, next to it and across it behind the origin.
+		assertEquals(GeomKernel.NO_INTERSECTION, GeomKernel.getRaySegmentIntersectionDist(
+				0, 0, 1, 0, -10, -5, -10, 5), 0);
+		assertEquals(GeomKernel.NO_INTERSECTION, GeomKernel.getRaySegmentIntersectionDist(
+				0, 0, 1, 0, 10, 1, 10, 5), 0);
+		assertEquals(GeomKernel.NO_INTERSECTION, GeomKernel.getRaySegmentIntersectionDist(
+				0, 0, 1, 0, -10, -5, 5, 5), 0);
+
+		// The precomputed rotation gives the same answers.
+		double rotation[] = new double[2];
+		GeomKernel.setLocalRotation(1, 1, rotation);
+		assertEquals(GeomKernel.getRaySegmentIntersectionDist(0, 0, 1, 1, 10, 0, 0, 10),
+				GeomKernel.getRaySegmentIntersectionDist(0, 0, rotation, 10, 0, 0, 10), 0);
+	}
+
+	/**
+	 * Test the circle tangent points.
+	 */
+	@Test
+	public void testCircleTangentPoints() {
+		double out[] = new double[4];
+		assertFalse(GeomKernel.getCircleTangentPoints(0, 0, 5, 3, 0, out, 0));
+		assertTrue(GeomKernel.getCircleTangentPoints(0, 0, 5, 10, 0, out, 0));
+
+		for (int i = 0; i < out.length; i += 2) {
+			// Tangent points lie on the circle and the radius is perpendicular
+			// to the tangent line.
+			assertEquals(5, GeomKernel.getLength(out[i], out[i + 1]), EPSILON);
+			assertEquals(0, GeomKernel.dotProduct(out[i], out[i + 1],
+					out[i] - 10, out[i + 1]), EPSILON);
+		}
+		assertEquals(-out[1], out[3], EPSILON);
+	}
+
+}
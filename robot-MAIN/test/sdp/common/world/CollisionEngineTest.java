@@ -0,0 +1,92 @@
+package sdp.common.world;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.Point2D;
+
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link CollisionEngine}.
+ */
+public class CollisionEngineTest {
+
+	/** All obstacles. */
+	private static final int ALL_OBSTACLES = WorldState.BALL_IS_OBSTACLE_FLAG
+			| WorldState.BLUE_IS_OBSTACLE_FLAG | WorldState.YELLOW_IS_OBSTACLE_FLAG
+			| WorldState.WALL_IS_OBSTACLE_FLAG;
+
+
+	/**
+	 * Create a world state in centimetres.
+	 *
+	 * @param ballX X coordinate of the ball.
+	 * @param ballY Y coordinate of the ball.
+	 * @param blueY Y coordinate of the blue robot, which faces right at X 100.
+	 * @return The world state.
+	 */
+	private static WorldState createState(double ballX, double ballY, double blueY) {
+		return new WorldState(new Point2D.Double(ballX, ballY),
+				new Robot(new Point2D.Double(100, blueY), 0, true),
+				new Robot(new Point2D.Double(220, 100), 90, true), (WorldImageSource) null);
+	}
+
+
+	/**
+	 * Test the corridor checks along a horizontal path at Y 50.
+	 */
+	@Test
+	public void testPathClear() {
+		// The blue robot's side is 10 cm from the path, within the corridor.
+		CollisionEngine engine = createState(-1, -1, 50 + 9 + 10).getCollisionEngine(ALL_OBSTACLES);
+		assertFalse(engine.isPathClear(20, 50, 200, 50));
+		assertTrue(engine.isPathClear(20, 50, 85, 50));
+
+		// At 11 cm, it is outside of the corridor.
+		engine = createState(-1, -1, 50 + 9 + 11).getCollisionEngine(ALL_OBSTACLES);
+		assertTrue(engine.isPathClear(20, 50, 200, 50));
+
+		// The ball blocks the path, unless it is not an obstacle.
+		WorldState state = createState(150, 45, 100);
+		assertFalse(state.getCollisionEngine(ALL_OBSTACLES).isPathClear(20, 50, 200, 50));
+		assertTrue(state.getCollisionEngine(WorldState.WALL_IS_OBSTACLE_FLAG)
+				.isPathClear(20, 50, 200, 50));
+
+		// The corridor must fit into the pitch.
+		engine = state.getCollisionEngine(0);
+		assertFalse(engine.isPathClear(20, 5, 200, 5));
+		assertTrue(engine.isPathClear(20, 50, 20, 50));
+	}
+
+	/**
+	 * Test the distances to the closest collisions of rays.
+	 */
+	@Test
+	public void testCollisionDistance() {
+		CollisionEngine engine = createState(150, 50, 100).getCollisionEngine(ALL_OBSTACLES);
+		assertEquals(130, engine.getCollisionDistance(20, 50, 1, 0), 1e-9);
+		assertEquals(50, engine.getCollisionDistance(20, 50, 0, -1), 1e-9);
+		assertEquals(0, engine.getCollisionDistance(-5, 50, 1, 0), 0);
+
+		engine = createState(150, 50, 100).getCollisionEngine(WorldState.BLUE_IS_OBSTACLE_FLAG);
+		assertEquals(WorldState.PITCH_WIDTH_CM, engine.getCollisionDistance(20, 50, 1, 0), 0);
+		assertEquals(100 - 9 - 50, engine.getCollisionDistance(100, 50, 0, 1), 1e-9);
+	}
+
+	/**
+	 * Test that the engines of a state are dropped when it is updated.
+	 */
+	@Test
+	public void testCaching() {
+		WorldState state = createState(150, 50, 100);
+		CollisionEngine engine = state.getCollisionEngine(ALL_OBSTACLES);
+		assertSame(engine, state.getCollisionEngine(ALL_OBSTACLES));
+
+		state.update(new Point2D.Double(-1, -1), state.getBlueRobot(), state.getYellowRobot(),
+				(WorldImageSource) null);
+		assertNotSame(engine, state.getCollisionEngine(ALL_OBSTACLES));
+		assertTrue(state.getCollisionEngine(ALL_OBSTACLES).isPathClear(20, 50, 200, 50));
+	}
+
+}
@@ -0,0 +1,139 @@
+package sdp.vision.processing;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+/**
+ * Tests for the blob statistics and outlines of {@link BlobLabeller}.
+ */
+public class BlobLabellerTest {
+
+	/** Width of the test buffers. */
+	private static final int WIDTH = 8;
+	/** Height of the test buffers. */
+	private static final int HEIGHT = 6;
+
+
+	/**
+	 * Create a classification buffer from rows of characters, where '#'
+	 * marks a pixel of the given class.
+	 *
+	 * @param bit Class bit to set.
+	 * @param rows Buffer rows.
+	 * @return Classification buffer.
+	 */
+	private static byte[] createBuffer(int bit, String... rows) {
+		byte[] buffer = new byte[WIDTH * HEIGHT];
+		for (int y = 0; y < rows.length; ++y) {
+			for (int x = 0; x < rows[y].length(); ++x) {
+				if (rows[y].charAt(x) == '#') {
+					buffer[y * WIDTH + x] = (byte) bit;
+				}
+			}
+		}
+		return buffer;
+	}
+
+
+	/**
+	 * Test the statistics of separate blobs, including a U shape whose arms
+	 * only join at the bottom.
+	 */
+	@Test
+	public void testBlobStatistics() {
+		byte[] buffer = createBuffer(FrameThresholder.BLUE_BIT,
+				"#.#.....",
+				"#.#...##",
+				"###...##",
+				"........",
+				".....#..",
+				"........");
+
+		BlobLabeller labeller = new BlobLabeller();
+		labeller.label(buffer, WIDTH, 0, 0, WIDTH, HEIGHT, FrameThresholder.BLUE_BIT);
+		int c = SearchWindowTracker.BLUE;
+
+		assertEquals(3, labeller.getBlobCount(c));
+		assertEquals(0, labeller.getBlobCount(SearchWindowTracker.BALL));
+
+		int u = labeller.findLargestBlob(c, 3, 3);
+		assertEquals(7, labeller.getArea(c, u));
+		assertEquals(0, labeller.getMinX(c, u));
+		assertEquals(0, labeller.getMinY(c, u));
+		assertEquals(2, labeller.getMaxX(c, u));
+		assertEquals(2, labeller.getMaxY(c, u));
+		assertEquals(1.0, labeller.getCentroidX(c, u), 1e-9);
+		assertEquals(8.0 / 7.0, labeller.getCentroidY(c, u), 1e-9);
+
+		int square = labeller.findLargestBlob(c, 2, 2);
+		assertEquals(4, labeller.getArea(c, square));
+		assertEquals(6.5, labeller.getCentroidX(c, square), 1e-9);
+		assertEquals(1.5, labeller.getCentroidY(c, square), 1e-9);
+		assertEquals(0.25, labeller.getVarianceX(c, square), 1e-9);
+		assertEquals(0.0, labeller.getCovariance(c, square), 1e-9);
+
+		assertEquals(-1, labeller.findLargestBlob(c, 4, 8));
+	}
+
+	/**
+	 * Test that diagonal neighbours are joined and that only the requested
+	 * region is labelled.
+	 */
+	@Test
+	public void testConnectivityAndRegion() {
+		byte[] buffer = createBuffer(FrameThresholder.BALL_BIT,
+				"#.......",
+				".#......",
+				"..#.....",
+				"...#....",
+				"........",
+				"........");
+
+		BlobLabeller labeller = new BlobLabeller();
+		int c = SearchWindowTracker.BALL;
+
+		labeller.label(buffer, WIDTH, 0, 0, WIDTH, HEIGHT, FrameThresholder.BALL_BIT);
+		assertEquals(1, labeller.getBlobCount(c));
+		assertEquals(4, labeller.getArea(c, 0));
+
+		labeller.label(buffer, WIDTH, 2, 1, 3, 3, FrameThresholder.BALL_BIT);
+		assertEquals(1, labeller.getBlobCount(c));
+		assertEquals(2, labeller.getArea(c, 0));
+		assertEquals(2, labeller.getMinX(c, 0));
+		assertEquals(3, labeller.getMaxY(c, 0));
+	}
+
+	/**
+	 * Test the outlines of a rectangle and of a single pixel.
+	 */
+	@Test
+	public void testOutline() {
+		byte[] buffer = createBuffer(FrameThresholder.YELLOW_BIT,
+				"........",
+				".###....",
+				".###....",
+				".###...#",
+				"........",
+				"........");
+
+		BlobLabeller labeller = new BlobLabeller();
+		labeller.label(buffer, WIDTH, 0, 0, WIDTH, HEIGHT, FrameThresholder.YELLOW_BIT);
+		int c = SearchWindowTracker.YELLOW;
+
+		int rect = labeller.findLargestBlob(c, 3, 3);
+		int count = labeller.traceOutline(c, rect);
+		int[] expected = { 1, 1, 2, 1, 3, 1, 3, 2, 3, 3, 2, 3, 1, 3, 1, 2 };
+		assertEquals(expected.length / 2, count);
+		for (int i = 0; i < expected.length; ++i) {
+			assertEquals(expected[i], labeller.getOutline()[i]);
+		}
+
+		int pixel = labeller.findLargestBlob(c, 1, 1);
+		assertEquals(1, labeller.traceOutline(c, pixel));
+		assertEquals(7, labeller.getOutline()[0]);
+		assertEquals(3, labeller.getOutline()[1]);
+	}
+
+}
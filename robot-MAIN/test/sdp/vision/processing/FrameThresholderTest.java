@@ -0,0 +1,63 @@
+package sdp.vision.processing;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+/**
+ * Tests for the lookup table rebuilds of {@link FrameThresholder}.
+ */
+public class FrameThresholderTest {
+
+	/** How long to wait for a background rebuild in milliseconds. */
+	private static final long BUILD_TIMEOUT = 60000;
+
+
+	/**
+	 * Update the lookup table until it has been built the given number of
+	 * times.
+	 *
+	 * @param thresholder The thresholder.
+	 * @param config Configuration to update the table with.
+	 * @param count Expected number of builds.
+	 */
+	private static void awaitBuilds(FrameThresholder thresholder, ImageProcessorConfig config,
+			int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + BUILD_TIMEOUT;
+		while (thresholder.getTableBuildCount() < count) {
+			assertTrue("table was not rebuilt", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+			thresholder.updateLookupTable(config);
+		}
+	}
+
+
+	/**
+	 * Test that the first table is built right away, that later ones are
+	 * swapped in once they are built in the background, and that unchanged
+	 * thresholds do not cause rebuilds.
+	 */
+	@Test
+	public void testRebuildInBackground() throws Exception {
+		ImageProcessorConfig config = new ImageProcessorConfig();
+		FrameThresholder thresholder = new FrameThresholder();
+		thresholder.updateLookupTable(config);
+		assertEquals(1, thresholder.getTableBuildCount());
+
+		config.getBallThreshs().setHueMax(config.getBallThreshs().getHueMax() - 1);
+		thresholder.updateLookupTable(config);
+		assertEquals(1, thresholder.getTableBuildCount());
+		awaitBuilds(thresholder, config, 2);
+
+		config.getBlueThreshs().setSatMin(config.getBlueThreshs().getSatMin() + 1);
+		thresholder.updateLookupTable(config);
+		config.getBlueThreshs().setSatMin(config.getBlueThreshs().getSatMin() + 1);
+		awaitBuilds(thresholder, config, 4);
+
+		Thread.sleep(100);
+		thresholder.updateLookupTable(config);
+		assertEquals(4, thresholder.getTableBuildCount());
+	}
+
+}
@@ -0,0 +1,136 @@
+package sdp.vision.processing;
+
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+import java.util.Random;
+
+import org.junit.Test;
+
+
+/**
+ * Tests for {@link OutlineDirectionEstimator}.
+ */
+public class OutlineDirectionEstimatorTest {
+
+	/** The size of the direction cone angle. */
+	private static final int DIRECTION_CONE_ANGLE = 30;
+	/** How many directions the outline distance calculations use. */
+	private static final int OUTLINE_ANGLE_COUNT = 360;
+
+	/** Number of random outlines to compare. */
+	private static final int OUTLINE_COUNT = 2000;
+
+
+	/**
+	 * Estimate a direction with the direct weighted cone sum.
+	 *
+	 * @param outline Outline points, X and Y interleaved.
+	 * @param pointCount Number of points in the outline.
+	 * @param centerX X coordinate of the shape's center.
+	 * @param centerY Y coordinate of the shape's center.
+	 * @return Direction of the shape in degrees.
+	 */
+	private static int estimateDirectly(int[] outline, int pointCount,
+			double centerX, double centerY) {
+		double countFactor = OUTLINE_ANGLE_COUNT / 360.0;
+
+		double[] dists = new double[OUTLINE_ANGLE_COUNT];
+		for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
+			dists[i] = Double.MAX_VALUE;
+		}
+
+		for (int i = 0; i < pointCount; ++i) {
+			int next = (i + 1) % pointCount;
+			int x1 = outline[2 * i];
+			int y1 = outline[2 * i + 1];
+			int x2 = outline[2 * next];
+			int y2 = outline[2 * next + 1];
+
+			double angle1 = Math.atan2(y1 - centerY, centerX - x1);
+			int dirIdx1 = (int) ((Math.toDegrees(angle1) + 179) * countFactor);
+
+			double angle2 = Math.atan2(y2 - centerY, centerX - x2);
+			int dirIdx2 = (int) ((Math.toDegrees(angle2) + 179) * countFactor);
+
+			if (dirIdx1 > dirIdx2) {
+				int x = dirIdx1;
+				dirIdx1 = dirIdx2;
+				dirIdx2 = x;
+			}
+
+			double dist1 = Point.distance(centerX, centerY, x1, y1);
+			double dist2 = Point.distance(centerX, centerY, x2, y2);
+
+			int dirSize = dirIdx2 - dirIdx1;
+			int revDirSize = OUTLINE_ANGLE_COUNT - dirSize;
+
+			if (revDirSize < dirSize) {
+				for (int j = dirIdx2; j < OUTLINE_ANGLE_COUNT; ++j) {
+					double d = dist2 + ((dist1 - dist2) * (j - dirIdx2)) / revDirSize;
+					dists[j] = Math.min(dists[j], d);
+				}
+				for (int j = 0; j < dirIdx1; ++j) {
+					double d = dist2 + ((dist1 - dist2) * (j - dirIdx2 + OUTLINE_ANGLE_COUNT)) / revDirSize;
+					dists[j] = Math.min(dists[j], d);
+				}
+			} else {
+				for (int j = dirIdx1; j < dirIdx2; ++j) {
+					double d = dist1 + ((dist2 - dist1) * (j - dirIdx1)) / dirSize;
+					dists[j] = Math.min(dists[j], d);
+				}
+			}
+		}
+
+		int angle = 0;
+		double bestArea = 0.0;
+		for (int i = 0; i < OUTLINE_ANGLE_COUNT; ++i) {
+			double curArea = 0.0;
+			for (int j = -(DIRECTION_CONE_ANGLE / 2); j <= (DIRECTION_CONE_ANGLE / 2); ++j) {
+				int k = (i + j + OUTLINE_ANGLE_COUNT) % OUTLINE_ANGLE_COUNT;
+				int w = DIRECTION_CONE_ANGLE / 2 - Math.abs(j);
+				curArea += dists[k] * w;
+			}
+			if (curArea > bestArea) {
+				bestArea = curArea;
+				angle = i;
+			}
+		}
+		return angle;
+	}
+
+
+	/**
+	 * Test that the estimator agrees with the direct cone sum on random
+	 * outlines, including symmetric ones with tied scores and ones whose
+	 * center lies outside the outline.
+	 */
+	@Test
+	public void testMatchesDirectEstimate() {
+		Random random = new Random(42);
+		OutlineDirectionEstimator estimator = new OutlineDirectionEstimator();
+		int[] outline = new int[0];
+
+		for (int n = 0; n < OUTLINE_COUNT; ++n) {
+			int pointCount = 1 + random.nextInt(200);
+			if (outline.length < 2 * pointCount) {
+				outline = new int[2 * pointCount];
+			}
+
+			boolean symmetric = (n % 4 == 0);
+			double offset = ((n % 4 == 1) ? 40.0 : 0.0);
+			for (int i = 0; i < pointCount; ++i) {
+				double a = 2 * Math.PI * i / pointCount;
+				double r = (symmetric ? 20.0 : 10.0 + random.nextInt(30));
+				outline[2 * i] = (int) Math.round(100 + offset + r * Math.cos(a));
+				outline[2 * i + 1] = (int) Math.round(100 + r * Math.sin(a));
+			}
+
+			double centerX = 100 + random.nextDouble();
+			double centerY = 100 + random.nextDouble();
+			assertEquals(estimateDirectly(outline, pointCount, centerX, centerY),
+					estimator.estimateDirection(outline, pointCount, centerX, centerY));
+		}
+	}
+
+}